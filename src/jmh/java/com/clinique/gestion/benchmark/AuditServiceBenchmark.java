@@ -0,0 +1,69 @@
+package com.clinique.gestion.benchmark;
+
+import com.clinique.gestion.service.AuditService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Résolution de l'adresse IP du client pour le journal d'audit (AuditService.getClientIpAddress),
+ * selon les en-têtes posés par le proxy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AuditServiceBenchmark {
+
+    private MethodHandle clientIpAddress;
+
+    private HttpServletRequest forwarded;
+    private HttpServletRequest realIp;
+    private HttpServletRequest direct;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        AuditService auditService = new AuditService();
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(AuditService.class, MethodHandles.lookup());
+        clientIpAddress = lookup.findVirtual(AuditService.class, "getClientIpAddress",
+                        MethodType.methodType(String.class, HttpServletRequest.class))
+                .bindTo(auditService);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-Forwarded-For", "196.207.10.4, 10.0.0.2, 10.0.0.1");
+        forwarded = request;
+
+        request = new MockHttpServletRequest();
+        request.addHeader("X-Real-IP", "196.207.10.4");
+        realIp = request;
+
+        request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.7");
+        direct = request;
+    }
+
+    @Benchmark
+    public String forwardedFor() throws Throwable {
+        return (String) clientIpAddress.invokeExact(forwarded);
+    }
+
+    @Benchmark
+    public String realIp() throws Throwable {
+        return (String) clientIpAddress.invokeExact(realIp);
+    }
+
+    @Benchmark
+    public String remoteAddr() throws Throwable {
+        return (String) clientIpAddress.invokeExact(direct);
+    }
+}
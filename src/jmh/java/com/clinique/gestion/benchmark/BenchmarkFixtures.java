@@ -0,0 +1,109 @@
+package com.clinique.gestion.benchmark;
+
+import com.clinique.gestion.entity.Consultation;
+import com.clinique.gestion.entity.Paiement;
+import com.clinique.gestion.entity.Patient;
+import com.clinique.gestion.entity.Ticket;
+import com.clinique.gestion.entity.User;
+import com.clinique.gestion.enums.ModePaiement;
+import com.clinique.gestion.enums.Role;
+import com.clinique.gestion.enums.StatutTicket;
+import com.clinique.gestion.service.PatientDossier;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entités construites en mémoire, sans base, pour les benchmarks de mapping et de rendu
+ */
+final class BenchmarkFixtures {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 1, 15, 10, 30);
+
+    private BenchmarkFixtures() {
+    }
+
+    static Patient patient(long id) {
+        Patient patient = new Patient();
+        patient.setId(id);
+        patient.setNumero(String.format("PAT-20260115-%05d", id));
+        patient.setNom("Ndiaye");
+        patient.setPrenom("Aïssatou");
+        patient.setDateNaissance(LocalDate.of(1985, 3, 12));
+        patient.setTelephone("77 123 45 67");
+        patient.setAdresse("12 rue des Palmiers, Dakar");
+        patient.setCreatedAt(NOW);
+        patient.setUpdatedAt(NOW);
+        return patient;
+    }
+
+    static User user(long id, Role role) {
+        User user = new User("user" + id, "user" + id + "@clinique.sn", "hash", role);
+        user.setId(id);
+        user.setNom("Diop");
+        user.setPrenom("Moussa");
+        return user;
+    }
+
+    static Consultation consultation(long id, Patient patient, User medecin) {
+        Consultation consultation = new Consultation();
+        consultation.setId(id);
+        consultation.setPatient(patient);
+        consultation.setMedecin(medecin);
+        consultation.setDate(NOW.minusDays(id));
+        consultation.setMotif("Fièvre et céphalées depuis trois jours");
+        consultation.setDiagnostic("Syndrome grippal");
+        consultation.setPrescription("Paracétamol 1 g, trois fois par jour pendant cinq jours");
+        consultation.setCreatedAt(NOW);
+        consultation.setUpdatedAt(NOW);
+        return consultation;
+    }
+
+    static Ticket ticket(long id, Patient patient) {
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setNumero(String.format("TKT-CON-20260115-%05d", id));
+        ticket.setPatient(patient);
+        ticket.setService("Consultation");
+        ticket.setStatut(StatutTicket.TERMINE);
+        ticket.setCreatedAt(NOW.minusDays(id));
+        ticket.setUpdatedAt(NOW);
+        return ticket;
+    }
+
+    static Paiement paiement(long id, Patient patient, Ticket ticket, User caissier) {
+        Paiement paiement = new Paiement();
+        paiement.setId(id);
+        paiement.setPatient(patient);
+        paiement.setTicket(ticket);
+        paiement.setCaissier(caissier);
+        paiement.setMontant(new BigDecimal("15000.00"));
+        paiement.setModePaiement(ModePaiement.ESPECES);
+        paiement.setDate(NOW.minusDays(id));
+        paiement.setNumeroRecu(String.format("REC-20260115-%05d", id));
+        paiement.setCreatedAt(NOW);
+        return paiement;
+    }
+
+    /**
+     * Dossier d'un patient avec entries consultations, tickets et paiements
+     */
+    static PatientDossier dossier(int entries) {
+        Patient patient = patient(1);
+        User medecin = user(2, Role.MEDECIN);
+        User caissier = user(3, Role.CAISSIER);
+        List<Consultation> consultations = new ArrayList<>(entries);
+        List<Ticket> tickets = new ArrayList<>(entries);
+        List<Paiement> paiements = new ArrayList<>(entries);
+        for (int i = 1; i <= entries; i++) {
+            consultations.add(consultation(i, patient, medecin));
+            Ticket ticket = ticket(i, patient);
+            tickets.add(ticket);
+            paiements.add(paiement(i, patient, ticket, caissier));
+        }
+        return new PatientDossier(patient, consultations, tickets, paiements);
+    }
+}
@@ -0,0 +1,93 @@
+package com.clinique.gestion.benchmark;
+
+import com.clinique.gestion.GestionCliniqueApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Application complète démarrée sur un PostgreSQL embarqué, pour les benchmarks de bout en bout.
+ * Chaque instance a sa propre base et son propre répertoire de travail, supprimés à la fermeture.
+ */
+final class EmbeddedApplication implements AutoCloseable {
+
+    private final EmbeddedPostgres postgres;
+    private final ConfigurableApplicationContext context;
+    private final Path workDirectory;
+
+    private EmbeddedApplication(EmbeddedPostgres postgres, ConfigurableApplicationContext context, Path workDirectory) {
+        this.postgres = postgres;
+        this.context = context;
+        this.workDirectory = workDirectory;
+    }
+
+    /**
+     * Démarre PostgreSQL puis l'application ; overrides complète ou remplace la configuration
+     */
+    static EmbeddedApplication start(Map<String, Object> overrides) {
+        EmbeddedPostgres postgres;
+        try {
+            postgres = EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Démarrage du PostgreSQL embarqué impossible", e);
+        }
+        try {
+            Path workDirectory = Files.createTempDirectory("clinique-bench");
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("spring.datasource.url",
+                    postgres.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true");
+            properties.put("spring.datasource.username", "postgres");
+            properties.put("spring.datasource.password", "");
+            properties.put("server.port", "0");
+            properties.put("spring.jpa.show-sql", "false");
+            properties.put("logging.level.root", "WARN");
+            properties.put("logging.level.com.clinique.gestion", "WARN");
+            properties.put("logging.level.org.hibernate.SQL", "WARN");
+            properties.put("logging.level.org.springframework.security", "WARN");
+            properties.put("audit.spool.directory", workDirectory.resolve("audit-spool").toString());
+            properties.put("patients.dossier.archive-directory", workDirectory.resolve("dossiers").toString());
+            properties.put("patients.dossier.cache.directory", workDirectory.resolve("dossier-cache").toString());
+            properties.putAll(overrides);
+            // Arguments de ligne de commande : prioritaires sur application.properties
+            String[] args = properties.entrySet().stream()
+                    .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                    .toArray(String[]::new);
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(GestionCliniqueApplication.class)
+                    .run(args);
+            return new EmbeddedApplication(postgres, context, workDirectory);
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(postgres);
+            throw e instanceof IOException io ? new UncheckedIOException(io) : (RuntimeException) e;
+        }
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            context.close();
+        } finally {
+            postgres.close();
+            FileSystemUtils.deleteRecursively(workDirectory);
+        }
+    }
+
+    private static void closeQuietly(EmbeddedPostgres postgres) {
+        try {
+            postgres.close();
+        } catch (IOException ignored) {
+            // Rien de plus à faire : l'échec du démarrage est déjà remonté
+        }
+    }
+}
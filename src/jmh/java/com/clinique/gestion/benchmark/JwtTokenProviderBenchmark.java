@@ -0,0 +1,81 @@
+package com.clinique.gestion.benchmark;
+
+import com.clinique.gestion.security.jwt.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.util.ReflectionUtils;
+
+import javax.crypto.SecretKey;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût par requête de la vérification d'un token dans le filtre JWT :
+ * ancien chemin (clé et parseur reconstruits, deux lectures du token)
+ * contre parseur précalculé et lecture unique.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtTokenProviderBenchmark {
+
+    private static final String SECRET =
+            "MySecretKeyForJWTTokenGenerationThatShouldBeAtLeast256BitsLongForHS512Algorithm";
+
+    private JwtTokenProvider provider;
+    private String token;
+
+    @Setup
+    public void setup() {
+        provider = new JwtTokenProvider();
+        setField(provider, "jwtSecret", SECRET);
+        setField(provider, "jwtExpirationMs", 86_400_000L);
+        setField(provider, "activeKid", JwtTokenProvider.DEFAULT_KID);
+        provider.init();
+        token = provider.generateTokenFromUsername("admin");
+    }
+
+    /**
+     * Chemin d'origine : validateToken puis getUsernameFromToken, chacun reconstruisant clé et parseur
+     */
+    @Benchmark
+    public String legacyValidateThenExtract() {
+        SecretKey validationKey = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        Jwts.parser().verifyWith(validationKey).build().parseSignedClaims(token);
+
+        SecretKey extractionKey = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        return Jwts.parser().verifyWith(extractionKey).build()
+                .parseSignedClaims(token)
+                .getPayload()
+                .getSubject();
+    }
+
+    /**
+     * Chemin actuel : parseur construit au démarrage, une seule lecture
+     */
+    @Benchmark
+    public String singleParse() {
+        Claims claims = provider.parseToken(token).orElseThrow();
+        return claims.getSubject();
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return provider.generateTokenFromUsername("admin");
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
@@ -0,0 +1,103 @@
+package com.clinique.gestion.benchmark;
+
+import com.clinique.gestion.dto.ConsultationDTO;
+import com.clinique.gestion.dto.PaiementDTO;
+import com.clinique.gestion.dto.PatientDTO;
+import com.clinique.gestion.dto.TicketDTO;
+import com.clinique.gestion.dto.UserDTO;
+import com.clinique.gestion.entity.Consultation;
+import com.clinique.gestion.entity.Paiement;
+import com.clinique.gestion.entity.Patient;
+import com.clinique.gestion.entity.Ticket;
+import com.clinique.gestion.entity.User;
+import com.clinique.gestion.enums.Role;
+import com.clinique.gestion.service.CaisseService;
+import com.clinique.gestion.service.ConsultationService;
+import com.clinique.gestion.service.PatientService;
+import com.clinique.gestion.service.TicketService;
+import com.clinique.gestion.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût des conversions entité → DTO (méthodes privées entityToDTO des services),
+ * appelées une fois par élément dans toutes les listes de l'API
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MapperBenchmark {
+
+    private MethodHandle patientMapper;
+    private MethodHandle consultationMapper;
+    private MethodHandle ticketMapper;
+    private MethodHandle paiementMapper;
+    private MethodHandle userMapper;
+
+    private Patient patient;
+    private Consultation consultation;
+    private Ticket ticket;
+    private Paiement paiement;
+    private User user;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        patientMapper = mapper(new PatientService(), Patient.class, PatientDTO.class);
+        consultationMapper = mapper(new ConsultationService(), Consultation.class, ConsultationDTO.class);
+        ticketMapper = mapper(new TicketService(), Ticket.class, TicketDTO.class);
+        paiementMapper = mapper(new CaisseService(), Paiement.class, PaiementDTO.class);
+        userMapper = mapper(new UserService(), User.class, UserDTO.class);
+
+        patient = BenchmarkFixtures.patient(1);
+        User medecin = BenchmarkFixtures.user(2, Role.MEDECIN);
+        consultation = BenchmarkFixtures.consultation(1, patient, medecin);
+        ticket = BenchmarkFixtures.ticket(1, patient);
+        paiement = BenchmarkFixtures.paiement(1, patient, ticket, BenchmarkFixtures.user(3, Role.CAISSIER));
+        user = medecin;
+    }
+
+    @Benchmark
+    public PatientDTO patient() throws Throwable {
+        return (PatientDTO) patientMapper.invokeExact(patient);
+    }
+
+    @Benchmark
+    public ConsultationDTO consultation() throws Throwable {
+        return (ConsultationDTO) consultationMapper.invokeExact(consultation);
+    }
+
+    @Benchmark
+    public TicketDTO ticket() throws Throwable {
+        return (TicketDTO) ticketMapper.invokeExact(ticket);
+    }
+
+    @Benchmark
+    public PaiementDTO paiement() throws Throwable {
+        return (PaiementDTO) paiementMapper.invokeExact(paiement);
+    }
+
+    @Benchmark
+    public UserDTO user() throws Throwable {
+        return (UserDTO) userMapper.invokeExact(user);
+    }
+
+    /**
+     * Poignée sur la méthode privée entityToDTO du service, liée à une instance
+     */
+    private static MethodHandle mapper(Object service, Class<?> entityType, Class<?> dtoType)
+            throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(service.getClass(), MethodHandles.lookup());
+        return lookup.findVirtual(service.getClass(), "entityToDTO", MethodType.methodType(dtoType, entityType))
+                .bindTo(service);
+    }
+}
@@ -0,0 +1,63 @@
+package com.clinique.gestion.benchmark;
+
+import com.clinique.gestion.util.NumeroGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Génération des numéros (patients, reçus) sur PostgreSQL embarqué : un aller-retour
+ * par numéro (block-size=1, sans trou) contre des plages réservées par instance
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NumeroGeneratorBenchmark {
+
+    @Param({"1", "50"})
+    private int blockSize;
+
+    private EmbeddedApplication application;
+    private NumeroGenerator numeroGenerator;
+
+    @Setup
+    public void setup() {
+        application = EmbeddedApplication.start(Map.of("numero.sequence.block-size", blockSize));
+        numeroGenerator = application.bean(NumeroGenerator.class);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        application.close();
+    }
+
+    @Benchmark
+    public String patientNumero() {
+        return numeroGenerator.generatePatientNumero();
+    }
+
+    @Benchmark
+    public String recuNumero() {
+        return numeroGenerator.generateRecuNumero();
+    }
+
+    /**
+     * Quatre appelants sur le même compteur (même préfixe, même jour)
+     */
+    @Benchmark
+    @Threads(4)
+    public String patientNumeroContended() {
+        return numeroGenerator.generatePatientNumero();
+    }
+}
@@ -0,0 +1,44 @@
+package com.clinique.gestion.benchmark;
+
+import com.clinique.gestion.service.PatientDossier;
+import com.clinique.gestion.service.PatientDossierPdfRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendu PDF d'un dossier patient selon le nombre de consultations, tickets et paiements
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PdfRenderingBenchmark {
+
+    @Param({"0", "10", "100"})
+    private int entries;
+
+    private PatientDossierPdfRenderer renderer;
+    private PatientDossier dossier;
+
+    @Setup
+    public void setup() {
+        renderer = new PatientDossierPdfRenderer();
+        dossier = BenchmarkFixtures.dossier(entries);
+    }
+
+    @Benchmark
+    public int render() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        renderer.render(dossier, out);
+        return out.size();
+    }
+}
@@ -0,0 +1,161 @@
+package com.clinique.gestion.benchmark;
+
+import com.clinique.gestion.dto.PaiementDTO;
+import com.clinique.gestion.dto.PatientDTO;
+import com.clinique.gestion.dto.PatientPageDTO;
+import com.clinique.gestion.entity.User;
+import com.clinique.gestion.enums.ModePaiement;
+import com.clinique.gestion.enums.Role;
+import com.clinique.gestion.repository.UserRepository;
+import com.clinique.gestion.service.CaisseService;
+import com.clinique.gestion.service.PatientDossierService;
+import com.clinique.gestion.service.PatientService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Appels de service de bout en bout (transactions, Hibernate, SQL) sur PostgreSQL embarqué,
+ * avec une base de patients et de paiements créée par les services eux-mêmes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ServiceCallBenchmark {
+
+    private static final String[] NOMS = {"Ndiaye", "Diop", "Fall", "Sow", "Ba", "Gueye", "Faye", "Sarr", "Cissé", "Mbaye"};
+    private static final String[] PRENOMS = {"Awa", "Moussa", "Fatou", "Ibrahima", "Aïssatou", "Cheikh", "Mariama", "Ousmane"};
+
+    @Param({"2000"})
+    private int patients;
+
+    private EmbeddedApplication application;
+    private PatientService patientService;
+    private CaisseService caisseService;
+    private PatientDossierService patientDossierService;
+
+    private long[] patientIds;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private LocalDateTime monthStart;
+    private LocalDateTime monthEnd;
+
+    @Setup
+    public void setup() {
+        application = EmbeddedApplication.start(Map.of());
+        patientService = application.bean(PatientService.class);
+        caisseService = application.bean(CaisseService.class);
+        patientDossierService = application.bean(PatientDossierService.class);
+
+        User caissier = new User("caissier", "caissier@clinique.local", "benchmark", Role.CAISSIER);
+        caissier.setNom("Sall");
+        caissier.setPrenom("Khady");
+        caissier = application.bean(UserRepository.class).save(caissier);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                caissier.getUsername(), null, List.of(new SimpleGrantedAuthority("ROLE_CAISSIER"))));
+
+        patientIds = new long[patients];
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < patients; i++) {
+            patientIds[i] = patientService.createPatient(newPatient(i), null).getId();
+            // Un paiement pour un patient sur quatre, réparti sur les trente derniers jours
+            if (i % 4 == 0) {
+                PaiementDTO paiement = new PaiementDTO();
+                paiement.setPatientId(patientIds[i]);
+                paiement.setMontant(new BigDecimal(5000 + (i % 7) * 2500));
+                paiement.setModePaiement(ModePaiement.values()[i % ModePaiement.values().length]);
+                paiement.setDate(now.minusDays(i % 30).minusMinutes(i % 600));
+                paiement.setCaissierId(caissier.getId());
+                caisseService.enregistrerPaiement(paiement, null);
+            }
+        }
+        SecurityContextHolder.clearContext();
+        monthEnd = now;
+        monthStart = now.minusDays(30);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        application.close();
+    }
+
+    @Benchmark
+    public PatientDTO getPatientById() {
+        return patientService.getPatientById(patientIds[nextIndex()]);
+    }
+
+    @Benchmark
+    public List<PatientDTO> searchPatients() {
+        return patientService.searchPatients("ndia", 0, 20);
+    }
+
+    @Benchmark
+    public List<PatientDTO> suggestPatients() {
+        return patientService.suggestPatients("ndi", 10);
+    }
+
+    @Benchmark
+    public PatientPageDTO firstPage() {
+        return patientService.getPatientsPage(null, 50);
+    }
+
+    @Benchmark
+    public List<PaiementDTO> paiementsByPatient() {
+        // Seuls les patients d'indice multiple de 4 ont un paiement
+        return caisseService.getPaiementsByPatient(patientIds[nextIndex() / 4 * 4]);
+    }
+
+    @Benchmark
+    public BigDecimal totalRecettesMonth() {
+        return caisseService.getTotalRecettes(monthStart, monthEnd);
+    }
+
+    /**
+     * Version du dossier puis PDF servi par le cache (cas d'un téléchargement répété)
+     */
+    @Benchmark
+    public ByteBuffer dossierPdfCached() {
+        long id = patientIds[0];
+        return patientDossierService.dossierPdf(id, patientDossierService.dossierVersion(id));
+    }
+
+    /**
+     * Écriture : numéro, insertion, audit et index de saisie semi-automatique
+     */
+    @Benchmark
+    public PatientDTO createPatient() {
+        return patientService.createPatient(newPatient(cursor.getAndIncrement()), null);
+    }
+
+    private int nextIndex() {
+        return (cursor.getAndIncrement() & Integer.MAX_VALUE) % patients;
+    }
+
+    private static PatientDTO newPatient(int i) {
+        PatientDTO dto = new PatientDTO();
+        dto.setNom(NOMS[i % NOMS.length]);
+        dto.setPrenom(PRENOMS[(i / NOMS.length) % PRENOMS.length]);
+        dto.setDateNaissance(LocalDate.of(1950, 1, 1).plusDays(i * 7L % 25_000));
+        dto.setTelephone(String.format("77 %03d %02d %02d", i % 1000, i / 1000 % 100, i % 97));
+        dto.setAdresse("Dakar");
+        return dto;
+    }
+}
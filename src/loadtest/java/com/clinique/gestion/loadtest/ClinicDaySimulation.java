@@ -0,0 +1,407 @@
+package com.clinique.gestion.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rejoue une journée de clinique contre une instance locale :
+ * <ul>
+ *   <li>accueil : arrivées en rafale à l'ouverture puis étalées sur la journée ; chaque patient
+ *   est recherché (suggest puis search) ou créé, puis reçoit un ticket (POST /api/tickets),
+ *   avec au plus loadtest.desks patients traités en même temps ;</li>
+ *   <li>écrans de salle d'attente : consultation continue des files et de leur longueur ;</li>
+ *   <li>médecins : prise du ticket suivant de leur service, consultation, clôture du ticket ;</li>
+ *   <li>caisse : paiement de chaque consultation terminée et consultation régulière des totaux.</li>
+ * </ul>
+ * Un thread virtuel par patient en cours d'accueil et par acteur (médecin, écran, caissier).
+ * Le rapport donne par point d'accès les latences p50/p95/p99, le taux d'erreur et le nombre
+ * de requêtes SQL par appel ; il est aussi écrit en JSON (loadtest.result).
+ * <p>
+ * Lancement : mvn -Ploadtest compile exec:exec@loadtest -Dloadtest.args="-Dloadtest.patients-per-day=600"
+ */
+public final class ClinicDaySimulation {
+
+    private static final String[] NOMS = {"Diallo", "Traoré", "Koné", "Ouédraogo", "Camara", "Sow", "Keita",
+            "Coulibaly", "Touré", "Bamba", "Sanogo", "Kaboré", "Diop", "Ndiaye", "Barry", "Cissé"};
+    private static final String[] PRENOMS = {"Awa", "Moussa", "Fatou", "Ibrahim", "Aminata", "Issa", "Mariam",
+            "Oumar", "Salimata", "Adama", "Kadiatou", "Seydou", "Rokia", "Boubacar"};
+    private static final String[] MODES_PAIEMENT = {"ESPECES", "ESPECES", "CARTE", "CHEQUE", "VIREMENT"};
+
+    // Nombre maximal de patients existants chargés pour les recherches à l'accueil
+    private static final int EXISTING_PATIENTS = 1000;
+
+    private final LoadTestScenario scenario;
+    private final LatencyRecorder recorder = new LatencyRecorder();
+
+    private final AtomicInteger received = new AtomicInteger();
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger consulted = new AtomicInteger();
+    private final AtomicInteger paid = new AtomicInteger();
+
+    // Consultations terminées en attente de passage en caisse
+    private final BlockingQueue<Visit> cashierQueue = new LinkedBlockingQueue<>();
+
+    private volatile boolean receptionClosed;
+    private volatile boolean doctorsDone;
+    private volatile boolean cashiersDone;
+    private volatile long deadline;
+
+    private record Visit(long patientId, long ticketId) {
+    }
+
+    /**
+     * Arrivée planifiée d'un patient : instant depuis l'ouverture, patient existant ou nouveau
+     * (existingIndex négatif) et service demandé
+     */
+    private record Arrival(int number, long offsetNanos, int existingIndex, String service) {
+    }
+
+    private record ExistingPatient(long id, String nom) {
+    }
+
+    /**
+     * Résultat d'une journée, tel qu'écrit en JSON
+     */
+    record Result(Map<String, Object> scenario, double durationSeconds, long requests, double requestsPerSecond,
+                  int patientsReceived, int patientsCreated, int consultations, int payments,
+                  List<LatencyRecorder.EndpointSummary> endpoints) {
+    }
+
+    ClinicDaySimulation(LoadTestScenario scenario) {
+        this.scenario = scenario;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestScenario scenario = LoadTestScenario.fromSystemProperties();
+        Result result = new ClinicDaySimulation(scenario).run();
+        print(result, System.out);
+
+        Path file = scenario.resultFile();
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file.toFile(), result);
+        System.out.println("Résultats JSON : " + file.toAbsolutePath());
+    }
+
+    Result run() throws InterruptedException {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            LoadTestClient client = new LoadTestClient(scenario.baseUrl(), scenario.requestTimeout(), executor, recorder);
+            JsonNode user = client.login(scenario.username(), scenario.password());
+            long userId = user.path("id").asLong();
+            List<Long> medecins = loadMedecins(client, userId);
+            List<ExistingPatient> existing = loadExistingPatients(client);
+            List<Arrival> arrivals = planArrivals(existing.size());
+
+            long start = System.nanoTime();
+            deadline = start + scenario.dayDuration().plus(scenario.drainTimeout()).toNanos();
+
+            Semaphore desks = new Semaphore(scenario.desks(), true);
+            List<Future<?>> receptions = new ArrayList<>(arrivals.size());
+            for (Arrival arrival : arrivals) {
+                receptions.add(executor.submit(() -> {
+                    sleepUntil(start + arrival.offsetNanos());
+                    desks.acquireUninterruptibly();
+                    try {
+                        receive(client, arrival, existing);
+                    } finally {
+                        desks.release();
+                    }
+                }));
+            }
+
+            List<Future<?>> doctors = new ArrayList<>();
+            List<String> services = scenario.servedServices();
+            for (int i = 0; i < scenario.doctors(); i++) {
+                String service = services.get(i % services.size());
+                long medecinId = medecins.get(i % medecins.size());
+                doctors.add(executor.submit(() -> consult(client, service, medecinId)));
+            }
+            List<Future<?>> cashiers = new ArrayList<>();
+            for (int i = 0; i < scenario.cashiers(); i++) {
+                cashiers.add(executor.submit(() -> collect(client, userId)));
+            }
+            List<Future<?>> screens = new ArrayList<>();
+            for (int i = 0; i < scenario.screens(); i++) {
+                String service = services.get(i % services.size());
+                screens.add(executor.submit(() -> display(client, service)));
+            }
+
+            await(receptions);
+            receptionClosed = true;
+            await(doctors);
+            doctorsDone = true;
+            await(cashiers);
+            cashiersDone = true;
+            await(screens);
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            List<LatencyRecorder.EndpointSummary> endpoints = recorder.summaries();
+            long requests = endpoints.stream().mapToLong(LatencyRecorder.EndpointSummary::requests).sum();
+            return new Result(describe(), seconds, requests, requests / seconds,
+                    received.get(), created.get(), consulted.get(), paid.get(), endpoints);
+        }
+    }
+
+    /**
+     * Accueil d'un patient : recherche (ou création) puis ticket
+     */
+    private void receive(LoadTestClient client, Arrival arrival, List<ExistingPatient> existing) {
+        long patientId;
+        if (arrival.existingIndex() >= 0) {
+            ExistingPatient patient = existing.get(arrival.existingIndex());
+            String nom = patient.nom();
+            client.get("GET /api/patients/suggest",
+                    "/api/patients/suggest?q=" + LoadTestClient.encode(nom.substring(0, Math.min(3, nom.length()))));
+            client.get("GET /api/patients/search", "/api/patients/search?q=" + LoadTestClient.encode(nom));
+            patientId = patient.id();
+        } else {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            ObjectNode patient = client.mapper().createObjectNode()
+                    .put("nom", NOMS[random.nextInt(NOMS.length)])
+                    .put("prenom", PRENOMS[random.nextInt(PRENOMS.length)])
+                    .put("dateNaissance", LocalDate.of(1940, 1, 1).plusDays(random.nextInt(30_000)).toString())
+                    .put("telephone", "07" + (10_000_000 + random.nextInt(90_000_000)))
+                    .put("adresse", "Charge " + arrival.number());
+            LoadTestClient.Response response = client.post("POST /api/patients", "/api/patients", patient);
+            if (!response.ok()) {
+                return;
+            }
+            created.incrementAndGet();
+            patientId = response.body().path("id").asLong();
+        }
+        LoadTestClient.Response ticket = client.post("POST /api/tickets",
+                "/api/tickets?patientId=" + patientId + "&service=" + LoadTestClient.encode(arrival.service()), null);
+        if (ticket.ok()) {
+            received.incrementAndGet();
+        }
+    }
+
+    /**
+     * Médecin d'un service : prend le ticket suivant, consulte, clôture, envoie en caisse
+     */
+    private void consult(LoadTestClient client, String service, long medecinId) {
+        String encoded = LoadTestClient.encode(service);
+        while (!expired()) {
+            LoadTestClient.Response next = client.get("GET /api/tickets/next/{service}",
+                    "/api/tickets/next/" + encoded, 404);
+            if (!next.ok()) {
+                if (receptionClosed && next.status() == 404) {
+                    return;
+                }
+                sleep(scenario.pollInterval());
+                continue;
+            }
+            long ticketId = next.body().path("id").asLong();
+            long patientId = next.body().path("patientId").asLong();
+            // Un autre médecin du même service peut avoir pris le ticket entre-temps
+            LoadTestClient.Response taken = client.put("PUT /api/tickets/{id}/statut",
+                    "/api/tickets/" + ticketId + "/statut?statut=EN_COURS", 400, 409);
+            if (!taken.ok()) {
+                continue;
+            }
+            ObjectNode notes = client.mapper().createObjectNode()
+                    .put("diagnostic", "Diagnostic ticket " + ticketId)
+                    .put("prescription", "Prescription ticket " + ticketId);
+            client.post("POST /api/consultations",
+                    "/api/consultations?patientId=" + patientId + "&medecinId=" + medecinId, notes);
+            sleep(jitter(scenario.consultationTime()));
+            LoadTestClient.Response closed = client.put("PUT /api/tickets/{id}/statut",
+                    "/api/tickets/" + ticketId + "/statut?statut=TERMINE");
+            if (closed.ok()) {
+                consulted.incrementAndGet();
+                cashierQueue.add(new Visit(patientId, ticketId));
+            }
+        }
+    }
+
+    /**
+     * Caissier : encaisse les consultations terminées, consulte les recettes du jour
+     */
+    private void collect(LoadTestClient client, long caissierId) {
+        while (!expired()) {
+            Visit visit;
+            try {
+                visit = cashierQueue.poll(scenario.pollInterval().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (visit == null) {
+                if (doctorsDone) {
+                    return;
+                }
+                continue;
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            ObjectNode paiement = client.mapper().createObjectNode()
+                    .put("patientId", visit.patientId())
+                    .put("ticketId", visit.ticketId())
+                    .put("montant", BigDecimal.valueOf(2_000 + 500L * random.nextInt(40)))
+                    .put("modePaiement", MODES_PAIEMENT[random.nextInt(MODES_PAIEMENT.length)])
+                    .put("date", LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).toString())
+                    .put("caissierId", caissierId);
+            if (client.post("POST /api/paiements", "/api/paiements", paiement).ok()) {
+                int count = paid.incrementAndGet();
+                if (count % 10 == 0) {
+                    LocalDateTime today = LocalDate.now().atStartOfDay();
+                    client.get("GET /api/paiements/total", "/api/paiements/total?start=" + today
+                            + "&end=" + today.plusDays(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Écran de salle d'attente : rafraîchit la file d'un service jusqu'à la fermeture de la caisse
+     */
+    private void display(LoadTestClient client, String service) {
+        String encoded = LoadTestClient.encode(service);
+        while (!cashiersDone && !expired()) {
+            client.get("GET /api/tickets/queue/{service}", "/api/tickets/queue/" + encoded);
+            client.get("GET /api/tickets/queue/{service}/length", "/api/tickets/queue/" + encoded + "/length");
+            sleep(scenario.pollInterval());
+        }
+    }
+
+    private List<Long> loadMedecins(LoadTestClient client, long fallbackId) {
+        LoadTestClient.Response response = client.get("GET /api/users/role/{role}", "/api/users/role/MEDECIN");
+        List<Long> ids = new ArrayList<>();
+        response.body().forEach(medecin -> ids.add(medecin.path("id").asLong()));
+        if (ids.isEmpty()) {
+            ids.add(fallbackId);
+        }
+        return ids;
+    }
+
+    private List<ExistingPatient> loadExistingPatients(LoadTestClient client) {
+        List<ExistingPatient> patients = new ArrayList<>();
+        String cursor = null;
+        do {
+            String path = "/api/patients/page?size=100" + (cursor != null ? "&cursor=" + LoadTestClient.encode(cursor) : "");
+            LoadTestClient.Response page = client.get("GET /api/patients/page", path);
+            page.body().path("items").forEach(patient ->
+                    patients.add(new ExistingPatient(patient.path("id").asLong(), patient.path("nom").asText())));
+            JsonNode next = page.body().path("nextCursor");
+            cursor = next.isTextual() ? next.asText() : null;
+        } while (cursor != null && patients.size() < EXISTING_PATIENTS);
+        return patients;
+    }
+
+    /**
+     * Planifie les arrivées : une part opening-burst dans le premier dixième de la journée,
+     * le reste réparti uniformément
+     */
+    private List<Arrival> planArrivals(int existingPatients) {
+        Random random = new Random(scenario.seed());
+        long day = scenario.dayDuration().toNanos();
+        List<String> services = scenario.servedServices();
+        List<Arrival> arrivals = new ArrayList<>(scenario.patientsPerDay());
+        for (int i = 0; i < scenario.patientsPerDay(); i++) {
+            boolean burst = random.nextDouble() < scenario.openingBurst();
+            long offset = (long) (random.nextDouble() * (burst ? day / 10 : day));
+            boolean newPatient = existingPatients == 0 || random.nextDouble() < scenario.newPatientRatio();
+            arrivals.add(new Arrival(i, offset, newPatient ? -1 : random.nextInt(existingPatients),
+                    services.get(random.nextInt(services.size()))));
+        }
+        return arrivals;
+    }
+
+    private Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("baseUrl", scenario.baseUrl().toString());
+        description.put("desks", scenario.desks());
+        description.put("doctors", scenario.doctors());
+        description.put("cashiers", scenario.cashiers());
+        description.put("screens", scenario.screens());
+        description.put("patientsPerDay", scenario.patientsPerDay());
+        description.put("dayDuration", scenario.dayDuration().toString());
+        description.put("openingBurst", scenario.openingBurst());
+        description.put("newPatientRatio", scenario.newPatientRatio());
+        description.put("consultationTime", scenario.consultationTime().toString());
+        description.put("pollInterval", scenario.pollInterval().toString());
+        description.put("services", scenario.servedServices());
+        description.put("seed", scenario.seed());
+        return description;
+    }
+
+    static void print(Result result, PrintStream out) {
+        out.printf("Journée simulée : %s%n", result.scenario());
+        out.printf("Durée réelle %.1f s, %d requêtes (%.1f req/s)%n",
+                result.durationSeconds(), result.requests(), result.requestsPerSecond());
+        out.printf("Patients accueillis %d (dont %d créés), consultations %d, paiements %d%n",
+                result.patientsReceived(), result.patientsCreated(), result.consultations(), result.payments());
+        out.printf("%n%-40s %8s %7s %9s %9s %9s %9s %8s %7s%n",
+                "Point d'accès", "Requêtes", "Err %", "p50 ms", "p95 ms", "p99 ms", "max ms", "SQL moy", "SQL max");
+        for (LatencyRecorder.EndpointSummary endpoint : result.endpoints()) {
+            out.printf("%-40s %8d %7.2f %9.1f %9.1f %9.1f %9.1f %8.1f %7d%n",
+                    endpoint.endpoint(), endpoint.requests(), endpoint.errorRate() * 100,
+                    endpoint.p50Ms(), endpoint.p95Ms(), endpoint.p99Ms(), endpoint.maxMs(),
+                    endpoint.sqlMean(), endpoint.sqlMax());
+        }
+        result.endpoints().stream()
+                .filter(endpoint -> endpoint.errors() > 0)
+                .forEach(endpoint -> out.printf("Statuts %s : %s%n", endpoint.endpoint(), endpoint.statuses()));
+    }
+
+    private boolean expired() {
+        return System.nanoTime() - deadline > 0;
+    }
+
+    private static void await(List<Future<?>> futures) throws InterruptedException {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                System.err.println("Acteur interrompu : " + e.getCause());
+            }
+        }
+    }
+
+    private static void sleepUntil(long nanoTime) {
+        long remaining = nanoTime - System.nanoTime();
+        if (remaining > 0) {
+            sleep(Duration.ofNanos(remaining));
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Durée tirée entre 50 % et 150 % de la durée moyenne
+     */
+    private static Duration jitter(Duration mean) {
+        return Duration.ofNanos((long) (mean.toNanos() * (0.5 + ThreadLocalRandom.current().nextDouble())));
+    }
+}
@@ -0,0 +1,93 @@
+package com.clinique.gestion.loadtest;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mesures par point d'accès : latences, codes de statut, erreurs et nombre de requêtes SQL
+ * (en-tête X-SQL-Statement-Count renvoyé par l'application).
+ */
+final class LatencyRecorder {
+
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Enregistre un appel ; status vaut -1 si aucune réponse n'a été reçue et sqlStatements -1
+     * si l'en-tête est absent
+     */
+    void record(String endpoint, long nanos, int status, boolean error, long sqlStatements) {
+        endpoints.computeIfAbsent(endpoint, key -> new EndpointStats()).add(nanos, status, error, sqlStatements);
+    }
+
+    /**
+     * Résumé par point d'accès, du plus appelé au moins appelé
+     */
+    List<EndpointSummary> summaries() {
+        return endpoints.entrySet().stream()
+                .map(entry -> entry.getValue().summary(entry.getKey()))
+                .sorted(Comparator.comparingLong(EndpointSummary::requests).reversed())
+                .toList();
+    }
+
+    record EndpointSummary(String endpoint, long requests, long errors, double errorRate,
+                           double p50Ms, double p95Ms, double p99Ms, double maxMs,
+                           double sqlMean, long sqlMax, Map<String, Long> statuses) {
+    }
+
+    private static final class EndpointStats {
+
+        private long[] latencies = new long[256];
+        private int count;
+        private long errors;
+        private long sqlTotal;
+        private long sqlSamples;
+        private long sqlMax;
+        private final Map<String, Long> statuses = new TreeMap<>();
+
+        synchronized void add(long nanos, int status, boolean error, long sqlStatements) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            if (error) {
+                errors++;
+            }
+            if (sqlStatements >= 0) {
+                sqlTotal += sqlStatements;
+                sqlSamples++;
+                sqlMax = Math.max(sqlMax, sqlStatements);
+            }
+            statuses.merge(status < 0 ? "IO" : Integer.toString(status), 1L, Long::sum);
+        }
+
+        synchronized EndpointSummary summary(String endpoint) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return new EndpointSummary(endpoint, count, errors,
+                    count == 0 ? 0 : (double) errors / count,
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                    count == 0 ? 0 : millis(sorted[count - 1]),
+                    sqlSamples == 0 ? 0 : (double) sqlTotal / sqlSamples, sqlMax,
+                    new TreeMap<>(statuses));
+        }
+
+        /**
+         * Percentile au rang le plus proche
+         */
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(quantile * sorted.length);
+            return millis(sorted[Math.max(0, rank - 1)]);
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000d;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.clinique.gestion.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+/**
+ * Client HTTP de l'API (HttpClient du JDK, appels bloquants depuis des threads virtuels).
+ * Chaque appel est mesuré sous un libellé de point d'accès ("GET /api/tickets/queue/{service}")
+ * pour que les chemins paramétrés soient agrégés.
+ */
+final class LoadTestClient {
+
+    private static final String SQL_COUNT_HEADER = "X-SQL-Statement-Count";
+
+    private final HttpClient http;
+    private final URI baseUrl;
+    private final Duration requestTimeout;
+    private final LatencyRecorder recorder;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private volatile String token;
+
+    /**
+     * Réponse d'un appel ; body est MissingNode si le corps est vide ou illisible
+     */
+    record Response(int status, JsonNode body) {
+
+        boolean ok() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    LoadTestClient(URI baseUrl, Duration requestTimeout, Executor executor, LatencyRecorder recorder) {
+        this.baseUrl = baseUrl;
+        this.requestTimeout = requestTimeout;
+        this.recorder = recorder;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(requestTimeout)
+                .executor(executor)
+                .build();
+    }
+
+    ObjectMapper mapper() {
+        return mapper;
+    }
+
+    /**
+     * Authentifie le client ; le token est ensuite envoyé avec chaque appel
+     */
+    JsonNode login(String username, String password) {
+        Response response = post("POST /api/auth/login", "/api/auth/login",
+                mapper.createObjectNode().put("username", username).put("password", password));
+        if (!response.ok() || !response.body().hasNonNull("token")) {
+            throw new IllegalStateException("Connexion de " + username + " impossible (HTTP " + response.status() + ")");
+        }
+        token = response.body().get("token").asText();
+        return response.body();
+    }
+
+    Response get(String endpoint, String path, int... expected) {
+        return send(endpoint, request(path).GET(), expected);
+    }
+
+    /**
+     * POST avec un corps JSON, ou sans corps si body est null
+     */
+    Response post(String endpoint, String path, Object body, int... expected) {
+        HttpRequest.Builder builder = request(path);
+        if (body == null) {
+            return send(endpoint, builder.POST(HttpRequest.BodyPublishers.noBody()), expected);
+        }
+        return send(endpoint, builder
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json(body))), expected);
+    }
+
+    Response put(String endpoint, String path, int... expected) {
+        return send(endpoint, request(path).PUT(HttpRequest.BodyPublishers.noBody()), expected);
+    }
+
+    static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    private HttpRequest.Builder request(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(baseUrl.resolve(path))
+                .timeout(requestTimeout)
+                .header("Accept", "application/json");
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    /**
+     * Exécute et mesure un appel : les statuts 2xx et ceux de expected ne sont pas des erreurs
+     */
+    private Response send(String endpoint, HttpRequest.Builder builder, int... expected) {
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response;
+        try {
+            response = http.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            recorder.record(endpoint, System.nanoTime() - start, -1, true, -1);
+            return new Response(-1, MissingNode.getInstance());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Response(-1, MissingNode.getInstance());
+        }
+        long nanos = System.nanoTime() - start;
+
+        int status = response.statusCode();
+        boolean error = status < 200 || status >= 300;
+        for (int accepted : expected) {
+            if (status == accepted) {
+                error = false;
+            }
+        }
+        long sqlStatements = response.headers().firstValue(SQL_COUNT_HEADER)
+                .map(Long::parseLong)
+                .orElse(-1L);
+        recorder.record(endpoint, nanos, status, error, sqlStatements);
+        return new Response(status, parse(response.body()));
+    }
+
+    private JsonNode parse(byte[] body) {
+        if (body.length == 0) {
+            return MissingNode.getInstance();
+        }
+        try {
+            return mapper.readTree(body);
+        } catch (IOException e) {
+            return MissingNode.getInstance();
+        }
+    }
+
+    private String json(Object body) {
+        try {
+            return mapper.writeValueAsString(body);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Corps de requête non sérialisable", e);
+        }
+    }
+}
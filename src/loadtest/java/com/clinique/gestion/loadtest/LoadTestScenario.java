@@ -0,0 +1,105 @@
+package com.clinique.gestion.loadtest;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Paramètres d'une journée de clinique simulée, lus dans les propriétés système loadtest.*
+ * (-Dloadtest.patients-per-day=600 ...). La journée est comprimée dans day-duration :
+ * les arrivées, les consultations et les passages en caisse y sont répartis.
+ */
+record LoadTestScenario(
+        URI baseUrl,
+        String username,
+        String password,
+        int desks,
+        int doctors,
+        int cashiers,
+        int screens,
+        int patientsPerDay,
+        Duration dayDuration,
+        double openingBurst,
+        double newPatientRatio,
+        Duration consultationTime,
+        Duration pollInterval,
+        Duration requestTimeout,
+        Duration drainTimeout,
+        List<String> services,
+        long seed,
+        Path resultFile) {
+
+    static LoadTestScenario fromSystemProperties() {
+        LoadTestScenario scenario = new LoadTestScenario(
+                URI.create(property("base-url", "http://localhost:8080")),
+                property("username", "admin"),
+                property("password", "admin123"),
+                Integer.parseInt(property("desks", "3")),
+                Integer.parseInt(property("doctors", "4")),
+                Integer.parseInt(property("cashiers", "2")),
+                Integer.parseInt(property("screens", "4")),
+                Integer.parseInt(property("patients-per-day", "300")),
+                duration(property("day-duration", "10m")),
+                Double.parseDouble(property("opening-burst", "0.3")),
+                Double.parseDouble(property("new-patient-ratio", "0.3")),
+                duration(property("consultation-time", "3s")),
+                duration(property("poll-interval", "2s")),
+                duration(property("request-timeout", "30s")),
+                duration(property("drain-timeout", "5m")),
+                Arrays.stream(property("services", "Consultation,Examen,Injection,Pharmacie").split(","))
+                        .map(String::trim)
+                        .filter(service -> !service.isEmpty())
+                        .toList(),
+                Long.parseLong(property("seed", "42")),
+                Path.of(property("result", "target/loadtest-result.json")));
+        scenario.validate();
+        return scenario;
+    }
+
+    /**
+     * Services ayant au moins un médecin : les tickets ne sont émis que pour ceux-là,
+     * sinon leur file ne se viderait jamais
+     */
+    List<String> servedServices() {
+        return services.subList(0, Math.min(doctors, services.size()));
+    }
+
+    private void validate() {
+        if (desks < 1 || doctors < 1 || cashiers < 1 || screens < 0 || patientsPerDay < 1) {
+            throw new IllegalArgumentException(
+                    "desks, doctors, cashiers et patients-per-day doivent être positifs, screens >= 0");
+        }
+        if (openingBurst < 0 || openingBurst > 1 || newPatientRatio < 0 || newPatientRatio > 1) {
+            throw new IllegalArgumentException("opening-burst et new-patient-ratio doivent être entre 0 et 1");
+        }
+        if (services.isEmpty()) {
+            throw new IllegalArgumentException("Au moins un service est requis");
+        }
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty("loadtest." + name, defaultValue);
+    }
+
+    /**
+     * Durée au format ISO-8601 (PT10M) ou abrégé : 500ms, 30s, 10m, 2h
+     */
+    static Duration duration(String value) {
+        String text = value.trim().toLowerCase();
+        if (text.startsWith("p")) {
+            return Duration.parse(text.toUpperCase());
+        }
+        if (text.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(text.substring(0, text.length() - 2)));
+        }
+        long amount = Long.parseLong(text.substring(0, text.length() - 1));
+        return switch (text.charAt(text.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            default -> throw new IllegalArgumentException("Durée invalide: " + value);
+        };
+    }
+}
@@ -2,11 +2,13 @@ package com.clinique.gestion;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Classe principale de l'application Spring Boot
  */
 @SpringBootApplication
+@EnableScheduling
 public class GestionCliniqueApplication {
 
     public static void main(String[] args) {
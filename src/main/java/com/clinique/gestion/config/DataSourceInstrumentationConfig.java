@@ -0,0 +1,37 @@
+package com.clinique.gestion.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Enveloppe la source de données de l'application dans une {@link InstrumentedDataSource},
+ * par-dessus la limite de concurrence si elle est active (voir JdbcConcurrencyConfig)
+ */
+@Configuration
+public class DataSourceInstrumentationConfig {
+
+    /**
+     * Registre de métriques résolu à la première requête : un post-processeur ne doit pas
+     * forcer la création des beans dont il dépend
+     */
+    @Bean
+    public static BeanPostProcessor instrumentedDataSourcePostProcessor(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${sql.slow-query.threshold-ms:500}") long slowQueryThresholdMs) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof InstrumentedDataSource)) {
+                    return new InstrumentedDataSource(dataSource, meterRegistry, slowQueryThresholdMs);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,176 @@
+package com.clinique.gestion.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source de données qui observe chaque ordre SQL exécuté, quelle que soit son origine
+ * (Hibernate, JdbcTemplate : journal de caisse, exports, écriture d'audit, numérotation...).
+ * <p>
+ * Chaque exécution (execute*, executeBatch) :
+ * <ul>
+ *   <li>est comptée pour la requête HTTP en cours (voir {@link SqlStatementCounter}) ;</li>
+ *   <li>est minutée dans jdbc.statements (étiquette operation : select, insert, update, delete, other) ;</li>
+ *   <li>est journalisée en WARN avec son texte au-delà de sql.slow-query.threshold-ms ; la clé MDC
+ *       endpoint rattache la ligne au point d'accès appelant.</li>
+ * </ul>
+ * Les transferts COPY passent par l'API du pilote (unwrap) et ne sont ni comptés ni mesurés.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(InstrumentedDataSource.class);
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final long slowThresholdNanos;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public InstrumentedDataSource(DataSource target, ObjectProvider<MeterRegistry> meterRegistry, long slowThresholdMs) {
+        super(target);
+        this.meterRegistry = meterRegistry;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMs);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return instrumented(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return instrumented(super.getConnection(username, password));
+    }
+
+    private Connection instrumented(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "createStatement":
+                        case "prepareStatement":
+                        case "prepareCall":
+                            Statement statement = (Statement) invoke(connection, method, args);
+                            String sql = method.getName().equals("createStatement") ? null : (String) args[0];
+                            return instrumented(statement, method.getReturnType(), sql, (Connection) proxy);
+                        default:
+                            return invoke(connection, method, args);
+                    }
+                });
+    }
+
+    /**
+     * Enveloppe un ordre sous l'interface retournée par la connexion (Statement, PreparedStatement
+     * ou CallableStatement) ; sql est le texte préparé, null pour un Statement simple
+     */
+    private Statement instrumented(Statement statement, Class<?> type, String sql, Connection connection) {
+        Class<?> iface = type == CallableStatement.class || type == PreparedStatement.class ? type : Statement.class;
+        int[] batchSize = new int[1];
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{iface},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    switch (name) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "getConnection":
+                            return connection;
+                        case "addBatch":
+                            batchSize[0]++;
+                            return invoke(statement, method, args);
+                        case "clearBatch":
+                            batchSize[0] = 0;
+                            return invoke(statement, method, args);
+                        default:
+                            if (!name.startsWith("execute")) {
+                                return invoke(statement, method, args);
+                            }
+                            boolean batch = name.endsWith("Batch");
+                            String executed = sql != null || args == null || args.length == 0 ? sql : (String) args[0];
+                            long start = System.nanoTime();
+                            try {
+                                return invoke(statement, method, args);
+                            } finally {
+                                record(executed, batch ? batchSize[0] : 0, System.nanoTime() - start);
+                                if (batch) {
+                                    batchSize[0] = 0;
+                                }
+                            }
+                    }
+                });
+    }
+
+    private void record(String sql, int batchSize, long nanos) {
+        SqlStatementCounter.increment();
+        timer(operation(sql)).record(nanos, TimeUnit.NANOSECONDS);
+        if (nanos >= slowThresholdNanos) {
+            logger.warn("Requête SQL lente ({} ms{}): {}", TimeUnit.NANOSECONDS.toMillis(nanos),
+                    batchSize > 0 ? ", lot de " + batchSize : "", sql != null ? sql : "(lot)");
+        }
+    }
+
+    private Timer timer(String operation) {
+        return timers.computeIfAbsent(operation, key -> Timer.builder("jdbc.statements")
+                .description("Durée d'exécution des ordres SQL")
+                .tag("operation", key)
+                .register(meterRegistry.getObject()));
+    }
+
+    /**
+     * Premier mot-clé de l'ordre, après les commentaires ajoutés par Hibernate (use_sql_comments)
+     */
+    static String operation(String sql) {
+        if (sql == null) {
+            return "other";
+        }
+        int i = 0;
+        int length = sql.length();
+        while (i < length) {
+            if (Character.isWhitespace(sql.charAt(i))) {
+                i++;
+            } else if (sql.startsWith("/*", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else {
+                break;
+            }
+        }
+        int start = i;
+        while (i < length && Character.isLetter(sql.charAt(i))) {
+            i++;
+        }
+        String keyword = sql.substring(start, i).toLowerCase(Locale.ROOT);
+        return switch (keyword) {
+            case "select", "insert", "update", "delete" -> keyword;
+            default -> "other";
+        };
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.clinique.gestion.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Limite de concurrence JDBC, activée par défaut avec les threads virtuels
+ * (jdbc.concurrency-limit.enabled, voir application.properties).
+ * <p>
+ * Le pool HikariCP est enveloppé dans une {@link ConcurrencyLimitedDataSource} de même taille ;
+ * les jauges jdbc.permits.available et jdbc.permits.waiting s'ajoutent aux métriques hikaricp.*.
+ */
+@Configuration
+@ConditionalOnProperty(name = "jdbc.concurrency-limit.enabled", havingValue = "true")
+public class JdbcConcurrencyConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcConcurrencyConfig.class);
+
+    private static final int HIKARI_DEFAULT_POOL_SIZE = 10;
+
+    /**
+     * Enveloppe le pool une fois ses propriétés (spring.datasource.hikari.*) appliquées.
+     * Type de retour concret : l'ordre des post-processeurs est déterminé sans les instancier.
+     */
+    @Bean
+    public static ConcurrencyLimitPostProcessor concurrencyLimitedDataSourcePostProcessor() {
+        return new ConcurrencyLimitPostProcessor();
+    }
+
+    @Bean
+    public MeterBinder jdbcPermitsMetrics(DataSource dataSource) {
+        return registry -> {
+            ConcurrencyLimitedDataSource limited = unwrap(dataSource);
+            if (limited != null) {
+                Gauge.builder("jdbc.permits.available", limited, ConcurrencyLimitedDataSource::getAvailablePermits)
+                        .description("Connexions JDBC encore empruntables sous la limite de concurrence")
+                        .register(registry);
+                Gauge.builder("jdbc.permits.waiting", limited, ConcurrencyLimitedDataSource::getWaitingThreads)
+                        .description("Threads en attente d'une connexion JDBC")
+                        .register(registry);
+            }
+        };
+    }
+
+    /**
+     * Source limitée, éventuellement enveloppée par {@link InstrumentedDataSource}
+     */
+    private static ConcurrencyLimitedDataSource unwrap(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(ConcurrencyLimitedDataSource.class)
+                    ? dataSource.unwrap(ConcurrencyLimitedDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Ordonné : s'applique au pool HikariCP avant l'enveloppe {@link InstrumentedDataSource}
+     * (post-processeur non ordonné, voir DataSourceInstrumentationConfig)
+     */
+    static final class ConcurrencyLimitPostProcessor implements BeanPostProcessor, Ordered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof HikariDataSource hikari) {
+                // Taille non renseignée (-1) : HikariCP appliquera sa valeur par défaut au démarrage du pool
+                int limit = hikari.getMaximumPoolSize() > 0 ? hikari.getMaximumPoolSize() : HIKARI_DEFAULT_POOL_SIZE;
+                logger.info("Connexions JDBC limitées à {} emprunts simultanés (attente max {} ms)",
+                        limit, hikari.getConnectionTimeout());
+                return new ConcurrencyLimitedDataSource(hikari, limit, hikari.getConnectionTimeout());
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.clinique.gestion.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration des métriques applicatives.
+ * <p>
+ * Les services annotés {@code @Timed("clinique.service")} sont minutés par méthode (étiquettes
+ * class, method et exception). Spring Boot instrumente déjà les points d'accès HTTP
+ * (http.server.requests), les dépôts Spring Data (spring.data.repository.invocations) et le
+ * pool HikariCP (hikaricp.*). Export Prometheus sur /actuator/prometheus.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Aspect qui applique les annotations @Timed
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
@@ -0,0 +1,274 @@
+package com.clinique.gestion.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vérifie au démarrage le plan d'exécution des requêtes @Query des dépôts (query-plans.verify).
+ * <p>
+ * Chaque méthode est appelée avec des paramètres neutres ; le SQL généré par Hibernate est
+ * capturé avant d'être envoyé (voir {@link SqlStatementCounter#capture(Runnable)}), puis préparé
+ * et expliqué en plan générique, celui que PostgreSQL finit par réutiliser pour une requête
+ * préparée. Un parcours séquentiel d'une table de plus de query-plans.min-rows lignes
+ * (estimation pg_class.reltuples, partitions comprises) est signalé en WARN : il manque un
+ * index adapté à la requête.
+ * <p>
+ * Les méthodes @Modifying (UPDATE, DELETE) ne sont jamais appelées, même dans une transaction
+ * annulée : elles sont comptées parmi les requêtes non vérifiées.
+ */
+@Component
+@ConditionalOnProperty(name = "query-plans.verify", havingValue = "true")
+public class QueryPlanVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryPlanVerifier.class);
+
+    private static final String STATEMENT_NAME = "query_plan_verifier";
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${query-plans.min-rows:1000}")
+    private long minRows;
+
+    /**
+     * Plan d'une requête : tables parcourues séquentiellement et leur taille estimée
+     */
+    record QueryPlan(String query, Map<String, Long> sequentialScans) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verify() {
+        List<QueryPlan> plans = new ArrayList<>();
+        List<String> unverified = new ArrayList<>();
+        Repositories repositories = new Repositories(applicationContext);
+        for (Class<?> domainType : repositories) {
+            Class<?> repositoryInterface = repositories.getRepositoryInformationFor(domainType)
+                    .map(RepositoryInformation::getRepositoryInterface)
+                    .orElse(null);
+            Object repository = repositories.getRepositoryFor(domainType).orElse(null);
+            if (repositoryInterface == null || repository == null) {
+                continue;
+            }
+            Method[] methods = repositoryInterface.getDeclaredMethods();
+            Arrays.sort(methods, Comparator.comparing(Method::getName));
+            for (Method method : methods) {
+                if (!method.isAnnotationPresent(Query.class)) {
+                    continue;
+                }
+                String name = repositoryInterface.getSimpleName() + "." + method.getName();
+                if (method.isAnnotationPresent(Modifying.class)) {
+                    logger.debug("Plan de {} non vérifié: requête @Modifying", name);
+                    unverified.add(name);
+                    continue;
+                }
+                try {
+                    QueryPlan plan = explain(name, repository, method);
+                    if (plan == null) {
+                        unverified.add(name);
+                    } else {
+                        plans.add(plan);
+                    }
+                } catch (Exception e) {
+                    logger.debug("Plan de {} non vérifiable: {}", name, e.getMessage());
+                    unverified.add(name);
+                }
+            }
+        }
+
+        int flagged = 0;
+        for (QueryPlan plan : plans) {
+            Map<String, Long> large = new HashMap<>();
+            plan.sequentialScans().forEach((table, rows) -> {
+                if (rows >= minRows) {
+                    large.put(table, rows);
+                }
+            });
+            if (!large.isEmpty()) {
+                flagged++;
+                logger.warn("Parcours séquentiel dans {} : {} (aucun index utilisable)", plan.query(), large);
+            } else if (!plan.sequentialScans().isEmpty()) {
+                logger.debug("Parcours séquentiel de petites tables dans {} : {}", plan.query(), plan.sequentialScans());
+            }
+        }
+        logger.info("Plans d'exécution vérifiés : {} requête(s), {} avec parcours séquentiel, {} non vérifiable(s){}",
+                plans.size(), flagged, unverified.size(), unverified.isEmpty() ? "" : " " + unverified);
+    }
+
+    /**
+     * Capture le SQL de la méthode et l'explique ; null si aucun SQL n'a pu être capturé
+     */
+    private QueryPlan explain(String name, Object repository, Method method) {
+        Object[] arguments = Arrays.stream(method.getGenericParameterTypes()).map(QueryPlanVerifier::neutralValue).toArray();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        String sql = SqlStatementCounter.capture(() -> transaction.executeWithoutResult(status -> {
+            status.setRollbackOnly();
+            try {
+                method.invoke(repository, arguments);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }));
+        if (sql == null) {
+            return null;
+        }
+
+        int parameters = 0;
+        StringBuilder numbered = new StringBuilder(sql.length() + 16);
+        boolean literal = false;
+        for (char c : sql.toCharArray()) {
+            if (c == '\'') {
+                literal = !literal;
+            }
+            if (c == '?' && !literal) {
+                numbered.append('$').append(++parameters);
+            } else {
+                numbered.append(c);
+            }
+        }
+        String execute = "EXECUTE " + STATEMENT_NAME
+                + (parameters == 0 ? "" : "(" + String.join(", ", Collections.nCopies(parameters, "NULL")) + ")");
+
+        // Plan générique : les valeurs NULL ne sont pas utilisées pour choisir le plan
+        String json = new TransactionTemplate(transactionManager).execute(status -> {
+            status.setRollbackOnly();
+            jdbcTemplate.execute("SET LOCAL plan_cache_mode = force_generic_plan");
+            jdbcTemplate.execute("PREPARE " + STATEMENT_NAME + " AS " + numbered);
+            try {
+                return jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + execute, String.class);
+            } finally {
+                jdbcTemplate.execute("DEALLOCATE " + STATEMENT_NAME);
+            }
+        });
+
+        Map<String, Long> sequentialScans = new HashMap<>();
+        try {
+            collectSequentialScans(objectMapper.readTree(json).path(0).path("Plan"), sequentialScans);
+        } catch (IOException e) {
+            throw new IllegalStateException("Plan illisible pour " + name, e);
+        }
+        return new QueryPlan(name, sequentialScans);
+    }
+
+    private void collectSequentialScans(JsonNode node, Map<String, Long> sequentialScans) {
+        if ("Seq Scan".equals(node.path("Node Type").asText())) {
+            String table = node.path("Relation Name").asText();
+            sequentialScans.computeIfAbsent(table, this::estimatedRows);
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectSequentialScans(child, sequentialScans);
+        }
+    }
+
+    /**
+     * Lignes estimées d'une table ; pour une table partitionnée, somme de ses partitions
+     * (pg_inherits). Une partition jamais analysée (reltuples -1) non vide est estimée par le
+     * planificateur d'après sa taille sur disque (pg_relation_size) et la largeur de ses lignes.
+     */
+    private long estimatedRows(String table) {
+        List<Map<String, Object>> partitions = jdbcTemplate.queryForList(
+                "WITH RECURSIVE tree(oid) AS ("
+                        + " SELECT oid FROM pg_class WHERE relname = ? AND relkind IN ('r', 'p') AND pg_table_is_visible(oid)"
+                        + " UNION ALL SELECT i.inhrelid FROM pg_inherits i JOIN tree t ON i.inhparent = t.oid)"
+                        + " SELECT c.oid::regclass::text AS name, c.reltuples, pg_relation_size(c.oid) AS size"
+                        + " FROM tree t JOIN pg_class c ON c.oid = t.oid WHERE c.relkind = 'r'",
+                table);
+        long rows = 0;
+        for (Map<String, Object> partition : partitions) {
+            double reltuples = ((Number) partition.get("reltuples")).doubleValue();
+            if (reltuples >= 0) {
+                rows += (long) reltuples;
+            } else if (((Number) partition.get("size")).longValue() > 0) {
+                rows += plannedRows((String) partition.get("name"));
+            }
+        }
+        return rows;
+    }
+
+    private long plannedRows(String relation) {
+        String json = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) SELECT * FROM ONLY " + relation, String.class);
+        try {
+            return objectMapper.readTree(json).path(0).path("Plan").path("Plan Rows").asLong();
+        } catch (IOException e) {
+            throw new IllegalStateException("Plan illisible pour " + relation, e);
+        }
+    }
+
+    /**
+     * Argument neutre pour un type de paramètre : le plan générique ne dépend pas des valeurs
+     */
+    private static Object neutralValue(Type genericType) {
+        if (genericType instanceof ParameterizedType parameterized
+                && parameterized.getRawType() instanceof Class<?> raw && Collection.class.isAssignableFrom(raw)) {
+            Type element = parameterized.getActualTypeArguments()[0];
+            Object value = element instanceof Class<?> elementType ? neutralValue(elementType) : null;
+            return value != null ? List.of(value) : List.of();
+        }
+        Class<?> type = genericType instanceof ParameterizedType parameterized
+                ? (Class<?>) parameterized.getRawType()
+                : (Class<?>) genericType;
+        if (type == String.class) {
+            return "";
+        }
+        if (type == int.class || type == Integer.class) {
+            return 1;
+        }
+        if (type == long.class || type == Long.class) {
+            return 1L;
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return false;
+        }
+        if (type == Pageable.class) {
+            return PageRequest.of(0, 1);
+        }
+        if (type == Sort.class) {
+            return Sort.unsorted();
+        }
+        if (type.isEnum()) {
+            return type.getEnumConstants()[0];
+        }
+        return null;
+    }
+}
@@ -2,10 +2,15 @@ package com.clinique.gestion.config;
 
 import com.clinique.gestion.security.jwt.JwtAuthenticationFilter;
 import com.clinique.gestion.security.service.UserDetailsServiceImpl;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -15,7 +20,9 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -37,6 +44,9 @@ public class SecurityConfig {
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
+    @Value("${security.prometheus.allowed-addresses:127.0.0.1,::1}")
+    private List<String> prometheusAddresses;
+
     /**
      * Configuration du filtre de sécurité
      */
@@ -51,6 +61,9 @@ public class SecurityConfig {
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
             )
             .authorizeHttpRequests(auth -> auth
+                // Dispatches asynchrones (flux SSE) : la requête initiale a déjà été autorisée
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+
                 // Endpoints publics
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/", "/login", "/forgot-password", "/reset-password", "/css/**", "/js/**", "/images/**").permitAll()
@@ -63,9 +76,16 @@ public class SecurityConfig {
                 
                 // Endpoints utilisateurs - profil personnel accessible à tous les utilisateurs authentifiés
                 .requestMatchers("/api/users/me", "/api/users/me/**").authenticated()
+                // Liste des médecins pour les formulaires
+                .requestMatchers("/api/users/medecins").hasAnyRole("ADMIN", "ACCUEIL", "MEDECIN")
                 // Gestion des utilisateurs - Admin seulement
                 .requestMatchers("/api/users/**").hasRole("ADMIN")
                 .requestMatchers("/api/audit/**").hasRole("ADMIN")
+
+                // Métriques Actuator - Admin seulement
+                .requestMatchers("/actuator/metrics", "/actuator/metrics/**").hasRole("ADMIN")
+                // Export Prometheus : collecteur sur une adresse autorisée, sinon Admin
+                .requestMatchers("/actuator/prometheus").access(prometheusAccess())
                 
                 // Pages web
                 .requestMatchers("/admin/**").hasRole("ADMIN")
@@ -82,6 +102,26 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * Accès à l'export Prometheus : adresses de security.prometheus.allowed-addresses
+     * (adresses ou plages CIDR) sans authentification, ou utilisateur Admin
+     */
+    private AuthorizationManager<RequestAuthorizationContext> prometheusAccess() {
+        List<IpAddressMatcher> allowed = prometheusAddresses.stream()
+                .map(String::trim)
+                .filter(address -> !address.isEmpty())
+                .map(IpAddressMatcher::new)
+                .toList();
+        AuthorizationManager<RequestAuthorizationContext> admin = AuthorityAuthorizationManager.hasRole("ADMIN");
+        return (authentication, context) -> {
+            String remoteAddress = context.getRequest().getRemoteAddr();
+            if (allowed.stream().anyMatch(matcher -> matcher.matches(remoteAddress))) {
+                return new AuthorizationDecision(true);
+            }
+            return admin.check(authentication, context);
+        };
+    }
+
     /**
      * Configuration CORS
      */
@@ -0,0 +1,145 @@
+package com.clinique.gestion.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Filtre qui compte les requêtes SQL de chaque requête HTTP (Hibernate et JdbcTemplate,
+ * voir {@link InstrumentedDataSource}), les renvoie
+ * dans l'en-tête X-SQL-Statement-Count et journalise un avertissement au-delà de
+ * sql.statements.warn-threshold (détection des chargements N+1). Le nombre est aussi
+ * enregistré dans l'histogramme http.server.requests.sql.statements (étiquettes method, uri).
+ * L'en-tête est posé au début de l'écriture du corps, une fois le service exécuté.
+ * <p>
+ * Pendant la requête, la clé MDC "endpoint" (méthode et chemin) permet de rattacher
+ * les journaux, dont celui des requêtes lentes d'Hibernate, au point d'accès appelant.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SqlStatementCountFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-SQL-Statement-Count";
+
+    public static final String MDC_ENDPOINT = "endpoint";
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlStatementCountFilter.class);
+
+    // Bornes de l'histogramme : une ou deux requêtes attendues, N+1 au-delà de quelques dizaines
+    private static final double[] STATEMENT_BUCKETS = {1, 2, 5, 10, 20, 50, 100};
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sql.statements.header:true}")
+    private boolean headerEnabled;
+
+    @Value("${sql.statements.warn-threshold:20}")
+    private int warnThreshold;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        SqlStatementCounter.start();
+        MDC.put(MDC_ENDPOINT, request.getMethod() + " " + request.getRequestURI());
+        CountingResponse countingResponse = new CountingResponse(response);
+        try {
+            filterChain.doFilter(request, countingResponse);
+        } finally {
+            countingResponse.writeHeader();
+            int count = SqlStatementCounter.count();
+            SqlStatementCounter.stop();
+            MDC.remove(MDC_ENDPOINT);
+            if (count >= 0) {
+                record(request, count);
+            }
+            if (count > warnThreshold) {
+                logger.warn("{} requête(s) SQL pour {} {} (seuil {})",
+                        count, request.getMethod(), request.getRequestURI(), warnThreshold);
+            }
+        }
+    }
+
+    /**
+     * Enregistre le nombre de requêtes SQL sous le modèle de chemin résolu par Spring MVC
+     * (/api/patients/{id}), pour garder un nombre de séries borné
+     */
+    private void record(HttpServletRequest request, int count) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder("http.server.requests.sql.statements")
+                .description("Requêtes SQL par requête HTTP")
+                .baseUnit("statements")
+                .tag("method", request.getMethod())
+                .tag("uri", pattern != null ? pattern.toString() : "UNKNOWN")
+                .serviceLevelObjectives(STATEMENT_BUCKETS)
+                .register(meterRegistry)
+                .record(count);
+    }
+
+    /**
+     * Réponse qui ajoute l'en-tête avant que le corps ne commence à être écrit
+     */
+    private class CountingResponse extends HttpServletResponseWrapper {
+
+        private boolean written;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        void writeHeader() {
+            if (!written && headerEnabled && !isCommitted()) {
+                setHeader(HEADER, String.valueOf(SqlStatementCounter.count()));
+            }
+            written = true;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeader();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeader();
+            super.sendError(sc);
+        }
+    }
+}
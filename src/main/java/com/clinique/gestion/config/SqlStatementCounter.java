@@ -0,0 +1,87 @@
+package com.clinique.gestion.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compte les requêtes SQL exécutées sur le thread courant, entre {@link #start()} et
+ * {@link #stop()} (voir SqlStatementCountFilter). Le comptage est fait au niveau JDBC par
+ * {@link InstrumentedDataSource} : requêtes Hibernate comme JdbcTemplate.
+ * En mode capture ({@link #capture(Runnable)}, utilisé par QueryPlanVerifier), le SQL
+ * préparé par Hibernate est relevé puis l'exécution interrompue avant tout envoi à la base.
+ * Déclaré par la propriété hibernate.session_factory.statement_inspector.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+
+    private static final ThreadLocal<List<String>> CAPTURED = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        List<String> captured = CAPTURED.get();
+        if (captured != null) {
+            captured.add(sql);
+            throw new StatementCapturedException();
+        }
+        return sql;
+    }
+
+    /**
+     * Exécute action en relevant le premier ordre SQL préparé au lieu de l'exécuter ;
+     * retourne null si action n'a préparé aucun ordre (ou a échoué avant)
+     */
+    public static String capture(Runnable action) {
+        List<String> captured = new ArrayList<>(1);
+        CAPTURED.set(captured);
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            // Interruption attendue (StatementCapturedException, éventuellement enveloppée)
+        } finally {
+            CAPTURED.remove();
+        }
+        return captured.isEmpty() ? null : captured.get(0);
+    }
+
+    /**
+     * Commence le comptage sur le thread courant
+     */
+    public static void start() {
+        COUNT.set(new int[1]);
+    }
+
+    /**
+     * Compte une requête exécutée, si le comptage est actif sur le thread courant
+     */
+    static void increment() {
+        int[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+    }
+
+    /**
+     * Retourne le nombre de requêtes depuis {@link #start()}, ou -1 hors comptage
+     */
+    public static int count() {
+        int[] count = COUNT.get();
+        return count != null ? count[0] : -1;
+    }
+
+    /**
+     * Arrête le comptage sur le thread courant
+     */
+    public static void stop() {
+        COUNT.remove();
+    }
+
+    private static final class StatementCapturedException extends RuntimeException {
+
+        StatementCapturedException() {
+            super("Ordre SQL capturé", null, false, false);
+        }
+    }
+}
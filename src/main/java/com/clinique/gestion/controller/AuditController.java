@@ -0,0 +1,49 @@
+package com.clinique.gestion.controller;
+
+import com.clinique.gestion.dto.AuditLogFilter;
+import com.clinique.gestion.dto.AuditPageDTO;
+import com.clinique.gestion.service.AuditQueryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Controller REST pour la consultation du journal d'audit
+ */
+@RestController
+@RequestMapping("/api/audit")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class AuditController {
+
+    @Autowired
+    private AuditQueryService auditQueryService;
+
+    /**
+     * Recherche dans le journal d'audit, mois archivés compris (ADMIN).
+     * Filtres combinables ; période [from, to[ ; page suivante via le curseur renvoyé.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping
+    public ResponseEntity<AuditPageDTO> search(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String entityType,
+            @RequestParam(required = false) Long entityId,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        AuditLogFilter filter = new AuditLogFilter();
+        filter.setUserId(userId);
+        filter.setEntityType(entityType);
+        filter.setEntityId(entityId);
+        filter.setAction(action);
+        filter.setFrom(from);
+        filter.setTo(to);
+        return ResponseEntity.ok(auditQueryService.search(filter, cursor, size));
+    }
+}
@@ -1,19 +1,28 @@
 package com.clinique.gestion.controller;
 
 import com.clinique.gestion.dto.PaiementDTO;
+import com.clinique.gestion.enums.ModePaiement;
+import com.clinique.gestion.exception.BadRequestException;
 import com.clinique.gestion.service.CaisseService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Controller REST pour la gestion de la caisse
@@ -80,6 +89,65 @@ public class CaisseController {
         return ResponseEntity.ok(total);
     }
 
+    /**
+     * Calcule le total des recettes par mode de paiement pour une période (ADMIN, CAISSIER)
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'CAISSIER')")
+    @GetMapping("/total/modes")
+    public ResponseEntity<Map<ModePaiement, BigDecimal>> getTotalRecettesParMode(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        return ResponseEntity.ok(caisseService.getTotalRecettesParMode(start, end));
+    }
+
+    /**
+     * Réconcilie le journal de caisse avec les paiements et retourne les jours corrigés (ADMIN)
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/journal/reconcile")
+    public ResponseEntity<List<LocalDate>> reconcilierJournal(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end) {
+        return ResponseEntity.ok(caisseService.reconcilierJournal(start, end));
+    }
+
+    /**
+     * Reconstruit le journal de caisse et retourne le nombre de lignes écrites (ADMIN)
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/journal/rebuild")
+    public ResponseEntity<Integer> reconstruireJournal(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end) {
+        return ResponseEntity.ok(caisseService.reconstruireJournal(start, end));
+    }
+
+    /**
+     * Exporte les paiements d'une période en flux continu, en CSV ou en XLSX (ADMIN, CAISSIER)
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'CAISSIER')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportPaiements(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "csv") String format) {
+        boolean xlsx = "xlsx".equalsIgnoreCase(format);
+        if (!xlsx && !"csv".equalsIgnoreCase(format)) {
+            throw new BadRequestException("Format d'export inconnu: " + format + " (csv ou xlsx)");
+        }
+        StreamingResponseBody body = out -> caisseService.exportPaiements(start, end, xlsx ? "xlsx" : "csv", out);
+        String filename = "paiements-" + start.toLocalDate() + "-" + end.toLocalDate() + (xlsx ? ".xlsx" : ".csv");
+        return ResponseEntity.ok()
+                .contentType(xlsx
+                        ? MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                        : new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(filename)
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
     /**
      * Récupère les paiements dans une période (ADMIN, CAISSIER)
      */
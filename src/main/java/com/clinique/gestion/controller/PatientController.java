@@ -1,19 +1,29 @@
 package com.clinique.gestion.controller;
 
 import com.clinique.gestion.dto.PatientDTO;
+import com.clinique.gestion.dto.PatientImportDTO;
+import com.clinique.gestion.dto.PatientPageDTO;
+import com.clinique.gestion.service.PatientDossierService;
 import com.clinique.gestion.service.PatientService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.MediaType;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.util.List;
-import java.io.ByteArrayOutputStream;
 
 /**
  * Controller REST pour la gestion des patients
@@ -26,6 +36,9 @@ public class PatientController {
     @Autowired
     private PatientService patientService;
 
+    @Autowired
+    private PatientDossierService patientDossierService;
+
     /**
      * Crée un nouveau patient (ADMIN, ACCUEIL, MEDECIN)
      */
@@ -38,6 +51,18 @@ public class PatientController {
         return new ResponseEntity<>(created, HttpStatus.CREATED);
     }
 
+    /**
+     * Importe des patients depuis un fichier CSV hérité (ADMIN)
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<PatientImportDTO> importPatients(
+            @RequestParam("file") MultipartFile file,
+            HttpServletRequest request) throws IOException {
+        PatientImportDTO result = patientService.importPatients(file.getInputStream(), request);
+        return ResponseEntity.ok(result);
+    }
+
     /**
      * Met à jour un patient (ADMIN, ACCUEIL, MEDECIN)
      */
@@ -76,8 +101,23 @@ public class PatientController {
      */
     @PreAuthorize("hasAnyRole('ADMIN', 'ACCUEIL', 'MEDECIN')")
     @GetMapping("/search")
-    public ResponseEntity<List<PatientDTO>> searchPatients(@RequestParam String q) {
-        List<PatientDTO> patients = patientService.searchPatients(q);
+    public ResponseEntity<List<PatientDTO>> searchPatients(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") Integer page,
+            @RequestParam(required = false) Integer size) {
+        List<PatientDTO> patients = patientService.searchPatients(q, page, size);
+        return ResponseEntity.ok(patients);
+    }
+
+    /**
+     * Suggestions de saisie semi-automatique (ADMIN, ACCUEIL, MEDECIN)
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'ACCUEIL', 'MEDECIN')")
+    @GetMapping("/suggest")
+    public ResponseEntity<List<PatientDTO>> suggestPatients(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limit) {
+        List<PatientDTO> patients = patientService.suggestPatients(q, limit);
         return ResponseEntity.ok(patients);
     }
 
@@ -91,6 +131,34 @@ public class PatientController {
         return ResponseEntity.ok(patients);
     }
 
+    /**
+     * Récupère une page de patients triés par nom, prénom (ADMIN, ACCUEIL, MEDECIN)
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'ACCUEIL', 'MEDECIN')")
+    @GetMapping("/page")
+    public ResponseEntity<PatientPageDTO> getPatientsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        PatientPageDTO page = patientService.getPatientsPage(cursor, size);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Exporte tous les patients en NDJSON, en flux continu (ADMIN, ACCUEIL, MEDECIN)
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'ACCUEIL', 'MEDECIN')")
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportPatients() {
+        StreamingResponseBody body = out -> patientService.exportPatients(out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, org.springframework.http.ContentDisposition
+                        .attachment()
+                        .filename("patients.ndjson")
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
     /**
      * Supprime un patient (ADMIN, ACCUEIL, MEDECIN)
      */
@@ -102,24 +170,56 @@ public class PatientController {
     }
 
     /**
-     * Télécharge le dossier patient en PDF (ADMIN, ACCUEIL, MEDECIN)
+     * Télécharge le dossier patient en PDF (ADMIN, ACCUEIL, MEDECIN).
+     * L'ETag est la version des données du dossier : 304 si le client a déjà cette version,
+     * sinon PDF servi par le cache et rendu seulement si les données ont changé.
      */
     @PreAuthorize("hasAnyRole('ADMIN', 'ACCUEIL', 'MEDECIN')")
     @GetMapping("/{id}/download")
-    public ResponseEntity<byte[]> downloadPatientDossier(@PathVariable Long id) {
-        try {
-            byte[] pdfBytes = patientService.generatePatientDossierPDF(id);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDisposition(org.springframework.http.ContentDisposition
-                    .attachment()
-                    .filename("dossier_patient_" + id + ".pdf")
-                    .build());
-            
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    public ResponseEntity<StreamingResponseBody> downloadPatientDossier(@PathVariable Long id, WebRequest webRequest) {
+        String version = patientDossierService.dossierVersion(id);
+        if (webRequest.checkNotModified(version)) {
+            // Réponse 304 déjà préparée avec l'ETag
+            return null;
         }
+        ByteBuffer pdf = patientDossierService.dossierPdf(id, version);
+        StreamingResponseBody body = out -> Channels.newChannel(out).write(pdf.duplicate());
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_PDF)
+                .contentLength(pdf.remaining())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("dossier_patient_" + id + ".pdf")
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+    /**
+     * Télécharge les dossiers PDF d'une liste de patients dans une archive ZIP en flux (ADMIN, ACCUEIL, MEDECIN)
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'ACCUEIL', 'MEDECIN')")
+    @PostMapping("/dossiers/zip")
+    public ResponseEntity<StreamingResponseBody> downloadPatientDossiers(@RequestBody List<Long> patientIds) {
+        List<Long> ids = patientDossierService.checkBatch(patientIds);
+        StreamingResponseBody body = out -> patientDossierService.writeZip(ids, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("dossiers_patients.zip")
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+    /**
+     * Lance l'archivage sur le serveur des dossiers PDF d'une liste de patients (ADMIN).
+     * Retourne le nom de l'archive, écrite en arrière-plan dans patients.dossier.archive-directory.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/dossiers/archive")
+    public ResponseEntity<String> archivePatientDossiers(@RequestBody List<Long> patientIds) {
+        String archive = patientDossierService.archiveDossiers(patientDossierService.checkBatch(patientIds));
+        return new ResponseEntity<>(archive, HttpStatus.ACCEPTED);
     }
 }
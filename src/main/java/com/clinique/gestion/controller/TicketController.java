@@ -3,12 +3,15 @@ package com.clinique.gestion.controller;
 import com.clinique.gestion.dto.TicketDTO;
 import com.clinique.gestion.enums.StatutTicket;
 import com.clinique.gestion.service.TicketService;
+import com.clinique.gestion.service.TicketStreamService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -23,6 +26,9 @@ public class TicketController {
     @Autowired
     private TicketService ticketService;
 
+    @Autowired
+    private TicketStreamService ticketStreamService;
+
     /**
      * Crée un nouveau ticket pour un patient (ADMIN, ACCUEIL, MEDECIN)
      */
@@ -69,6 +75,35 @@ public class TicketController {
         return ResponseEntity.ok(queue);
     }
 
+    /**
+     * Flux SSE des changements de la file d'un service (ADMIN, ACCUEIL, MEDECIN)
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'ACCUEIL', 'MEDECIN')")
+    @GetMapping(value = "/stream/{service}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamQueue(
+            @PathVariable String service,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return ticketStreamService.subscribe(service, lastEventId);
+    }
+
+    /**
+     * Retourne le nombre de tickets en attente d'un service (ADMIN, ACCUEIL, MEDECIN)
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'ACCUEIL', 'MEDECIN')")
+    @GetMapping("/queue/{service}/length")
+    public ResponseEntity<Integer> getQueueLength(@PathVariable String service) {
+        return ResponseEntity.ok(ticketService.getQueueLength(service));
+    }
+
+    /**
+     * Retourne la position d'un ticket dans sa file d'attente (ADMIN, ACCUEIL, MEDECIN)
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'ACCUEIL', 'MEDECIN')")
+    @GetMapping("/{id}/position")
+    public ResponseEntity<Integer> getQueuePosition(@PathVariable Long id) {
+        return ResponseEntity.ok(ticketService.getQueuePosition(id));
+    }
+
     /**
      * Récupère tous les tickets d'un service (ADMIN, ACCUEIL, MEDECIN)
      */
@@ -161,6 +161,16 @@ public class UserController {
         return ResponseEntity.ok(users);
     }
 
+    /**
+     * Récupère les médecins actifs, pour les formulaires de consultation (ADMIN, ACCUEIL, MEDECIN)
+     */
+    @PreAuthorize("hasAnyRole('ADMIN', 'ACCUEIL', 'MEDECIN')")
+    @GetMapping("/medecins")
+    public ResponseEntity<List<UserDTO>> getActiveMedecins() {
+        List<UserDTO> users = userService.getActiveMedecins();
+        return ResponseEntity.ok(users);
+    }
+
     /**
      * Désactive un utilisateur (Admin seulement)
      */
@@ -0,0 +1,74 @@
+package com.clinique.gestion.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Critères de recherche dans le journal d'audit ; un critère null n'est pas appliqué
+ */
+public class AuditLogFilter {
+
+    private Long userId;
+
+    private String entityType;
+
+    private Long entityId;
+
+    private String action;
+
+    // Période [from, to[
+    private LocalDateTime from;
+
+    private LocalDateTime to;
+
+    public AuditLogFilter() {
+    }
+
+    // Getters and Setters
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(String entityType) {
+        this.entityType = entityType;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+}
@@ -0,0 +1,50 @@
+package com.clinique.gestion.dto;
+
+import java.util.List;
+
+/**
+ * Page d'entrées d'audit triées par (timestamp, id) décroissants, avec le curseur de la page suivante
+ */
+public class AuditPageDTO {
+
+    private List<AuditLogDTO> items;
+
+    // null quand il n'y a plus de page
+    private String nextCursor;
+
+    private int size;
+
+    public AuditPageDTO() {
+    }
+
+    public AuditPageDTO(List<AuditLogDTO> items, String nextCursor, int size) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.size = size;
+    }
+
+    // Getters and Setters
+    public List<AuditLogDTO> getItems() {
+        return items;
+    }
+
+    public void setItems(List<AuditLogDTO> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+}
@@ -0,0 +1,55 @@
+package com.clinique.gestion.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Résultat d'un import de patients en masse : lignes importées et lignes rejetées avec leur motif
+ */
+public class PatientImportDTO {
+
+    private int imported;
+
+    private int rejected;
+
+    // "ligne N : motif", limité aux premières lignes rejetées
+    private List<String> errors = new ArrayList<>();
+
+    private long durationMs;
+
+    public PatientImportDTO() {
+    }
+
+    // Getters and Setters
+    public int getImported() {
+        return imported;
+    }
+
+    public void setImported(int imported) {
+        this.imported = imported;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(int rejected) {
+        this.rejected = rejected;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+}
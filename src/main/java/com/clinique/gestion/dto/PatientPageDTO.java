@@ -0,0 +1,50 @@
+package com.clinique.gestion.dto;
+
+import java.util.List;
+
+/**
+ * Page de patients triés par (nom, prénom, id), avec le curseur de la page suivante
+ */
+public class PatientPageDTO {
+
+    private List<PatientDTO> items;
+
+    // null quand il n'y a plus de page
+    private String nextCursor;
+
+    private int size;
+
+    public PatientPageDTO() {
+    }
+
+    public PatientPageDTO(List<PatientDTO> items, String nextCursor, int size) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.size = size;
+    }
+
+    // Getters and Setters
+    public List<PatientDTO> getItems() {
+        return items;
+    }
+
+    public void setItems(List<PatientDTO> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+}
@@ -15,7 +15,7 @@ public class TicketDTO {
     private Long id;
 
     @NotBlank(message = "Le numéro de ticket est obligatoire")
-    @Size(max = 20)
+    @Size(max = 30)
     private String numero;
 
     @NotNull(message = "Le patient est obligatoire")
@@ -10,16 +10,17 @@ import java.time.LocalDateTime;
  * Entité représentant un log d'audit pour le suivi des actions utilisateurs
  */
 @Entity
+// Table partitionnée par mois sur timestamp (db/migration/V3, AuditPartitionManager)
 @Table(name = "audit_logs", indexes = {
-    @Index(name = "idx_audit_logs_user", columnList = "user_id"),
-    @Index(name = "idx_audit_logs_entity", columnList = "entity_type, entity_id"),
-    @Index(name = "idx_audit_logs_timestamp", columnList = "timestamp"),
-    @Index(name = "idx_audit_logs_action", columnList = "action")
+    @Index(name = "idx_audit_logs_user_timestamp", columnList = "user_id, timestamp DESC"),
+    @Index(name = "idx_audit_logs_entity_timestamp", columnList = "entity_type, entity_id, timestamp DESC"),
+    @Index(name = "idx_audit_logs_timestamp", columnList = "timestamp")
 })
 public class AuditLog {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_logs_seq")
+    @SequenceGenerator(name = "audit_logs_seq", sequenceName = "audit_logs_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -10,14 +10,15 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "consultations", indexes = {
-    @Index(name = "idx_consultations_patient", columnList = "patient_id"),
-    @Index(name = "idx_consultations_medecin", columnList = "medecin_id"),
+    @Index(name = "idx_consultations_patient_date", columnList = "patient_id, date DESC"),
+    @Index(name = "idx_consultations_medecin_date", columnList = "medecin_id, date DESC, id DESC"),
     @Index(name = "idx_consultations_date", columnList = "date")
 })
 public class Consultation {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "consultations_seq")
+    @SequenceGenerator(name = "consultations_seq", sequenceName = "consultations_id_seq", allocationSize = 50)
     private Long id;
 
     @NotNull(message = "Le patient est obligatoire")
@@ -15,16 +15,17 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "paiements", indexes = {
-    @Index(name = "idx_paiements_patient", columnList = "patient_id"),
+    @Index(name = "idx_paiements_patient_date", columnList = "patient_id, date DESC, id DESC"),
     @Index(name = "idx_paiements_ticket", columnList = "ticket_id"),
     @Index(name = "idx_paiements_caissier", columnList = "caissier_id"),
-    @Index(name = "idx_paiements_date", columnList = "date"),
+    @Index(name = "idx_paiements_date_mode", columnList = "date, mode_paiement"),
     @Index(name = "idx_paiements_numero_recu", columnList = "numero_recu")
 })
 public class Paiement {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "paiements_seq")
+    @SequenceGenerator(name = "paiements_seq", sequenceName = "paiements_id_seq", allocationSize = 50)
     private Long id;
 
     @NotNull(message = "Le patient est obligatoire")
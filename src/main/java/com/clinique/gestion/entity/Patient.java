@@ -18,12 +18,14 @@ import java.util.List;
 @Table(name = "patients", indexes = {
     @Index(name = "idx_patients_numero", columnList = "numero"),
     @Index(name = "idx_patients_nom", columnList = "nom"),
-    @Index(name = "idx_patients_prenom", columnList = "prenom")
+    @Index(name = "idx_patients_prenom", columnList = "prenom"),
+    @Index(name = "idx_patients_nom_prenom_id", columnList = "nom, prenom, id")
 })
 public class Patient {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "patients_seq")
+    @SequenceGenerator(name = "patients_seq", sequenceName = "patients_id_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "Le numéro patient est obligatoire")
@@ -14,22 +14,24 @@ import java.util.List;
  * Entité représentant un ticket d'attente
  */
 @Entity
+// Index gérés par les migrations (db/migration), dont l'index partiel de la file d'attente
 @Table(name = "tickets", indexes = {
     @Index(name = "idx_tickets_numero", columnList = "numero"),
-    @Index(name = "idx_tickets_patient", columnList = "patient_id"),
-    @Index(name = "idx_tickets_service", columnList = "service"),
-    @Index(name = "idx_tickets_statut", columnList = "statut"),
+    @Index(name = "idx_tickets_patient_created", columnList = "patient_id, created_at, id"),
+    @Index(name = "idx_tickets_service_created", columnList = "service, created_at, id"),
+    @Index(name = "idx_tickets_statut_created", columnList = "statut, created_at, id"),
     @Index(name = "idx_tickets_created", columnList = "created_at")
 })
 public class Ticket {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tickets_seq")
+    @SequenceGenerator(name = "tickets_seq", sequenceName = "tickets_id_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "Le numéro de ticket est obligatoire")
-    @Size(max = 20)
-    @Column(unique = true, nullable = false, length = 20)
+    @Size(max = 30)
+    @Column(unique = true, nullable = false, length = 30)
     private String numero;
 
     @NotNull(message = "Le patient est obligatoire")
@@ -53,6 +55,10 @@ public class Ticket {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     // Relations
     @OneToMany(mappedBy = "ticket", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Paiement> paiements = new ArrayList<>();
@@ -137,6 +143,14 @@ public class Ticket {
         this.updatedAt = updatedAt;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public List<Paiement> getPaiements() {
         return paiements;
     }
@@ -23,7 +23,8 @@ import java.util.List;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_id_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "Le nom d'utilisateur est obligatoire")
@@ -55,6 +56,10 @@ public class User {
     @Column(nullable = false)
     private Boolean enabled = true;
 
+    // Version des tokens JWT : incrémentée pour révoquer les tokens déjà émis
+    @Column(name = "token_version")
+    private Integer tokenVersion = 0;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -160,6 +165,21 @@ public class User {
         this.enabled = enabled;
     }
 
+    public Integer getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public void setTokenVersion(Integer tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
+
+    /**
+     * Invalide tous les tokens JWT émis jusqu'ici pour cet utilisateur
+     */
+    public void incrementTokenVersion() {
+        this.tokenVersion = (tokenVersion != null ? tokenVersion : 0) + 1;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -13,12 +13,7 @@ import java.util.List;
  * Repository pour l'entité AuditLog
  */
 @Repository
-public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
-
-    /**
-     * Trouve tous les logs d'un utilisateur
-     */
-    List<AuditLog> findByUserId(Long userId);
+public interface AuditLogRepository extends JpaRepository<AuditLog, Long>, AuditLogSearchRepository {
 
     /**
      * Trouve tous les logs d'une entité
@@ -29,23 +24,19 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
                                 @Param("entityId") Long entityId);
 
     /**
-     * Trouve tous les logs d'une action
-     */
-    List<AuditLog> findByAction(String action);
-
-    /**
-     * Trouve tous les logs dans une période
+     * Trouve tous les logs dans une période [start, end[ : la comparaison directe sur timestamp
+     * permet à PostgreSQL de ne lire que les partitions mensuelles concernées
      */
-    @Query("SELECT a FROM AuditLog a WHERE a.timestamp BETWEEN :start AND :end " +
+    @Query("SELECT a FROM AuditLog a WHERE a.timestamp >= :start AND a.timestamp < :end " +
            "ORDER BY a.timestamp DESC")
     List<AuditLog> findLogsBetweenDates(@Param("start") LocalDateTime start,
                                         @Param("end") LocalDateTime end);
 
     /**
-     * Trouve tous les logs d'un utilisateur dans une période
+     * Trouve tous les logs d'un utilisateur dans une période [start, end[
      */
     @Query("SELECT a FROM AuditLog a WHERE a.user.id = :userId " +
-           "AND a.timestamp BETWEEN :start AND :end ORDER BY a.timestamp DESC")
+           "AND a.timestamp >= :start AND a.timestamp < :end ORDER BY a.timestamp DESC")
     List<AuditLog> findLogsByUserBetweenDates(@Param("userId") Long userId,
                                                @Param("start") LocalDateTime start,
                                                @Param("end") LocalDateTime end);
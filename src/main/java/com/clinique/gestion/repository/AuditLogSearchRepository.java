@@ -0,0 +1,19 @@
+package com.clinique.gestion.repository;
+
+import com.clinique.gestion.dto.AuditLogFilter;
+import com.clinique.gestion.entity.AuditLog;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Recherche multicritère dans le journal d'audit, paginée par clé (timestamp, id)
+ */
+public interface AuditLogSearchRepository {
+
+    /**
+     * Entrées correspondant au filtre, strictement avant (beforeTimestamp, beforeId) si ces bornes
+     * sont données, les plus récentes d'abord
+     */
+    List<AuditLog> search(AuditLogFilter filter, LocalDateTime beforeTimestamp, Long beforeId, int limit);
+}
@@ -0,0 +1,72 @@
+package com.clinique.gestion.repository;
+
+import com.clinique.gestion.dto.AuditLogFilter;
+import com.clinique.gestion.entity.AuditLog;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implémentation de la recherche dans le journal d'audit.
+ * Seuls les critères renseignés entrent dans la requête : pas de "(:x IS NULL OR ...)", qui
+ * empêcherait PostgreSQL d'utiliser les index (user_id, timestamp) et (entity_type, entity_id,
+ * timestamp) et d'écarter les partitions mensuelles hors de la période.
+ */
+public class AuditLogSearchRepositoryImpl implements AuditLogSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<AuditLog> search(AuditLogFilter filter, LocalDateTime beforeTimestamp, Long beforeId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<AuditLog> query = cb.createQuery(AuditLog.class);
+        Root<AuditLog> log = query.from(AuditLog.class);
+        Path<LocalDateTime> timestamp = log.get("timestamp");
+        Path<Long> id = log.get("id");
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.getUserId() != null) {
+            predicates.add(cb.equal(log.get("user").get("id"), filter.getUserId()));
+        }
+        if (filter.getEntityType() != null) {
+            predicates.add(cb.equal(log.get("entityType"), filter.getEntityType()));
+        }
+        if (filter.getEntityId() != null) {
+            predicates.add(cb.equal(log.get("entityId"), filter.getEntityId()));
+        }
+        if (filter.getAction() != null) {
+            predicates.add(cb.equal(log.get("action"), filter.getAction()));
+        }
+        if (filter.getFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(timestamp, filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            predicates.add(cb.lessThan(timestamp, filter.getTo()));
+        }
+        if (beforeTimestamp != null) {
+            // (timestamp, id) < curseur ; la borne timestamp <= curseur seule sert aussi d'index et d'élagage
+            predicates.add(cb.lessThanOrEqualTo(timestamp, beforeTimestamp));
+            predicates.add(cb.or(
+                    cb.lessThan(timestamp, beforeTimestamp),
+                    cb.lessThan(id, beforeId)));
+        }
+
+        query.select(log)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.desc(timestamp), cb.desc(id));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
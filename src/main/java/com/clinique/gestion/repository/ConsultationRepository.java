@@ -1,13 +1,16 @@
 package com.clinique.gestion.repository;
 
 import com.clinique.gestion.entity.Consultation;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository pour l'entité Consultation
@@ -20,14 +23,39 @@ public interface ConsultationRepository extends JpaRepository<Consultation, Long
      */
     List<Consultation> findByPatientId(Long patientId);
 
+    /**
+     * Trouve les consultations d'un lot de patients, avec leur médecin, des plus anciennes aux plus récentes
+     */
+    @EntityGraph(attributePaths = "medecin")
+    List<Consultation> findByPatientIdInOrderByDateAscIdAsc(Collection<Long> patientIds);
+
     /**
      * Trouve toutes les consultations d'un médecin
      */
     List<Consultation> findByMedecinId(Long medecinId);
 
+    /**
+     * Trouve une consultation avec son patient et son médecin
+     */
+    @EntityGraph(attributePaths = {"patient", "medecin"})
+    Optional<Consultation> findWithDetailsById(Long id);
+
+    /**
+     * Trouve toutes les consultations, avec patient et médecin, les plus récentes en premier
+     */
+    @EntityGraph(attributePaths = {"patient", "medecin"})
+    List<Consultation> findAllByOrderByDateDescIdDesc();
+
+    /**
+     * Trouve toutes les consultations d'un médecin, avec leur patient, les plus récentes en premier
+     */
+    @EntityGraph(attributePaths = {"patient", "medecin"})
+    List<Consultation> findByMedecinIdOrderByDateDescIdDesc(Long medecinId);
+
     /**
      * Trouve toutes les consultations d'un patient triées par date (plus récentes en premier)
      */
+    @EntityGraph(attributePaths = {"patient", "medecin"})
     @Query("SELECT c FROM Consultation c WHERE c.patient.id = :patientId " +
            "ORDER BY c.date DESC")
     List<Consultation> findConsultationsByPatientOrderByDateDesc(@Param("patientId") Long patientId);
@@ -35,6 +63,7 @@ public interface ConsultationRepository extends JpaRepository<Consultation, Long
     /**
      * Trouve toutes les consultations d'un médecin dans une période
      */
+    @EntityGraph(attributePaths = {"patient", "medecin"})
     @Query("SELECT c FROM Consultation c WHERE c.medecin.id = :medecinId " +
            "AND c.date BETWEEN :start AND :end ORDER BY c.date DESC")
     List<Consultation> findConsultationsByMedecinBetweenDates(
@@ -45,6 +74,7 @@ public interface ConsultationRepository extends JpaRepository<Consultation, Long
     /**
      * Trouve toutes les consultations dans une période
      */
+    @EntityGraph(attributePaths = {"patient", "medecin"})
     @Query("SELECT c FROM Consultation c WHERE c.date BETWEEN :start AND :end " +
            "ORDER BY c.date DESC")
     List<Consultation> findConsultationsBetweenDates(@Param("start") LocalDateTime start,
@@ -2,6 +2,7 @@ package com.clinique.gestion.repository;
 
 import com.clinique.gestion.entity.Paiement;
 import com.clinique.gestion.enums.ModePaiement;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -9,6 +10,7 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,19 +21,33 @@ import java.util.Optional;
 public interface PaiementRepository extends JpaRepository<Paiement, Long> {
 
     /**
-     * Trouve un paiement par son numéro de reçu
+     * Trouve un paiement par son numéro de reçu, avec patient, ticket et caissier
      */
+    @EntityGraph(attributePaths = {"patient", "ticket", "caissier"})
     Optional<Paiement> findByNumeroRecu(String numeroRecu);
 
+    /**
+     * Trouve un paiement par son id, avec patient, ticket et caissier
+     */
+    @EntityGraph(attributePaths = {"patient", "ticket", "caissier"})
+    Optional<Paiement> findWithDetailsById(Long id);
+
     /**
      * Vérifie si un numéro de reçu existe
      */
     boolean existsByNumeroRecu(String numeroRecu);
 
     /**
-     * Trouve tous les paiements d'un patient
+     * Trouve tous les paiements d'un patient, avec ticket et caissier, les plus récents en premier
+     */
+    @EntityGraph(attributePaths = {"patient", "ticket", "caissier"})
+    List<Paiement> findByPatientIdOrderByDateDescIdDesc(Long patientId);
+
+    /**
+     * Trouve les paiements d'un lot de patients, avec ticket et caissier, des plus anciens aux plus récents
      */
-    List<Paiement> findByPatientId(Long patientId);
+    @EntityGraph(attributePaths = {"ticket", "caissier"})
+    List<Paiement> findByPatientIdInOrderByDateAscIdAsc(Collection<Long> patientIds);
 
     /**
      * Trouve tous les paiements d'un caissier
@@ -44,8 +60,9 @@ public interface PaiementRepository extends JpaRepository<Paiement, Long> {
     List<Paiement> findByTicketId(Long ticketId);
 
     /**
-     * Trouve tous les paiements dans une période
+     * Trouve tous les paiements dans une période, avec patient, ticket et caissier
      */
+    @EntityGraph(attributePaths = {"patient", "ticket", "caissier"})
     @Query("SELECT p FROM Paiement p WHERE p.date BETWEEN :start AND :end " +
            "ORDER BY p.date DESC")
     List<Paiement> findPaiementsBetweenDates(@Param("start") LocalDateTime start,
@@ -3,6 +3,7 @@ package com.clinique.gestion.repository;
 import com.clinique.gestion.entity.PasswordResetToken;
 import com.clinique.gestion.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -30,6 +31,7 @@ public interface PasswordResetTokenRepository extends JpaRepository<PasswordRese
     /**
      * Supprime les tokens expirés
      */
+    @Modifying
     @Query("DELETE FROM PasswordResetToken t WHERE t.expiryDate < :now")
     void deleteExpiredTokens(@Param("now") LocalDateTime now);
 }
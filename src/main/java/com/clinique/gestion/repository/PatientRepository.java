@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,7 +14,7 @@ import java.util.Optional;
  * Repository pour l'entité Patient
  */
 @Repository
-public interface PatientRepository extends JpaRepository<Patient, Long> {
+public interface PatientRepository extends JpaRepository<Patient, Long>, PatientSearchRepository {
 
     /**
      * Trouve un patient par son numéro
@@ -26,12 +27,10 @@ public interface PatientRepository extends JpaRepository<Patient, Long> {
     boolean existsByNumero(String numero);
 
     /**
-     * Recherche de patients par nom ou prénom (insensible à la casse)
+     * Retourne ceux des numéros donnés qui sont déjà attribués
      */
-    @Query("SELECT p FROM Patient p WHERE LOWER(p.nom) LIKE LOWER(CONCAT('%', :search, '%')) " +
-           "OR LOWER(p.prenom) LIKE LOWER(CONCAT('%', :search, '%')) " +
-           "OR p.numero LIKE CONCAT('%', :search, '%')")
-    List<Patient> searchPatients(@Param("search") String search);
+    @Query("SELECT p.numero FROM Patient p WHERE p.numero IN :numeros")
+    List<String> findExistingNumeros(@Param("numeros") Collection<String> numeros);
 
     /**
      * Recherche de patients par nom
@@ -47,4 +46,18 @@ public interface PatientRepository extends JpaRepository<Patient, Long> {
      * Recherche de patients par téléphone
      */
     List<Patient> findByTelephoneContaining(String telephone);
+
+    /**
+     * Première page de patients triés par (nom, prénom, id)
+     */
+    @Query(value = "SELECT * FROM patients ORDER BY nom, prenom, id LIMIT :limit", nativeQuery = true)
+    List<Patient> findFirstPage(@Param("limit") int limit);
+
+    /**
+     * Page suivante après le patient (nom, prénom, id) : parcours par clé, sans OFFSET
+     */
+    @Query(value = "SELECT * FROM patients WHERE (nom, prenom, id) > (:nom, :prenom, :id) " +
+                   "ORDER BY nom, prenom, id LIMIT :limit", nativeQuery = true)
+    List<Patient> findPageAfter(@Param("nom") String nom, @Param("prenom") String prenom,
+                                @Param("id") Long id, @Param("limit") int limit);
 }
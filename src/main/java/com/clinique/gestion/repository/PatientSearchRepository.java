@@ -0,0 +1,16 @@
+package com.clinique.gestion.repository;
+
+import com.clinique.gestion.entity.Patient;
+
+import java.util.List;
+
+/**
+ * Recherche de patients tolérante aux accents, à la ponctuation et aux fautes de frappe
+ */
+public interface PatientSearchRepository {
+
+    /**
+     * Recherche des patients par nom, prénom ou numéro, les plus pertinents en premier
+     */
+    List<Patient> searchRanked(String search, int offset, int limit);
+}
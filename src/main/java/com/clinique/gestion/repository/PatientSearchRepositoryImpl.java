@@ -0,0 +1,91 @@
+package com.clinique.gestion.repository;
+
+import com.clinique.gestion.entity.Patient;
+import com.clinique.gestion.util.SearchNormalizer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Implémentation de la recherche de patients.
+ * Avec pg_trgm et unaccent (migration V4__recherche_patients), la recherche porte sur
+ * la clé normalisée patient_search_key(nom, prenom, numero), indexée en GIN trigrammes :
+ * sous-chaîne exacte (LIKE) ou mot proche (word_similarity), classés par similarité.
+ * Sans ces extensions, repli sur un LIKE insensible à la casse.
+ */
+public class PatientSearchRepositoryImpl implements PatientSearchRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientSearchRepositoryImpl.class);
+
+    private static final long RECHECK_INTERVAL_MS = 60_000;
+
+    private static final String TRIGRAM_SQL =
+            "SELECT p.* FROM patients p " +
+            "WHERE patient_search_key(p.nom, p.prenom, p.numero) LIKE CONCAT('%', :q, '%') " +
+            "   OR :q <% patient_search_key(p.nom, p.prenom, p.numero) " +
+            "ORDER BY word_similarity(:q, patient_search_key(p.nom, p.prenom, p.numero)) DESC, " +
+            "         p.nom, p.prenom, p.id";
+
+    private static final String FALLBACK_JPQL =
+            "SELECT p FROM Patient p WHERE LOWER(p.nom) LIKE LOWER(CONCAT('%', :search, '%')) " +
+            "OR LOWER(p.prenom) LIKE LOWER(CONCAT('%', :search, '%')) " +
+            "OR p.numero LIKE CONCAT('%', :search, '%') " +
+            "ORDER BY p.nom, p.prenom, p.id";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${patients.search.similarity-threshold:0.4}")
+    private double similarityThreshold;
+
+    // L'index peut être créé après les premières recherches : l'absence est revérifiée périodiquement
+    private volatile boolean trigramAvailable;
+    private volatile long nextCheck;
+
+    @Override
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public List<Patient> searchRanked(String search, int offset, int limit) {
+        String normalized = SearchNormalizer.normalize(search);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        if (!isTrigramAvailable()) {
+            return entityManager.createQuery(FALLBACK_JPQL, Patient.class)
+                    .setParameter("search", search.trim())
+                    .setFirstResult(offset)
+                    .setMaxResults(limit)
+                    .getResultList();
+        }
+
+        // Seuil de similarité limité à la transaction courante
+        entityManager.createNativeQuery("SELECT set_config('pg_trgm.word_similarity_threshold', :threshold, true)")
+                .setParameter("threshold", String.valueOf(similarityThreshold))
+                .getSingleResult();
+        return entityManager.createNativeQuery(TRIGRAM_SQL, Patient.class)
+                .setParameter("q", normalized)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private boolean isTrigramAvailable() {
+        if (trigramAvailable || System.currentTimeMillis() < nextCheck) {
+            return trigramAvailable;
+        }
+        Object function = entityManager.createNativeQuery(
+                "SELECT to_regprocedure('patient_search_key(text, text, text)') IS NOT NULL")
+                .getSingleResult();
+        trigramAvailable = Boolean.TRUE.equals(function);
+        if (!trigramAvailable) {
+            logger.warn("Index de recherche trigrammes absent : recherche de patients par LIKE");
+            nextCheck = System.currentTimeMillis() + RECHECK_INTERVAL_MS;
+        }
+        return trigramAvailable;
+    }
+}
@@ -2,12 +2,16 @@ package com.clinique.gestion.repository;
 
 import com.clinique.gestion.entity.Ticket;
 import com.clinique.gestion.enums.StatutTicket;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,25 +26,40 @@ public interface TicketRepository extends JpaRepository<Ticket, Long> {
      */
     Optional<Ticket> findByNumero(String numero);
 
+    /**
+     * Trouve un ticket et le verrouille (SELECT ... FOR UPDATE) jusqu'à la fin de la transaction :
+     * les changements de statut d'un même ticket sont validés l'un après l'autre
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Ticket> findForUpdateById(Long id);
+
     /**
      * Vérifie si un numéro de ticket existe
      */
     boolean existsByNumero(String numero);
 
     /**
-     * Trouve tous les tickets d'un patient
+     * Trouve tous les tickets d'un patient, du plus ancien au plus récent
      */
-    List<Ticket> findByPatientId(Long patientId);
+    @EntityGraph(attributePaths = "patient")
+    List<Ticket> findByPatientIdOrderByCreatedAtAscIdAsc(Long patientId);
 
     /**
-     * Trouve tous les tickets par service
+     * Trouve les tickets d'un lot de patients, du plus ancien au plus récent
      */
-    List<Ticket> findByService(String service);
+    List<Ticket> findByPatientIdInOrderByCreatedAtAscIdAsc(Collection<Long> patientIds);
 
     /**
-     * Trouve tous les tickets par statut
+     * Trouve tous les tickets par service, avec leur patient, du plus ancien au plus récent
      */
-    List<Ticket> findByStatut(StatutTicket statut);
+    @EntityGraph(attributePaths = "patient")
+    List<Ticket> findByServiceOrderByCreatedAtAscIdAsc(String service);
+
+    /**
+     * Trouve tous les tickets par statut, avec leur patient, du plus ancien au plus récent
+     */
+    @EntityGraph(attributePaths = "patient")
+    List<Ticket> findByStatutOrderByCreatedAtAscIdAsc(StatutTicket statut);
 
     /**
      * Trouve tous les tickets d'un service avec un statut donné
@@ -48,12 +67,20 @@ public interface TicketRepository extends JpaRepository<Ticket, Long> {
     List<Ticket> findByServiceAndStatut(String service, StatutTicket statut);
 
     /**
-     * Trouve la file d'attente d'un service (tickets EN_ATTENTE triés par date)
+     * Trouve la file d'attente d'un service (tickets EN_ATTENTE triés par date).
+     * Le statut est écrit en littéral pour que l'index partiel idx_tickets_file_attente
+     * reste utilisable par les plans génériques des requêtes préparées.
      */
-    @Query("SELECT t FROM Ticket t WHERE t.service = :service AND t.statut = :statut " +
+    @Query("SELECT t FROM Ticket t WHERE t.service = :service AND t.statut = 'EN_ATTENTE' " +
            "ORDER BY t.createdAt ASC")
-    List<Ticket> findQueueByService(@Param("service") String service, 
-                                    @Param("statut") StatutTicket statut);
+    List<Ticket> findQueueByService(@Param("service") String service);
+
+    /**
+     * Trouve les tickets en attente avec leur patient, triés par date de création
+     */
+    @Query("SELECT t FROM Ticket t JOIN FETCH t.patient WHERE t.statut = 'EN_ATTENTE' " +
+           "ORDER BY t.createdAt ASC, t.id ASC")
+    List<Ticket> findQueueWithPatient();
 
     /**
      * Compte les tickets en attente pour un service
@@ -52,4 +52,10 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     @Query("SELECT u FROM User u WHERE u.role = :role AND u.enabled = true")
     List<User> findActiveByRole(@Param("role") Role role);
+
+    /**
+     * Retourne (id, version de token, actif) de tous les utilisateurs
+     */
+    @Query("SELECT u.id, u.tokenVersion, u.enabled FROM User u")
+    List<Object[]> findTokenStates();
 }
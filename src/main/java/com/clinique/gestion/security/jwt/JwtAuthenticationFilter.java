@@ -1,5 +1,9 @@
 package com.clinique.gestion.security.jwt;
 
+import com.clinique.gestion.security.service.PrincipalCache;
+import com.clinique.gestion.security.service.TokenVersionRegistry;
+import com.clinique.gestion.security.service.UserDetailsServiceImpl.UserPrincipal;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
@@ -8,10 +12,11 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -19,6 +24,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.net.URLDecoder;
+import java.util.List;
 
 /**
  * Filtre pour valider les tokens JWT dans les requêtes
@@ -32,18 +38,37 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private JwtTokenProvider tokenProvider;
 
     @Autowired
-    private UserDetailsService userDetailsService;
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    // Mode sans état : principal construit à partir des claims, sans accès à la base
+    @Value("${jwt.stateless:false}")
+    private boolean stateless;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
         try {
             String jwt = getJwtFromRequest(request);
+            // Une seule vérification du token par requête
+            Claims claims = StringUtils.hasText(jwt) ? tokenProvider.parseToken(jwt).orElse(null) : null;
 
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-                String username = tokenProvider.getUsernameFromToken(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            if (claims != null) {
+                UserDetails userDetails;
+                if (stateless && claims.get(JwtTokenProvider.CLAIM_USER_ID) != null) {
+                    userDetails = principalFromClaims(claims);
+                } else {
+                    long issuedAt = claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : 0L;
+                    userDetails = principalCache.get(claims.getSubject(), issuedAt);
+                }
+                if (userDetails == null || !userDetails.isEnabled()) {
+                    // Compte désactivé ou token révoqué : le token n'authentifie plus
+                    logger.debug("Token refusé pour l'utilisateur {}", claims.getSubject());
+                    filterChain.doFilter(request, response);
+                    return;
+                }
                 UsernamePasswordAuthenticationToken authentication =
                         new UsernamePasswordAuthenticationToken(
                                 userDetails, null, userDetails.getAuthorities());
@@ -58,6 +83,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Construit le principal depuis les claims vérifiés ; null si la version du token est révoquée
+     */
+    private UserDetails principalFromClaims(Claims claims) {
+        Long userId = claims.get(JwtTokenProvider.CLAIM_USER_ID, Long.class);
+        Integer version = claims.get(JwtTokenProvider.CLAIM_TOKEN_VERSION, Integer.class);
+        String role = claims.get(JwtTokenProvider.CLAIM_ROLE, String.class);
+        if (version == null || role == null || !tokenVersionRegistry.isValid(userId, version)) {
+            return null;
+        }
+        return new UserPrincipal(userId, claims.getSubject(), null, null,
+                List.of(new SimpleGrantedAuthority("ROLE_" + role)), true, version);
+    }
+
     /**
      * Extrait le token JWT de la requête HTTP (depuis header Authorization ou cookie)
      */
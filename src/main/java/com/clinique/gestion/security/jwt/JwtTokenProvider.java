@@ -1,92 +1,133 @@
 package com.clinique.gestion.security.jwt;
 
+import com.clinique.gestion.security.service.UserDetailsServiceImpl.UserPrincipal;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
 
 /**
- * Utilitaire pour la génération et la validation des tokens JWT
+ * Utilitaire pour la génération et la validation des tokens JWT.
+ * Les clés et le parseur (thread-safe) sont construits une seule fois au démarrage.
+ *
+ * Rotation des clés : les tokens sont signés avec la clé jwt.active-kid et portent
+ * son identifiant dans l'en-tête "kid". jwt.secret est la clé "default" ; d'autres
+ * clés peuvent être déclarées sous jwt.keys.<kid>. Pour tourner sans coupure :
+ * ajouter la nouvelle clé, la rendre active, puis retirer l'ancienne après
+ * l'expiration des derniers tokens qu'elle a signés.
  */
 @Component
 public class JwtTokenProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
 
+    // Claims utilisés par le mode sans état (jwt.stateless)
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_TOKEN_VERSION = "ver";
+
+    // Identifiant de la clé jwt.secret, et des tokens émis avant la rotation (sans kid)
+    public static final String DEFAULT_KID = "default";
+
     @Value("${jwt.secret}")
     private String jwtSecret;
 
     @Value("${jwt.expiration}")
     private long jwtExpirationMs;
 
+    @Value("${jwt.active-kid:" + DEFAULT_KID + "}")
+    private String activeKid;
+
+    @Autowired(required = false)
+    private Environment environment;
+
+    private Map<String, SecretKey> keys;
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    public void init() {
+        Map<String, SecretKey> loaded = new LinkedHashMap<>();
+        loaded.put(DEFAULT_KID, hmacKey(jwtSecret));
+        if (environment != null) {
+            Binder.get(environment)
+                    .bind("jwt.keys", Bindable.mapOf(String.class, String.class))
+                    .orElse(Collections.emptyMap())
+                    .forEach((kid, secret) -> loaded.put(kid, hmacKey(secret)));
+        }
+        if (!loaded.containsKey(activeKid)) {
+            throw new IllegalStateException("Clé JWT active inconnue: " + activeKid);
+        }
+        keys = Collections.unmodifiableMap(loaded);
+        signingKey = keys.get(activeKid);
+        parser = Jwts.parser()
+                .keyLocator(new LocatorAdapter<Key>() {
+                    @Override
+                    protected Key locate(JwsHeader header) {
+                        String kid = header.getKeyId() != null ? header.getKeyId() : DEFAULT_KID;
+                        SecretKey key = keys.get(kid);
+                        if (key == null) {
+                            throw new UnsupportedJwtException("Clé de signature inconnue: " + kid);
+                        }
+                        return key;
+                    }
+                })
+                .build();
+        logger.info("Clés JWT chargées: {} (active: {})", keys.keySet(), activeKid);
+    }
+
     /**
      * Génère un token JWT à partir des informations d'authentification
      */
     public String generateToken(Authentication authentication) {
         UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
-        Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + jwtExpirationMs);
+        JwtBuilder builder = newToken(userPrincipal.getUsername());
 
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        // Identité, rôle et version du token : permettent d'authentifier sans requête en base
+        if (userPrincipal instanceof UserPrincipal principal) {
+            builder.claim(CLAIM_USER_ID, principal.getId())
+                    .claim(CLAIM_TOKEN_VERSION, principal.getTokenVersion());
+            principal.getAuthorities().stream()
+                    .map(authority -> authority.getAuthority().replaceFirst("^ROLE_", ""))
+                    .findFirst()
+                    .ifPresent(role -> builder.claim(CLAIM_ROLE, role));
+        }
 
-        return Jwts.builder()
-                .subject(userPrincipal.getUsername())
-                .issuedAt(now)
-                .expiration(expiryDate)
-                .signWith(key)
-                .compact();
+        return builder.compact();
     }
 
     /**
      * Génère un token JWT à partir d'un nom d'utilisateur
      */
     public String generateTokenFromUsername(String username) {
-        Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + jwtExpirationMs);
-
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-
-        return Jwts.builder()
-                .subject(username)
-                .issuedAt(now)
-                .expiration(expiryDate)
-                .signWith(key)
-                .compact();
-    }
-
-    /**
-     * Extrait le nom d'utilisateur du token JWT
-     */
-    public String getUsernameFromToken(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-        Claims claims = Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-
-        return claims.getSubject();
+        return newToken(username).compact();
     }
 
     /**
-     * Valide un token JWT
+     * Vérifie le token (signature, expiration) et retourne ses claims en une seule lecture ;
+     * vide si le token est invalide
      */
-    public boolean validateToken(String authToken) {
+    public Optional<Claims> parseToken(String token) {
         try {
-            SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-            Jwts.parser()
-                    .verifyWith(key)
-                    .build()
-                    .parseSignedClaims(authToken);
-            return true;
+            return Optional.of(parser.parseSignedClaims(token).getPayload());
         } catch (MalformedJwtException e) {
             logger.error("Token JWT invalide: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
@@ -95,7 +136,46 @@ public class JwtTokenProvider {
             logger.error("Token JWT non supporté: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.error("La chaîne de claims JWT est vide: {}", e.getMessage());
+        } catch (JwtException e) {
+            logger.error("Signature JWT invalide: {}", e.getMessage());
         }
-        return false;
+        return Optional.empty();
+    }
+
+    /**
+     * Extrait le nom d'utilisateur du token JWT
+     */
+    public String getUsernameFromToken(String token) {
+        return getClaimsFromToken(token).getSubject();
+    }
+
+    /**
+     * Extrait les claims (sujet, date d'émission...) du token JWT
+     */
+    public Claims getClaimsFromToken(String token) {
+        return parser.parseSignedClaims(token).getPayload();
+    }
+
+    /**
+     * Valide un token JWT
+     */
+    public boolean validateToken(String authToken) {
+        return parseToken(authToken).isPresent();
+    }
+
+    private JwtBuilder newToken(String subject) {
+        Date now = new Date();
+        Date expiryDate = new Date(now.getTime() + jwtExpirationMs);
+
+        return Jwts.builder()
+                .header().keyId(activeKid).and()
+                .subject(subject)
+                .issuedAt(now)
+                .expiration(expiryDate)
+                .signWith(signingKey);
+    }
+
+    private static SecretKey hmacKey(String secret) {
+        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
     }
 }
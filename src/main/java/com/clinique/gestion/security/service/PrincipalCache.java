@@ -0,0 +1,85 @@
+package com.clinique.gestion.security.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Cache borné des principaux résolus par le filtre JWT, indexé par
+ * (nom d'utilisateur, date d'émission du token). La durée de vie courte
+ * (security.principal-cache.ttl-seconds) borne le délai de prise en compte
+ * d'une modification faite sur un autre nœud ; localement, les modifications
+ * de compte évincent l'entrée dès le commit.
+ * Statistiques exposées dans /actuator/metrics sous cache.* (cache=principals).
+ */
+@Component
+public class PrincipalCache {
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${security.principal-cache.ttl-seconds:10}")
+    private long ttlSeconds;
+
+    @Value("${security.principal-cache.max-size:10000}")
+    private long maxSize;
+
+    private Cache<Key, UserDetails> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "principals");
+    }
+
+    /**
+     * Retourne le principal d'un token, chargé en base au premier accès
+     */
+    public UserDetails get(String username, long issuedAt) {
+        return cache.get(new Key(username, issuedAt), key -> userDetailsService.loadUserByUsername(username));
+    }
+
+    /**
+     * Évince toutes les entrées d'un utilisateur après le commit de la transaction courante
+     */
+    public void evictAfterCommit(String username) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(username);
+                }
+            });
+        } else {
+            evict(username);
+        }
+    }
+
+    /**
+     * Évince immédiatement toutes les entrées d'un utilisateur
+     */
+    public void evict(String username) {
+        cache.asMap().keySet().removeIf(key -> key.username().equals(username));
+    }
+
+    private record Key(String username, long issuedAt) {
+    }
+}
@@ -0,0 +1,111 @@
+package com.clinique.gestion.security.service;
+
+import com.clinique.gestion.entity.User;
+import com.clinique.gestion.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registre en mémoire des versions de token par utilisateur, utilisé par le
+ * mode JWT sans état (jwt.stateless=true) : un token n'est accepté que si sa
+ * version correspond à celle de l'utilisateur et que le compte est actif.
+ * Mis à jour localement après chaque commit d'une modification de compte, et
+ * rechargé périodiquement (jwt.stateless.refresh-ms) pour suivre les autres nœuds.
+ */
+@Component
+public class TokenVersionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenVersionRegistry.class);
+
+    private static final State DELETED = new State(Integer.MAX_VALUE, false);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${jwt.stateless:false}")
+    private boolean stateless;
+
+    private final Map<Long, State> states = new ConcurrentHashMap<>();
+
+    /**
+     * Recharge les versions depuis la base
+     */
+    @Scheduled(fixedDelayString = "${jwt.stateless.refresh-ms:10000}")
+    public void refresh() {
+        if (!stateless) {
+            return;
+        }
+        Map<Long, State> loaded = new HashMap<>();
+        for (Object[] row : userRepository.findTokenStates()) {
+            Integer version = (Integer) row[1];
+            loaded.put((Long) row[0], new State(version != null ? version : 0, Boolean.TRUE.equals(row[2])));
+        }
+        for (Long userId : states.keySet()) {
+            loaded.putIfAbsent(userId, DELETED);
+        }
+        // Une version plus récente appliquée localement pendant la lecture n'est pas écrasée
+        loaded.forEach((userId, state) -> states.merge(userId, state,
+                (current, fresh) -> fresh.version() >= current.version() ? fresh : current));
+        logger.debug("Versions de token rechargées pour {} utilisateur(s)", loaded.size());
+    }
+
+    /**
+     * Vérifie qu'un token de la version donnée est encore valide pour cet utilisateur
+     */
+    public boolean isValid(Long userId, int version) {
+        State state = states.get(userId);
+        if (state == null) {
+            // Utilisateur créé depuis le dernier rechargement
+            state = userRepository.findById(userId).map(State::of).orElse(DELETED);
+            states.putIfAbsent(userId, state);
+        }
+        return state.enabled() && state.version() == version;
+    }
+
+    /**
+     * Prend en compte l'état d'un utilisateur modifié, après le commit de la transaction courante
+     */
+    public void onUserChanged(User user) {
+        Long userId = user.getId();
+        State state = State.of(user);
+        afterCommit(() -> states.put(userId, state));
+    }
+
+    /**
+     * Révoque tous les tokens d'un utilisateur supprimé, après le commit de la transaction courante
+     */
+    public void onUserDeleted(Long userId) {
+        afterCommit(() -> states.put(userId, DELETED));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private record State(int version, boolean enabled) {
+
+        static State of(User user) {
+            return new State(user.getTokenVersion() != null ? user.getTokenVersion() : 0,
+                    Boolean.TRUE.equals(user.getEnabled()));
+        }
+    }
+}
@@ -44,15 +44,23 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         private String password;
         private Collection<? extends GrantedAuthority> authorities;
         private Boolean enabled;
+        private int tokenVersion;
 
         public UserPrincipal(Long id, String username, String email, String password,
                             Collection<? extends GrantedAuthority> authorities, Boolean enabled) {
+            this(id, username, email, password, authorities, enabled, 0);
+        }
+
+        public UserPrincipal(Long id, String username, String email, String password,
+                            Collection<? extends GrantedAuthority> authorities, Boolean enabled,
+                            int tokenVersion) {
             this.id = id;
             this.username = username;
             this.email = email;
             this.password = password;
             this.authorities = authorities;
             this.enabled = enabled;
+            this.tokenVersion = tokenVersion;
         }
 
         public static UserPrincipal create(User user) {
@@ -65,7 +73,8 @@ public class UserDetailsServiceImpl implements UserDetailsService {
                     user.getEmail(),
                     user.getPassword(),
                     authorities,
-                    user.getEnabled()
+                    user.getEnabled(),
+                    user.getTokenVersion() != null ? user.getTokenVersion() : 0
             );
         }
 
@@ -77,6 +86,10 @@ public class UserDetailsServiceImpl implements UserDetailsService {
             return email;
         }
 
+        public int getTokenVersion() {
+            return tokenVersion;
+        }
+
         @Override
         public Collection<? extends GrantedAuthority> getAuthorities() {
             return authorities;
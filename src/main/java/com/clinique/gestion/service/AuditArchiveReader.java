@@ -0,0 +1,337 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.dto.AuditLogDTO;
+import com.clinique.gestion.dto.AuditLogFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static com.clinique.gestion.service.AuditArchiveWriter.BLOCK_ROWS;
+import static com.clinique.gestion.service.AuditArchiveWriter.COLUMNS;
+import static com.clinique.gestion.service.AuditArchiveWriter.COLUMN_ACTION;
+import static com.clinique.gestion.service.AuditArchiveWriter.COLUMN_DETAILS;
+import static com.clinique.gestion.service.AuditArchiveWriter.COLUMN_ENTITY_ID;
+import static com.clinique.gestion.service.AuditArchiveWriter.COLUMN_ID;
+import static com.clinique.gestion.service.AuditArchiveWriter.COLUMN_TIMESTAMP;
+import static com.clinique.gestion.service.AuditArchiveWriter.COLUMN_USER_ID;
+import static com.clinique.gestion.service.AuditArchiveWriter.MAGIC;
+import static com.clinique.gestion.service.AuditArchiveWriter.NULL_LONG;
+import static com.clinique.gestion.service.AuditArchiveWriter.VERSION;
+import static com.clinique.gestion.service.AuditArchiveWriter.fromMicros;
+import static com.clinique.gestion.service.AuditArchiveWriter.toMicros;
+
+/**
+ * Lecture d'une archive colonnaire du journal d'audit (format décrit dans {@link AuditArchiveWriter}),
+ * mappée en mémoire : seules les pages des colonnes parcourues sont lues depuis le disque.
+ * Une instance est partagée entre les requêtes ; la recherche n'utilise que des lectures absolues.
+ * Chaque recherche réserve l'archive ({@link #acquire()} / {@link #release()}) : le mappage est
+ * libéré à la fermeture, une fois la dernière recherche en cours terminée.
+ */
+public final class AuditArchiveReader implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditArchiveReader.class);
+
+    // Libération immédiate d'un mappage (sun.misc.Unsafe.invokeCleaner), sinon laissée au ramasse-miettes
+    private static final MethodHandle UNMAP = unmapHandle();
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final int rows;
+    private final long[] positions = new long[COLUMNS];
+    private final String[][] dictionaries = new String[3][];
+    private final int[] codesPositions = new int[3];
+    private final int blockCount;
+
+    // Recherches en cours, plus une référence tant que l'archive n'est pas fermée
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private AuditArchiveReader(Path file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(0, magic);
+        if (!Arrays.equals(magic, MAGIC) || buffer.getInt(MAGIC.length) != VERSION) {
+            throw new IOException("Archive d'audit non reconnue: " + file.getFileName());
+        }
+        rows = buffer.getInt(MAGIC.length + 4);
+        for (int column = 0; column < COLUMNS; column++) {
+            positions[column] = buffer.getLong(MAGIC.length + 8 + column * 8);
+        }
+        for (int i = 0; i < dictionaries.length; i++) {
+            int position = (int) positions[COLUMN_ACTION + i];
+            String[] values = new String[buffer.getInt(position)];
+            position += 4;
+            for (int code = 0; code < values.length; code++) {
+                byte[] utf8 = new byte[buffer.getInt(position)];
+                buffer.get(position + 4, utf8);
+                values[code] = new String(utf8, StandardCharsets.UTF_8);
+                position += 4 + utf8.length;
+            }
+            dictionaries[i] = values;
+            codesPositions[i] = position;
+        }
+        blockCount = buffer.getInt((int) positions[COLUMN_DETAILS]);
+    }
+
+    /**
+     * Ouvre et mappe une archive ; le mappage reste valide après la fermeture du canal
+     */
+    public static AuditArchiveReader open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Archive d'audit trop volumineuse pour être mappée: " + file.getFileName());
+            }
+            return new AuditArchiveReader(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * Réserve l'archive pour une recherche ; false si elle a déjà été fermée
+     */
+    boolean acquire() {
+        int count;
+        do {
+            count = references.get();
+            if (count == 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /**
+     * Termine une recherche ; la dernière libère le mappage d'une archive fermée
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            unmap();
+        }
+    }
+
+    /**
+     * Ferme l'archive (remplacée ou supprimée) : le mappage est libéré dès qu'aucune recherche ne l'utilise
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            release();
+        }
+    }
+
+    private void unmap() {
+        if (UNMAP == null) {
+            return;
+        }
+        try {
+            UNMAP.invokeExact(buffer);
+        } catch (Throwable e) {
+            logger.warn("Libération du mappage de {} impossible: {}", file.getFileName(), e.getMessage());
+        }
+    }
+
+    private static MethodHandle unmapHandle() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Entrées correspondant au filtre, strictement avant (beforeTimestamp, beforeId) si ces bornes
+     * sont données, les plus récentes d'abord, au plus limit
+     */
+    public List<AuditLogDTO> search(AuditLogFilter filter, LocalDateTime beforeTimestamp, Long beforeId, int limit) {
+        List<AuditLogDTO> result = new ArrayList<>();
+        int actionCode = code(0, filter.getAction());
+        int entityTypeCode = code(1, filter.getEntityType());
+        if (actionCode == -2 || entityTypeCode == -2) {
+            return result;
+        }
+
+        // Lignes [low, high[ de la période, triées par (timestamp, id)
+        int low = filter.getFrom() != null ? lowerBound(toMicros(filter.getFrom()), Long.MIN_VALUE) : 0;
+        int high = filter.getTo() != null ? lowerBound(toMicros(filter.getTo()), Long.MIN_VALUE) : rows;
+        if (beforeTimestamp != null) {
+            high = Math.min(high, lowerBound(toMicros(beforeTimestamp), beforeId));
+        }
+
+        DetailsBlock block = new DetailsBlock();
+        for (int row = high - 1; row >= low && result.size() < limit; row--) {
+            if (filter.getUserId() != null && longAt(COLUMN_USER_ID, row) != filter.getUserId()) {
+                continue;
+            }
+            if (filter.getEntityId() != null && longAt(COLUMN_ENTITY_ID, row) != filter.getEntityId()) {
+                continue;
+            }
+            if (actionCode >= 0 && codeAt(0, row) != actionCode) {
+                continue;
+            }
+            if (entityTypeCode >= 0 && codeAt(1, row) != entityTypeCode) {
+                continue;
+            }
+            result.add(toDTO(row, block));
+        }
+        return result;
+    }
+
+    private AuditLogDTO toDTO(int row, DetailsBlock block) {
+        AuditLogDTO dto = new AuditLogDTO();
+        dto.setId(longAt(COLUMN_ID, row));
+        dto.setTimestamp(fromMicros(longAt(COLUMN_TIMESTAMP, row)));
+        long userId = longAt(COLUMN_USER_ID, row);
+        dto.setUserId(userId != NULL_LONG ? userId : null);
+        long entityId = longAt(COLUMN_ENTITY_ID, row);
+        dto.setEntityId(entityId != NULL_LONG ? entityId : null);
+        dto.setAction(valueAt(0, row));
+        dto.setEntityType(valueAt(1, row));
+        dto.setIpAddress(valueAt(2, row));
+        dto.setDetails(block.detail(row));
+        dto.setArchived(true);
+        return dto;
+    }
+
+    /**
+     * Première ligne dont (timestamp, id) est supérieur ou égal à (micros, id)
+     */
+    private int lowerBound(long micros, long id) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long timestamp = longAt(COLUMN_TIMESTAMP, middle);
+            if (timestamp < micros || (timestamp == micros && longAt(COLUMN_ID, middle) < id)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long longAt(int column, int row) {
+        return buffer.getLong((int) positions[column] + row * 8);
+    }
+
+    private int codeAt(int dictionary, int row) {
+        return buffer.getInt(codesPositions[dictionary] + row * 4);
+    }
+
+    private String valueAt(int dictionary, int row) {
+        int code = codeAt(dictionary, row);
+        return code >= 0 ? dictionaries[dictionary][code] : null;
+    }
+
+    /**
+     * Code d'une valeur filtrée : -1 sans filtre, -2 si la valeur n'apparaît pas dans l'archive
+     */
+    private int code(int dictionary, String value) {
+        if (value == null) {
+            return -1;
+        }
+        String[] values = dictionaries[dictionary];
+        for (int code = 0; code < values.length; code++) {
+            if (values[code].equals(value)) {
+                return code;
+            }
+        }
+        return -2;
+    }
+
+    /**
+     * Dernier bloc de détails décompressé, réutilisé tant que les lignes lues y restent
+     */
+    private final class DetailsBlock {
+
+        private int index = -1;
+        private int[] starts;
+        private int[] lengths;
+        private byte[] data;
+
+        String detail(int row) {
+            int blockIndex = row / BLOCK_ROWS;
+            if (blockIndex != index) {
+                load(blockIndex);
+            }
+            int i = row - blockIndex * BLOCK_ROWS;
+            return lengths[i] >= 0 ? new String(data, starts[i], lengths[i], StandardCharsets.UTF_8) : null;
+        }
+
+        private void load(int blockIndex) {
+            if (blockIndex >= blockCount) {
+                throw new IllegalStateException("Bloc de détails absent dans " + file.getFileName());
+            }
+            int tablePosition = (int) positions[COLUMN_DETAILS] + 4;
+            int start = (int) buffer.getLong(tablePosition + blockIndex * 8);
+            int end = (int) buffer.getLong(tablePosition + (blockIndex + 1) * 8);
+            int blockRows = Math.min(BLOCK_ROWS, rows - blockIndex * BLOCK_ROWS);
+
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(buffer.slice(start, end - start));
+                byte[] header = new byte[blockRows * 4];
+                inflate(inflater, header);
+                ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+                starts = new int[blockRows];
+                lengths = new int[blockRows];
+                int total = 0;
+                for (int i = 0; i < blockRows; i++) {
+                    starts[i] = total;
+                    lengths[i] = headerBuffer.getInt(i * 4);
+                    total += Math.max(lengths[i], 0);
+                }
+                data = new byte[total];
+                inflate(inflater, data);
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Bloc de détails corrompu dans " + file.getFileName(), e);
+            } finally {
+                inflater.end();
+            }
+            index = blockIndex;
+        }
+
+        private void inflate(Inflater inflater, byte[] target) throws DataFormatException {
+            int read = 0;
+            while (read < target.length) {
+                int n = inflater.inflate(target, read, target.length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new DataFormatException("bloc tronqué");
+                }
+                read += n;
+            }
+        }
+    }
+}
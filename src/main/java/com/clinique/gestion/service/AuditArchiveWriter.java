@@ -0,0 +1,296 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.util.CsvReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Archive colonnaire d'un mois du journal d'audit (audit_logs_AAAA_MM.col), construite à partir
+ * de l'export CSV gzip d'une partition et lue par {@link AuditArchiveReader} en mémoire mappée.
+ * <p>
+ * Format (entiers big-endian), lignes triées par (timestamp, id) :
+ * <pre>
+ * en-tête   "AUDITCOL", version (int), nombre de lignes n (int), position des 8 colonnes (long)
+ * id, timestamp (microsecondes UTC), user_id, entity_id : long[n], Long.MIN_VALUE pour null
+ * action, entity_type, ip_address : dictionnaire (nombre, puis longueur + UTF-8 par valeur)
+ *                                   suivi des codes int[n], -1 pour null
+ * details   nombre de blocs (int), positions des blocs (long[blocs + 1]), blocs compressés (Deflater)
+ *           de BLOCK_ROWS lignes : longueurs int[] (-1 pour null) puis les textes UTF-8
+ * </pre>
+ * Les colonnes fixes permettent une recherche dichotomique sur timestamp et un filtrage sans
+ * décompression ; seuls les détails des lignes retenues sont décompressés, bloc par bloc.
+ */
+public final class AuditArchiveWriter {
+
+    static final byte[] MAGIC = "AUDITCOL".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int BLOCK_ROWS = 1024;
+    static final long NULL_LONG = Long.MIN_VALUE;
+
+    static final int COLUMN_ID = 0;
+    static final int COLUMN_TIMESTAMP = 1;
+    static final int COLUMN_USER_ID = 2;
+    static final int COLUMN_ENTITY_ID = 3;
+    static final int COLUMN_ACTION = 4;
+    static final int COLUMN_ENTITY_TYPE = 5;
+    static final int COLUMN_IP_ADDRESS = 6;
+    static final int COLUMN_DETAILS = 7;
+    static final int COLUMNS = 8;
+
+    private static final String[] CSV_COLUMNS =
+            {"id", "timestamp", "user_id", "entity_id", "action", "entity_type", "ip_address", "details"};
+
+    private AuditArchiveWriter() {
+    }
+
+    /**
+     * Convertit un export CSV gzip (COPY ... WITH (FORMAT csv, HEADER)) en archive colonnaire,
+     * écrite sous .part puis renommée. Le mois est chargé en mémoire pour être trié.
+     * Retourne le nombre de lignes.
+     */
+    public static int convert(Path csvGz, Path target) throws IOException {
+        Columns columns = new Columns();
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(
+                new BufferedInputStream(Files.newInputStream(csvGz), 64 * 1024), 64 * 1024), StandardCharsets.UTF_8)) {
+            CsvReader csv = new CsvReader(reader);
+            List<String> header = csv.readHeader();
+            if (header != null) {
+                int[] positions = new int[CSV_COLUMNS.length];
+                for (int i = 0; i < CSV_COLUMNS.length; i++) {
+                    positions[i] = header.indexOf(CSV_COLUMNS[i]);
+                    if (positions[i] < 0) {
+                        throw new IOException("Colonne " + CSV_COLUMNS[i] + " absente de " + csvGz.getFileName());
+                    }
+                }
+                List<String> record;
+                while ((record = csv.readRecord()) != null) {
+                    try {
+                        columns.add(record, positions);
+                    } catch (RuntimeException e) {
+                        throw new IOException("Ligne " + csv.getRecordLine() + " illisible dans "
+                                + csvGz.getFileName() + ": " + e.getMessage(), e);
+                    }
+                }
+            }
+        }
+
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(partial), 64 * 1024))) {
+            columns.write(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return columns.size;
+    }
+
+    static long toMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1_000;
+    }
+
+    static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Colonnes d'un mois en cours de construction, dans l'ordre de l'export
+     */
+    private static final class Columns {
+
+        private int size;
+        private long[] ids = new long[1024];
+        private long[] timestamps = new long[1024];
+        private long[] userIds = new long[1024];
+        private long[] entityIds = new long[1024];
+        private final Dictionary actions = new Dictionary();
+        private final Dictionary entityTypes = new Dictionary();
+        private final Dictionary ipAddresses = new Dictionary();
+        private final List<byte[]> details = new ArrayList<>();
+
+        void add(List<String> record, int[] positions) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                userIds = Arrays.copyOf(userIds, capacity);
+                entityIds = Arrays.copyOf(entityIds, capacity);
+            }
+            ids[size] = Long.parseLong(record.get(positions[0]));
+            timestamps[size] = toMicros(parseTimestamp(record.get(positions[1])));
+            userIds[size] = parseNullableLong(record.get(positions[2]));
+            entityIds[size] = parseNullableLong(record.get(positions[3]));
+            actions.add(emptyToNull(record.get(positions[4])));
+            entityTypes.add(emptyToNull(record.get(positions[5])));
+            ipAddresses.add(emptyToNull(record.get(positions[6])));
+            String detail = emptyToNull(record.get(positions[7]));
+            details.add(detail != null ? detail.getBytes(StandardCharsets.UTF_8) : null);
+            size++;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> timestamps[a] != timestamps[b]
+                    ? Long.compare(timestamps[a], timestamps[b])
+                    : Long.compare(ids[a], ids[b]));
+
+            byte[][] dictionaries = {actions.encode(), entityTypes.encode(), ipAddresses.encode()};
+            List<byte[]> blocks = compressDetails(order);
+
+            long[] positions = new long[COLUMNS];
+            long position = MAGIC.length + 4 + 4 + COLUMNS * 8L;
+            for (int column = COLUMN_ID; column <= COLUMN_ENTITY_ID; column++) {
+                positions[column] = position;
+                position += 8L * size;
+            }
+            for (int i = 0; i < dictionaries.length; i++) {
+                positions[COLUMN_ACTION + i] = position;
+                position += dictionaries[i].length + 4L * size;
+            }
+            positions[COLUMN_DETAILS] = position;
+
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            for (long columnPosition : positions) {
+                out.writeLong(columnPosition);
+            }
+            for (long[] column : new long[][]{ids, timestamps, userIds, entityIds}) {
+                for (Integer row : order) {
+                    out.writeLong(column[row]);
+                }
+            }
+            Dictionary[] dictionaryColumns = {actions, entityTypes, ipAddresses};
+            for (int i = 0; i < dictionaryColumns.length; i++) {
+                out.write(dictionaries[i]);
+                for (Integer row : order) {
+                    out.writeInt(dictionaryColumns[i].codes[row]);
+                }
+            }
+
+            out.writeInt(blocks.size());
+            long blockPosition = positions[COLUMN_DETAILS] + 4 + 8L * (blocks.size() + 1);
+            for (byte[] block : blocks) {
+                out.writeLong(blockPosition);
+                blockPosition += block.length;
+            }
+            out.writeLong(blockPosition);
+            for (byte[] block : blocks) {
+                out.write(block);
+            }
+        }
+
+        private List<byte[]> compressDetails(Integer[] order) throws IOException {
+            List<byte[]> blocks = new ArrayList<>();
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try {
+                for (int start = 0; start < size; start += BLOCK_ROWS) {
+                    int end = Math.min(start + BLOCK_ROWS, size);
+                    ByteArrayOutputStream raw = new ByteArrayOutputStream();
+                    DataOutputStream block = new DataOutputStream(raw);
+                    for (int i = start; i < end; i++) {
+                        byte[] detail = details.get(order[i]);
+                        block.writeInt(detail != null ? detail.length : -1);
+                    }
+                    for (int i = start; i < end; i++) {
+                        byte[] detail = details.get(order[i]);
+                        if (detail != null) {
+                            block.write(detail);
+                        }
+                    }
+                    deflater.reset();
+                    deflater.setInput(raw.toByteArray());
+                    deflater.finish();
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.size() / 4 + 64);
+                    byte[] buffer = new byte[8192];
+                    while (!deflater.finished()) {
+                        compressed.write(buffer, 0, deflater.deflate(buffer));
+                    }
+                    blocks.add(compressed.toByteArray());
+                }
+            } finally {
+                deflater.end();
+            }
+            return blocks;
+        }
+
+        private static LocalDateTime parseTimestamp(String value) {
+            try {
+                return LocalDateTime.parse(value.replace(' ', 'T'));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("timestamp invalide: " + value);
+            }
+        }
+
+        private static long parseNullableLong(String value) {
+            return value.isEmpty() ? NULL_LONG : Long.parseLong(value);
+        }
+
+        // Le CSV de COPY ne distingue pas NULL d'une chaîne vide une fois relu : les deux deviennent null
+        private static String emptyToNull(String value) {
+            return value.isEmpty() ? null : value;
+        }
+    }
+
+    /**
+     * Colonne de chaînes encodée par dictionnaire : valeurs distinctes et code de chaque ligne
+     */
+    private static final class Dictionary {
+
+        private final Map<String, Integer> codesByValue = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private int[] codes = new int[1024];
+        private int size;
+
+        void add(String value) {
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, size * 2);
+            }
+            int code = -1;
+            if (value != null) {
+                code = codesByValue.computeIfAbsent(value, v -> {
+                    values.add(v);
+                    return values.size() - 1;
+                });
+            }
+            codes[size++] = code;
+        }
+
+        byte[] encode() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(values.size());
+            for (String value : values) {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(utf8.length);
+                out.write(utf8);
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.clinique.gestion.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entrée du journal d'audit en attente d'écriture par {@link AuditWriter}
+ */
+public record AuditEntry(
+        Long userId,
+        String action,
+        String entityType,
+        Long entityId,
+        String details,
+        String ipAddress,
+        LocalDateTime timestamp) {
+}
@@ -0,0 +1,297 @@
+package com.clinique.gestion.service;
+
+import jakarta.annotation.PostConstruct;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Partitions mensuelles du journal d'audit (audit_logs, partitionnée sur timestamp par la migration V3).
+ * <p>
+ * Le rôle applicatif n'a pas de droit de DDL : les partitions sont créées, détachées, lues et
+ * supprimées par les fonctions SECURITY DEFINER de la migration V5, avec les droits du rôle qui migre.
+ * Au démarrage et chaque nuit, crée la partition du mois courant et celles des
+ * audit.partitions.months-ahead mois suivants. Les mois sortis de la rétention
+ * (audit.retention-months, 0 = tout conserver) sont détachés, exportés en CSV compressé
+ * dans audit.archive.directory (audit_logs_AAAA_MM.csv.gz) puis supprimés de la base.
+ * Une partition détachée dont l'archivage a échoué reste en base et est reprise au passage suivant.
+ * Chaque export est converti en archive colonnaire (audit_logs_AAAA_MM.col, {@link AuditArchiveWriter})
+ * consultée par la recherche d'audit ; le CSV est conservé pour une restauration en base.
+ * La maintenance ne tourne que sur une instance à la fois (verrou consultatif PostgreSQL).
+ */
+@Component
+public class AuditPartitionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditPartitionManager.class);
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("audit_logs_(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    // Clé du verrou consultatif de maintenance, partagée par toutes les instances ("audit")
+    static final long MAINTENANCE_LOCK_KEY = 0x61756469744CL;
+
+    private static final String ATTACHED_SQL =
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = 'audit_logs'::regclass ORDER BY c.relname";
+
+    // Tables de mois détachées mais pas encore archivées
+    private static final String DETACHED_SQL =
+            "SELECT relname FROM pg_class WHERE relkind = 'r' AND NOT relispartition " +
+            "AND relname ~ '^audit_logs_[0-9]{4}_[0-9]{2}$' AND pg_table_is_visible(oid) ORDER BY relname";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${audit.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${audit.retention-months:24}")
+    private int retentionMonths;
+
+    @Value("${audit.partitions.detach-lock-timeout-ms:5000}")
+    private long detachLockTimeoutMs;
+
+    @Value("${audit.archive.directory:data/audit-archive}")
+    private String archiveDirectory;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        try {
+            withMaintenanceLock(() -> {
+                try {
+                    createUpcomingPartitions(YearMonth.now());
+                } catch (Exception e) {
+                    // Sans partition du mois, les entrées vont dans audit_logs_default : elles y sont
+                    // reprises à la création du mois
+                    logger.warn("Création des partitions du journal d'audit impossible: {}", e.getMessage());
+                }
+                convertArchives();
+            });
+        } catch (Exception e) {
+            logger.warn("Maintenance du journal d'audit au démarrage impossible: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Maintenance planifiée : partitions à venir, détachement et archivage des mois échus.
+     * Retourne faux si une autre instance tient le verrou de maintenance.
+     */
+    @Scheduled(cron = "${audit.partitions.maintenance-cron:0 15 3 * * *}")
+    public boolean maintain() {
+        return withMaintenanceLock(() -> {
+            YearMonth current = YearMonth.now();
+            createUpcomingPartitions(current);
+            if (retentionMonths > 0) {
+                detachPartitionsBefore(current.minusMonths(retentionMonths));
+            }
+            archiveDetachedPartitions();
+            convertArchives();
+        });
+    }
+
+    /**
+     * Exécute action sous le verrou consultatif de maintenance, sans attendre s'il est déjà pris.
+     * Le verrou appartient à une connexion dédiée, tenue le temps de l'action : il est libéré
+     * par pg_advisory_unlock, ou par PostgreSQL si l'instance s'arrête.
+     */
+    private boolean withMaintenanceLock(Runnable action) {
+        Boolean ran = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                try (ResultSet rs = statement.executeQuery("SELECT pg_try_advisory_lock(" + MAINTENANCE_LOCK_KEY + ")")) {
+                    if (!rs.next() || !rs.getBoolean(1)) {
+                        logger.info("Maintenance du journal d'audit en cours sur une autre instance, passage ignoré");
+                        return false;
+                    }
+                }
+                try {
+                    action.run();
+                } finally {
+                    statement.execute("SELECT pg_advisory_unlock(" + MAINTENANCE_LOCK_KEY + ")");
+                }
+                return true;
+            }
+        });
+        return Boolean.TRUE.equals(ran);
+    }
+
+    /**
+     * Crée les partitions manquantes du mois courant et des mois suivants ; retourne le nombre créé
+     */
+    public int createUpcomingPartitions(YearMonth current) {
+        int created = 0;
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            // Les lignes du mois déjà tombées dans audit_logs_default sont déplacées dans la nouvelle partition
+            Boolean done = jdbcTemplate.queryForObject("SELECT audit_logs_create_partition(?)", Boolean.class,
+                    Date.valueOf(month.atDay(1)));
+            if (Boolean.TRUE.equals(done)) {
+                logger.info("Partition du journal d'audit créée: {}", partitionName(month));
+                created++;
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Détache les partitions des mois antérieurs à limit ; elles sont archivées ensuite
+     */
+    public int detachPartitionsBefore(YearMonth limit) {
+        int detached = 0;
+        for (String name : jdbcTemplate.queryForList(ATTACHED_SQL, String.class)) {
+            YearMonth month = partitionMonth(name);
+            if (month == null || !month.isBefore(limit)) {
+                continue;
+            }
+            // DETACH verrouille brièvement audit_logs : abandon plutôt que bloquer les insertions
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute("SET LOCAL lock_timeout = " + detachLockTimeoutMs);
+                call("audit_logs_detach_partition", name);
+            });
+            logger.info("Partition du journal d'audit détachée: {}", name);
+            detached++;
+        }
+        return detached;
+    }
+
+    /**
+     * Archive puis supprime les partitions détachées ; retourne le nombre de partitions archivées
+     */
+    public int archiveDetachedPartitions() {
+        int archived = 0;
+        for (String name : jdbcTemplate.queryForList(DETACHED_SQL, String.class)) {
+            try {
+                archive(name);
+                archived++;
+            } catch (Exception e) {
+                logger.error("Archivage de la partition {} en échec, conservée en base: {}", name, e.getMessage(), e);
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * Exporte une table de mois détachée en CSV gzip (écrit sous .part, synchronisé sur disque,
+     * puis renommé) et ne la supprime qu'une fois le fichier complet
+     */
+    private void archive(String name) throws IOException {
+        if (partitionMonth(name) == null) {
+            throw new IllegalArgumentException("Nom de partition invalide: " + name);
+        }
+        Path directory = Path.of(archiveDirectory);
+        Files.createDirectories(directory);
+        Path target = directory.resolve(name + ".csv.gz");
+        Path partial = directory.resolve(name + ".csv.gz.part");
+        long rows;
+        try (OutputStream out = new GZIPOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(partial), 64 * 1024), 64 * 1024)) {
+            Long copied = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                try {
+                    return connection.unwrap(PGConnection.class).getCopyAPI()
+                            .copyOut("COPY (SELECT * FROM audit_logs_detached_rows('" + name + "')) "
+                                    + "TO STDOUT WITH (FORMAT csv, HEADER)", out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            rows = copied != null ? copied : 0;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        call("audit_logs_drop_detached", name);
+        logger.info("Partition {} archivée: {} ligne(s) dans {}", name, rows, target);
+    }
+
+    /**
+     * Convertit en archive colonnaire les exports CSV qui n'en ont pas encore ; retourne le nombre converti
+     */
+    public int convertArchives() {
+        Path directory = Path.of(archiveDirectory);
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        int converted = 0;
+        try (DirectoryStream<Path> exports = Files.newDirectoryStream(directory, "audit_logs_*.csv.gz")) {
+            for (Path export : exports) {
+                String fileName = export.getFileName().toString();
+                String name = fileName.substring(0, fileName.length() - ".csv.gz".length());
+                Path target = directory.resolve(name + ".col");
+                if (partitionMonth(name) == null || Files.exists(target)) {
+                    continue;
+                }
+                try {
+                    int rows = AuditArchiveWriter.convert(export, target);
+                    logger.info("Archive colonnaire {} créée: {} ligne(s)", target.getFileName(), rows);
+                    converted++;
+                } catch (IOException | RuntimeException e) {
+                    // Le mois reste absent de la recherche ; le CSV est intact et la conversion sera retentée
+                    logger.error("Conversion de {} en archive colonnaire en échec: {}", fileName, e.getMessage(), e);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Lecture du répertoire d'archives d'audit impossible: {}", e.getMessage());
+        }
+        return converted;
+    }
+
+    /**
+     * Appelle une fonction de maintenance de la migration V5 sur une table de mois
+     */
+    private void call(String function, String name) {
+        jdbcTemplate.query("SELECT " + function + "(?)", (ResultSetExtractor<Void>) rs -> null, name);
+    }
+
+    static String partitionName(YearMonth month) {
+        return "audit_logs_" + PARTITION_SUFFIX.format(month);
+    }
+
+    /**
+     * Mois d'une partition d'après son nom ; null pour audit_logs_default
+     */
+    static YearMonth partitionMonth(String name) {
+        Matcher matcher = PARTITION_NAME.matcher(name);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+    }
+}
@@ -0,0 +1,294 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.dto.AuditLogDTO;
+import com.clinique.gestion.dto.AuditLogFilter;
+import com.clinique.gestion.dto.AuditPageDTO;
+import com.clinique.gestion.entity.AuditLog;
+import com.clinique.gestion.entity.User;
+import com.clinique.gestion.exception.BadRequestException;
+import com.clinique.gestion.repository.AuditLogRepository;
+import com.clinique.gestion.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recherche dans le journal d'audit, paginée par clé (timestamp, id) décroissante.
+ * <p>
+ * Les mois encore en base sont lus par {@link AuditLogRepository#search} ; les mois sortis de
+ * la rétention sont lus dans leurs archives colonnaires (audit.archive.directory, voir
+ * {@link AuditArchiveReader}). Chaque source fournit ses premières lignes après le curseur et
+ * la page est formée des plus récentes d'entre elles.
+ */
+@Service
+@Transactional(readOnly = true)
+@Timed("clinique.service")
+public class AuditQueryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditQueryService.class);
+
+    private static final char CURSOR_SEPARATOR = '\u001F';
+
+    private static final Comparator<AuditLogDTO> NEWEST_FIRST =
+            Comparator.comparing(AuditLogDTO::getTimestamp).thenComparing(AuditLogDTO::getId).reversed();
+
+    @Autowired
+    private AuditLogRepository auditLogRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${audit.search.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${audit.search.max-size:500}")
+    private int maxPageSize;
+
+    @Value("${audit.archive.directory:data/audit-archive}")
+    private String archiveDirectory;
+
+    // Archives mappées, rouvertes (et l'ancien mappage fermé) si le fichier a été remplacé
+    private final Map<Path, OpenArchive> archives = new ConcurrentHashMap<>();
+
+    /**
+     * Archive ouverte et version du fichier mappé : date de modification et taille
+     */
+    private record OpenArchive(FileTime modified, long size, AuditArchiveReader reader) {
+
+        boolean isCurrent(BasicFileAttributes attributes) {
+            return modified.equals(attributes.lastModifiedTime()) && size == attributes.size();
+        }
+    }
+
+    /**
+     * Page d'entrées correspondant au filtre, après le curseur donné
+     */
+    public AuditPageDTO search(AuditLogFilter filter, String cursor, Integer size) {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        if (filter.getFrom() != null && filter.getTo() != null && !filter.getFrom().isBefore(filter.getTo())) {
+            throw new BadRequestException("La date de début doit précéder la date de fin");
+        }
+        LocalDateTime beforeTimestamp = null;
+        Long beforeId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] key = decodeCursor(cursor);
+            beforeTimestamp = LocalDateTime.parse(key[0]);
+            beforeId = Long.valueOf(key[1]);
+        }
+
+        // Une ligne de plus que la page pour savoir s'il reste des entrées
+        int limit = pageSize + 1;
+        List<AuditLogDTO> rows = new ArrayList<>();
+        for (AuditLog log : auditLogRepository.search(filter, beforeTimestamp, beforeId, limit)) {
+            rows.add(entityToDTO(log));
+        }
+        searchArchives(filter, beforeTimestamp, beforeId, limit, rows);
+        rows.sort(NEWEST_FIRST);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<AuditLogDTO> page = hasMore ? new ArrayList<>(rows.subList(0, pageSize)) : rows;
+        String nextCursor = hasMore ? encodeCursor(page.get(page.size() - 1)) : null;
+        resolveUsernames(page);
+        return new AuditPageDTO(page, nextCursor, pageSize);
+    }
+
+    /**
+     * Ajoute aux lignes celles des archives des mois de la période, du plus récent au plus ancien.
+     * Les mois sont disjoints : dès que la page est pleine de lignes plus récentes qu'un mois,
+     * ce mois et les précédents sont ignorés.
+     */
+    private void searchArchives(AuditLogFilter filter, LocalDateTime beforeTimestamp, Long beforeId,
+                                int limit, List<AuditLogDTO> rows) {
+        TreeMap<YearMonth, Path> months = listArchives();
+        for (Map.Entry<YearMonth, Path> entry : months.descendingMap().entrySet()) {
+            YearMonth month = entry.getKey();
+            LocalDateTime monthStart = month.atDay(1).atStartOfDay();
+            LocalDateTime monthEnd = month.plusMonths(1).atDay(1).atStartOfDay();
+            if ((filter.getTo() != null && !monthStart.isBefore(filter.getTo()))
+                    || (beforeTimestamp != null && beforeTimestamp.isBefore(monthStart))) {
+                continue;
+            }
+            if (filter.getFrom() != null && !monthEnd.isAfter(filter.getFrom())) {
+                break;
+            }
+            if (rows.size() >= limit) {
+                rows.sort(NEWEST_FIRST);
+                if (!rows.get(limit - 1).getTimestamp().isBefore(monthEnd)) {
+                    break;
+                }
+            }
+            AuditArchiveReader reader = acquire(entry.getValue());
+            if (reader != null) {
+                try {
+                    rows.addAll(reader.search(filter, beforeTimestamp, beforeId, limit));
+                } finally {
+                    reader.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Archives colonnaires présentes, par mois
+     */
+    private TreeMap<YearMonth, Path> listArchives() {
+        TreeMap<YearMonth, Path> months = new TreeMap<>();
+        Path directory = Path.of(archiveDirectory);
+        if (!Files.isDirectory(directory)) {
+            return months;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "audit_logs_*.col")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                YearMonth month = AuditPartitionManager.partitionMonth(name.substring(0, name.length() - ".col".length()));
+                if (month != null) {
+                    months.put(month, file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lecture du répertoire d'archives d'audit impossible", e);
+        }
+        // Archives supprimées depuis leur ouverture
+        for (Path file : archives.keySet()) {
+            if (!months.containsValue(file)) {
+                close(archives.remove(file));
+            }
+        }
+        return months;
+    }
+
+    /**
+     * Archive mappée du fichier, réservée pour une recherche (à libérer par release()) ;
+     * null si le fichier est illisible
+     */
+    private AuditArchiveReader acquire(Path file) {
+        try {
+            while (true) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                OpenArchive archive = archives.compute(file, (path, current) -> {
+                    if (current != null && current.isCurrent(attributes)) {
+                        return current;
+                    }
+                    OpenArchive opened = new OpenArchive(attributes.lastModifiedTime(), attributes.size(), open(path));
+                    close(current);
+                    return opened;
+                });
+                // Une archive fermée entre-temps a été remplacée : la version courante est relue
+                if (archive.reader().acquire()) {
+                    return archive.reader();
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // Archive illisible : signalée, la recherche continue sur les autres mois
+            logger.error("Archive d'audit {} illisible: {}", file.getFileName(),
+                    e instanceof UncheckedIOException unchecked ? unchecked.getCause().getMessage() : e.getMessage());
+            return null;
+        }
+    }
+
+    private static AuditArchiveReader open(Path file) {
+        try {
+            return AuditArchiveReader.open(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void close(OpenArchive archive) {
+        if (archive != null) {
+            archive.reader().close();
+        }
+    }
+
+    @PreDestroy
+    public void closeArchives() {
+        for (Path file : archives.keySet()) {
+            close(archives.remove(file));
+        }
+    }
+
+    /**
+     * Nom d'utilisateur des entrées de la page, en une requête
+     */
+    private void resolveUsernames(List<AuditLogDTO> page) {
+        Set<Long> userIds = new HashSet<>();
+        for (AuditLogDTO dto : page) {
+            if (dto.getUserId() != null) {
+                userIds.add(dto.getUserId());
+            }
+        }
+        if (userIds.isEmpty()) {
+            return;
+        }
+        Map<Long, String> usernames = new HashMap<>();
+        for (User user : userRepository.findAllById(userIds)) {
+            usernames.put(user.getId(), user.getUsername());
+        }
+        for (AuditLogDTO dto : page) {
+            if (dto.getUserId() != null) {
+                dto.setUsername(usernames.get(dto.getUserId()));
+            }
+        }
+    }
+
+    private AuditLogDTO entityToDTO(AuditLog log) {
+        AuditLogDTO dto = new AuditLogDTO();
+        dto.setId(log.getId());
+        // L'id du proxy paresseux se lit sans charger l'utilisateur
+        dto.setUserId(log.getUser() != null ? log.getUser().getId() : null);
+        dto.setAction(log.getAction());
+        dto.setEntityType(log.getEntityType());
+        dto.setEntityId(log.getEntityId());
+        dto.setDetails(log.getDetails());
+        dto.setIpAddress(log.getIpAddress());
+        dto.setTimestamp(log.getTimestamp());
+        return dto;
+    }
+
+    private static String encodeCursor(AuditLogDTO last) {
+        String key = last.getTimestamp() + String.valueOf(CURSOR_SEPARATOR) + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = key.split(String.valueOf(CURSOR_SEPARATOR), -1);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException();
+            }
+            LocalDateTime.parse(parts[0]);
+            Long.parseLong(parts[1]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BadRequestException("Curseur de pagination invalide");
+        }
+    }
+}
@@ -1,53 +1,53 @@
 package com.clinique.gestion.service;
 
-import com.clinique.gestion.entity.AuditLog;
-import com.clinique.gestion.entity.User;
-import com.clinique.gestion.repository.AuditLogRepository;
-import com.clinique.gestion.repository.UserRepository;
+import com.clinique.gestion.security.service.UserDetailsServiceImpl.UserPrincipal;
+import io.micrometer.core.annotation.Timed;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
 
 /**
- * Service pour la journalisation des actions (audit)
+ * Service pour la journalisation des actions (audit).
+ * Les entrées sont transmises à {@link AuditWriter} après le commit de la
+ * transaction appelante : une action annulée n'est pas journalisée et
+ * l'écriture en base ne rallonge plus la transaction métier.
  */
 @Service
-@Transactional
+@Timed("clinique.service")
 public class AuditService {
 
     @Autowired
-    private AuditLogRepository auditLogRepository;
-
-    @Autowired
-    private UserRepository userRepository;
+    private AuditWriter auditWriter;
 
     /**
      * Enregistre une action dans le journal d'audit
      */
     public void logAction(String action, String entityType, Long entityId, String details, HttpServletRequest request) {
-        AuditLog auditLog = new AuditLog();
-        
-        // Récupérer l'utilisateur actuel
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.isAuthenticated()) {
-            String username = authentication.getName();
-            User user = userRepository.findByUsername(username).orElse(null);
-            auditLog.setUser(user);
-        }
+        AuditEntry entry = new AuditEntry(
+                getCurrentUserId(),
+                action,
+                entityType,
+                entityId,
+                details,
+                request != null ? getClientIpAddress(request) : null,
+                LocalDateTime.now());
 
-        auditLog.setAction(action);
-        auditLog.setEntityType(entityType);
-        auditLog.setEntityId(entityId);
-        auditLog.setDetails(details);
-        
-        if (request != null) {
-            auditLog.setIpAddress(getClientIpAddress(request));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    auditWriter.submit(entry);
+                }
+            });
+        } else {
+            auditWriter.submit(entry);
         }
-
-        auditLogRepository.save(auditLog);
     }
 
     /**
@@ -57,6 +57,17 @@ public class AuditService {
         logAction(action, entityType, entityId, details, null);
     }
 
+    /**
+     * Retourne l'id de l'utilisateur authentifié, porté par le principal (sans requête)
+     */
+    private Long getCurrentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.getId();
+        }
+        return null;
+    }
+
     /**
      * Extrait l'adresse IP du client depuis la requête
      */
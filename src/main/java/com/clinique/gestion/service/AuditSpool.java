@@ -0,0 +1,217 @@
+package com.clinique.gestion.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Journal disque (write-ahead) du mode d'audit durable.
+ * Chaque entrée est ajoutée en JSON, une ligne par entrée, dans le segment
+ * courant avant d'être mise en file ; un segment est supprimé dès que toutes
+ * ses entrées ont été écrites en base. Les segments restants au démarrage
+ * sont rejoués (livraison au moins une fois).
+ */
+final class AuditSpool {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditSpool.class);
+
+    private static final String SEGMENT_PREFIX = "audit-";
+    private static final String SEGMENT_SUFFIX = ".jsonl";
+    private static final int SEGMENT_MAX_ENTRIES = 10_000;
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final boolean fsync;
+
+    // Écritures et fsync sous verrou explicite (synchronized épinglerait les threads virtuels)
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // segment -> nombre d'entrées pas encore écrites en base
+    private final Map<Long, Integer> pending = new HashMap<>();
+
+    private long currentSegment;
+    private int currentCount;
+    private FileChannel channel;
+
+    AuditSpool(Path directory, ObjectMapper objectMapper, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        long last = 0;
+        for (Path segment : existingSegments()) {
+            last = Math.max(last, segmentNumber(segment));
+        }
+        currentSegment = last + 1;
+    }
+
+    /**
+     * Retourne les segments laissés par une exécution précédente, du plus ancien au plus récent
+     */
+    List<Path> existingSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(AuditSpool::isSegment)
+                    .filter(path -> channel == null || segmentNumber(path) != currentSegment)
+                    .sorted((a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)))
+                    .toList();
+        }
+    }
+
+    /**
+     * Relit un segment ; une dernière ligne tronquée (arrêt brutal) est ignorée
+     */
+    List<AuditEntry> read(Path segment) throws IOException {
+        List<AuditEntry> entries = new ArrayList<>();
+        for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                entries.add(objectMapper.readValue(line, AuditEntry.class));
+            } catch (IOException e) {
+                logger.warn("Ligne illisible ignorée dans {}: {}", segment.getFileName(), e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    void delete(Path segment) throws IOException {
+        lock.lock();
+        try {
+            pending.remove(segmentNumber(segment));
+            Files.deleteIfExists(segment);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ferme le segment courant s'il contient des entrées, pour qu'il soit relu par existingSegments()
+     */
+    void roll() throws IOException {
+        lock.lock();
+        try {
+            if (channel != null && currentCount > 0) {
+                rotate();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ajoute une entrée au segment courant et retourne le numéro de ce segment
+     */
+    long append(AuditEntry entry) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(entry);
+        ByteBuffer buffer = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip();
+        lock.lock();
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(segmentPath(currentSegment),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            long segment = currentSegment;
+            pending.merge(segment, 1, Integer::sum);
+            if (++currentCount >= SEGMENT_MAX_ENTRIES) {
+                rotate();
+            }
+            return segment;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Signale que count entrées d'un segment ont été écrites en base
+     */
+    void acknowledge(long segment, int count) {
+        lock.lock();
+        try {
+            int remaining = pending.merge(segment, -count, Integer::sum);
+            if (remaining <= 0 && segment != currentSegment) {
+                pending.remove(segment);
+                deleteQuietly(segmentPath(segment));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Fermeture du journal d'audit: {}", e.getMessage());
+            }
+            channel = null;
+            if (pending.getOrDefault(currentSegment, 0) <= 0) {
+                deleteQuietly(segmentPath(currentSegment));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        channel = null;
+        if (pending.getOrDefault(currentSegment, 0) <= 0) {
+            pending.remove(currentSegment);
+            deleteQuietly(segmentPath(currentSegment));
+        }
+        currentSegment++;
+        currentCount = 0;
+    }
+
+    private void deleteQuietly(Path segment) {
+        try {
+            Files.deleteIfExists(segment);
+        } catch (IOException e) {
+            logger.warn("Suppression du segment d'audit {} impossible: {}", segment.getFileName(), e.getMessage());
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.util.BackgroundThreads;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Écrivain asynchrone du journal d'audit.
+ * Les entrées passent par une file bornée et sont insérées par un thread dédié,
+ * par lots JDBC (réécrits en INSERT multi-lignes par le driver PostgreSQL).
+ *
+ * Deux modes (audit.mode) :
+ * - latency : la file est uniquement en mémoire, un arrêt brutal perd les entrées non écrites ;
+ * - durable : chaque entrée est d'abord ajoutée à un journal disque, rejoué au démarrage.
+ *
+ * Quand la file est pleine, l'appelant attend audit.queue.offer-timeout-ms puis
+ * dépose son entrée dans un journal disque de débordement (compté dans audit.backpressure),
+ * sans jamais écrire en base lui-même : submit() est appelé après le commit de la requête.
+ * Le thread d'écriture reprend le débordement une fois la file redescendue sous sa moitié ;
+ * un débordement restant à l'arrêt est rejoué au démarrage suivant, dans les deux modes.
+ */
+@Component
+public class AuditWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditWriter.class);
+
+    // Identifiant fourni explicitement : une table créée par Hibernate n'a pas de DEFAULT
+    static final String INSERT_SQL = "INSERT INTO audit_logs " +
+            "(id, user_id, action, entity_type, entity_id, details, ip_address, timestamp) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // audit_logs_id_seq avance de ID_BLOCK_SIZE (V1, allocationSize d'AuditLog) : chaque nextval
+    // réserve la plage ]valeur - ID_BLOCK_SIZE, valeur], comme l'optimiseur pooled d'Hibernate
+    static final int ID_BLOCK_SIZE = 50;
+
+    private static final String NEXT_ID_BLOCKS_SQL =
+            "SELECT nextval('audit_logs_id_seq') FROM generate_series(1, ?)";
+
+    private static final long POLL_TIMEOUT_MS = 500;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long OVERFLOW_RETRY_MS = 10_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private BackgroundThreads backgroundThreads;
+
+    @Value("${audit.mode:latency}")
+    private String mode;
+
+    @Value("${audit.queue.capacity:10000}")
+    private int capacity;
+
+    @Value("${audit.queue.offer-timeout-ms:50}")
+    private long offerTimeoutMs;
+
+    @Value("${audit.batch-size:200}")
+    private int batchSize;
+
+    @Value("${audit.spool.directory:data/audit-spool}")
+    private String spoolDirectory;
+
+    @Value("${audit.spool.fsync:true}")
+    private boolean fsync;
+
+    private BlockingQueue<Queued> queue;
+    private AuditSpool spool;
+    private AuditSpool overflow;
+    private final AtomicLong overflowed = new AtomicLong();
+    private long nextOverflowDrain;
+
+    // Plage d'identifiants en cours, utilisée par le seul thread qui insère (rejeu au démarrage, puis worker)
+    private long nextId = 1;
+    private long lastId = 0;
+    private Thread worker;
+    private volatile boolean running;
+
+    private Counter written;
+    private Counter failed;
+    private Counter backpressure;
+    private Timer flushTimer;
+    private DistributionSummary batchSizes;
+
+    @PostConstruct
+    public void start() throws IOException {
+        queue = new ArrayBlockingQueue<>(capacity);
+
+        Gauge.builder("audit.queue.size", queue, BlockingQueue::size)
+                .description("Entrées d'audit en attente d'écriture")
+                .register(meterRegistry);
+        Gauge.builder("audit.queue.remaining", queue, BlockingQueue::remainingCapacity)
+                .description("Places libres dans la file d'audit")
+                .register(meterRegistry);
+        written = meterRegistry.counter("audit.entries.written");
+        failed = meterRegistry.counter("audit.entries.failed");
+        backpressure = meterRegistry.counter("audit.backpressure");
+        flushTimer = meterRegistry.timer("audit.flush");
+        batchSizes = DistributionSummary.builder("audit.batch.size").register(meterRegistry);
+        Gauge.builder("audit.overflow.size", overflowed, AtomicLong::get)
+                .description("Entrées d'audit en attente dans le journal de débordement")
+                .register(meterRegistry);
+
+        if ("durable".equalsIgnoreCase(mode)) {
+            spool = new AuditSpool(Path.of(spoolDirectory), objectMapper, fsync);
+            replay(spool);
+        }
+        // Débordement laissé par l'exécution précédente : repris par le thread d'écriture
+        overflow = new AuditSpool(Path.of(spoolDirectory, "overflow"), objectMapper, fsync);
+        for (Path segment : overflow.existingSegments()) {
+            overflowed.addAndGet(overflow.read(segment).size());
+        }
+
+        running = true;
+        worker = backgroundThreads.start("audit-writer", this::run);
+        logger.info("Journal d'audit asynchrone démarré (mode {}, file de {} entrées)", mode, capacity);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+        if (spool != null) {
+            spool.close();
+        }
+        overflow.close();
+    }
+
+    /**
+     * Met une entrée en file ; la dépose dans le journal de débordement si la file reste pleine
+     */
+    public void submit(AuditEntry entry) {
+        long segment = -1;
+        if (spool != null) {
+            try {
+                segment = spool.append(entry);
+            } catch (IOException e) {
+                logger.error("Écriture du journal d'audit disque impossible: {}", e.getMessage());
+            }
+        }
+        Queued queued = new Queued(entry, segment);
+        try {
+            if (running && queue.offer(queued, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        backpressure.increment();
+        spill(queued);
+    }
+
+    /**
+     * Dépose une entrée dans le journal de débordement, repris par le thread d'écriture
+     */
+    private void spill(Queued queued) {
+        try {
+            overflow.append(queued.entry());
+            overflowed.incrementAndGet();
+            acknowledge(List.of(queued));
+        } catch (IOException e) {
+            failed.increment();
+            logger.error("Entrée d'audit non écrite, file et débordement indisponibles{}: {} ({})",
+                    queued.segment() >= 0 ? " (conservée dans le journal disque)" : "",
+                    queued.entry(), e.getMessage());
+        }
+    }
+
+    private void run() {
+        List<Queued> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                if (overflowed.get() > 0 && queue.size() <= capacity / 2
+                        && System.currentTimeMillis() >= nextOverflowDrain) {
+                    drainOverflow();
+                }
+                Queued first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                logger.error("Erreur inattendue de l'écrivain d'audit", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Écrit en base le journal de débordement ; en cas d'échec il est conservé et repris plus tard
+     */
+    private void drainOverflow() {
+        try {
+            overflow.roll();
+            int replayed = replay(overflow);
+            overflowed.addAndGet(-replayed);
+            if (overflowed.get() > 0) {
+                nextOverflowDrain = System.currentTimeMillis() + OVERFLOW_RETRY_MS;
+            }
+        } catch (IOException e) {
+            logger.error("Reprise du débordement d'audit impossible: {}", e.getMessage());
+            nextOverflowDrain = System.currentTimeMillis() + OVERFLOW_RETRY_MS;
+        }
+    }
+
+    /**
+     * Insère un lot, en réessayant avant de repasser ligne par ligne pour isoler les entrées invalides
+     */
+    private void flush(List<Queued> batch) {
+        List<AuditEntry> entries = batch.stream().map(Queued::entry).toList();
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                flushTimer.record(() -> insert(entries));
+                batchSizes.record(entries.size());
+                written.increment(entries.size());
+                acknowledge(batch);
+                return;
+            } catch (DataAccessException e) {
+                logger.warn("Écriture d'un lot d'audit de {} entrée(s) échouée (tentative {}/{}): {}",
+                        entries.size(), attempt, MAX_ATTEMPTS, e.getMessage());
+                if (attempt < MAX_ATTEMPTS && !sleep(attempt * 1000L)) {
+                    break;
+                }
+            }
+        }
+
+        List<Queued> done = new ArrayList<>(batch.size());
+        for (Queued queued : batch) {
+            try {
+                insert(List.of(queued.entry()));
+                written.increment();
+                done.add(queued);
+            } catch (DataAccessException e) {
+                failed.increment();
+                logger.error("Entrée d'audit non écrite{}: {} ({})",
+                        queued.segment() >= 0 ? " (conservée dans le journal disque)" : "",
+                        queued.entry(), e.getMessage());
+                if (queued.segment() < 0) {
+                    done.add(queued);
+                }
+            }
+        }
+        acknowledge(done);
+    }
+
+    private void insert(List<AuditEntry> entries) {
+        Iterator<Long> ids = nextIds(entries.size()).iterator();
+        jdbcTemplate.batchUpdate(INSERT_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setLong(1, ids.next());
+            ps.setObject(2, entry.userId(), Types.BIGINT);
+            ps.setString(3, entry.action());
+            ps.setString(4, entry.entityType());
+            ps.setObject(5, entry.entityId(), Types.BIGINT);
+            ps.setString(6, entry.details());
+            ps.setString(7, entry.ipAddress());
+            ps.setTimestamp(8, Timestamp.valueOf(entry.timestamp()));
+        });
+    }
+
+    /**
+     * Prend count identifiants dans la plage en cours, en réservant les plages manquantes
+     * en un seul aller-retour ; les identifiants d'un lot en échec sont perdus
+     */
+    private List<Long> nextIds(int count) {
+        List<Long> ids = new ArrayList<>(count);
+        while (ids.size() < count && nextId <= lastId) {
+            ids.add(nextId++);
+        }
+        if (ids.size() < count) {
+            int blocks = (count - ids.size() + ID_BLOCK_SIZE - 1) / ID_BLOCK_SIZE;
+            for (Long top : jdbcTemplate.queryForList(NEXT_ID_BLOCKS_SQL, Long.class, blocks)) {
+                nextId = top - ID_BLOCK_SIZE + 1;
+                lastId = top;
+                while (ids.size() < count && nextId <= lastId) {
+                    ids.add(nextId++);
+                }
+            }
+        }
+        if (ids.size() < count) {
+            throw new IllegalStateException("Réservation d'identifiants d'audit incomplète");
+        }
+        return ids;
+    }
+
+    private void acknowledge(List<Queued> batch) {
+        if (spool == null) {
+            return;
+        }
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Queued queued : batch) {
+            if (queued.segment() >= 0) {
+                counts.merge(queued.segment(), 1, Integer::sum);
+            }
+        }
+        counts.forEach(spool::acknowledge);
+    }
+
+    /**
+     * Rejoue les segments fermés d'un journal disque ; un segment non rejoué est conservé.
+     * Retourne le nombre d'entrées écrites.
+     */
+    private int replay(AuditSpool source) throws IOException {
+        int replayed = 0;
+        for (Path segment : source.existingSegments()) {
+            List<AuditEntry> entries = source.read(segment);
+            try {
+                for (int from = 0; from < entries.size(); from += batchSize) {
+                    insert(entries.subList(from, Math.min(entries.size(), from + batchSize)));
+                }
+                source.delete(segment);
+                written.increment(entries.size());
+                replayed += entries.size();
+                logger.info("{} entrée(s) d'audit rejouée(s) depuis {}", entries.size(), segment.getFileName());
+            } catch (DataAccessException e) {
+                logger.error("Rejeu du journal d'audit {} impossible, segment conservé: {}",
+                        segment.getFileName(), e.getMessage());
+            }
+        }
+        return replayed;
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private record Queued(AuditEntry entry, long segment) {
+    }
+}
@@ -6,6 +6,7 @@ import com.clinique.gestion.entity.User;
 import com.clinique.gestion.exception.UnauthorizedException;
 import com.clinique.gestion.repository.UserRepository;
 import com.clinique.gestion.security.jwt.JwtTokenProvider;
+import io.micrometer.core.annotation.Timed;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -21,6 +22,7 @@ import org.springframework.transaction.annotation.Transactional;
  * Service pour l'authentification
  */
 @Service
+@Timed("clinique.service")
 @Transactional
 public class AuthService {
 
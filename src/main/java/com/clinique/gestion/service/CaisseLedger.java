@@ -0,0 +1,260 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.entity.Paiement;
+import com.clinique.gestion.enums.ModePaiement;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Journal de caisse pré-agrégé : une ligne par (jour, mode de paiement, caissier)
+ * avec somme, nombre, minimum et maximum des paiements (table caisse_journal).
+ * <p>
+ * Le journal est mis à jour dans la transaction qui enregistre le paiement, si bien
+ * qu'il est validé ou annulé avec lui. Les totaux sur une période lisent les jours
+ * complets dans le journal et seulement les bords partiels (premier et dernier jour
+ * entamés) dans la table paiements. Une réconciliation planifiée compare le journal
+ * aux paiements et reconstruit les jours divergents.
+ */
+@Component
+public class CaisseLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(CaisseLedger.class);
+
+    private static final String RECORD_SQL =
+            "INSERT INTO caisse_journal (jour, mode_paiement, caissier_id, total, nombre, montant_min, montant_max) " +
+            "VALUES (?, ?, ?, ?, 1, ?, ?) " +
+            "ON CONFLICT (jour, mode_paiement, caissier_id) DO UPDATE SET " +
+            "total = caisse_journal.total + EXCLUDED.total, " +
+            "nombre = caisse_journal.nombre + 1, " +
+            "montant_min = LEAST(caisse_journal.montant_min, EXCLUDED.montant_min), " +
+            "montant_max = GREATEST(caisse_journal.montant_max, EXCLUDED.montant_max)";
+
+    private static final String AGGREGATE_SQL =
+            "SELECT CAST(date AS DATE) AS jour, mode_paiement, caissier_id, SUM(montant) AS total, " +
+            "COUNT(*) AS nombre, MIN(montant) AS montant_min, MAX(montant) AS montant_max " +
+            "FROM paiements WHERE date >= ? AND date < ? GROUP BY 1, 2, 3";
+
+    private static final String RAW_INCLUSIVE_SQL =
+            "SELECT mode_paiement, SUM(montant) FROM paiements WHERE date >= ? AND date <= ? GROUP BY mode_paiement";
+
+    private static final String RAW_EXCLUSIVE_SQL =
+            "SELECT mode_paiement, SUM(montant) FROM paiements WHERE date >= ? AND date < ? GROUP BY mode_paiement";
+
+    private static final String MISMATCH_SQL =
+            "SELECT DISTINCT jour FROM " +
+            "(SELECT jour, mode_paiement, caissier_id, total, nombre, montant_min, montant_max " +
+            " FROM caisse_journal WHERE jour >= ? AND jour < ?) l " +
+            "FULL JOIN (" + AGGREGATE_SQL + ") r USING (jour, mode_paiement, caissier_id) " +
+            "WHERE l.total IS DISTINCT FROM r.total OR l.nombre IS DISTINCT FROM r.nombre " +
+            "OR l.montant_min IS DISTINCT FROM r.montant_min OR l.montant_max IS DISTINCT FROM r.montant_max " +
+            "ORDER BY jour";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${caisse.journal.reconcile-days:7}")
+    private int reconcileDays;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        try {
+            // Premier démarrage avec le journal : l'alimenter à partir des paiements existants
+            Boolean empty = jdbcTemplate.queryForObject(
+                    "SELECT NOT EXISTS (SELECT 1 FROM caisse_journal)", Boolean.class);
+            if (Boolean.TRUE.equals(empty)) {
+                int rows = rebuild(null, null);
+                if (rows > 0) {
+                    logger.info("Journal de caisse initialisé: {} ligne(s)", rows);
+                }
+            }
+        } catch (Exception e) {
+            // Table paiements absente au tout premier démarrage : rien à agréger
+            logger.warn("Initialisation du journal de caisse impossible: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Ajoute un paiement au journal, dans la transaction qui l'enregistre
+     */
+    public void record(Paiement paiement) {
+        jdbcTemplate.update(RECORD_SQL,
+                Date.valueOf(paiement.getDate().toLocalDate()),
+                paiement.getModePaiement().name(),
+                paiement.getCaissier().getId(),
+                paiement.getMontant(),
+                paiement.getMontant(),
+                paiement.getMontant());
+    }
+
+    /**
+     * Total des paiements dont la date est comprise entre start et end (bornes incluses)
+     */
+    public BigDecimal total(LocalDateTime start, LocalDateTime end) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal amount : totalsByMode(start, end).values()) {
+            total = total.add(amount);
+        }
+        return total;
+    }
+
+    /**
+     * Totaux par mode de paiement entre start et end (bornes incluses)
+     */
+    public Map<ModePaiement, BigDecimal> totalsByMode(LocalDateTime start, LocalDateTime end) {
+        Map<ModePaiement, BigDecimal> totals = new EnumMap<>(ModePaiement.class);
+        if (end.isBefore(start)) {
+            return totals;
+        }
+        // Jours entièrement couverts lus dans le journal : [firstDay, lastDay].
+        // Le jour de end est toujours lu dans paiements (au plus une journée de lignes).
+        LocalDate firstDay = start.toLocalTime().equals(LocalTime.MIDNIGHT)
+                ? start.toLocalDate() : start.toLocalDate().plusDays(1);
+        LocalDate lastDay = end.toLocalDate().minusDays(1);
+
+        if (firstDay.isAfter(lastDay)) {
+            addRaw(totals, RAW_INCLUSIVE_SQL, start, end);
+            return totals;
+        }
+        jdbcTemplate.query("SELECT mode_paiement, SUM(total) FROM caisse_journal " +
+                        "WHERE jour BETWEEN ? AND ? GROUP BY mode_paiement",
+                rs -> {
+                    add(totals, rs.getString(1), rs.getBigDecimal(2));
+                },
+                Date.valueOf(firstDay), Date.valueOf(lastDay));
+        if (start.isBefore(firstDay.atStartOfDay())) {
+            addRaw(totals, RAW_EXCLUSIVE_SQL, start, firstDay.atStartOfDay());
+        }
+        addRaw(totals, RAW_INCLUSIVE_SQL, end.toLocalDate().atStartOfDay(), end);
+        return totals;
+    }
+
+    /**
+     * Compare le journal aux paiements sur [from, to] et reconstruit les jours divergents.
+     * Retourne les jours corrigés.
+     */
+    public List<LocalDate> reconcile(LocalDate from, LocalDate to) {
+        Timestamp startTs = Timestamp.valueOf(from.atStartOfDay());
+        Timestamp endTs = Timestamp.valueOf(to.plusDays(1).atStartOfDay());
+        List<LocalDate> days = jdbcTemplate.query(MISMATCH_SQL,
+                (rs, rowNum) -> rs.getDate(1).toLocalDate(),
+                Date.valueOf(from), Date.valueOf(to.plusDays(1)), startTs, endTs);
+        for (LocalDate day : days) {
+            rebuild(day, day);
+        }
+        if (!days.isEmpty()) {
+            logger.warn("Journal de caisse divergent sur {} jour(s), reconstruits: {}", days.size(), days);
+        }
+        return days;
+    }
+
+    /**
+     * Réconciliation planifiée des derniers jours (caisse.journal.reconcile-days)
+     */
+    @Scheduled(cron = "${caisse.journal.reconcile-cron:0 30 2 * * *}")
+    public void reconcileRecentDays() {
+        LocalDate today = LocalDate.now();
+        List<LocalDate> days = reconcile(today.minusDays(reconcileDays), today);
+        logger.info("Réconciliation du journal de caisse: {} jour(s) vérifiés, {} corrigé(s)",
+                reconcileDays + 1, days.size());
+    }
+
+    /**
+     * Reconstruit le journal entre from et to inclus à partir des paiements
+     * (toute la table si les bornes sont nulles), dans la transaction en cours s'il y en a une.
+     * Retourne le nombre de lignes écrites.
+     */
+    public int rebuild(LocalDate from, LocalDate to) {
+        LocalDate first = from != null ? from : LocalDate.of(1900, 1, 1);
+        LocalDate last = to != null ? to : LocalDate.of(9999, 12, 30);
+        Integer rows = transactionTemplate.execute(status -> {
+            // Bloque les enregistrements concurrents le temps de la reconstruction : un paiement
+            // en cours est soit déjà validé et relu, soit ajouté au journal après
+            jdbcTemplate.execute("LOCK TABLE caisse_journal IN SHARE ROW EXCLUSIVE MODE");
+            jdbcTemplate.update("DELETE FROM caisse_journal WHERE jour BETWEEN ? AND ?",
+                    Date.valueOf(first), Date.valueOf(last));
+            return jdbcTemplate.update("INSERT INTO caisse_journal " +
+                            "(jour, mode_paiement, caissier_id, total, nombre, montant_min, montant_max) " +
+                            AGGREGATE_SQL,
+                    Timestamp.valueOf(first.atStartOfDay()), Timestamp.valueOf(last.plusDays(1).atStartOfDay()));
+        });
+        return rows != null ? rows : 0;
+    }
+
+    /**
+     * Jours où le patient a des paiements, à lire avant sa suppression (voir {@link #rebuildDays})
+     */
+    public List<LocalDate> paymentDaysOfPatient(Long patientId) {
+        return paymentDays("patient_id", patientId);
+    }
+
+    /**
+     * Jours où le caissier a encaissé des paiements, à lire avant sa suppression (voir {@link #rebuildDays})
+     */
+    public List<LocalDate> paymentDaysOfCaissier(Long caissierId) {
+        return paymentDays("caissier_id", caissierId);
+    }
+
+    /**
+     * Reconstruit les jours donnés dans la transaction en cours, une fois les paiements
+     * supprimés en cascade écrits (flush) : comme pour record(), le journal est validé
+     * ou annulé avec la suppression
+     */
+    public void rebuildDays(List<LocalDate> days) {
+        if (days.isEmpty()) {
+            return;
+        }
+        entityManager.flush();
+        for (LocalDate day : days) {
+            rebuild(day, day);
+        }
+    }
+
+    private List<LocalDate> paymentDays(String column, Long id) {
+        return jdbcTemplate.query(
+                "SELECT DISTINCT CAST(date AS DATE) FROM paiements WHERE " + column + " = ? ORDER BY 1",
+                (rs, rowNum) -> rs.getDate(1).toLocalDate(), id);
+    }
+
+    private void addRaw(Map<ModePaiement, BigDecimal> totals, String sql, LocalDateTime start, LocalDateTime end) {
+        jdbcTemplate.query(sql,
+                rs -> {
+                    add(totals, rs.getString(1), rs.getBigDecimal(2));
+                },
+                Timestamp.valueOf(start), Timestamp.valueOf(end));
+    }
+
+    private static void add(Map<ModePaiement, BigDecimal> totals, String mode, BigDecimal amount) {
+        if (amount != null) {
+            totals.merge(ModePaiement.valueOf(mode), amount, BigDecimal::add);
+        }
+    }
+}
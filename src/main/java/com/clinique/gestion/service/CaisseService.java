@@ -1,35 +1,61 @@
 package com.clinique.gestion.service;
 
 import com.clinique.gestion.dto.PaiementDTO;
+import com.clinique.gestion.dto.UserDTO;
 import com.clinique.gestion.entity.Paiement;
 import com.clinique.gestion.entity.Patient;
 import com.clinique.gestion.entity.Ticket;
-import com.clinique.gestion.entity.User;
+import com.clinique.gestion.enums.ModePaiement;
+import com.clinique.gestion.exception.BadRequestException;
 import com.clinique.gestion.exception.ResourceNotFoundException;
 import com.clinique.gestion.repository.PaiementRepository;
 import com.clinique.gestion.repository.PatientRepository;
 import com.clinique.gestion.repository.TicketRepository;
 import com.clinique.gestion.repository.UserRepository;
 import com.clinique.gestion.util.NumeroGenerator;
+import com.clinique.gestion.util.XlsxStreamWriter;
+import io.micrometer.core.annotation.Timed;
 import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
  * Service pour la gestion de la caisse (paiements)
  */
 @Service
+@Timed("clinique.service")
 @Transactional
 public class CaisseService {
 
+    private static final Logger logger = LoggerFactory.getLogger(CaisseService.class);
+
     @Autowired
     private PaiementRepository paiementRepository;
 
@@ -42,12 +68,44 @@ public class CaisseService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserReferenceCache userReferenceCache;
+
     @Autowired
     private NumeroGenerator numeroGenerator;
 
     @Autowired
     private AuditService auditService;
 
+    @Autowired
+    private CaisseLedger caisseLedger;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${paiements.export.fetch-size:1000}")
+    private int exportFetchSize;
+
+    private static final DateTimeFormatter EXPORT_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Premiers caractères qui font interpréter une cellule comme une formule par un tableur
+    private static final String CSV_FORMULA_PREFIXES = "=+-@\t\r";
+
+    private static final String[] EXPORT_COLUMNS = {
+            "Numéro reçu", "Date", "Montant", "Mode de paiement",
+            "Numéro patient", "Nom", "Prénom", "Ticket", "Caissier"
+    };
+
+    private static final String EXPORT_SQL =
+            "SELECT p.numero_recu, p.date, p.montant, p.mode_paiement, pa.numero AS patient_numero, " +
+            "pa.nom, pa.prenom, t.numero AS ticket_numero, u.username " +
+            "FROM paiements p " +
+            "JOIN patients pa ON pa.id = p.patient_id " +
+            "JOIN users u ON u.id = p.caissier_id " +
+            "LEFT JOIN tickets t ON t.id = p.ticket_id " +
+            "WHERE p.date >= ? AND p.date <= ? " +
+            "ORDER BY p.date, p.id";
+
     /**
      * Enregistre un nouveau paiement
      */
@@ -70,8 +128,12 @@ public class CaisseService {
         }
 
         String username = authentication.getName();
-        User caissier = userRepository.findByUsername(username)
+        // Caissier lu dans le cache ; l'association n'a besoin que d'une référence, sans SELECT
+        UserDTO caissier = userReferenceCache.getByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
+        if (!caissier.isEnabled()) {
+            throw new com.clinique.gestion.exception.ForbiddenException("Compte désactivé");
+        }
 
         // Vérifier que l'utilisateur a le rôle CAISSIER ou ADMIN
         if (!caissier.getRole().name().equals("CAISSIER") && !caissier.getRole().name().equals("ADMIN")) {
@@ -81,9 +143,6 @@ public class CaisseService {
 
         // Générer le numéro de reçu
         String numeroRecu = numeroGenerator.generateRecuNumero();
-        while (paiementRepository.existsByNumeroRecu(numeroRecu)) {
-            numeroRecu = numeroGenerator.generateRecuNumero();
-        }
 
         // Créer le paiement
         Paiement paiement = new Paiement();
@@ -92,17 +151,18 @@ public class CaisseService {
         paiement.setMontant(paiementDTO.getMontant());
         paiement.setModePaiement(paiementDTO.getModePaiement());
         paiement.setDate(paiementDTO.getDate() != null ? paiementDTO.getDate() : LocalDateTime.now());
-        paiement.setCaissier(caissier);
+        paiement.setCaissier(userRepository.getReferenceById(caissier.getId()));
         paiement.setNumeroRecu(numeroRecu);
 
         paiement = paiementRepository.save(paiement);
+        caisseLedger.record(paiement);
 
         // Audit
         auditService.logAction("CREATE", "Paiement", paiement.getId(),
                 "Enregistrement du paiement " + paiement.getNumeroRecu() + 
                 " - Montant: " + paiement.getMontant() + " - Mode: " + paiement.getModePaiement(), request);
 
-        return entityToDTO(paiement);
+        return entityToDTO(paiement, caissier.getUsername());
     }
 
     /**
@@ -110,7 +170,7 @@ public class CaisseService {
      */
     @Transactional(readOnly = true)
     public PaiementDTO getPaiementById(Long id) {
-        Paiement paiement = paiementRepository.findById(id)
+        Paiement paiement = paiementRepository.findWithDetailsById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Paiement", "id", id));
         return entityToDTO(paiement);
     }
@@ -130,19 +190,45 @@ public class CaisseService {
      */
     @Transactional(readOnly = true)
     public List<PaiementDTO> getPaiementsByPatient(Long patientId) {
-        return paiementRepository.findByPatientId(patientId)
+        return paiementRepository.findByPatientIdOrderByDateDescIdDesc(patientId)
                 .stream()
                 .map(this::entityToDTO)
                 .collect(Collectors.toList());
     }
 
     /**
-     * Calcule le total des recettes pour une période
+     * Calcule le total des recettes pour une période (journal de caisse pour les jours complets)
      */
     @Transactional(readOnly = true)
     public BigDecimal getTotalRecettes(LocalDateTime start, LocalDateTime end) {
-        BigDecimal total = paiementRepository.calculateTotalBetweenDates(start, end);
-        return total != null ? total : BigDecimal.ZERO;
+        return caisseLedger.total(start, end);
+    }
+
+    /**
+     * Calcule le total des recettes par mode de paiement pour une période
+     */
+    @Transactional(readOnly = true)
+    public Map<ModePaiement, BigDecimal> getTotalRecettesParMode(LocalDateTime start, LocalDateTime end) {
+        return caisseLedger.totalsByMode(start, end);
+    }
+
+    /**
+     * Vérifie le journal de caisse contre les paiements et corrige les jours divergents
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<LocalDate> reconcilierJournal(LocalDate start, LocalDate end) {
+        if (end.isBefore(start)) {
+            throw new BadRequestException("La date de fin précède la date de début");
+        }
+        return caisseLedger.reconcile(start, end);
+    }
+
+    /**
+     * Reconstruit le journal de caisse à partir des paiements (toute la période si les bornes sont absentes)
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int reconstruireJournal(LocalDate start, LocalDate end) {
+        return caisseLedger.rebuild(start, end);
     }
 
     /**
@@ -156,10 +242,134 @@ public class CaisseService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Exporte les paiements d'une période en CSV (séparateur ;) ou en XLSX, lus par un
+     * curseur JDBC et écrits au fil de l'eau : mémoire constante quelle que soit la période
+     */
+    @Transactional(readOnly = true)
+    public long exportPaiements(LocalDateTime start, LocalDateTime end, String format, OutputStream out)
+            throws IOException {
+        long started = System.nanoTime();
+        BufferedOutputStream buffer = new BufferedOutputStream(out, 64 * 1024);
+        long count;
+        if ("xlsx".equals(format)) {
+            try (XlsxStreamWriter xlsx = new XlsxStreamWriter(buffer, "Paiements")) {
+                xlsx.startRow();
+                for (String column : EXPORT_COLUMNS) {
+                    xlsx.stringCell(column);
+                }
+                count = streamExportRows(start, end, rs -> {
+                    xlsx.startRow();
+                    xlsx.stringCell(rs.getString("numero_recu"));
+                    xlsx.dateTimeCell(rs.getTimestamp("date").toLocalDateTime());
+                    xlsx.amountCell(rs.getBigDecimal("montant"));
+                    xlsx.stringCell(rs.getString("mode_paiement"));
+                    xlsx.stringCell(rs.getString("patient_numero"));
+                    xlsx.stringCell(rs.getString("nom"));
+                    xlsx.stringCell(rs.getString("prenom"));
+                    xlsx.stringCell(rs.getString("ticket_numero"));
+                    xlsx.stringCell(rs.getString("username"));
+                });
+            }
+        } else {
+            Writer csv = new OutputStreamWriter(buffer, StandardCharsets.UTF_8);
+            // BOM : Excel ouvre alors le fichier en UTF-8 (accents)
+            csv.write('\uFEFF');
+            csv.write(String.join(";", EXPORT_COLUMNS));
+            csv.write("\r\n");
+            count = streamExportRows(start, end, rs -> {
+                csv.write(csvField(rs.getString("numero_recu")));
+                csv.write(';');
+                csv.write(EXPORT_DATE_FORMAT.format(rs.getTimestamp("date").toLocalDateTime()));
+                csv.write(';');
+                csv.write(rs.getBigDecimal("montant").toPlainString());
+                csv.write(';');
+                csv.write(rs.getString("mode_paiement"));
+                csv.write(';');
+                csv.write(csvField(rs.getString("patient_numero")));
+                csv.write(';');
+                csv.write(csvField(rs.getString("nom")));
+                csv.write(';');
+                csv.write(csvField(rs.getString("prenom")));
+                csv.write(';');
+                csv.write(csvField(rs.getString("ticket_numero")));
+                csv.write(';');
+                csv.write(csvField(rs.getString("username")));
+                csv.write("\r\n");
+            });
+            csv.flush();
+        }
+        buffer.flush();
+
+        double seconds = Math.max((System.nanoTime() - started) / 1e9, 1e-9);
+        logger.info("Export {} des paiements du {} au {}: {} ligne(s) en {} ms ({} lignes/s)",
+                "xlsx".equals(format) ? "XLSX" : "CSV", start, end, count,
+                Math.round(seconds * 1000), Math.round(count / seconds));
+        return count;
+    }
+
+    /**
+     * Ligne de l'export, écrite directement dans le flux de sortie
+     */
+    @FunctionalInterface
+    private interface ExportRowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+
+    private long streamExportRows(LocalDateTime start, LocalDateTime end, ExportRowWriter writer) throws IOException {
+        long[] count = {0};
+        try {
+            jdbcTemplate.query(connection -> {
+                // Curseur côté serveur : le driver PostgreSQL lit par lots de fetchSize lignes
+                PreparedStatement statement = connection.prepareStatement(EXPORT_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(exportFetchSize);
+                statement.setTimestamp(1, Timestamp.valueOf(start));
+                statement.setTimestamp(2, Timestamp.valueOf(end));
+                return statement;
+            }, (ResultSet rs) -> {
+                try {
+                    writer.write(rs);
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count[0];
+    }
+
+    /**
+     * Champ texte du CSV, entre guillemets si nécessaire. Une valeur commençant par =, +, -, @,
+     * une tabulation ou un retour chariot est précédée d'une apostrophe : un tableur l'affiche
+     * comme texte au lieu de l'évaluer comme une formule (nom de patient, nom d'utilisateur...).
+     */
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (!value.isEmpty() && CSV_FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(';') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
     /**
      * Convertit une entité Paiement en DTO
      */
     private PaiementDTO entityToDTO(Paiement paiement) {
+        return entityToDTO(paiement, paiement.getCaissier().getUsername());
+    }
+
+    /**
+     * Convertit un paiement en DTO avec le nom du caissier déjà connu (sans charger le caissier)
+     */
+    private PaiementDTO entityToDTO(Paiement paiement, String caissierNom) {
         PaiementDTO dto = new PaiementDTO();
         dto.setId(paiement.getId());
         dto.setPatientId(paiement.getPatient().getId());
@@ -173,7 +383,7 @@ public class CaisseService {
         dto.setModePaiement(paiement.getModePaiement());
         dto.setDate(paiement.getDate());
         dto.setCaissierId(paiement.getCaissier().getId());
-        dto.setCaissierNom(paiement.getCaissier().getUsername());
+        dto.setCaissierNom(caissierNom);
         dto.setNumeroRecu(paiement.getNumeroRecu());
         dto.setCreatedAt(paiement.getCreatedAt());
         return dto;
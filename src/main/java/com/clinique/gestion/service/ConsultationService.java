@@ -1,13 +1,15 @@
 package com.clinique.gestion.service;
 
 import com.clinique.gestion.dto.ConsultationDTO;
+import com.clinique.gestion.dto.UserDTO;
 import com.clinique.gestion.entity.Consultation;
 import com.clinique.gestion.entity.Patient;
-import com.clinique.gestion.entity.User;
+import com.clinique.gestion.exception.BadRequestException;
 import com.clinique.gestion.exception.ResourceNotFoundException;
 import com.clinique.gestion.repository.ConsultationRepository;
 import com.clinique.gestion.repository.PatientRepository;
 import com.clinique.gestion.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -21,6 +23,7 @@ import java.util.stream.Collectors;
  * Service pour la gestion des consultations
  */
 @Service
+@Timed("clinique.service")
 @Transactional
 public class ConsultationService {
 
@@ -33,6 +36,9 @@ public class ConsultationService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserReferenceCache userReferenceCache;
+
     @Autowired
     private AuditService auditService;
 
@@ -45,12 +51,16 @@ public class ConsultationService {
         Patient patient = patientRepository.findById(patientId)
                 .orElseThrow(() -> new ResourceNotFoundException("Patient", "id", patientId));
 
-        User medecin = userRepository.findById(medecinId)
+        // Médecin lu dans le cache ; l'association n'a besoin que d'une référence, sans SELECT
+        UserDTO medecin = userReferenceCache.getById(medecinId)
                 .orElseThrow(() -> new ResourceNotFoundException("Médecin", "id", medecinId));
+        if (!medecin.isEnabled()) {
+            throw new BadRequestException("Le compte du médecin " + medecin.getUsername() + " est désactivé");
+        }
 
         Consultation consultation = new Consultation();
         consultation.setPatient(patient);
-        consultation.setMedecin(medecin);
+        consultation.setMedecin(userRepository.getReferenceById(medecinId));
         consultation.setDiagnostic(diagnostic);
         consultation.setPrescription(prescription);
         consultation.setDate(LocalDateTime.now());
@@ -61,7 +71,7 @@ public class ConsultationService {
         auditService.logAction("CREATE", "Consultation", consultation.getId(),
                 "Création de la consultation pour le patient: " + patient.getNom(), request);
 
-        return entityToDTO(consultation);
+        return entityToDTO(consultation, medecin.getNom() + " " + medecin.getPrenom());
     }
 
     /**
@@ -69,7 +79,7 @@ public class ConsultationService {
      */
     public ConsultationDTO updateConsultation(Long id, String diagnostic, String prescription,
                                              HttpServletRequest request) {
-        Consultation consultation = consultationRepository.findById(id)
+        Consultation consultation = consultationRepository.findWithDetailsById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Consultation", "id", id));
 
         consultation.setDiagnostic(diagnostic);
@@ -88,8 +98,9 @@ public class ConsultationService {
     /**
      * Récupère une consultation par son ID
      */
+    @Transactional(readOnly = true)
     public ConsultationDTO getConsultationById(Long id) {
-        Consultation consultation = consultationRepository.findById(id)
+        Consultation consultation = consultationRepository.findWithDetailsById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Consultation", "id", id));
         return entityToDTO(consultation);
     }
@@ -97,9 +108,11 @@ public class ConsultationService {
     /**
      * Récupère les consultations d'un patient
      */
+    @Transactional(readOnly = true)
     public List<ConsultationDTO> getConsultationsByPatient(Long patientId) {
-        patientRepository.findById(patientId)
-                .orElseThrow(() -> new ResourceNotFoundException("Patient", "id", patientId));
+        if (!patientRepository.existsById(patientId)) {
+            throw new ResourceNotFoundException("Patient", "id", patientId);
+        }
 
         return consultationRepository.findConsultationsByPatientOrderByDateDesc(patientId)
                 .stream()
@@ -110,13 +123,14 @@ public class ConsultationService {
     /**
      * Récupère les consultations d'un médecin
      */
+    @Transactional(readOnly = true)
     public List<ConsultationDTO> getConsultationsByMedecin(Long medecinId) {
-        userRepository.findById(medecinId)
-                .orElseThrow(() -> new ResourceNotFoundException("Médecin", "id", medecinId));
+        if (userReferenceCache.getById(medecinId).isEmpty()) {
+            throw new ResourceNotFoundException("Médecin", "id", medecinId);
+        }
 
-        return consultationRepository.findByMedecinId(medecinId)
+        return consultationRepository.findByMedecinIdOrderByDateDescIdDesc(medecinId)
                 .stream()
-                .sorted((c1, c2) -> c2.getDate().compareTo(c1.getDate()))
                 .map(this::entityToDTO)
                 .collect(Collectors.toList());
     }
@@ -124,10 +138,10 @@ public class ConsultationService {
     /**
      * Récupère toutes les consultations
      */
+    @Transactional(readOnly = true)
     public List<ConsultationDTO> getAllConsultations() {
-        return consultationRepository.findAll()
+        return consultationRepository.findAllByOrderByDateDescIdDesc()
                 .stream()
-                .sorted((c1, c2) -> c2.getDate().compareTo(c1.getDate()))
                 .map(this::entityToDTO)
                 .collect(Collectors.toList());
     }
@@ -150,12 +164,20 @@ public class ConsultationService {
      * Convertit une entité Consultation en DTO
      */
     private ConsultationDTO entityToDTO(Consultation consultation) {
+        return entityToDTO(consultation,
+                consultation.getMedecin().getNom() + " " + consultation.getMedecin().getPrenom());
+    }
+
+    /**
+     * Convertit une consultation en DTO avec le nom du médecin déjà connu (sans charger le médecin)
+     */
+    private ConsultationDTO entityToDTO(Consultation consultation, String medecinNom) {
         return new ConsultationDTO(
                 consultation.getId(),
                 consultation.getPatient().getId(),
                 consultation.getPatient().getNom() + " " + consultation.getPatient().getPrenom(),
                 consultation.getMedecin().getId(),
-                consultation.getMedecin().getNom() + " " + consultation.getMedecin().getPrenom(),
+                medecinNom,
                 consultation.getDate(),
                 consultation.getMotif(),
                 consultation.getDiagnostic(),
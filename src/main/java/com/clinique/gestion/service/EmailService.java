@@ -1,5 +1,6 @@
 package com.clinique.gestion.service;
 
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -10,6 +11,7 @@ import org.springframework.stereotype.Service;
  * À remplacer par une implémentation réelle (JavaMailSender, SendGrid, etc.)
  */
 @Service
+@Timed("clinique.service")
 public class EmailService {
 
     private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
@@ -6,6 +6,9 @@ import com.clinique.gestion.exception.BadRequestException;
 import com.clinique.gestion.exception.ResourceNotFoundException;
 import com.clinique.gestion.repository.PasswordResetTokenRepository;
 import com.clinique.gestion.repository.UserRepository;
+import com.clinique.gestion.security.service.PrincipalCache;
+import com.clinique.gestion.security.service.TokenVersionRegistry;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -18,6 +21,7 @@ import java.util.UUID;
  * Service pour la gestion de la réinitialisation de mot de passe
  */
 @Service
+@Timed("clinique.service")
 @Transactional
 public class PasswordResetService {
 
@@ -33,6 +37,12 @@ public class PasswordResetService {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+
     private static final int TOKEN_EXPIRY_HOURS = 24;
 
     /**
@@ -87,7 +97,10 @@ public class PasswordResetService {
 
         User user = token.getUser();
         user.setPassword(passwordEncoder.encode(newPassword));
+        user.incrementTokenVersion();
         userRepository.save(user);
+        principalCache.evictAfterCommit(user.getUsername());
+        tokenVersionRegistry.onUserChanged(user);
 
         // Marquer le token comme utilisé
         token.setUsed(true);
@@ -0,0 +1,17 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.entity.Consultation;
+import com.clinique.gestion.entity.Paiement;
+import com.clinique.gestion.entity.Patient;
+import com.clinique.gestion.entity.Ticket;
+
+import java.util.List;
+
+/**
+ * Données d'un dossier patient à imprimer, entièrement chargées : consultations (avec médecin),
+ * tickets et paiements (avec ticket et caissier), du plus ancien au plus récent.
+ * Peut être rendu hors transaction.
+ */
+public record PatientDossier(Patient patient, List<Consultation> consultations, List<Ticket> tickets,
+                             List<Paiement> paiements) {
+}
@@ -0,0 +1,186 @@
+package com.clinique.gestion.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache des dossiers PDF rendus, indexé par (patient, version des données).
+ * <p>
+ * Deux niveaux bornés en octets : les PDF récents en mémoire
+ * (patients.dossier.cache.memory-mb) ; ceux qui en sont évincés sont écrits sur disque
+ * et relus par projection mémoire (patients.dossier.cache.disk-mb). Une nouvelle version
+ * d'un dossier retire les précédentes. Statistiques exposées sous cache.*
+ * (cache=dossier-pdf-memory et cache=dossier-pdf-disk).
+ */
+@Component
+public class PatientDossierPdfCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientDossierPdfCache.class);
+
+    private static final String FILE_SUFFIX = ".pdf";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${patients.dossier.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${patients.dossier.cache.memory-mb:64}")
+    private long memoryMb;
+
+    @Value("${patients.dossier.cache.disk-mb:512}")
+    private long diskMb;
+
+    @Value("${patients.dossier.cache.directory:data/dossier-cache}")
+    private String directory;
+
+    private record Key(long patientId, String version) {
+    }
+
+    private record DiskEntry(Path file, MappedByteBuffer content) {
+    }
+
+    private Cache<Key, byte[]> memory;
+    private Cache<Key, DiskEntry> disk;
+
+    // Dernière version servie par patient, pour retirer les versions périmées
+    private final Map<Long, String> latestVersions = new ConcurrentHashMap<>();
+
+    private final AtomicLong fileCounter = new AtomicLong();
+
+    private Path cacheDirectory;
+
+    @PostConstruct
+    public void init() {
+        cacheDirectory = Path.of(directory);
+        disk = Caffeine.newBuilder()
+                .maximumWeight(diskMb * 1024 * 1024)
+                .weigher((Key key, DiskEntry entry) -> entry.content().capacity())
+                .removalListener((Key key, DiskEntry entry, RemovalCause cause) -> {
+                    if (entry != null) {
+                        deleteQuietly(entry.file());
+                    }
+                })
+                .recordStats()
+                .build();
+        memory = Caffeine.newBuilder()
+                .maximumWeight(memoryMb * 1024 * 1024)
+                .weigher((Key key, byte[] content) -> content.length)
+                .evictionListener((Key key, byte[] content, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE && key != null && content != null) {
+                        spill(key, content);
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memory, "dossier-pdf-memory");
+        CaffeineCacheMetrics.monitor(meterRegistry, disk, "dossier-pdf-disk");
+        if (enabled && diskMb > 0) {
+            clearDirectory();
+        }
+    }
+
+    /**
+     * Retourne le PDF d'une version de dossier (tampon en lecture seule), rendu par
+     * le renderer uniquement s'il n'est dans aucun des deux niveaux
+     */
+    public ByteBuffer get(long patientId, String version, Supplier<byte[]> renderer) {
+        if (!enabled) {
+            return ByteBuffer.wrap(renderer.get()).asReadOnlyBuffer();
+        }
+        Key key = new Key(patientId, version);
+        String previous = latestVersions.put(patientId, version);
+        if (previous != null && !previous.equals(version)) {
+            Key stale = new Key(patientId, previous);
+            memory.invalidate(stale);
+            disk.invalidate(stale);
+        }
+
+        DiskEntry spilled = disk.getIfPresent(key);
+        if (spilled != null) {
+            return spilled.content().asReadOnlyBuffer();
+        }
+        // Un seul rendu par clé même si plusieurs requêtes arrivent ensemble
+        return ByteBuffer.wrap(memory.get(key, k -> renderer.get())).asReadOnlyBuffer();
+    }
+
+    /**
+     * Retire toutes les versions d'un dossier
+     */
+    public void evict(long patientId) {
+        latestVersions.remove(patientId);
+        memory.asMap().keySet().removeIf(key -> key.patientId() == patientId);
+        disk.asMap().keySet().removeIf(key -> key.patientId() == patientId);
+    }
+
+    /**
+     * Écrit sur disque un PDF évincé de la mémoire, sauf s'il est périmé entre-temps
+     */
+    private void spill(Key key, byte[] content) {
+        if (diskMb <= 0 || !key.version().equals(latestVersions.get(key.patientId()))) {
+            return;
+        }
+        Path file = cacheDirectory.resolve(key.patientId() + "-" + fileCounter.incrementAndGet() + FILE_SUFFIX);
+        try {
+            Files.createDirectories(cacheDirectory);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer source = ByteBuffer.wrap(content);
+                while (source.hasRemaining()) {
+                    channel.write(source);
+                }
+                // La projection reste valide après la fermeture du canal
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, content.length);
+                disk.put(key, new DiskEntry(file, mapped));
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Écriture du dossier PDF {} dans le cache disque impossible: {}", key.patientId(), e.getMessage());
+            deleteQuietly(file);
+        }
+    }
+
+    private void clearDirectory() {
+        if (!Files.isDirectory(cacheDirectory)) {
+            return;
+        }
+        // Fichiers laissés par une exécution précédente : leurs versions ne sont plus connues
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDirectory, "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                deleteQuietly(file);
+            }
+        } catch (IOException e) {
+            logger.warn("Nettoyage du cache disque des dossiers PDF impossible: {}", e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("Suppression de {} impossible: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.entity.Consultation;
+import com.clinique.gestion.entity.Paiement;
+import com.clinique.gestion.entity.Patient;
+import com.clinique.gestion.entity.Ticket;
+import com.clinique.gestion.entity.User;
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Chunk;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.SplitCharacter;
+import com.itextpdf.text.pdf.DefaultSplitCharacter;
+import com.itextpdf.text.pdf.PdfChunk;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfWriter;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Mise en page PDF d'un dossier patient.
+ * <p>
+ * Les polices et les gabarits de tableaux sont créés une seule fois et partagés : ils ne sont
+ * jamais modifiés après initialisation, ce qui permet le rendu simultané de plusieurs dossiers.
+ * Le document est écrit directement dans le flux fourni, qui n'est pas fermé.
+ */
+@Component
+public class PatientDossierPdfRenderer {
+
+    private static final Font TITLE_FONT = new Font(Font.FontFamily.HELVETICA, 18, Font.BOLD);
+    private static final Font HEADING_FONT = new Font(Font.FontFamily.HELVETICA, 14, Font.BOLD);
+    private static final Font CELL_FONT = new Font(Font.FontFamily.HELVETICA, 10);
+    private static final Font HEADER_CELL_FONT = new Font(Font.FontFamily.HELVETICA, 10, Font.BOLD);
+    private static final Font EMPTY_FONT = new Font(Font.FontFamily.HELVETICA, 10, Font.ITALIC, BaseColor.GRAY);
+    private static final Font FOOTER_FONT = new Font(Font.FontFamily.HELVETICA, 10, Font.ITALIC);
+
+    private static final BaseColor HEADER_BACKGROUND = new BaseColor(230, 230, 230);
+
+    /**
+     * Coupure de ligne sur les blancs et les tirets, comme DefaultSplitCharacter mais sans
+     * sa recherche de dates jj-mm-aaaa : elle reconstruit et analyse par expression régulière
+     * tout le texte du segment à chaque caractère testé (coût quadratique sur les numéros
+     * PAT-/TKT-/REC-). Les dates du dossier sont au format jj/mm/aaaa.
+     */
+    private static final SplitCharacter SPLIT_CHARACTER = new DefaultSplitCharacter() {
+        @Override
+        public boolean isSplitCharacter(int start, int current, int end, char[] cc, PdfChunk[] ck) {
+            char c = getCurrentCharacter(current, cc, ck);
+            if (c <= ' ' || c == '-' || c == '\u2010') {
+                return true;
+            }
+            if (c < 0x2002) {
+                return false;
+            }
+            return c <= 0x200b
+                    || (c >= 0x2e80 && c < 0xd7a0)
+                    || (c >= 0xf900 && c < 0xfb00)
+                    || (c >= 0xfe30 && c < 0xfe50)
+                    || (c >= 0xff61 && c < 0xffa0);
+        }
+    };
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    /**
+     * Gabarit d'un tableau de section : en-têtes et largeurs relatives des colonnes
+     */
+    private record TableTemplate(String[] headers, float[] widths) {
+
+        PdfPTable newTable() throws DocumentException {
+            PdfPTable table = new PdfPTable(widths.length);
+            table.setWidthPercentage(100);
+            table.setWidths(widths);
+            table.setHeaderRows(1);
+            for (String header : headers) {
+                PdfPCell cell = new PdfPCell(phrase(header, HEADER_CELL_FONT));
+                cell.setPadding(4);
+                cell.setBackgroundColor(HEADER_BACKGROUND);
+                table.addCell(cell);
+            }
+            return table;
+        }
+    }
+
+    private static final float[] INFO_WIDTHS = {1f, 2f};
+
+    private static final TableTemplate CONSULTATIONS = new TableTemplate(
+            new String[]{"Date", "Médecin", "Motif", "Diagnostic", "Prescription"},
+            new float[]{1.3f, 1.5f, 2f, 2f, 2f});
+
+    private static final TableTemplate TICKETS = new TableTemplate(
+            new String[]{"Numéro", "Service", "Statut", "Date"},
+            new float[]{2f, 2f, 1.5f, 1.5f});
+
+    private static final TableTemplate PAIEMENTS = new TableTemplate(
+            new String[]{"Reçu", "Date", "Montant", "Mode", "Ticket"},
+            new float[]{2f, 1.5f, 1.2f, 1.2f, 2f});
+
+    /**
+     * Écrit le dossier en PDF dans le flux (laissé ouvert)
+     */
+    public void render(PatientDossier dossier, OutputStream out) throws IOException {
+        Document document = new Document();
+        try {
+            PdfWriter writer = PdfWriter.getInstance(document, out);
+            writer.setCloseStream(false);
+            document.open();
+
+            Paragraph title = new Paragraph("DOSSIER PATIENT", TITLE_FONT);
+            title.setAlignment(Element.ALIGN_CENTER);
+            document.add(title);
+            document.add(new Paragraph(" "));
+
+            addInformations(document, dossier.patient());
+            addConsultations(document, dossier);
+            addTickets(document, dossier);
+            addPaiements(document, dossier);
+
+            document.add(new Paragraph("Document généré le: " + DATE_TIME_FORMAT.format(LocalDateTime.now()),
+                    FOOTER_FONT));
+            document.close();
+        } catch (DocumentException e) {
+            throw new IOException("Génération du dossier PDF impossible: " + e.getMessage(), e);
+        }
+    }
+
+    private void addInformations(Document document, Patient patient) throws DocumentException {
+        document.add(new Paragraph("Informations Personnelles", HEADING_FONT));
+        PdfPTable table = new PdfPTable(INFO_WIDTHS.length);
+        table.setWidthPercentage(100);
+        table.setWidths(INFO_WIDTHS);
+        addInfoRow(table, "Numéro Patient:", patient.getNumero());
+        addInfoRow(table, "Nom:", patient.getNom());
+        addInfoRow(table, "Prénom:", patient.getPrenom());
+        addInfoRow(table, "Date de Naissance:",
+                patient.getDateNaissance() != null ? DATE_FORMAT.format(patient.getDateNaissance()) : "");
+        addInfoRow(table, "Téléphone:", patient.getTelephone() != null ? patient.getTelephone() : "-");
+        addInfoRow(table, "Adresse:", patient.getAdresse() != null ? patient.getAdresse() : "-");
+        document.add(table);
+        document.add(new Paragraph(" "));
+    }
+
+    private void addConsultations(Document document, PatientDossier dossier) throws DocumentException {
+        document.add(new Paragraph("Consultations", HEADING_FONT));
+        if (dossier.consultations().isEmpty()) {
+            addEmpty(document, "Aucune consultation");
+            return;
+        }
+        PdfPTable table = CONSULTATIONS.newTable();
+        for (Consultation consultation : dossier.consultations()) {
+            addCell(table, formatDateTime(consultation.getDate()));
+            addCell(table, fullName(consultation.getMedecin()));
+            addCell(table, consultation.getMotif());
+            addCell(table, consultation.getDiagnostic());
+            addCell(table, consultation.getPrescription());
+        }
+        document.add(table);
+        document.add(new Paragraph(" "));
+    }
+
+    private void addTickets(Document document, PatientDossier dossier) throws DocumentException {
+        document.add(new Paragraph("Tickets", HEADING_FONT));
+        if (dossier.tickets().isEmpty()) {
+            addEmpty(document, "Aucun ticket");
+            return;
+        }
+        PdfPTable table = TICKETS.newTable();
+        for (Ticket ticket : dossier.tickets()) {
+            addCell(table, ticket.getNumero());
+            addCell(table, ticket.getService());
+            addCell(table, ticket.getStatut() != null ? ticket.getStatut().name() : null);
+            addCell(table, formatDateTime(ticket.getCreatedAt()));
+        }
+        document.add(table);
+        document.add(new Paragraph(" "));
+    }
+
+    private void addPaiements(Document document, PatientDossier dossier) throws DocumentException {
+        document.add(new Paragraph("Paiements", HEADING_FONT));
+        if (dossier.paiements().isEmpty()) {
+            addEmpty(document, "Aucun paiement");
+            return;
+        }
+        PdfPTable table = PAIEMENTS.newTable();
+        for (Paiement paiement : dossier.paiements()) {
+            addCell(table, paiement.getNumeroRecu());
+            addCell(table, formatDateTime(paiement.getDate()));
+            PdfPCell montant = cell(paiement.getMontant() != null ? paiement.getMontant().toPlainString() : null);
+            montant.setHorizontalAlignment(Element.ALIGN_RIGHT);
+            table.addCell(montant);
+            addCell(table, paiement.getModePaiement() != null ? paiement.getModePaiement().name() : null);
+            addCell(table, paiement.getTicket() != null ? paiement.getTicket().getNumero() : null);
+        }
+        document.add(table);
+        document.add(new Paragraph(" "));
+    }
+
+    private void addEmpty(Document document, String text) throws DocumentException {
+        document.add(new Paragraph(text, EMPTY_FONT));
+        document.add(new Paragraph(" "));
+    }
+
+    /**
+     * Ajoute une ligne libellé / valeur dans le tableau des informations
+     */
+    private void addInfoRow(PdfPTable table, String label, String value) {
+        PdfPCell cellLabel = new PdfPCell(phrase(label, CELL_FONT));
+        cellLabel.setPadding(5);
+        table.addCell(cellLabel);
+
+        PdfPCell cellValue = new PdfPCell(phrase(value, CELL_FONT));
+        cellValue.setPadding(5);
+        table.addCell(cellValue);
+    }
+
+    private void addCell(PdfPTable table, String value) {
+        table.addCell(cell(value));
+    }
+
+    private static PdfPCell cell(String value) {
+        PdfPCell cell = new PdfPCell(phrase(value, CELL_FONT));
+        cell.setPadding(4);
+        return cell;
+    }
+
+    private static Phrase phrase(String value, Font font) {
+        Chunk chunk = new Chunk(value != null ? value : "", font);
+        chunk.setSplitCharacter(SPLIT_CHARACTER);
+        return new Phrase(chunk);
+    }
+
+    private static String formatDateTime(LocalDateTime value) {
+        return value != null ? DATE_TIME_FORMAT.format(value) : null;
+    }
+
+    private static String fullName(User user) {
+        if (user == null) {
+            return null;
+        }
+        String nom = user.getNom() != null ? user.getNom() : "";
+        String prenom = user.getPrenom() != null ? user.getPrenom() : "";
+        String name = (prenom + " " + nom).trim();
+        return name.isEmpty() ? user.getUsername() : name;
+    }
+}
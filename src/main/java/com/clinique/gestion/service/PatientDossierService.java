@@ -0,0 +1,359 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.entity.Consultation;
+import com.clinique.gestion.entity.Paiement;
+import com.clinique.gestion.entity.Patient;
+import com.clinique.gestion.entity.Ticket;
+import com.clinique.gestion.exception.BadRequestException;
+import com.clinique.gestion.exception.ResourceNotFoundException;
+import com.clinique.gestion.repository.ConsultationRepository;
+import com.clinique.gestion.repository.PaiementRepository;
+import com.clinique.gestion.repository.PatientRepository;
+import com.clinique.gestion.repository.TicketRepository;
+import com.clinique.gestion.util.BackgroundThreads;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Génération des dossiers patients en PDF, à l'unité ou par lots dans une archive ZIP.
+ * <p>
+ * En mode lot, les patients sont traités par tranches de {@code patients.dossier.batch-size} :
+ * chaque tranche est chargée en une requête par table (patients, consultations, tickets,
+ * paiements), puis ses dossiers sont rendus en parallèle sur un pool borné
+ * ({@code patients.dossier.threads}) et ajoutés à l'archive dans l'ordre demandé.
+ * La mémoire utilisée est bornée par la taille d'une tranche, quel que soit le nombre de dossiers.
+ */
+@Service
+@Timed("clinique.service")
+public class PatientDossierService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientDossierService.class);
+
+    // Empreinte des données imprimées : toute modification du patient, ajout, modification
+    // ou suppression d'une consultation, d'un ticket ou d'un paiement la change
+    private static final String VERSION_SQL =
+            "SELECT concat_ws('|', p.updated_at, " +
+            "(SELECT concat_ws('/', COUNT(*), MAX(updated_at)) FROM consultations WHERE patient_id = p.id), " +
+            "(SELECT concat_ws('/', COUNT(*), MAX(updated_at)) FROM tickets WHERE patient_id = p.id), " +
+            "(SELECT concat_ws('/', COUNT(*), MAX(created_at)) FROM paiements WHERE patient_id = p.id)) " +
+            "FROM patients p WHERE p.id = ?";
+
+    private static final DateTimeFormatter ARCHIVE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private ConsultationRepository consultationRepository;
+
+    @Autowired
+    private TicketRepository ticketRepository;
+
+    @Autowired
+    private PaiementRepository paiementRepository;
+
+    @Autowired
+    private PatientDossierPdfRenderer renderer;
+
+    @Autowired
+    private PatientDossierPdfCache pdfCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private BackgroundThreads backgroundThreads;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${patients.dossier.batch-size:100}")
+    private int batchSize;
+
+    @Value("${patients.dossier.threads:4}")
+    private int threads;
+
+    @Value("${patients.dossier.max-patients:20000}")
+    private int maxPatients;
+
+    @Value("${patients.dossier.archive-directory:data/dossiers}")
+    private String archiveDirectory;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    private ThreadPoolExecutor executor;
+
+    // Archivages sur disque, un à la fois, hors des threads de requête
+    private ExecutorService archiveExecutor;
+
+    private final AtomicLong archiveCounter = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        archiveExecutor = Executors.newSingleThreadExecutor(backgroundThreads.factory("dossier-archive"));
+        AtomicInteger counter = new AtomicInteger();
+        // Rendu CPU : threads plateforme même en mode virtuel, la taille du pool borne le parallélisme.
+        // File bornée ; si plusieurs lots saturent le pool, le thread appelant rend lui-même
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(batchSize, 1)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "dossier-pdf-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        archiveExecutor.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Version courante du dossier d'un patient (empreinte de ses données), servant d'ETag
+     */
+    @Transactional(readOnly = true)
+    public String dossierVersion(Long patientId) {
+        List<String> fingerprints = jdbcTemplate.queryForList(VERSION_SQL, String.class, patientId);
+        if (fingerprints.isEmpty()) {
+            throw new ResourceNotFoundException("Patient", "id", patientId);
+        }
+        return DigestUtils.md5DigestAsHex(fingerprints.get(0).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * PDF du dossier dans cette version, servi par le cache ; rendu seulement si les données ont changé
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ByteBuffer dossierPdf(Long patientId, String version) {
+        return pdfCache.get(patientId, version, () -> {
+            List<PatientDossier> dossiers = readOnlyTransaction.execute(status -> loadBatch(List.of(patientId)));
+            if (dossiers == null || dossiers.isEmpty()) {
+                throw new ResourceNotFoundException("Patient", "id", patientId);
+            }
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+            try {
+                renderer.render(dossiers.get(0), buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return buffer.toByteArray();
+        });
+    }
+
+    /**
+     * Vérifie une demande de lot et retourne les ids sans doublon, dans l'ordre demandé
+     */
+    public List<Long> checkBatch(List<Long> patientIds) {
+        List<Long> ids = patientIds == null ? new ArrayList<>() : new ArrayList<>(new LinkedHashSet<>(patientIds));
+        ids.removeIf(id -> id == null);
+        if (ids.isEmpty()) {
+            throw new BadRequestException("La liste des patients est vide");
+        }
+        if (ids.size() > maxPatients) {
+            throw new BadRequestException("Trop de patients dans le lot: " + ids.size()
+                    + " (maximum " + maxPatients + ")");
+        }
+        return ids;
+    }
+
+    /**
+     * Écrit les dossiers des patients dans une archive ZIP en flux (un PDF par patient).
+     * Les ids inconnus sont ignorés. Retourne le nombre de dossiers écrits.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int writeZip(List<Long> patientIds, OutputStream out) throws IOException {
+        long startNanos = System.nanoTime();
+        int written = 0;
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // Les PDF sont déjà compressés : entrées stockées sans recompression
+        zip.setMethod(ZipOutputStream.STORED);
+        for (int from = 0; from < patientIds.size(); from += batchSize) {
+            List<Long> chunk = patientIds.subList(from, Math.min(from + batchSize, patientIds.size()));
+            List<PatientDossier> dossiers = readOnlyTransaction.execute(status -> {
+                List<PatientDossier> loaded = loadBatch(chunk);
+                // Contexte de persistance éventuellement ouvert pour toute la requête :
+                // détacher la tranche pour ne pas accumuler les entités
+                entityManager.clear();
+                return loaded;
+            });
+
+            List<Future<byte[]>> pdfs = new ArrayList<>(dossiers.size());
+            for (PatientDossier dossier : dossiers) {
+                pdfs.add(executor.submit(() -> {
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+                    renderer.render(dossier, buffer);
+                    return buffer.toByteArray();
+                }));
+            }
+            try {
+                for (int i = 0; i < dossiers.size(); i++) {
+                    addEntry(zip, "dossier_patient_" + dossiers.get(i).patient().getId() + ".pdf", await(pdfs.get(i)));
+                    written++;
+                }
+            } finally {
+                pdfs.forEach(pdf -> pdf.cancel(true));
+            }
+        }
+        zip.finish();
+        zip.flush();
+
+        long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        if (written < patientIds.size()) {
+            logger.warn("Lot de dossiers PDF: {} patient(s) introuvable(s) ignoré(s)", patientIds.size() - written);
+        }
+        logger.info("Lot de dossiers PDF: {} dossier(s) en {} ms ({} dossiers/s)",
+                written, elapsedMs, written * 1000L / elapsedMs);
+        return written;
+    }
+
+    /**
+     * Lance en arrière-plan l'écriture de l'archive ZIP des dossiers sur disque
+     * (patients.dossier.archive-directory) et retourne le nom du fichier. L'archive est écrite
+     * sous le suffixe .part et n'apparaît sous son nom définitif qu'une fois complète.
+     */
+    public String archiveDossiers(List<Long> patientIds) {
+        String name = "dossiers-" + ARCHIVE_NAME_FORMAT.format(LocalDateTime.now())
+                + "-" + archiveCounter.incrementAndGet() + ".zip";
+        archiveExecutor.execute(() -> {
+            try {
+                writeArchive(patientIds, Path.of(archiveDirectory), name);
+            } catch (Exception e) {
+                logger.error("Archivage des dossiers patients {} en échec: {}", name, e.getMessage(), e);
+            }
+        });
+        return name;
+    }
+
+    private void writeArchive(List<Long> patientIds, Path directory, String name) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(name);
+        Path partial = directory.resolve(name + ".part");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial), 64 * 1024)) {
+            writeZip(patientIds, out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Archive des dossiers patients écrite: {}", target);
+    }
+
+    /**
+     * Charge les dossiers d'un lot de patients : une requête par table, quelle que soit la taille du lot.
+     * Les dossiers sont retournés dans l'ordre des ids ; les ids inconnus sont ignorés.
+     */
+    private List<PatientDossier> loadBatch(List<Long> patientIds) {
+        Map<Long, Patient> patients = new HashMap<>();
+        for (Patient patient : patientRepository.findAllById(patientIds)) {
+            patients.put(patient.getId(), patient);
+        }
+        if (patients.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, List<Consultation>> consultations = new HashMap<>();
+        for (Consultation consultation : consultationRepository.findByPatientIdInOrderByDateAscIdAsc(patients.keySet())) {
+            consultations.computeIfAbsent(consultation.getPatient().getId(), id -> new ArrayList<>()).add(consultation);
+        }
+        Map<Long, List<Ticket>> tickets = new HashMap<>();
+        for (Ticket ticket : ticketRepository.findByPatientIdInOrderByCreatedAtAscIdAsc(patients.keySet())) {
+            tickets.computeIfAbsent(ticket.getPatient().getId(), id -> new ArrayList<>()).add(ticket);
+        }
+        Map<Long, List<Paiement>> paiements = new HashMap<>();
+        for (Paiement paiement : paiementRepository.findByPatientIdInOrderByDateAscIdAsc(patients.keySet())) {
+            paiements.computeIfAbsent(paiement.getPatient().getId(), id -> new ArrayList<>()).add(paiement);
+        }
+
+        List<PatientDossier> dossiers = new ArrayList<>(patients.size());
+        for (Long id : patientIds) {
+            Patient patient = patients.get(id);
+            if (patient != null) {
+                dossiers.add(new PatientDossier(patient,
+                        consultations.getOrDefault(id, List.of()),
+                        tickets.getOrDefault(id, List.of()),
+                        paiements.getOrDefault(id, List.of())));
+            }
+        }
+        return dossiers;
+    }
+
+    private static byte[] await(Future<byte[]> pdf) throws IOException {
+        try {
+            return pdf.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Génération des dossiers interrompue", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IOException("Génération d'un dossier PDF impossible: " + cause.getMessage(), cause);
+        }
+    }
+
+    private static void addEntry(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+    }
+}
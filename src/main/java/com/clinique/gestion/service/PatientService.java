@@ -1,35 +1,64 @@
 package com.clinique.gestion.service;
 
 import com.clinique.gestion.dto.PatientDTO;
+import com.clinique.gestion.dto.PatientImportDTO;
+import com.clinique.gestion.dto.PatientPageDTO;
+import com.clinique.gestion.exception.BadRequestException;
 import com.clinique.gestion.entity.Patient;
 import com.clinique.gestion.exception.ResourceNotFoundException;
 import com.clinique.gestion.repository.PatientRepository;
+import com.clinique.gestion.util.CsvReader;
 import com.clinique.gestion.util.NumeroGenerator;
-import com.itextpdf.text.Document;
-import com.itextpdf.text.DocumentException;
-import com.itextpdf.text.Element;
-import com.itextpdf.text.Font;
-import com.itextpdf.text.Paragraph;
-import com.itextpdf.text.pdf.PdfPCell;
-import com.itextpdf.text.pdf.PdfPTable;
-import com.itextpdf.text.pdf.PdfWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.ByteArrayOutputStream;
-import java.time.LocalDateTime;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * Service pour la gestion des patients
  */
 @Service
+@Timed("clinique.service")
 @Transactional
 public class PatientService {
 
+    private static final Logger logger = LoggerFactory.getLogger(PatientService.class);
+
     @Autowired
     private PatientRepository patientRepository;
 
@@ -39,18 +68,75 @@ public class PatientService {
     @Autowired
     private AuditService auditService;
 
+    @Autowired
+    private TicketQueueEngine queueEngine;
+
+    @Autowired
+    private PatientTypeaheadIndex typeaheadIndex;
+
+    @Autowired
+    private CaisseLedger caisseLedger;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${patients.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${patients.page.max-size:500}")
+    private int maxPageSize;
+
+    @Value("${patients.search.default-size:20}")
+    private int defaultSearchSize;
+
+    @Value("${patients.search.max-results:200}")
+    private int maxSearchResults;
+
+    @Value("${patients.typeahead.default-size:10}")
+    private int defaultSuggestSize;
+
+    @Value("${patients.typeahead.max-size:50}")
+    private int maxSuggestSize;
+
+    @Value("${patients.export.fetch-size:1000}")
+    private int exportFetchSize;
+
+    @Value("${patients.import.max-rows:100000}")
+    private int maxImportRows;
+
+    // Taille des lots d'INSERT de l'import, alignée sur les lots JDBC de Hibernate
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int importBatchSize;
+
+    private static final List<String> IMPORT_REQUIRED_COLUMNS = List.of("nom", "prenom", "date_naissance");
+    private static final DateTimeFormatter IMPORT_DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/uuuu")
+            .withResolverStyle(ResolverStyle.STRICT);
+    private static final int IMPORT_LOOKUP_SIZE = 1000;
+    private static final int IMPORT_MAX_REPORTED_ERRORS = 100;
+
+    // Séparateur des champs du curseur (caractère de contrôle, absent des noms)
+    private static final char CURSOR_SEPARATOR = '\u001F';
+
+    private static final String EXPORT_SQL =
+            "SELECT id, numero, nom, prenom, date_naissance, telephone, adresse " +
+            "FROM patients ORDER BY nom, prenom, id";
+
     /**
      * Crée un nouveau patient
      */
     public PatientDTO createPatient(PatientDTO patientDTO, HttpServletRequest request) {
         // Générer le numéro patient si non fourni
         if (patientDTO.getNumero() == null || patientDTO.getNumero().isEmpty()) {
-            String numero = numeroGenerator.generatePatientNumero();
-            // Vérifier l'unicité
-            while (patientRepository.existsByNumero(numero)) {
-                numero = numeroGenerator.generatePatientNumero();
-            }
-            patientDTO.setNumero(numero);
+            patientDTO.setNumero(numeroGenerator.generatePatientNumero());
         } else {
             // Vérifier que le numéro n'existe pas déjà
             if (patientRepository.existsByNumero(patientDTO.getNumero())) {
@@ -65,10 +151,66 @@ public class PatientService {
         // Audit
         auditService.logAction("CREATE", "Patient", patient.getId(),
                 "Création du patient: " + patient.getNom() + " " + patient.getPrenom(), request);
+        typeaheadIndex.onPatientSaved(patient);
 
         return entityToDTO(patient);
     }
 
+    /**
+     * Importe des patients depuis un fichier CSV (en-tête : nom, prenom, date_naissance et,
+     * facultatifs, numero, telephone, adresse). Les lignes invalides sont rejetées avec leur motif ;
+     * les numéros manquants sont réservés en une seule fois et les patients insérés par lots JDBC.
+     */
+    public PatientImportDTO importPatients(InputStream in, HttpServletRequest request) {
+        long start = System.nanoTime();
+        PatientImportDTO result = new PatientImportDTO();
+        List<PatientDTO> rows = readImportFile(in, result);
+
+        // Numéros fournis déjà attribués en base
+        List<String> provided = rows.stream().map(PatientDTO::getNumero).filter(numero -> numero != null).toList();
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < provided.size(); from += IMPORT_LOOKUP_SIZE) {
+            existing.addAll(patientRepository.findExistingNumeros(
+                    provided.subList(from, Math.min(from + IMPORT_LOOKUP_SIZE, provided.size()))));
+        }
+        List<PatientDTO> accepted = new ArrayList<>(rows.size());
+        for (PatientDTO row : rows) {
+            if (row.getNumero() != null && existing.contains(row.getNumero())) {
+                reject(result, row.getId(), "un patient avec le numéro " + row.getNumero() + " existe déjà");
+            } else {
+                accepted.add(row);
+            }
+        }
+
+        // Une seule réservation pour tous les numéros manquants, validée avant les insertions
+        Iterator<String> numeros = numeroGenerator.generatePatientNumeros(
+                (int) accepted.stream().filter(row -> row.getNumero() == null).count()).iterator();
+        int batchSize = Math.max(importBatchSize, 1);
+        for (int from = 0; from < accepted.size(); from += batchSize) {
+            List<Patient> chunk = new ArrayList<>(batchSize);
+            for (PatientDTO row : accepted.subList(from, Math.min(from + batchSize, accepted.size()))) {
+                if (row.getNumero() == null) {
+                    row.setNumero(numeros.next());
+                }
+                chunk.add(dtoToEntity(row));
+            }
+            // Identifiants déjà réservés par la séquence : un seul lot d'INSERT par tranche
+            patientRepository.saveAll(chunk);
+            entityManager.flush();
+            chunk.forEach(typeaheadIndex::onPatientSaved);
+            entityManager.clear();
+        }
+        result.setImported(accepted.size());
+        result.setDurationMs((System.nanoTime() - start) / 1_000_000);
+
+        auditService.logAction("IMPORT", "Patient", null, "Import de " + result.getImported()
+                + " patient(s), " + result.getRejected() + " ligne(s) rejetée(s)", request);
+        logger.info("Import de patients: {} importé(s), {} rejeté(s) en {} ms ({} lignes/s)",
+                result.getImported(), result.getRejected(), result.getDurationMs(),
+                Math.round(result.getImported() * 1000.0 / Math.max(result.getDurationMs(), 1)));
+        return result;
+    }
+
     /**
      * Met à jour un patient existant
      */
@@ -95,6 +237,7 @@ public class PatientService {
         // Audit
         auditService.logAction("UPDATE", "Patient", patient.getId(),
                 "Modification du patient: " + patient.getNom() + " " + patient.getPrenom(), request);
+        typeaheadIndex.onPatientSaved(patient);
 
         return entityToDTO(patient);
     }
@@ -120,11 +263,33 @@ public class PatientService {
     }
 
     /**
-     * Recherche des patients
+     * Recherche des patients (classés par pertinence, paginés, au plus patients.search.max-results)
      */
     @Transactional(readOnly = true)
-    public List<PatientDTO> searchPatients(String search) {
-        return patientRepository.searchPatients(search)
+    public List<PatientDTO> searchPatients(String search, Integer page, Integer size) {
+        int pageSize = size == null ? defaultSearchSize : Math.max(1, Math.min(size, maxSearchResults));
+        int offset = Math.max(0, page == null ? 0 : page) * pageSize;
+        int limit = Math.min(pageSize, maxSearchResults - offset);
+        if (limit <= 0) {
+            return List.of();
+        }
+        return patientRepository.searchRanked(search, offset, limit)
+                .stream()
+                .map(this::entityToDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Suggestions de saisie semi-automatique (nom, prénom, numéro, téléphone), servies
+     * par l'index en mémoire sans requête SQL ; par la recherche en base tant qu'il n'est pas prêt
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<PatientDTO> suggestPatients(String query, Integer limit) {
+        int max = limit == null ? defaultSuggestSize : Math.max(1, Math.min(limit, maxSuggestSize));
+        if (typeaheadIndex.isReady()) {
+            return typeaheadIndex.suggest(query, max);
+        }
+        return patientRepository.searchRanked(query, 0, max)
                 .stream()
                 .map(this::entityToDTO)
                 .collect(Collectors.toList());
@@ -141,6 +306,63 @@ public class PatientService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Récupère une page de patients triés par (nom, prénom, id), après le curseur donné
+     */
+    @Transactional(readOnly = true)
+    public PatientPageDTO getPatientsPage(String cursor, Integer size) {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+
+        // Une ligne de plus que la page pour savoir s'il reste des patients
+        List<Patient> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = patientRepository.findFirstPage(pageSize + 1);
+        } else {
+            String[] key = decodeCursor(cursor);
+            rows = patientRepository.findPageAfter(key[0], key[1], Long.valueOf(key[2]), pageSize + 1);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Patient> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore ? encodeCursor(page.get(page.size() - 1)) : null;
+
+        List<PatientDTO> items = page.stream()
+                .map(this::entityToDTO)
+                .collect(Collectors.toList());
+        return new PatientPageDTO(items, nextCursor, pageSize);
+    }
+
+    /**
+     * Exporte tous les patients en NDJSON (un objet JSON par ligne), lus par un curseur
+     * JDBC et écrits au fil de l'eau sans construire la liste en mémoire
+     */
+    @Transactional(readOnly = true)
+    public long exportPatients(OutputStream out) throws IOException {
+        long[] count = {0};
+        BufferedOutputStream buffer = new BufferedOutputStream(out, 64 * 1024);
+        try {
+            jdbcTemplate.query(connection -> {
+                // Curseur côté serveur : le driver PostgreSQL lit par lots de fetchSize lignes
+                PreparedStatement statement = connection.prepareStatement(EXPORT_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(exportFetchSize);
+                return statement;
+            }, (ResultSet rs) -> {
+                try {
+                    buffer.write(objectMapper.writeValueAsBytes(rowToDTO(rs)));
+                    buffer.write('\n');
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        buffer.flush();
+        return count[0];
+    }
+
     /**
      * Supprime un patient
      */
@@ -152,7 +374,15 @@ public class PatientService {
         auditService.logAction("DELETE", "Patient", patient.getId(),
                 "Suppression du patient: " + patient.getNom() + " " + patient.getPrenom(), request);
 
+        // Les paiements du patient sont supprimés en cascade : ses jours du journal de caisse
+        // sont reconstruits dans la même transaction
+        List<LocalDate> paymentDays = caisseLedger.paymentDaysOfPatient(id);
         patientRepository.delete(patient);
+        caisseLedger.rebuildDays(paymentDays);
+
+        // Les tickets du patient sont supprimés en cascade : les retirer des files
+        queueEngine.onPatientDeleted(id);
+        typeaheadIndex.onPatientDeleted(id);
     }
 
     /**
@@ -171,78 +401,135 @@ public class PatientService {
     }
 
     /**
-     * Convertit un DTO en entité Patient
+     * Lit et valide les lignes du fichier d'import ; l'id de chaque DTO porte provisoirement
+     * son numéro de ligne, pour les messages de rejet
      */
-    private Patient dtoToEntity(PatientDTO dto) {
-        Patient patient = new Patient();
-        patient.setNumero(dto.getNumero());
-        patient.setNom(dto.getNom());
-        patient.setPrenom(dto.getPrenom());
-        patient.setDateNaissance(dto.getDateNaissance());
-        patient.setTelephone(dto.getTelephone());
-        patient.setAdresse(dto.getAdresse());
-        return patient;
+    private List<PatientDTO> readImportFile(InputStream in, PatientImportDTO result) {
+        List<PatientDTO> rows = new ArrayList<>();
+        Set<String> numerosInFile = new HashSet<>();
+        try {
+            CsvReader csv = new CsvReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+            List<String> header = csv.readHeader();
+            if (header == null) {
+                throw new BadRequestException("Fichier d'import vide");
+            }
+            List<String> missing = IMPORT_REQUIRED_COLUMNS.stream().filter(column -> !header.contains(column)).toList();
+            if (!missing.isEmpty()) {
+                throw new BadRequestException("Colonne(s) obligatoire(s) absente(s) de l'en-tête: " + String.join(", ", missing));
+            }
+            List<String> record;
+            while ((record = csv.readRecord()) != null) {
+                long line = csv.getRecordLine();
+                if (rows.size() + result.getRejected() >= maxImportRows) {
+                    throw new BadRequestException("Fichier d'import limité à " + maxImportRows + " lignes");
+                }
+                PatientDTO dto = new PatientDTO();
+                dto.setId(line);
+                dto.setNumero(importField(header, record, "numero"));
+                dto.setNom(importField(header, record, "nom"));
+                dto.setPrenom(importField(header, record, "prenom"));
+                dto.setTelephone(importField(header, record, "telephone"));
+                dto.setAdresse(importField(header, record, "adresse"));
+                String dateNaissance = importField(header, record, "date_naissance");
+                try {
+                    dto.setDateNaissance(parseImportDate(dateNaissance));
+                } catch (DateTimeParseException e) {
+                    reject(result, line, "date de naissance invalide: " + dateNaissance);
+                    continue;
+                }
+                Set<ConstraintViolation<PatientDTO>> violations = validator.validate(dto);
+                if (!violations.isEmpty()) {
+                    reject(result, line, violations.stream()
+                            .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                            .sorted()
+                            .collect(Collectors.joining(", ")));
+                } else if (dto.getNumero() != null && !numerosInFile.add(dto.getNumero())) {
+                    reject(result, line, "numéro " + dto.getNumero() + " en double dans le fichier");
+                } else {
+                    rows.add(dto);
+                }
+            }
+        } catch (IOException e) {
+            throw new BadRequestException("Fichier d'import illisible: " + e.getMessage());
+        }
+        return rows;
     }
 
     /**
-     * Génère un PDF du dossier patient
+     * Valeur d'une colonne de l'enregistrement ; null si la colonne est absente ou vide
      */
-    public byte[] generatePatientDossierPDF(Long patientId) throws Exception {
-        Patient patient = patientRepository.findById(patientId)
-                .orElseThrow(() -> new ResourceNotFoundException("Patient", "id", patientId));
-
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Document document = new Document();
-        PdfWriter.getInstance(document, baos);
-        document.open();
-
-        // Titre
-        Font titleFont = new Font(Font.FontFamily.HELVETICA, 18, Font.BOLD);
-        Paragraph title = new Paragraph("DOSSIER PATIENT", titleFont);
-        title.setAlignment(Element.ALIGN_CENTER);
-        document.add(title);
-
-        document.add(new Paragraph(" "));
-
-        // Informations personnelles
-        Font headingFont = new Font(Font.FontFamily.HELVETICA, 14, Font.BOLD);
-        Paragraph heading = new Paragraph("Informations Personnelles", headingFont);
-        document.add(heading);
+    private static String importField(List<String> header, List<String> record, String column) {
+        int index = header.indexOf(column);
+        if (index < 0 || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
 
-        // Tableau des informations
-        PdfPTable table = new PdfPTable(2);
-        table.setWidthPercentage(100);
+    /**
+     * Date au format ISO (AAAA-MM-JJ) ou JJ/MM/AAAA des fichiers hérités
+     */
+    private static LocalDate parseImportDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        return value.indexOf('/') >= 0 ? LocalDate.parse(value, IMPORT_DATE_FORMAT) : LocalDate.parse(value);
+    }
 
-        // Ajouter les lignes du tableau
-        addTableRow(table, "Numéro Patient:", patient.getNumero());
-        addTableRow(table, "Nom:", patient.getNom());
-        addTableRow(table, "Prénom:", patient.getPrenom());
-        addTableRow(table, "Date de Naissance:", patient.getDateNaissance() != null ? patient.getDateNaissance().toString() : "");
-        addTableRow(table, "Téléphone:", patient.getTelephone() != null ? patient.getTelephone() : "-");
-        addTableRow(table, "Adresse:", patient.getAdresse() != null ? patient.getAdresse() : "-");
+    private static void reject(PatientImportDTO result, long line, String reason) {
+        result.setRejected(result.getRejected() + 1);
+        if (result.getErrors().size() < IMPORT_MAX_REPORTED_ERRORS) {
+            result.getErrors().add("ligne " + line + " : " + reason);
+        }
+    }
 
-        document.add(table);
-        document.add(new Paragraph(" "));
+    /**
+     * Convertit une ligne de la table patients en DTO
+     */
+    private PatientDTO rowToDTO(ResultSet rs) throws SQLException {
+        PatientDTO dto = new PatientDTO();
+        dto.setId(rs.getLong("id"));
+        dto.setNumero(rs.getString("numero"));
+        dto.setNom(rs.getString("nom"));
+        dto.setPrenom(rs.getString("prenom"));
+        Date dateNaissance = rs.getDate("date_naissance");
+        dto.setDateNaissance(dateNaissance != null ? dateNaissance.toLocalDate() : null);
+        dto.setTelephone(rs.getString("telephone"));
+        dto.setAdresse(rs.getString("adresse"));
+        return dto;
+    }
 
-        // Date de génération
-        Font smallFont = new Font(Font.FontFamily.HELVETICA, 10, Font.ITALIC);
-        Paragraph footer = new Paragraph("Document généré le: " + LocalDateTime.now(), smallFont);
-        document.add(footer);
+    private static String encodeCursor(Patient last) {
+        String key = last.getNom() + CURSOR_SEPARATOR + last.getPrenom() + CURSOR_SEPARATOR + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
 
-        document.close();
-        return baos.toByteArray();
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = key.split(String.valueOf(CURSOR_SEPARATOR), -1);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException();
+            }
+            Long.parseLong(parts[2]);
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Curseur de pagination invalide");
+        }
     }
 
     /**
-     * Ajoute une ligne dans le tableau PDF
+     * Convertit un DTO en entité Patient
      */
-    private void addTableRow(PdfPTable table, String label, String value) {
-        PdfPCell cellLabel = new PdfPCell(new Paragraph(label));
-        cellLabel.setPadding(5);
-        table.addCell(cellLabel);
-
-        PdfPCell cellValue = new PdfPCell(new Paragraph(value != null ? value : ""));
-        cellValue.setPadding(5);
-        table.addCell(cellValue);
+    private Patient dtoToEntity(PatientDTO dto) {
+        Patient patient = new Patient();
+        patient.setNumero(dto.getNumero());
+        patient.setNom(dto.getNom());
+        patient.setPrenom(dto.getPrenom());
+        patient.setDateNaissance(dto.getDateNaissance());
+        patient.setTelephone(dto.getTelephone());
+        patient.setAdresse(dto.getAdresse());
+        return patient;
     }
 }
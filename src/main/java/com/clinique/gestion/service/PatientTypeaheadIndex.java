@@ -0,0 +1,420 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.dto.PatientDTO;
+import com.clinique.gestion.entity.Patient;
+import com.clinique.gestion.util.BackgroundThreads;
+import com.clinique.gestion.util.SearchNormalizer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Index en mémoire pour la saisie semi-automatique des patients (accueil) :
+ * préfixes des mots du nom et du prénom, du numéro patient et du téléphone,
+ * ainsi que la fin du numéro et du téléphone ("4567" retrouve 77 123 45 67).
+ * <p>
+ * Un segment immuable en tableaux primitifs ({@link TypeaheadSegment}) est construit
+ * au démarrage par un parcours en flux de la table patients. Les créations,
+ * modifications et suppressions sont appliquées après commit dans un delta en
+ * mémoire qui masque le segment ; au-delà de patients.typeahead.merge-threshold
+ * entrées, le delta est gelé et fusionné dans un nouveau segment en arrière-plan.
+ * Si le segment dépasse patients.typeahead.max-memory-mb, l'index est désactivé
+ * et les suggestions passent par la recherche en base.
+ */
+@Component
+public class PatientTypeaheadIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientTypeaheadIndex.class);
+
+    private static final String SCAN_SQL =
+            "SELECT id, numero, nom, prenom, telephone, date_naissance FROM patients";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private BackgroundThreads backgroundThreads;
+
+    @Value("${patients.typeahead.enabled:true}")
+    private boolean enabled;
+
+    @Value("${patients.typeahead.max-memory-mb:256}")
+    private long maxMemoryMb;
+
+    @Value("${patients.typeahead.merge-threshold:5000}")
+    private int mergeThreshold;
+
+    @Value("${patients.typeahead.max-candidates:500}")
+    private int maxCandidates;
+
+    @Value("${patients.typeahead.fetch-size:2000}")
+    private int fetchSize;
+
+    /**
+     * Segment, delta gelé en cours de fusion et delta actif, publiés ensemble
+     */
+    private record State(TypeaheadSegment segment, Map<Long, TypeaheadEntry> frozen,
+                         Map<Long, TypeaheadEntry> active) {
+
+        boolean isOverridden(long id) {
+            return active.containsKey(id) || frozen.containsKey(id);
+        }
+    }
+
+    private record Match(TypeaheadEntry entry, int score) {
+    }
+
+    // Les écritures (rares) sont sérialisées ; les lectures ne prennent aucun verrou
+    private final Object writeLock = new Object();
+
+    private volatile State state = new State(TypeaheadSegment.EMPTY, Map.of(), new ConcurrentHashMap<>());
+    private volatile boolean ready;
+    private volatile boolean disabled;
+
+    private ExecutorService executor;
+
+    private Timer suggestTimer;
+
+    @PostConstruct
+    public void registerMetrics() {
+        executor = Executors.newSingleThreadExecutor(backgroundThreads.factory("patient-typeahead"));
+        Gauge.builder("patients.typeahead.memory", this, index -> index.state.segment().memoryBytes())
+                .description("Octets occupés par le segment de l'index de saisie semi-automatique")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("patients.typeahead.memory.budget", this, index -> index.budgetBytes())
+                .description("Budget mémoire de l'index (patients.typeahead.max-memory-mb)")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("patients.typeahead.patients", this, index -> index.state.segment().size())
+                .description("Patients du segment de l'index")
+                .register(meterRegistry);
+        Gauge.builder("patients.typeahead.delta", this,
+                        index -> index.state.active().size() + index.state.frozen().size())
+                .description("Modifications en attente de fusion dans le segment")
+                .register(meterRegistry);
+        suggestTimer = Timer.builder("patients.typeahead.suggest")
+                .description("Durée des suggestions servies par l'index")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildAtStartup() {
+        if (enabled) {
+            executor.execute(this::rebuild);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Indique si l'index est construit et peut servir les suggestions
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Enregistre la version courante d'un patient, après le commit de la transaction courante
+     */
+    public void onPatientSaved(Patient patient) {
+        TypeaheadEntry entry = TypeaheadEntry.of(patient);
+        afterCommit(() -> apply(entry));
+    }
+
+    /**
+     * Retire un patient de l'index, après le commit de la transaction courante
+     */
+    public void onPatientDeleted(Long patientId) {
+        TypeaheadEntry tombstone = TypeaheadEntry.tombstone(patientId);
+        afterCommit(() -> apply(tombstone));
+    }
+
+    /**
+     * Suggestions pour un début de nom, de prénom, de numéro ou de téléphone,
+     * ou une fin de numéro ou de téléphone ; tous les mots saisis doivent correspondre.
+     * Les correspondances exactes passent devant les préfixes.
+     */
+    public List<PatientDTO> suggest(String query, int limit) {
+        return suggestTimer.record(() -> doSuggest(query, limit));
+    }
+
+    private List<PatientDTO> doSuggest(String query, int limit) {
+        List<QueryWord> words = parse(query);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+        State current = state;
+        TypeaheadSegment segment = current.segment();
+        // Le mot le plus long est le plus sélectif : il fournit les candidats, les autres les filtrent
+        QueryWord pivot = words.stream().max(Comparator.comparingInt(word -> word.text().length())).orElseThrow();
+        boolean singleWord = words.size() == 1;
+
+        List<Match> matches = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (byte[] form : pivot.bytes()) {
+            int[] visited = {0};
+            int[] found = {0};
+            segment.forEachMatch(form, (ordinal, exact) -> {
+                long id = segment.id(ordinal);
+                if (current.isOverridden(id) || !seen.add(id)) {
+                    return true;
+                }
+                TypeaheadEntry entry = segment.entry(ordinal);
+                int score = singleWord ? (exact ? 2 : 1) : score(entry, words);
+                if (score > 0) {
+                    found[0]++;
+                    matches.add(new Match(entry, score));
+                }
+                // Les jetons étant parcourus dans l'ordre, les correspondances exactes du pivot arrivent en premier
+                return found[0] < limit && ++visited[0] < maxCandidates;
+            });
+        }
+        addDeltaMatches(current.frozen(), current, words, seen, matches);
+        addDeltaMatches(current.active(), current, words, seen, matches);
+
+        // Tri stable : à score égal, l'ordre des jetons (alphabétique) est conservé
+        matches.sort(Comparator.comparingInt(Match::score).reversed());
+        List<PatientDTO> suggestions = new ArrayList<>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            suggestions.add(matches.get(i).entry().toDTO());
+        }
+        return suggestions;
+    }
+
+    private void addDeltaMatches(Map<Long, TypeaheadEntry> delta, State current, List<QueryWord> words,
+                                 Set<Long> seen, List<Match> matches) {
+        for (TypeaheadEntry entry : delta.values()) {
+            // Une entrée gelée peut avoir été remplacée depuis dans le delta actif
+            if (entry.deleted() || (delta != current.active() && current.active().containsKey(entry.id()))
+                    || !seen.add(entry.id())) {
+                continue;
+            }
+            int score = score(entry, words);
+            if (score > 0) {
+                matches.add(new Match(entry, score));
+            }
+        }
+    }
+
+    /**
+     * Somme, pour chaque mot saisi, de 2 si un jeton lui est égal et 1 s'il le préfixe ;
+     * 0 si un mot ne correspond à aucun jeton
+     */
+    private static int score(TypeaheadEntry entry, List<QueryWord> words) {
+        List<String> tokens = entry.tokens();
+        int total = 0;
+        for (QueryWord word : words) {
+            int best = 0;
+            for (String form : word.forms()) {
+                for (String token : tokens) {
+                    if (token.equals(form)) {
+                        best = 2;
+                        break;
+                    }
+                    if (token.startsWith(form)) {
+                        best = Math.max(best, 1);
+                    }
+                }
+            }
+            if (best == 0) {
+                return 0;
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    /**
+     * Découpe la saisie en mots normalisés ; une saisie uniquement numérique
+     * ("77 123 45") est un seul numéro de téléphone
+     */
+    private static List<QueryWord> parse(String query) {
+        String normalized = SearchNormalizer.normalize(query);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        String compact = normalized.replace(" ", "");
+        if (isDigits(compact)) {
+            return List.of(QueryWord.of(compact));
+        }
+        List<QueryWord> words = new ArrayList<>();
+        for (String word : normalized.split(" ")) {
+            words.add(QueryWord.of(word));
+        }
+        return words;
+    }
+
+    private static boolean isDigits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Mot saisi et les jetons typés qu'il peut préfixer
+     */
+    private record QueryWord(String text, List<String> forms, List<byte[]> bytes) {
+
+        static QueryWord of(String word) {
+            List<String> forms = new ArrayList<>(5);
+            forms.add(TypeaheadEntry.WORD + word);
+            forms.add(TypeaheadEntry.NUMERO + word);
+            if (isDigits(word)) {
+                String reversed = TypeaheadEntry.reverse(word);
+                forms.add(TypeaheadEntry.PHONE + word);
+                forms.add(TypeaheadEntry.PHONE_REVERSED + reversed);
+                forms.add(TypeaheadEntry.NUMERO_REVERSED + reversed);
+            }
+            List<byte[]> bytes = forms.stream().map(form -> form.getBytes(StandardCharsets.UTF_8)).toList();
+            return new QueryWord(word, forms, bytes);
+        }
+    }
+
+    private void apply(TypeaheadEntry entry) {
+        synchronized (writeLock) {
+            if (!enabled || disabled) {
+                return;
+            }
+            State current = state;
+            current.active().put(entry.id(), entry);
+            if (ready && current.frozen().isEmpty() && current.active().size() >= mergeThreshold) {
+                // Gel du delta : les lecteurs le consultent jusqu'à la publication du segment fusionné
+                state = new State(current.segment(), current.active(), new ConcurrentHashMap<>());
+                executor.execute(this::merge);
+            }
+        }
+    }
+
+    /**
+     * Construit le segment à partir de la table patients, lue par un curseur JDBC
+     */
+    private void rebuild() {
+        long start = System.nanoTime();
+        TypeaheadSegment.Builder builder = new TypeaheadSegment.Builder(budgetBytes());
+        try {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            transaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(SCAN_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, (ResultSet rs) -> {
+                Date dateNaissance = rs.getDate("date_naissance");
+                builder.add(new TypeaheadEntry(rs.getLong("id"), rs.getString("numero"), rs.getString("nom"),
+                        rs.getString("prenom"), rs.getString("telephone"),
+                        dateNaissance != null ? dateNaissance.toLocalDate() : null, false));
+            }));
+            TypeaheadSegment segment = builder.build();
+            synchronized (writeLock) {
+                // Le delta accumulé pendant le parcours reste prioritaire sur le segment
+                state = new State(segment, Map.of(), state.active());
+                ready = true;
+            }
+            logger.info("Index de saisie semi-automatique construit: {} patient(s), {} jeton(s), {} octets en {} ms",
+                    segment.size(), segment.tokenCount(), segment.memoryBytes(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (TypeaheadSegment.BudgetExceededException e) {
+            disable(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Construction de l'index de saisie semi-automatique impossible", e);
+        }
+    }
+
+    /**
+     * Fusionne le delta gelé dans un nouveau segment
+     */
+    private void merge() {
+        State current = state;
+        TypeaheadSegment segment = current.segment();
+        Map<Long, TypeaheadEntry> frozen = current.frozen();
+        TypeaheadSegment.Builder builder = new TypeaheadSegment.Builder(budgetBytes());
+        try {
+            for (int ordinal = 0; ordinal < segment.size(); ordinal++) {
+                if (!frozen.containsKey(segment.id(ordinal))) {
+                    builder.add(segment.entry(ordinal));
+                }
+            }
+            for (TypeaheadEntry entry : frozen.values()) {
+                if (!entry.deleted()) {
+                    builder.add(entry);
+                }
+            }
+            TypeaheadSegment merged = builder.build();
+            synchronized (writeLock) {
+                state = new State(merged, Map.of(), state.active());
+            }
+            logger.debug("Delta de {} entrée(s) fusionné: {} patient(s), {} octets",
+                    frozen.size(), merged.size(), merged.memoryBytes());
+        } catch (TypeaheadSegment.BudgetExceededException e) {
+            disable(e.getMessage());
+        }
+    }
+
+    private void disable(String reason) {
+        synchronized (writeLock) {
+            disabled = true;
+            ready = false;
+            state = new State(TypeaheadSegment.EMPTY, Map.of(), new ConcurrentHashMap<>());
+        }
+        logger.warn("Index de saisie semi-automatique désactivé, suggestions servies par la base: {}", reason);
+    }
+
+    private long budgetBytes() {
+        return maxMemoryMb * 1024 * 1024;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.dto.TicketDTO;
+import com.clinique.gestion.enums.StatutTicket;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Moteur de files d'attente en mémoire, une file ordonnée par service.
+ * La file est reconstruite depuis la base au démarrage puis maintenue par
+ * TicketService après chaque commit : les lectures (prochain ticket, longueur,
+ * position) ne font plus aucune requête SQL. Chaque changement appliqué est
+ * publié sous forme de {@link TicketQueueEvent}.
+ * <p>
+ * Les notifications après commit de deux transactions sur le même ticket peuvent
+ * arriver dans le désordre : chaque état porte la version du ticket et un état plus
+ * ancien que celui déjà appliqué est ignoré. Les événements sont préparés sous le
+ * verrou du moteur puis publiés après l'avoir relâché, dans l'ordre d'application.
+ */
+@Component
+public class TicketQueueEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketQueueEngine.class);
+
+    // Versions retenues pour les tickets sortis des files (appelés, terminés, supprimés)
+    static final int MAX_TRACKED_VERSIONS = 4096;
+
+    // Version des tickets retirés avec leur patient : plus aucun état ne les remet en file
+    private static final long REMOVED_VERSION = Long.MAX_VALUE;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, ServiceQueue> queues = new ConcurrentHashMap<>();
+
+    // ticketId -> service, pour retrouver la file d'un ticket en O(1)
+    private final Map<Long, String> ticketServices = new ConcurrentHashMap<>();
+
+    // Dernière version appliquée (sous le verrou du moteur) : tickets en file, et tickets sortis
+    // des files dont seuls les MAX_TRACKED_VERSIONS plus récents sont retenus
+    private final Map<Long, Long> waitingVersions = new HashMap<>();
+
+    private final Map<Long, Long> finishedVersions = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+            return size() > MAX_TRACKED_VERSIONS;
+        }
+    };
+
+    // Événements préparés sous le verrou du moteur, publiés hors verrou par publishPending()
+    private final Queue<TicketQueueEvent> pending = new ConcurrentLinkedQueue<>();
+
+    private final ReentrantLock publishing = new ReentrantLock();
+
+    /**
+     * Reconstruit toutes les files à partir des tickets en attente lus en base
+     */
+    public synchronized void rebuild(List<TicketDTO> waiting) {
+        queues.values().forEach(ServiceQueue::clear);
+        ticketServices.clear();
+        waitingVersions.clear();
+        finishedVersions.clear();
+        for (TicketDTO ticket : waiting) {
+            enqueue(ticket);
+        }
+        logger.info("Files d'attente reconstruites: {} ticket(s) en attente sur {} service(s)",
+                waiting.size(), queues.size());
+    }
+
+    /**
+     * Applique l'état d'un ticket (à sa version) à la file de son service, après le commit
+     * de la transaction courante s'il y en a une
+     */
+    public void onTicketChanged(TicketDTO ticket, long version) {
+        afterCommit(() -> {
+            apply(ticket, version);
+            publishPending();
+        });
+    }
+
+    /**
+     * Retire tous les tickets d'un patient (suppression en cascade)
+     */
+    public void onPatientDeleted(Long patientId) {
+        afterCommit(() -> {
+            removePatient(patientId);
+            publishPending();
+        });
+    }
+
+    /**
+     * Retourne le prochain ticket en attente d'un service
+     */
+    public Optional<TicketDTO> peek(String service) {
+        ServiceQueue queue = queues.get(service);
+        return queue == null ? Optional.empty() : Optional.ofNullable(queue.first());
+    }
+
+    /**
+     * Retourne la file d'attente d'un service, dans l'ordre d'arrivée
+     */
+    public List<TicketDTO> getQueue(String service) {
+        ServiceQueue queue = queues.get(service);
+        return queue == null ? Collections.emptyList() : queue.snapshot();
+    }
+
+    /**
+     * Retourne le nombre de tickets en attente pour un service
+     */
+    public int size(String service) {
+        ServiceQueue queue = queues.get(service);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Retourne la position (1 = prochain appelé) d'un ticket dans sa file,
+     * ou 0 si le ticket n'est pas en attente
+     */
+    public int position(Long ticketId) {
+        String service = ticketServices.get(ticketId);
+        if (service == null) {
+            return 0;
+        }
+        ServiceQueue queue = queues.get(service);
+        return queue == null ? 0 : queue.position(ticketId);
+    }
+
+    private synchronized void removePatient(Long patientId) {
+        for (ServiceQueue queue : queues.values()) {
+            for (TicketDTO ticket : queue.removeIf(t -> patientId.equals(t.getPatientId()))) {
+                ticketServices.remove(ticket.getId());
+                waitingVersions.remove(ticket.getId());
+                finishedVersions.put(ticket.getId(), REMOVED_VERSION);
+                pending.add(new TicketQueueEvent(TicketQueueEvent.Type.REMOVED, ticket));
+            }
+        }
+    }
+
+    private synchronized void apply(TicketDTO ticket, long version) {
+        Long applied = waitingVersions.containsKey(ticket.getId())
+                ? waitingVersions.get(ticket.getId()) : finishedVersions.get(ticket.getId());
+        if (applied != null && applied >= version) {
+            logger.debug("État du ticket {} ignoré: version {} déjà dépassée ({})",
+                    ticket.getId(), version, applied);
+            return;
+        }
+        if (ticket.getStatut() == StatutTicket.EN_ATTENTE) {
+            finishedVersions.remove(ticket.getId());
+            waitingVersions.put(ticket.getId(), version);
+            String previous = ticketServices.get(ticket.getId());
+            if (previous != null && !previous.equals(ticket.getService())) {
+                queues.get(previous).remove(ticket.getId());
+            }
+            enqueue(ticket);
+        } else {
+            waitingVersions.remove(ticket.getId());
+            finishedVersions.put(ticket.getId(), version);
+            String service = ticketServices.remove(ticket.getId());
+            if (service != null) {
+                queues.get(service).remove(ticket.getId());
+            }
+        }
+        pending.add(new TicketQueueEvent(TicketQueueEvent.Type.UPDATED, ticket));
+    }
+
+    /**
+     * Publie les événements en attente, hors du verrou du moteur : un seul thread publie à la fois,
+     * dans l'ordre d'application ; un thread qui trouve la publication en cours lui laisse ses événements
+     */
+    private void publishPending() {
+        while (!pending.isEmpty() && publishing.tryLock()) {
+            try {
+                TicketQueueEvent event;
+                while ((event = pending.poll()) != null) {
+                    try {
+                        eventPublisher.publishEvent(event);
+                    } catch (RuntimeException e) {
+                        logger.warn("Publication d'un événement de file impossible: {}", e.getMessage());
+                    }
+                }
+            } finally {
+                publishing.unlock();
+            }
+        }
+    }
+
+    private void enqueue(TicketDTO ticket) {
+        queues.computeIfAbsent(ticket.getService(), this::newQueue).add(ticket);
+        ticketServices.put(ticket.getId(), ticket.getService());
+    }
+
+    /**
+     * Crée la file d'un service et sa jauge tickets.queue.size (étiquette service)
+     */
+    private ServiceQueue newQueue(String service) {
+        ServiceQueue queue = new ServiceQueue();
+        Gauge.builder("tickets.queue.size", queue, ServiceQueue::size)
+                .description("Tickets en attente par service")
+                .tag("service", service)
+                .register(meterRegistry);
+        return queue;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * File d'un service : tickets triés par (createdAt, id) et arbre de Fenwick
+     * indexé par rang d'arrivée pour calculer une position en O(log n)
+     */
+    static final class ServiceQueue {
+
+        private static final int MIN_CAPACITY = 64;
+
+        private final TreeMap<QueueKey, TicketDTO> entries = new TreeMap<>();
+        private final Map<Long, QueueKey> keys = new HashMap<>();
+        private final Map<Long, Integer> slots = new HashMap<>();
+        private int[] tree = new int[MIN_CAPACITY + 1];
+        private int nextSlot = 1;
+
+        synchronized void add(TicketDTO ticket) {
+            remove(ticket.getId());
+            QueueKey key = new QueueKey(ticket.getCreatedAt(), ticket.getId());
+            entries.put(key, ticket);
+            keys.put(ticket.getId(), key);
+            if (entries.lastKey() != key || nextSlot >= tree.length) {
+                // Insertion hors ordre d'arrivée ou tableau plein : renumérotation
+                renumber();
+            } else {
+                slots.put(ticket.getId(), nextSlot);
+                update(nextSlot++, 1);
+            }
+        }
+
+        synchronized boolean remove(Long ticketId) {
+            QueueKey key = keys.remove(ticketId);
+            if (key == null) {
+                return false;
+            }
+            entries.remove(key);
+            update(slots.remove(ticketId), -1);
+            if (entries.isEmpty()) {
+                clear();
+            }
+            return true;
+        }
+
+        synchronized List<TicketDTO> removeIf(Predicate<TicketDTO> predicate) {
+            List<TicketDTO> removed = new ArrayList<>();
+            for (TicketDTO ticket : entries.values()) {
+                if (predicate.test(ticket)) {
+                    removed.add(ticket);
+                }
+            }
+            removed.forEach(ticket -> remove(ticket.getId()));
+            return removed;
+        }
+
+        synchronized TicketDTO first() {
+            return entries.isEmpty() ? null : entries.firstEntry().getValue();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized int position(Long ticketId) {
+            Integer slot = slots.get(ticketId);
+            return slot == null ? 0 : prefixSum(slot);
+        }
+
+        synchronized List<TicketDTO> snapshot() {
+            return new ArrayList<>(entries.values());
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            keys.clear();
+            slots.clear();
+            tree = new int[MIN_CAPACITY + 1];
+            nextSlot = 1;
+        }
+
+        private void renumber() {
+            int capacity = MIN_CAPACITY;
+            while (capacity < entries.size() * 2) {
+                capacity <<= 1;
+            }
+            if (tree.length == capacity + 1) {
+                Arrays.fill(tree, 0);
+            } else {
+                tree = new int[capacity + 1];
+            }
+            slots.clear();
+            nextSlot = 1;
+            for (TicketDTO ticket : entries.values()) {
+                slots.put(ticket.getId(), nextSlot);
+                update(nextSlot++, 1);
+            }
+        }
+
+        private void update(int slot, int delta) {
+            for (int i = slot; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        private int prefixSum(int slot) {
+            int sum = 0;
+            for (int i = slot; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * Clé d'ordonnancement d'un ticket dans sa file
+     */
+    record QueueKey(LocalDateTime createdAt, Long id) implements Comparable<QueueKey> {
+
+        @Override
+        public int compareTo(QueueKey other) {
+            int cmp = compareNullable(createdAt, other.createdAt);
+            return cmp != 0 ? cmp : Long.compare(id, other.id);
+        }
+
+        private static int compareNullable(LocalDateTime a, LocalDateTime b) {
+            if (a == null || b == null) {
+                return a == null ? (b == null ? 0 : 1) : -1;
+            }
+            return a.compareTo(b);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.dto.TicketDTO;
+
+/**
+ * Événement publié par le moteur de files après application d'un changement de ticket
+ */
+public class TicketQueueEvent {
+
+    public enum Type {
+        UPDATED,  // Ticket créé ou statut modifié
+        REMOVED   // Ticket supprimé (suppression du patient)
+    }
+
+    private final Type type;
+    private final TicketDTO ticket;
+
+    public TicketQueueEvent(Type type, TicketDTO ticket) {
+        this.type = type;
+        this.ticket = ticket;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public TicketDTO getTicket() {
+        return ticket;
+    }
+}
@@ -8,9 +8,12 @@ import com.clinique.gestion.exception.ResourceNotFoundException;
 import com.clinique.gestion.repository.PatientRepository;
 import com.clinique.gestion.repository.TicketRepository;
 import com.clinique.gestion.util.NumeroGenerator;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
@@ -20,6 +23,7 @@ import java.util.stream.Collectors;
  * Service pour la gestion des tickets
  */
 @Service
+@Timed("clinique.service")
 @Transactional
 public class TicketService {
 
@@ -35,6 +39,20 @@ public class TicketService {
     @Autowired
     private AuditService auditService;
 
+    @Autowired
+    private TicketQueueEngine queueEngine;
+
+    /**
+     * Charge les tickets en attente dans le moteur de files au démarrage
+     */
+    @PostConstruct
+    public void initQueues() {
+        queueEngine.rebuild(ticketRepository.findQueueWithPatient()
+                .stream()
+                .map(this::entityToDTO)
+                .collect(Collectors.toList()));
+    }
+
     /**
      * Crée un nouveau ticket pour un patient
      */
@@ -44,9 +62,6 @@ public class TicketService {
 
         // Générer le numéro de ticket
         String numero = numeroGenerator.generateTicketNumero(service);
-        while (ticketRepository.existsByNumero(numero)) {
-            numero = numeroGenerator.generateTicketNumero(service);
-        }
 
         Ticket ticket = new Ticket();
         ticket.setNumero(numero);
@@ -54,30 +69,36 @@ public class TicketService {
         ticket.setService(service);
         ticket.setStatut(StatutTicket.EN_ATTENTE);
 
-        ticket = ticketRepository.save(ticket);
+        // Flush : la version initiale est connue avant la notification du moteur de files
+        ticket = ticketRepository.saveAndFlush(ticket);
 
         // Audit
         auditService.logAction("CREATE", "Ticket", ticket.getId(),
                 "Création du ticket " + ticket.getNumero() + " pour le service " + service, request);
 
-        return entityToDTO(ticket);
+        TicketDTO dto = entityToDTO(ticket);
+        queueEngine.onTicketChanged(dto, ticket.getVersion());
+        return dto;
     }
 
     /**
      * Met à jour le statut d'un ticket
      */
     public TicketDTO updateTicketStatut(Long ticketId, StatutTicket statut, HttpServletRequest request) {
-        Ticket ticket = ticketRepository.findById(ticketId)
+        // Ligne verrouillée jusqu'au commit : les versions d'un ticket suivent l'ordre des commits
+        Ticket ticket = ticketRepository.findForUpdateById(ticketId)
                 .orElseThrow(() -> new ResourceNotFoundException("Ticket", "id", ticketId));
 
         ticket.setStatut(statut);
-        ticket = ticketRepository.save(ticket);
+        ticket = ticketRepository.saveAndFlush(ticket);
 
         // Audit
         auditService.logAction("UPDATE", "Ticket", ticket.getId(),
                 "Mise à jour du statut du ticket " + ticket.getNumero() + " vers " + statut, request);
 
-        return entityToDTO(ticket);
+        TicketDTO dto = entityToDTO(ticket);
+        queueEngine.onTicketChanged(dto, ticket.getVersion());
+        return dto;
     }
 
     /**
@@ -91,14 +112,27 @@ public class TicketService {
     }
 
     /**
-     * Récupère la file d'attente d'un service (tickets EN_ATTENTE)
+     * Récupère la file d'attente d'un service (tickets EN_ATTENTE), servie depuis la mémoire
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public List<TicketDTO> getQueueByService(String service) {
-        return ticketRepository.findQueueByService(service, StatutTicket.EN_ATTENTE)
-                .stream()
-                .map(this::entityToDTO)
-                .collect(Collectors.toList());
+        return queueEngine.getQueue(service);
+    }
+
+    /**
+     * Retourne le nombre de tickets en attente pour un service
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int getQueueLength(String service) {
+        return queueEngine.size(service);
+    }
+
+    /**
+     * Retourne la position d'un ticket dans la file de son service (0 si non en attente)
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int getQueuePosition(Long ticketId) {
+        return queueEngine.position(ticketId);
     }
 
     /**
@@ -106,7 +140,7 @@ public class TicketService {
      */
     @Transactional(readOnly = true)
     public List<TicketDTO> getTicketsByService(String service) {
-        return ticketRepository.findByService(service)
+        return ticketRepository.findByServiceOrderByCreatedAtAscIdAsc(service)
                 .stream()
                 .map(this::entityToDTO)
                 .collect(Collectors.toList());
@@ -117,7 +151,7 @@ public class TicketService {
      */
     @Transactional(readOnly = true)
     public List<TicketDTO> getTicketsByPatient(Long patientId) {
-        return ticketRepository.findByPatientId(patientId)
+        return ticketRepository.findByPatientIdOrderByCreatedAtAscIdAsc(patientId)
                 .stream()
                 .map(this::entityToDTO)
                 .collect(Collectors.toList());
@@ -128,7 +162,7 @@ public class TicketService {
      */
     @Transactional(readOnly = true)
     public List<TicketDTO> getTicketsByStatut(StatutTicket statut) {
-        return ticketRepository.findByStatut(statut)
+        return ticketRepository.findByStatutOrderByCreatedAtAscIdAsc(statut)
                 .stream()
                 .map(this::entityToDTO)
                 .collect(Collectors.toList());
@@ -137,13 +171,11 @@ public class TicketService {
     /**
      * Récupère le prochain ticket en attente pour un service
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public TicketDTO getNextTicket(String service) {
-        List<Ticket> queue = ticketRepository.findQueueByService(service, StatutTicket.EN_ATTENTE);
-        if (queue.isEmpty()) {
-            throw new ResourceNotFoundException("Aucun ticket en attente pour le service: " + service);
-        }
-        return entityToDTO(queue.get(0));
+        return queueEngine.peek(service)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "Aucun ticket en attente pour le service: " + service));
     }
 
     /**
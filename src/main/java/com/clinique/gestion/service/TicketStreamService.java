@@ -0,0 +1,281 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.dto.TicketDTO;
+import com.clinique.gestion.util.BackgroundThreads;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Diffusion des changements de file d'attente en Server-Sent Events.
+ * Chaque service a son propre flux : un instantané de la file à la connexion,
+ * puis uniquement les deltas (ticket créé, statut modifié, ticket supprimé).
+ * Les derniers événements sont conservés pour permettre la reprise après
+ * reconnexion via l'en-tête Last-Event-ID.
+ * <p>
+ * Aucun envoi réseau ne se fait sur le thread qui publie l'événement : chaque abonné a sa
+ * propre file d'envoi, vidée par une tâche de fond. Un client trop lent dont la file dépasse
+ * tickets.stream.send-queue-size est déconnecté ; il se reconnecte avec son Last-Event-ID.
+ */
+@Service
+@Timed("clinique.service")
+public class TicketStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketStreamService.class);
+
+    static final String EVENT_SNAPSHOT = "snapshot";
+    static final String EVENT_TICKET = "ticket";
+    static final String EVENT_REMOVED = "removed";
+
+    // Les identifiants d'événements sont préfixés par l'époque de démarrage :
+    // un Last-Event-ID d'une instance précédente déclenche un nouvel instantané
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    @Autowired
+    private TicketQueueEngine queueEngine;
+
+    @Value("${tickets.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${tickets.stream.replay-size:256}")
+    private int replaySize;
+
+    @Value("${tickets.stream.send-queue-size:1024}")
+    private int sendQueueSize;
+
+    @Autowired
+    private BackgroundThreads backgroundThreads;
+
+    private final Map<String, ServiceStream> streams = new ConcurrentHashMap<>();
+
+    private ExecutorService sender;
+
+    @PostConstruct
+    public void init() {
+        // Un envoi bloqué sur un client lent n'occupe que son propre thread
+        ThreadFactory factory = backgroundThreads.factory("ticket-stream");
+        sender = backgroundThreads.isVirtual()
+                ? Executors.newThreadPerTaskExecutor(factory)
+                : Executors.newCachedThreadPool(factory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    /**
+     * Ouvre un flux pour un service, en reprenant après lastEventId si possible
+     */
+    public SseEmitter subscribe(String service, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        ServiceStream stream = streams.computeIfAbsent(service, s -> new ServiceStream());
+        Subscriber subscriber = new Subscriber(stream, emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+
+        stream.lock.lock();
+        try {
+            if (!replay(stream, subscriber, lastEventId)) {
+                subscriber.enqueue(SseEmitter.event()
+                        .id(eventId(stream.lastSequence))
+                        .name(EVENT_SNAPSHOT)
+                        .data(queueEngine.getQueue(service), MediaType.APPLICATION_JSON));
+            }
+            stream.subscribers.add(subscriber);
+        } finally {
+            stream.lock.unlock();
+        }
+        return emitter;
+    }
+
+    /**
+     * Pousse un changement de la file vers les clients abonnés au service du ticket
+     */
+    @EventListener
+    public void onQueueEvent(TicketQueueEvent event) {
+        TicketDTO ticket = event.getTicket();
+        ServiceStream stream = streams.get(ticket.getService());
+        if (stream == null) {
+            return;
+        }
+        String name = event.getType() == TicketQueueEvent.Type.REMOVED ? EVENT_REMOVED : EVENT_TICKET;
+        stream.lock.lock();
+        try {
+            StreamEvent streamEvent = new StreamEvent(++stream.lastSequence, name, ticket);
+            stream.history.addLast(streamEvent);
+            while (stream.history.size() > replaySize) {
+                stream.history.removeFirst();
+            }
+            for (Subscriber subscriber : stream.subscribers) {
+                subscriber.enqueue(toSse(streamEvent));
+            }
+        } finally {
+            stream.lock.unlock();
+        }
+    }
+
+    /**
+     * Envoie un commentaire périodique pour garder les connexions ouvertes
+     * et détecter les clients déconnectés
+     */
+    @Scheduled(fixedDelayString = "${tickets.stream.heartbeat-ms:25000}")
+    public void heartbeat() {
+        for (ServiceStream stream : streams.values()) {
+            for (Subscriber subscriber : stream.subscribers) {
+                subscriber.enqueue(SseEmitter.event().comment("ping"));
+            }
+        }
+    }
+
+    /**
+     * Rejoue les événements postérieurs à lastEventId ; retourne false si un instantané est nécessaire
+     */
+    private boolean replay(ServiceStream stream, Subscriber subscriber, String lastEventId) {
+        long sequence = parseSequence(lastEventId);
+        if (sequence < 0 || sequence > stream.lastSequence) {
+            return false;
+        }
+        if (sequence < stream.lastSequence
+                && (stream.history.isEmpty() || stream.history.peekFirst().sequence > sequence + 1)) {
+            // Des événements ont été évincés du tampon : reprise impossible
+            return false;
+        }
+        for (StreamEvent event : stream.history) {
+            if (event.sequence > sequence) {
+                subscriber.enqueue(toSse(event));
+            }
+        }
+        return true;
+    }
+
+    private SseEmitter.SseEventBuilder toSse(StreamEvent event) {
+        return SseEmitter.event()
+                .id(eventId(event.sequence))
+                .name(event.name)
+                .data(event.ticket, MediaType.APPLICATION_JSON);
+    }
+
+    private String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    private long parseSequence(String lastEventId) {
+        if (lastEventId == null || !lastEventId.startsWith(epoch + "-")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Abonnés et historique récent d'un service, sous un verrou explicite ; il ne protège plus
+     * que des ajouts en mémoire, les envois passant par la file de chaque abonné
+     */
+    private static final class ServiceStream {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private final Deque<StreamEvent> history = new ArrayDeque<>();
+        private long lastSequence;
+    }
+
+    /**
+     * Client abonné : file d'envoi propre, vidée par au plus une tâche à la fois,
+     * dans l'ordre d'ajout
+     */
+    private final class Subscriber {
+        private final ServiceStream stream;
+        private final SseEmitter emitter;
+        private final Queue<SseEmitter.SseEventBuilder> outbox = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Subscriber(ServiceStream stream, SseEmitter emitter) {
+            this.stream = stream;
+            this.emitter = emitter;
+        }
+
+        void enqueue(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return;
+            }
+            if (queued.incrementAndGet() > sendQueueSize) {
+                logger.debug("Client SSE trop lent, déconnecté ({} envois en attente)", sendQueueSize);
+                close();
+                emitter.complete();
+                return;
+            }
+            outbox.add(event);
+            schedule();
+        }
+
+        void close() {
+            closed = true;
+            stream.subscribers.remove(this);
+            outbox.clear();
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // Arrêt de l'application
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed && (event = outbox.poll()) != null) {
+                    queued.decrementAndGet();
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Client SSE déconnecté: {}", e.getMessage());
+                close();
+            } finally {
+                draining.set(false);
+            }
+            if (!closed && !outbox.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private record StreamEvent(long sequence, String name, TicketDTO ticket) {
+    }
+}
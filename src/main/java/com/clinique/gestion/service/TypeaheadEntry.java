@@ -0,0 +1,83 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.dto.PatientDTO;
+import com.clinique.gestion.entity.Patient;
+import com.clinique.gestion.util.SearchNormalizer;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Patient tel que vu par l'index de saisie semi-automatique.
+ * Un patient supprimé est représenté par une entrée {@code deleted}, qui masque
+ * la version présente dans le segment jusqu'à la prochaine fusion.
+ */
+record TypeaheadEntry(long id, String numero, String nom, String prenom, String telephone,
+                      LocalDate dateNaissance, boolean deleted) {
+
+    // Préfixe de type de chaque jeton : un mot de nom/prénom, un numéro patient,
+    // un téléphone, et leurs versions inversées pour chercher par la fin
+    static final char WORD = 'w';
+    static final char NUMERO = 'n';
+    static final char NUMERO_REVERSED = 'm';
+    static final char PHONE = 'p';
+    static final char PHONE_REVERSED = 'q';
+
+    static TypeaheadEntry of(Patient patient) {
+        return new TypeaheadEntry(patient.getId(), patient.getNumero(), patient.getNom(), patient.getPrenom(),
+                patient.getTelephone(), patient.getDateNaissance(), false);
+    }
+
+    static TypeaheadEntry tombstone(long id) {
+        return new TypeaheadEntry(id, null, null, null, null, null, true);
+    }
+
+    /**
+     * Jetons indexés, chacun préfixé par son type
+     */
+    List<String> tokens() {
+        List<String> tokens = new ArrayList<>(8);
+        addWords(tokens, nom);
+        addWords(tokens, prenom);
+        String numeroKey = SearchNormalizer.normalize(numero).replace(" ", "");
+        if (!numeroKey.isEmpty()) {
+            tokens.add(NUMERO + numeroKey);
+            tokens.add(NUMERO_REVERSED + reverse(numeroKey));
+        }
+        String phone = SearchNormalizer.digits(telephone);
+        if (!phone.isEmpty()) {
+            tokens.add(PHONE + phone);
+            tokens.add(PHONE_REVERSED + reverse(phone));
+        }
+        return tokens;
+    }
+
+    PatientDTO toDTO() {
+        PatientDTO dto = new PatientDTO();
+        dto.setId(id);
+        dto.setNumero(numero);
+        dto.setNom(nom);
+        dto.setPrenom(prenom);
+        dto.setTelephone(telephone);
+        dto.setDateNaissance(dateNaissance);
+        return dto;
+    }
+
+    static String reverse(String value) {
+        return new StringBuilder(value).reverse().toString();
+    }
+
+    private static void addWords(List<String> tokens, String value) {
+        String normalized = SearchNormalizer.normalize(value);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        for (String word : normalized.split(" ")) {
+            String token = WORD + word;
+            if (!tokens.contains(token)) {
+                tokens.add(token);
+            }
+        }
+    }
+}
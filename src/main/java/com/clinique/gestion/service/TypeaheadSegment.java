@@ -0,0 +1,303 @@
+package com.clinique.gestion.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Segment immuable de l'index de saisie semi-automatique, entièrement en tableaux primitifs :
+ * <ul>
+ *   <li>patients par ordinal : ids ({@code long[]}) et fiche encodée en UTF-8 dans un pool d'octets ;</li>
+ *   <li>dictionnaire trié des jetons distincts (pool d'octets + offsets), comparés en octets non signés,
+ *       ce qui rend contigus tous les jetons d'un même préfixe ;</li>
+ *   <li>listes de postings (ordinaux des patients) par jeton, au format CSR.</li>
+ * </ul>
+ * Aucun objet par patient ni par jeton : l'empreinte est la somme des tailles des tableaux.
+ */
+final class TypeaheadSegment {
+
+    static final TypeaheadSegment EMPTY = new Builder(Long.MAX_VALUE).build();
+
+    private static final char FIELD_SEPARATOR = '\u001F';
+
+    private final long[] ids;
+    private final byte[] records;
+    private final int[] recordOffsets;
+    private final byte[] tokens;
+    private final int[] tokenOffsets;
+    private final int[] postingOffsets;
+    private final int[] postings;
+
+    private TypeaheadSegment(long[] ids, byte[] records, int[] recordOffsets, byte[] tokens,
+                             int[] tokenOffsets, int[] postingOffsets, int[] postings) {
+        this.ids = ids;
+        this.records = records;
+        this.recordOffsets = recordOffsets;
+        this.tokens = tokens;
+        this.tokenOffsets = tokenOffsets;
+        this.postingOffsets = postingOffsets;
+        this.postings = postings;
+    }
+
+    /**
+     * Visiteur des patients trouvés ; retourne false pour arrêter le parcours
+     */
+    @FunctionalInterface
+    interface MatchVisitor {
+        boolean visit(int ordinal, boolean exact);
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    int tokenCount() {
+        return tokenOffsets.length - 1;
+    }
+
+    long id(int ordinal) {
+        return ids[ordinal];
+    }
+
+    /**
+     * Octets occupés par les tableaux du segment
+     */
+    long memoryBytes() {
+        return 8L * ids.length + records.length + 4L * recordOffsets.length + tokens.length
+                + 4L * tokenOffsets.length + 4L * postingOffsets.length + 4L * postings.length;
+    }
+
+    /**
+     * Décode la fiche d'un patient
+     */
+    TypeaheadEntry entry(int ordinal) {
+        String record = new String(records, recordOffsets[ordinal],
+                recordOffsets[ordinal + 1] - recordOffsets[ordinal], StandardCharsets.UTF_8);
+        String[] fields = record.split(String.valueOf(FIELD_SEPARATOR), -1);
+        return new TypeaheadEntry(ids[ordinal], field(fields[0]), field(fields[1]), field(fields[2]),
+                field(fields[3]), fields[4].isEmpty() ? null : LocalDate.parse(fields[4]), false);
+    }
+
+    /**
+     * Parcourt, dans l'ordre des jetons, les patients dont un jeton commence par le préfixe.
+     * Le jeton égal au préfixe, s'il existe, est visité en premier.
+     */
+    void forEachMatch(byte[] prefix, MatchVisitor visitor) {
+        int tokenCount = tokenCount();
+        for (int token = lowerBound(prefix); token < tokenCount && startsWith(token, prefix); token++) {
+            boolean exact = tokenOffsets[token + 1] - tokenOffsets[token] == prefix.length;
+            for (int p = postingOffsets[token]; p < postingOffsets[token + 1]; p++) {
+                if (!visitor.visit(postings[p], exact)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private int lowerBound(byte[] key) {
+        int low = 0;
+        int high = tokenCount();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Arrays.compareUnsigned(tokens, tokenOffsets[mid], tokenOffsets[mid + 1], key, 0, key.length) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private boolean startsWith(int token, byte[] prefix) {
+        int start = tokenOffsets[token];
+        return tokenOffsets[token + 1] - start >= prefix.length
+                && Arrays.equals(tokens, start, start + prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static String field(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Construction d'un segment par ajouts successifs puis tri des jetons.
+     * Lève {@link BudgetExceededException} dès que l'empreinte estimée dépasse le budget.
+     */
+    static final class Builder {
+
+        private static final int BUDGET_CHECK_INTERVAL = 4096;
+
+        private final long budgetBytes;
+
+        private long[] ids = new long[1024];
+        private int count;
+        private byte[] records = new byte[64 * 1024];
+        private int recordsLength;
+        private int[] recordOffsets = new int[1025];
+
+        // Jetons dans l'ordre d'ajout : octets, début dans le pool, ordinal du patient
+        private byte[] tokenBytes = new byte[64 * 1024];
+        private int tokenBytesLength;
+        private int[] tokenStarts = new int[4096];
+        private int[] tokenOrdinals = new int[4096];
+        private int tokenCount;
+
+        Builder(long budgetBytes) {
+            this.budgetBytes = budgetBytes;
+        }
+
+        int count() {
+            return count;
+        }
+
+        void add(TypeaheadEntry entry) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                recordOffsets = Arrays.copyOf(recordOffsets, count * 2 + 1);
+            }
+            ids[count] = entry.id();
+            byte[] record = encode(entry);
+            records = ensure(records, recordsLength + record.length);
+            System.arraycopy(record, 0, records, recordsLength, record.length);
+            recordOffsets[count] = recordsLength;
+            recordsLength += record.length;
+
+            for (String token : entry.tokens()) {
+                byte[] bytes = token.getBytes(StandardCharsets.UTF_8);
+                tokenBytes = ensure(tokenBytes, tokenBytesLength + bytes.length);
+                System.arraycopy(bytes, 0, tokenBytes, tokenBytesLength, bytes.length);
+                if (tokenCount == tokenStarts.length) {
+                    tokenStarts = Arrays.copyOf(tokenStarts, tokenCount * 2);
+                    tokenOrdinals = Arrays.copyOf(tokenOrdinals, tokenCount * 2);
+                }
+                tokenStarts[tokenCount] = tokenBytesLength;
+                tokenOrdinals[tokenCount] = count;
+                tokenBytesLength += bytes.length;
+                tokenCount++;
+            }
+            count++;
+
+            if (count % BUDGET_CHECK_INTERVAL == 0 && estimatedBytes() > budgetBytes) {
+                throw new BudgetExceededException(count, estimatedBytes());
+            }
+        }
+
+        /**
+         * Empreinte du segment qui serait construit (borne haute : dictionnaire non dédoublonné)
+         */
+        long estimatedBytes() {
+            return 12L * count + recordsLength + tokenBytesLength + 12L * tokenCount;
+        }
+
+        TypeaheadSegment build() {
+            recordOffsets[count] = recordsLength;
+            int[] starts = Arrays.copyOf(tokenStarts, tokenCount + 1);
+            starts[tokenCount] = tokenBytesLength;
+
+            // Tri stable : à jeton égal, les ordinaux restent croissants
+            int[] order = new int[tokenCount];
+            for (int i = 0; i < tokenCount; i++) {
+                order[i] = i;
+            }
+            sort(order, (a, b) -> Arrays.compareUnsigned(tokenBytes, starts[a], starts[a + 1],
+                    tokenBytes, starts[b], starts[b + 1]));
+
+            byte[] dictionary = new byte[tokenBytesLength];
+            int dictionaryLength = 0;
+            int[] dictionaryOffsets = new int[tokenCount + 1];
+            int[] postingOffsets = new int[tokenCount + 1];
+            int[] postings = new int[tokenCount];
+            int distinct = 0;
+            int previous = -1;
+            for (int i = 0; i < tokenCount; i++) {
+                int token = order[i];
+                if (previous < 0 || !Arrays.equals(tokenBytes, starts[previous], starts[previous + 1],
+                        tokenBytes, starts[token], starts[token + 1])) {
+                    int length = starts[token + 1] - starts[token];
+                    System.arraycopy(tokenBytes, starts[token], dictionary, dictionaryLength, length);
+                    dictionaryOffsets[distinct] = dictionaryLength;
+                    postingOffsets[distinct] = i;
+                    dictionaryLength += length;
+                    distinct++;
+                }
+                postings[i] = tokenOrdinals[token];
+                previous = token;
+            }
+            dictionaryOffsets[distinct] = dictionaryLength;
+            postingOffsets[distinct] = tokenCount;
+
+            return new TypeaheadSegment(
+                    Arrays.copyOf(ids, count),
+                    Arrays.copyOf(records, recordsLength),
+                    Arrays.copyOf(recordOffsets, count + 1),
+                    Arrays.copyOf(dictionary, dictionaryLength),
+                    Arrays.copyOf(dictionaryOffsets, distinct + 1),
+                    Arrays.copyOf(postingOffsets, distinct + 1),
+                    postings);
+        }
+
+        private static byte[] encode(TypeaheadEntry entry) {
+            String record = nullToEmpty(entry.numero()) + FIELD_SEPARATOR
+                    + nullToEmpty(entry.nom()) + FIELD_SEPARATOR
+                    + nullToEmpty(entry.prenom()) + FIELD_SEPARATOR
+                    + nullToEmpty(entry.telephone()) + FIELD_SEPARATOR
+                    + (entry.dateNaissance() != null ? entry.dateNaissance().toString() : "");
+            return record.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static String nullToEmpty(String value) {
+            return value == null ? "" : value.replace(FIELD_SEPARATOR, ' ');
+        }
+
+        private static byte[] ensure(byte[] array, int capacity) {
+            return capacity <= array.length ? array : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+        }
+
+        /**
+         * Tri fusion stable d'un tableau d'int selon un comparateur, sans boxing
+         */
+        private static void sort(int[] values, IntComparator comparator) {
+            int[] buffer = new int[values.length];
+            int[] source = values;
+            int[] target = buffer;
+            for (int width = 1; width < values.length; width *= 2) {
+                for (int low = 0; low < values.length; low += 2 * width) {
+                    int mid = Math.min(low + width, values.length);
+                    int high = Math.min(low + 2 * width, values.length);
+                    int i = low;
+                    int j = mid;
+                    int k = low;
+                    while (i < mid && j < high) {
+                        target[k++] = comparator.compare(source[i], source[j]) <= 0 ? source[i++] : source[j++];
+                    }
+                    while (i < mid) {
+                        target[k++] = source[i++];
+                    }
+                    while (j < high) {
+                        target[k++] = source[j++];
+                    }
+                }
+                int[] swap = source;
+                source = target;
+                target = swap;
+            }
+            if (source != values) {
+                System.arraycopy(source, 0, values, 0, values.length);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface IntComparator {
+        int compare(int a, int b);
+    }
+
+    /**
+     * Le segment en construction dépasse le budget mémoire de l'index
+     */
+    static final class BudgetExceededException extends RuntimeException {
+
+        BudgetExceededException(int patients, long bytes) {
+            super("Budget mémoire dépassé après " + patients + " patient(s) (" + bytes + " octets estimés)");
+        }
+    }
+}
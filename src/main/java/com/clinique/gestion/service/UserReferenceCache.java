@@ -0,0 +1,162 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.dto.UserDTO;
+import com.clinique.gestion.entity.User;
+import com.clinique.gestion.enums.Role;
+import com.clinique.gestion.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Cache des utilisateurs de référence (médecins, caissiers...) lus à chaque ouverture de
+ * formulaire et à chaque consultation ou paiement enregistré : par id, par nom d'utilisateur
+ * et listes par rôle. Chargé en base au premier accès ; les modifications faites par
+ * {@link UserService} évincent les entrées à la fin de la transaction, la durée de vie
+ * (users.cache.ttl-seconds) borne le délai pour celles faites sur un autre nœud. Les services qui
+ * associent un utilisateur à une écriture (médecin d'une consultation, caissier d'un paiement)
+ * vérifient {@link UserDTO#isEnabled()} : une désactivation évincée ici est refusée aussitôt.
+ * Statistiques exposées sous cache.* (cache=users-by-id, users-by-username, users-by-role).
+ * <p>
+ * Les DTO retournés sont des copies : les modifier ne change pas le cache.
+ */
+@Component
+public class UserReferenceCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${users.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${users.cache.max-size:1000}")
+    private long maxSize;
+
+    // role null = tous les rôles
+    private record ListKey(Role role, boolean activeOnly) {
+    }
+
+    private Cache<Long, UserDTO> byId;
+    private Cache<String, UserDTO> byUsername;
+    private Cache<ListKey, List<UserDTO>> lists;
+
+    @PostConstruct
+    public void init() {
+        byId = newCache();
+        byUsername = newCache();
+        lists = newCache();
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "users-by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, byUsername, "users-by-username");
+        CaffeineCacheMetrics.monitor(meterRegistry, lists, "users-by-role");
+    }
+
+    private <K, V> Cache<K, V> newCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Utilisateur par id ; un id inconnu n'est pas mis en cache
+     */
+    public Optional<UserDTO> getById(Long id) {
+        return Optional.ofNullable(byId.get(id, key -> userRepository.findById(key).map(UserReferenceCache::toDTO).orElse(null)))
+                .map(UserReferenceCache::copy);
+    }
+
+    /**
+     * Utilisateur par nom d'utilisateur ; un nom inconnu n'est pas mis en cache
+     */
+    public Optional<UserDTO> getByUsername(String username) {
+        return Optional.ofNullable(byUsername.get(username, key -> userRepository.findByUsername(key).map(UserReferenceCache::toDTO).orElse(null)))
+                .map(UserReferenceCache::copy);
+    }
+
+    /**
+     * Utilisateurs d'un rôle
+     */
+    public List<UserDTO> getByRole(Role role) {
+        return copies(lists.get(new ListKey(role, false), key -> toDTOs(userRepository.findByRole(role))));
+    }
+
+    /**
+     * Utilisateurs actifs d'un rôle
+     */
+    public List<UserDTO> getActiveByRole(Role role) {
+        return copies(lists.get(new ListKey(role, true), key -> toDTOs(userRepository.findActiveByRole(role))));
+    }
+
+    /**
+     * Utilisateurs actifs, tous rôles confondus
+     */
+    public List<UserDTO> getAllEnabled() {
+        return copies(lists.get(new ListKey(null, true), key -> toDTOs(userRepository.findAllEnabled())));
+    }
+
+    /**
+     * Évince un utilisateur et les listes à la fin de la transaction courante. Aussi en cas
+     * d'annulation : une lecture faite dans la transaction a pu mettre en cache un état non validé.
+     */
+    public void evictAfterCompletion(Long id, String username) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(id, username);
+                }
+            });
+        } else {
+            evict(id, username);
+        }
+    }
+
+    /**
+     * Évince immédiatement un utilisateur et les listes
+     */
+    public void evict(Long id, String username) {
+        byId.invalidate(id);
+        byUsername.invalidate(username);
+        lists.invalidateAll();
+    }
+
+    static UserDTO toDTO(User user) {
+        return new UserDTO(
+                user.getId(),
+                user.getUsername(),
+                user.getEmail(),
+                user.getNom(),
+                user.getPrenom(),
+                user.getRole(),
+                user.getEnabled()
+        );
+    }
+
+    private static List<UserDTO> toDTOs(List<User> users) {
+        return users.stream().map(UserReferenceCache::toDTO).toList();
+    }
+
+    private static UserDTO copy(UserDTO user) {
+        return new UserDTO(user.getId(), user.getUsername(), user.getEmail(), user.getNom(),
+                user.getPrenom(), user.getRole(), user.isEnabled());
+    }
+
+    private static List<UserDTO> copies(List<UserDTO> users) {
+        return users.stream().map(UserReferenceCache::copy).toList();
+    }
+}
@@ -6,12 +6,16 @@ import com.clinique.gestion.enums.Role;
 import com.clinique.gestion.exception.BadRequestException;
 import com.clinique.gestion.exception.ResourceNotFoundException;
 import com.clinique.gestion.repository.UserRepository;
+import com.clinique.gestion.security.service.PrincipalCache;
+import com.clinique.gestion.security.service.TokenVersionRegistry;
+import io.micrometer.core.annotation.Timed;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -19,6 +23,7 @@ import java.util.stream.Collectors;
  * Service pour la gestion des utilisateurs
  */
 @Service
+@Timed("clinique.service")
 @Transactional
 public class UserService {
 
@@ -31,6 +36,18 @@ public class UserService {
     @Autowired
     private AuditService auditService;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Autowired
+    private CaisseLedger caisseLedger;
+
+    @Autowired
+    private UserReferenceCache userReferenceCache;
+
     /**
      * Crée un nouvel utilisateur
      */
@@ -54,6 +71,7 @@ public class UserService {
         user.setEnabled(true);
 
         user = userRepository.save(user);
+        userReferenceCache.evictAfterCompletion(user.getId(), user.getUsername());
 
         // Audit
         auditService.logAction("CREATE", "User", user.getId(),
@@ -78,12 +96,19 @@ public class UserService {
         user.setEmail(userDTO.getEmail());
         user.setNom(userDTO.getNom());
         user.setPrenom(userDTO.getPrenom());
+        if (user.getRole() != userDTO.getRole()) {
+            // Le rôle est porté par les tokens : les anciens doivent être révoqués
+            user.incrementTokenVersion();
+        }
         user.setRole(userDTO.getRole());
         // Ne pas modifier 'enabled' s'il vient du formulaire vide
         // Car le formulaire de modification n'envoie pas ce champ
         // user.setEnabled(userDTO.isEnabled());
 
         user = userRepository.save(user);
+        principalCache.evictAfterCommit(user.getUsername());
+        userReferenceCache.evictAfterCompletion(user.getId(), user.getUsername());
+        tokenVersionRegistry.onUserChanged(user);
 
         // Audit
         auditService.logAction("UPDATE", "User", user.getId(),
@@ -100,7 +125,10 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
 
         user.setPassword(passwordEncoder.encode(newPassword));
+        user.incrementTokenVersion();
         userRepository.save(user);
+        principalCache.evictAfterCommit(user.getUsername());
+        tokenVersionRegistry.onUserChanged(user);
 
         // Audit
         auditService.logAction("UPDATE", "User", user.getId(),
@@ -120,7 +148,10 @@ public class UserService {
         }
 
         user.setPassword(passwordEncoder.encode(newPassword));
+        user.incrementTokenVersion();
         userRepository.save(user);
+        principalCache.evictAfterCommit(user.getUsername());
+        tokenVersionRegistry.onUserChanged(user);
 
         // Audit
         auditService.logAction("UPDATE", "User", user.getId(),
@@ -131,18 +162,16 @@ public class UserService {
      * Récupère un utilisateur par son ID
      */
     public UserDTO getUserById(Long id) {
-        User user = userRepository.findById(id)
+        return userReferenceCache.getById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
-        return entityToDTO(user);
     }
 
     /**
      * Récupère un utilisateur par son nom d'utilisateur
      */
     public UserDTO getUserByUsername(String username) {
-        User user = userRepository.findByUsername(username)
+        return userReferenceCache.getByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "username", username));
-        return entityToDTO(user);
     }
 
     /**
@@ -159,20 +188,21 @@ public class UserService {
      * Récupère les utilisateurs par rôle
      */
     public List<UserDTO> getUsersByRole(Role role) {
-        return userRepository.findByRole(role)
-                .stream()
-                .map(this::entityToDTO)
-                .collect(Collectors.toList());
+        return userReferenceCache.getByRole(role);
     }
 
     /**
      * Récupère les utilisateurs actifs
      */
     public List<UserDTO> getActiveUsers() {
-        return userRepository.findAllEnabled()
-                .stream()
-                .map(this::entityToDTO)
-                .collect(Collectors.toList());
+        return userReferenceCache.getAllEnabled();
+    }
+
+    /**
+     * Récupère les médecins actifs (listes de choix des formulaires)
+     */
+    public List<UserDTO> getActiveMedecins() {
+        return userReferenceCache.getActiveByRole(Role.MEDECIN);
     }
 
     /**
@@ -182,7 +212,11 @@ public class UserService {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
         user.setEnabled(false);
+        user.incrementTokenVersion();
         userRepository.save(user);
+        principalCache.evictAfterCommit(user.getUsername());
+        userReferenceCache.evictAfterCompletion(user.getId(), user.getUsername());
+        tokenVersionRegistry.onUserChanged(user);
 
         // Audit
         auditService.logAction("UPDATE", "User", user.getId(),
@@ -197,6 +231,9 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
         user.setEnabled(true);
         userRepository.save(user);
+        principalCache.evictAfterCommit(user.getUsername());
+        userReferenceCache.evictAfterCompletion(user.getId(), user.getUsername());
+        tokenVersionRegistry.onUserChanged(user);
 
         // Audit
         auditService.logAction("UPDATE", "User", user.getId(),
@@ -210,7 +247,14 @@ public class UserService {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
 
+        // Les paiements encaissés par l'utilisateur sont supprimés en cascade : ses jours du
+        // journal de caisse sont reconstruits dans la même transaction
+        List<LocalDate> paymentDays = caisseLedger.paymentDaysOfCaissier(id);
         userRepository.deleteById(id);
+        caisseLedger.rebuildDays(paymentDays);
+        principalCache.evictAfterCommit(user.getUsername());
+        userReferenceCache.evictAfterCompletion(user.getId(), user.getUsername());
+        tokenVersionRegistry.onUserDeleted(id);
 
         // Audit
         auditService.logAction("DELETE", "User", id,
@@ -221,14 +265,6 @@ public class UserService {
      * Convertit une entité User en DTO
      */
     private UserDTO entityToDTO(User user) {
-        return new UserDTO(
-                user.getId(),
-                user.getUsername(),
-                user.getEmail(),
-                user.getNom(),
-                user.getPrenom(),
-                user.getRole(),
-                user.getEnabled()
-        );
+        return UserReferenceCache.toDTO(user);
     }
 }
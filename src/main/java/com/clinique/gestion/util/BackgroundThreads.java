@@ -0,0 +1,40 @@
+package com.clinique.gestion.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Threads des tâches de fond (archivage, index, journal d'audit) : threads virtuels nommés
+ * si spring.threads.virtual.enabled=true, threads plateforme démons sinon.
+ * Les calculs purement CPU (rendu PDF) gardent un pool de threads plateforme dimensionné.
+ */
+@Component
+public class BackgroundThreads {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtual;
+
+    /**
+     * Fabrique de threads portant tous le même nom (exécuteur à un seul thread)
+     */
+    public ThreadFactory factory(String name) {
+        return virtual
+                ? Thread.ofVirtual().name(name).factory()
+                : Thread.ofPlatform().name(name).daemon(true).factory();
+    }
+
+    /**
+     * Démarre une tâche de fond longue sur son propre thread
+     */
+    public Thread start(String name, Runnable task) {
+        Thread thread = factory(name).newThread(task);
+        thread.start();
+        return thread;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+}
@@ -0,0 +1,149 @@
+package com.clinique.gestion.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lecteur CSV minimal, symétrique des exports de l'application : séparateur ; ou ,
+ * (détecté sur la ligne d'en-tête), champs entre guillemets avec "" pour un guillemet,
+ * retours à la ligne autorisés dans un champ entre guillemets, BOM UTF-8 ignoré.
+ */
+public class CsvReader {
+
+    private final Reader reader;
+    private char separator;
+    private int peeked = -2;
+    private long line = 1;
+    private long recordLine;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Lit la ligne d'en-tête et détermine le séparateur ; null si le fichier est vide
+     */
+    public List<String> readHeader() throws IOException {
+        if (peek() == '\uFEFF') {
+            read();
+        }
+        StringBuilder raw = new StringBuilder();
+        int c;
+        while ((c = peek()) != -1 && c != '\n' && c != '\r') {
+            raw.append((char) read());
+        }
+        if (raw.isEmpty() && c == -1) {
+            return null;
+        }
+        separator = count(raw, ';') >= count(raw, ',') ? ';' : ',';
+        skipLineEnd();
+        recordLine = 1;
+        List<String> header = new ArrayList<>();
+        for (String name : split(raw.toString())) {
+            header.add(name.trim().toLowerCase());
+        }
+        return header;
+    }
+
+    /**
+     * Lit l'enregistrement suivant ; null en fin de fichier. Les lignes vides sont ignorées.
+     */
+    public List<String> readRecord() throws IOException {
+        while (peek() == '\n' || peek() == '\r') {
+            skipLineEnd();
+        }
+        if (peek() == -1) {
+            return null;
+        }
+        recordLine = line;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            int c = read();
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Guillemet non fermé à partir de la ligne " + recordLine);
+                }
+                if (c == '"') {
+                    if (peek() == '"') {
+                        field.append((char) read());
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == separator) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == -1 || c == '\n' || c == '\r') {
+                if (c == '\r' && peek() == '\n') {
+                    read();
+                }
+                if (c != -1) {
+                    line++;
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Numéro de ligne (à partir de 1, en-tête compris) du dernier enregistrement lu
+     */
+    public long getRecordLine() {
+        return recordLine;
+    }
+
+    private List<String> split(String raw) throws IOException {
+        CsvReader headerReader = new CsvReader(new StringReader(raw));
+        headerReader.separator = separator;
+        List<String> fields = headerReader.readRecord();
+        return fields != null ? fields : List.of();
+    }
+
+    private void skipLineEnd() throws IOException {
+        int c = read();
+        if (c == '\r' && peek() == '\n') {
+            read();
+        }
+        if (c != -1) {
+            line++;
+        }
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = reader.read();
+        }
+        return peeked;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        peeked = -2;
+        return c;
+    }
+
+    private static int count(CharSequence text, char c) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
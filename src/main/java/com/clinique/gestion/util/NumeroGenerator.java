@@ -1,31 +1,101 @@
 package com.clinique.gestion.util;
 
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Utilitaire pour générer des numéros uniques (patients, tickets, reçus)
+ * Utilitaire pour générer des numéros uniques (patients, tickets, reçus).
+ * Les compteurs sont stockés en base (table numero_sequences), par préfixe et
+ * par jour : ils repartent à 1 chaque jour, survivent aux redémarrages et
+ * restent uniques entre plusieurs instances de l'application.
+ *
+ * Avec numero.sequence.block-size=1 (défaut), chaque numéro est alloué dans la
+ * transaction de l'appelant : la numérotation est sans trou, au prix d'un verrou
+ * sur la ligne du compteur jusqu'au commit. Avec un bloc plus grand, chaque
+ * instance réserve des plages dans une transaction séparée : plus de contention,
+ * mais les numéros non utilisés d'une plage sont perdus au redémarrage.
  */
 @Component
 public class NumeroGenerator {
 
-    private static final AtomicLong patientCounter = new AtomicLong(1);
-    private static final AtomicLong ticketCounter = new AtomicLong(1);
-    private static final AtomicLong recuCounter = new AtomicLong(1);
+    private static final Logger logger = LoggerFactory.getLogger(NumeroGenerator.class);
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
 
+    static final String PREFIX_PATIENT = "PAT";
+    static final String PREFIX_TICKET = "TKT-";
+    static final String PREFIX_RECU = "REC";
+
+    private static final String ALLOCATE_SQL =
+            "INSERT INTO numero_sequences (prefixe, jour, valeur) VALUES (?, ?, ?) " +
+            "ON CONFLICT (prefixe, jour) DO UPDATE SET valeur = numero_sequences.valeur + EXCLUDED.valeur " +
+            "RETURNING valeur";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${numero.sequence.block-size:1}")
+    private int blockSize;
+
+    private TransactionTemplate separateTransaction;
+
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        separateTransaction = new TransactionTemplate(transactionManager);
+        separateTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        seedFromExistingNumbers(LocalDate.now());
+    }
+
     /**
      * Génère un numéro unique pour un patient
      * Format: PAT-YYYYMMDD-XXXXX
      */
     public String generatePatientNumero() {
-        String date = LocalDate.now().format(DATE_FORMATTER);
-        long counter = patientCounter.getAndIncrement();
-        return String.format("PAT-%s-%05d", date, counter);
+        LocalDate today = LocalDate.now();
+        long counter = next(PREFIX_PATIENT, today);
+        return String.format("PAT-%s-%05d", today.format(DATE_FORMATTER), counter);
+    }
+
+    /**
+     * Génère count numéros patients consécutifs en une seule réservation (import en masse).
+     * Quel que soit block-size, la plage est réservée dans une transaction séparée et courte :
+     * le compteur du jour n'est pas verrouillé pendant tout l'import, au prix d'un trou dans
+     * la numérotation si l'import est annulé.
+     */
+    public List<String> generatePatientNumeros(int count) {
+        if (count <= 0) {
+            return List.of();
+        }
+        LocalDate today = LocalDate.now();
+        long last = separateTransaction.execute(status -> allocate(PREFIX_PATIENT, today, count));
+        String date = today.format(DATE_FORMATTER);
+        List<String> numeros = new ArrayList<>(count);
+        for (long counter = last - count + 1; counter <= last; counter++) {
+            numeros.add(String.format("PAT-%s-%05d", date, counter));
+        }
+        return numeros;
     }
 
     /**
@@ -33,10 +103,10 @@ public class NumeroGenerator {
      * Format: TKT-SERVICE-YYYYMMDD-XXXXX
      */
     public String generateTicketNumero(String service) {
-        String date = LocalDate.now().format(DATE_FORMATTER);
-        long counter = ticketCounter.getAndIncrement();
+        LocalDate today = LocalDate.now();
         String serviceCode = service.toUpperCase().substring(0, Math.min(service.length(), 3));
-        return String.format("TKT-%s-%s-%05d", serviceCode, date, counter);
+        long counter = next(PREFIX_TICKET + serviceCode, today);
+        return String.format("TKT-%s-%s-%05d", serviceCode, today.format(DATE_FORMATTER), counter);
     }
 
     /**
@@ -44,8 +114,83 @@ public class NumeroGenerator {
      * Format: REC-YYYYMMDD-XXXXX
      */
     public String generateRecuNumero() {
-        String date = LocalDate.now().format(DATE_FORMATTER);
-        long counter = recuCounter.getAndIncrement();
-        return String.format("REC-%s-%05d", date, counter);
+        LocalDate today = LocalDate.now();
+        long counter = next(PREFIX_RECU, today);
+        return String.format("REC-%s-%05d", today.format(DATE_FORMATTER), counter);
+    }
+
+    /**
+     * Retourne la prochaine valeur du compteur (prefixe, jour)
+     */
+    private long next(String prefix, LocalDate day) {
+        if (blockSize <= 1) {
+            return allocate(prefix, day, 1);
+        }
+        String key = prefix + "|" + day;
+        Block block = blocks.computeIfAbsent(key, k -> {
+            // Un nouveau jour commence : oublier les plages des jours précédents
+            blocks.keySet().removeIf(existing -> !existing.endsWith("|" + day));
+            return new Block();
+        });
+        // Verrou explicite : la réservation fait un aller-retour JDBC, qui ne doit pas
+        // épingler un thread virtuel sur son porteur comme le ferait synchronized
+        block.lock.lock();
+        try {
+            if (block.next > block.last) {
+                long last = separateTransaction.execute(status -> allocate(prefix, day, blockSize));
+                block.next = last - blockSize + 1;
+                block.last = last;
+            }
+            return block.next++;
+        } finally {
+            block.lock.unlock();
+        }
+    }
+
+    /**
+     * Réserve count valeurs et retourne la dernière (incrément atomique, même entre instances)
+     */
+    private long allocate(String prefix, LocalDate day, int count) {
+        Long last = jdbcTemplate.queryForObject(ALLOCATE_SQL, Long.class, prefix, day, count);
+        return last != null ? last : count;
+    }
+
+    /**
+     * Aligne les compteurs du jour sur les numéros déjà attribués, pour ne pas
+     * réémettre les numéros générés avant la mise en place de la table
+     */
+    private void seedFromExistingNumbers(LocalDate day) {
+        String date = day.format(DATE_FORMATTER);
+        try {
+            jdbcTemplate.update(seedSql("patients", "numero", "'" + PREFIX_PATIENT + "'", 3),
+                    day, "PAT-" + date + "-%");
+            jdbcTemplate.update(seedSql("paiements", "numero_recu", "'" + PREFIX_RECU + "'", 3),
+                    day, "REC-" + date + "-%");
+            jdbcTemplate.update(seedSql("tickets", "numero",
+                    "'" + PREFIX_TICKET + "' || split_part(numero, '-', 2)", 4),
+                    day, "TKT-%-" + date + "-%");
+        } catch (Exception e) {
+            // Tables absentes au tout premier démarrage : rien à aligner
+            logger.warn("Alignement des compteurs de numéros impossible: {}", e.getMessage());
+        }
+    }
+
+    private static String seedSql(String table, String column, String prefixExpression, int counterPart) {
+        String counter = "split_part(" + column + ", '-', " + counterPart + ")";
+        return "INSERT INTO numero_sequences (prefixe, jour, valeur) " +
+               "SELECT " + prefixExpression + ", ?, MAX(CAST(" + counter + " AS BIGINT)) FROM " + table +
+               " WHERE " + column + " LIKE ? AND " + counter + " ~ '^[0-9]+$' " +
+               "GROUP BY 1 " +
+               "ON CONFLICT (prefixe, jour) DO UPDATE " +
+               "SET valeur = GREATEST(numero_sequences.valeur, EXCLUDED.valeur)";
+    }
+
+    /**
+     * Plage de numéros réservée par cette instance
+     */
+    private static final class Block {
+        private final ReentrantLock lock = new ReentrantLock();
+        private long next = 1;
+        private long last = 0;
     }
 }
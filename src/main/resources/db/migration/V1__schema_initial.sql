@@ -1,4 +1,10 @@
--- Script de création du schéma PostgreSQL pour la gestion clinique
+-- V1 : schéma de référence de la gestion clinique.
+-- Idempotent : appliqué tel quel sur une base vide comme sur une base existante créée par
+-- schema.sql ou par Hibernate (ddl-auto=update), que Flyway prend en charge à la version 0
+-- (spring.flyway.baseline-on-migrate). Reprend schema.sql et les scripts alter-*.sql.
+
+-- Les objets déjà présents ne sont pas signalés (NOTICE "already exists, skipping")
+SET LOCAL client_min_messages = warning;
 
 -- Table des utilisateurs
 CREATE TABLE IF NOT EXISTS users (
@@ -10,6 +16,7 @@ CREATE TABLE IF NOT EXISTS users (
     password VARCHAR(255) NOT NULL,
     role VARCHAR(20) NOT NULL CHECK (role IN ('ADMIN', 'ACCUEIL', 'MEDECIN', 'CAISSIER')),
     enabled BOOLEAN DEFAULT TRUE,
+    token_version INTEGER DEFAULT 0,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
@@ -34,11 +41,12 @@ CREATE TABLE IF NOT EXISTS patients (
 CREATE INDEX IF NOT EXISTS idx_patients_numero ON patients(numero);
 CREATE INDEX IF NOT EXISTS idx_patients_nom ON patients(nom);
 CREATE INDEX IF NOT EXISTS idx_patients_prenom ON patients(prenom);
+CREATE INDEX IF NOT EXISTS idx_patients_nom_prenom_id ON patients(nom, prenom, id);
 
 -- Table des tickets
 CREATE TABLE IF NOT EXISTS tickets (
     id BIGSERIAL PRIMARY KEY,
-    numero VARCHAR(20) UNIQUE NOT NULL,
+    numero VARCHAR(30) UNIQUE NOT NULL,
     patient_id BIGINT NOT NULL REFERENCES patients(id) ON DELETE CASCADE,
     service VARCHAR(50) NOT NULL,
     statut VARCHAR(20) NOT NULL DEFAULT 'EN_ATTENTE' 
@@ -121,7 +129,48 @@ CREATE INDEX IF NOT EXISTS idx_reset_token ON password_reset_tokens(token);
 CREATE INDEX IF NOT EXISTS idx_reset_user ON password_reset_tokens(user_id);
 CREATE INDEX IF NOT EXISTS idx_reset_expiry ON password_reset_tokens(expiry_date);
 
--- Séquenceurs pour numéros uniques
-CREATE SEQUENCE IF NOT EXISTS seq_patient_numero START 1;
-CREATE SEQUENCE IF NOT EXISTS seq_ticket_numero START 1;
-CREATE SEQUENCE IF NOT EXISTS seq_recu_numero START 1;
+-- Journal de caisse : agrégats par jour, mode de paiement et caissier
+CREATE TABLE IF NOT EXISTS caisse_journal (
+    jour DATE NOT NULL,
+    mode_paiement VARCHAR(20) NOT NULL,
+    caissier_id BIGINT NOT NULL,
+    total NUMERIC(14, 2) NOT NULL,
+    nombre BIGINT NOT NULL,
+    montant_min NUMERIC(10, 2) NOT NULL,
+    montant_max NUMERIC(10, 2) NOT NULL,
+    PRIMARY KEY (jour, mode_paiement, caissier_id)
+);
+
+-- Compteurs journaliers pour numéros uniques (PAT, TKT-<service>, REC)
+CREATE TABLE IF NOT EXISTS numero_sequences (
+    prefixe VARCHAR(20) NOT NULL,
+    jour DATE NOT NULL,
+    valeur BIGINT NOT NULL,
+    PRIMARY KEY (prefixe, jour)
+);
+
+-- Bases antérieures : colonnes ajoutées après coup (alter-users.sql, alter-tickets.sql)
+ALTER TABLE users ADD COLUMN IF NOT EXISTS nom VARCHAR(100);
+ALTER TABLE users ADD COLUMN IF NOT EXISTS prenom VARCHAR(100);
+ALTER TABLE users ADD COLUMN IF NOT EXISTS token_version INTEGER DEFAULT 0;
+ALTER TABLE tickets ALTER COLUMN numero TYPE VARCHAR(30);
+
+-- Identifiants alloués par blocs de 50 (optimiseur "pooled" de Hibernate, INSERT en lots),
+-- séquences replacées au-delà du plus grand identifiant existant
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+ALTER SEQUENCE patients_id_seq INCREMENT BY 50;
+ALTER SEQUENCE tickets_id_seq INCREMENT BY 50;
+ALTER SEQUENCE consultations_id_seq INCREMENT BY 50;
+ALTER SEQUENCE paiements_id_seq INCREMENT BY 50;
+ALTER SEQUENCE audit_logs_id_seq INCREMENT BY 50;
+ALTER SEQUENCE password_reset_tokens_id_seq INCREMENT BY 50;
+DO $$
+BEGIN
+    PERFORM setval('users_id_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM users), (SELECT last_value FROM users_id_seq)));
+    PERFORM setval('patients_id_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM patients), (SELECT last_value FROM patients_id_seq)));
+    PERFORM setval('tickets_id_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM tickets), (SELECT last_value FROM tickets_id_seq)));
+    PERFORM setval('consultations_id_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM consultations), (SELECT last_value FROM consultations_id_seq)));
+    PERFORM setval('paiements_id_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM paiements), (SELECT last_value FROM paiements_id_seq)));
+    PERFORM setval('audit_logs_id_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM audit_logs), (SELECT last_value FROM audit_logs_id_seq)));
+    PERFORM setval('password_reset_tokens_id_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM password_reset_tokens), (SELECT last_value FROM password_reset_tokens_id_seq)));
+END $$;
@@ -0,0 +1,43 @@
+-- V2 : index composites et partiels alignés sur les requêtes des dépôts.
+-- CONCURRENTLY : pas de verrou bloquant les écritures pendant la construction ; Flyway exécute
+-- donc cette migration hors transaction. IF [NOT] EXISTS la rend rejouable après un échec
+-- (un index resté INVALID doit être supprimé à la main avant de relancer).
+
+-- File d'attente d'un service : WHERE service = ? AND statut = 'EN_ATTENTE' ORDER BY created_at
+-- (TicketRepository.findQueueByService, countEnAttenteByService, findQueueWithPatient)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tickets_file_attente
+    ON tickets (service, created_at) WHERE statut = 'EN_ATTENTE';
+-- Tickets d'un service, d'un statut ou d'un patient, triés par (created_at, id)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tickets_service_created
+    ON tickets (service, created_at, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tickets_statut_created
+    ON tickets (statut, created_at, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tickets_patient_created
+    ON tickets (patient_id, created_at, id);
+DROP INDEX CONCURRENTLY IF EXISTS idx_tickets_service;
+DROP INDEX CONCURRENTLY IF EXISTS idx_tickets_statut;
+DROP INDEX CONCURRENTLY IF EXISTS idx_tickets_patient;
+
+-- Historique d'un patient et consultations d'un médecin, les plus récentes d'abord
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_consultations_patient_date
+    ON consultations (patient_id, date DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_consultations_medecin_date
+    ON consultations (medecin_id, date DESC, id DESC);
+DROP INDEX CONCURRENTLY IF EXISTS idx_consultations_patient;
+DROP INDEX CONCURRENTLY IF EXISTS idx_consultations_medecin;
+
+-- Paiements d'une période (totaux par mode lus dans l'index seul) et d'un patient
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_paiements_date_mode
+    ON paiements (date, mode_paiement) INCLUDE (montant);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_paiements_patient_date
+    ON paiements (patient_id, date DESC, id DESC);
+DROP INDEX CONCURRENTLY IF EXISTS idx_paiements_date;
+DROP INDEX CONCURRENTLY IF EXISTS idx_paiements_patient;
+
+-- Journal d'audit d'une entité ou d'un utilisateur, le plus récent d'abord
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_audit_logs_entity_timestamp
+    ON audit_logs (entity_type, entity_id, timestamp DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_audit_logs_user_timestamp
+    ON audit_logs (user_id, timestamp DESC);
+DROP INDEX CONCURRENTLY IF EXISTS idx_audit_logs_entity;
+DROP INDEX CONCURRENTLY IF EXISTS idx_audit_logs_user;
@@ -0,0 +1,61 @@
+-- V3 : journal d'audit partitionné par mois sur timestamp.
+-- Chaque partition (audit_logs_AAAA_MM) garde des index de la taille d'un mois, si bien que le coût
+-- d'une insertion ne dépend plus de l'historique ; les mois échus sont détachés puis archivés sur
+-- disque par AuditPartitionManager (audit.retention-months), qui crée aussi les mois à venir.
+-- Les lignes existantes sont recopiées dans la nouvelle table : la migration verrouille
+-- audit_logs le temps de la copie.
+
+SET LOCAL client_min_messages = warning;
+
+ALTER TABLE audit_logs RENAME TO audit_logs_avant_partition;
+-- La séquence survit à l'ancienne table ; noms d'index et de clé primaire libérés pour la nouvelle
+ALTER SEQUENCE audit_logs_id_seq OWNED BY NONE;
+ALTER TABLE audit_logs_avant_partition DROP CONSTRAINT IF EXISTS audit_logs_pkey;
+DROP INDEX IF EXISTS idx_audit_logs_user_timestamp;
+DROP INDEX IF EXISTS idx_audit_logs_entity_timestamp;
+DROP INDEX IF EXISTS idx_audit_logs_timestamp;
+DROP INDEX IF EXISTS idx_audit_logs_action;
+
+-- La clé primaire d'une table partitionnée doit contenir la clé de partition
+CREATE TABLE audit_logs (
+    id BIGINT NOT NULL DEFAULT nextval('audit_logs_id_seq'),
+    user_id BIGINT REFERENCES users(id) ON DELETE SET NULL,
+    action VARCHAR(50) NOT NULL,
+    entity_type VARCHAR(50) NOT NULL,
+    entity_id BIGINT,
+    details TEXT,
+    ip_address VARCHAR(45),
+    timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+ALTER SEQUENCE audit_logs_id_seq OWNED BY audit_logs.id;
+
+-- Index déclarés sur la table mère, créés sur chaque partition. L'index sur action disparaît :
+-- aucune requête ne filtre sur l'action seule.
+CREATE INDEX idx_audit_logs_user_timestamp ON audit_logs (user_id, timestamp DESC);
+CREATE INDEX idx_audit_logs_entity_timestamp ON audit_logs (entity_type, entity_id, timestamp DESC);
+CREATE INDEX idx_audit_logs_timestamp ON audit_logs (timestamp);
+
+-- Partition par défaut : reçoit une ligne hors des mois créés (horloge décalée) au lieu de la rejeter
+CREATE TABLE audit_logs_default PARTITION OF audit_logs DEFAULT;
+
+-- Un mois par partition, du plus ancien mois présent jusqu'à trois mois après le mois courant
+DO $$
+DECLARE
+    mois DATE;
+    dernier DATE := date_trunc('month', CURRENT_DATE) + INTERVAL '3 months';
+BEGIN
+    SELECT date_trunc('month', COALESCE(MIN(timestamp), CURRENT_TIMESTAMP))::date
+    INTO mois FROM audit_logs_avant_partition;
+    WHILE mois <= dernier LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF audit_logs FOR VALUES FROM (%L) TO (%L)',
+                       'audit_logs_' || to_char(mois, 'YYYY_MM'), mois, mois + INTERVAL '1 month');
+        mois := mois + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO audit_logs (id, user_id, action, entity_type, entity_id, details, ip_address, timestamp)
+SELECT id, user_id, action, entity_type, entity_id, details, ip_address, COALESCE(timestamp, CURRENT_TIMESTAMP)
+FROM audit_logs_avant_partition;
+
+DROP TABLE audit_logs_avant_partition;
@@ -0,0 +1,23 @@
+-- V4 : recherche des patients par trigrammes sur une clé normalisée (PatientSearchRepositoryImpl).
+-- Les extensions demandent des droits que le rôle applicatif n'a pas forcément : elles sont
+-- installées ici, par le rôle qui migre. Exécutée hors transaction (V4__recherche_patients.sql.conf)
+-- pour construire l'index en CONCURRENTLY ; IF NOT EXISTS / OR REPLACE la rendent rejouable
+-- (un index resté INVALID doit être supprimé à la main avant de relancer).
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+-- Clé de recherche : minuscules sans accents (ligatures développées par unaccent), caractères
+-- autres que lettres, chiffres et espaces retirés, espaces consécutifs réduits à un seul.
+-- Même normalisation côté Java : SearchNormalizer.
+-- unaccent() n'est que STABLE : l'appel avec dictionnaire explicite et schéma qualifié
+-- permet de déclarer la fonction IMMUTABLE, condition pour l'indexer.
+CREATE OR REPLACE FUNCTION patient_search_key(nom text, prenom text, numero text)
+RETURNS text LANGUAGE sql IMMUTABLE PARALLEL SAFE AS $$
+SELECT btrim(regexp_replace(regexp_replace(lower(public.unaccent('public.unaccent'::regdictionary,
+    coalesce(nom, '') || ' ' || coalesce(prenom, '') || ' ' || coalesce(numero, ''))),
+    '[^[:alnum:] ]+', '', 'g'), '\s+', ' ', 'g'))
+$$;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_patients_search_trgm ON patients
+    USING gin (patient_search_key(nom, prenom, numero) gin_trgm_ops);
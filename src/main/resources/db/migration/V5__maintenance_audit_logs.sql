@@ -0,0 +1,87 @@
+-- V5 : maintenance des partitions du journal d'audit sans droit de DDL pour le rôle applicatif.
+-- Créer, détacher et supprimer une partition demande d'être propriétaire d'audit_logs et le droit
+-- CREATE sur le schéma, que le rôle applicatif n'a pas : AuditPartitionManager passe par ces
+-- fonctions SECURITY DEFINER, exécutées avec les droits du rôle qui migre. Elles ne portent que
+-- sur les tables de mois audit_logs_AAAA_MM et seul le rôle applicatif (placeholder app-role,
+-- par défaut spring.datasource.username) peut les appeler.
+
+-- Vrai si nom est une table de mois détachée d'audit_logs, en attente d'archivage
+CREATE OR REPLACE FUNCTION audit_logs_mois_detache(nom TEXT) RETURNS BOOLEAN
+    LANGUAGE sql STABLE AS $$
+    SELECT nom ~ '^audit_logs_[0-9]{4}_[0-9]{2}$' AND EXISTS (
+        SELECT 1 FROM pg_class WHERE oid = to_regclass(nom) AND relkind = 'r' AND NOT relispartition)
+$$;
+
+-- Crée la partition du mois de jour s'il n'en a pas ; retourne faux si elle existe déjà
+CREATE OR REPLACE FUNCTION audit_logs_create_partition(jour DATE) RETURNS BOOLEAN
+    LANGUAGE plpgsql SECURITY DEFINER AS $$
+DECLARE
+    debut DATE := date_trunc('month', jour)::date;
+    fin DATE := (date_trunc('month', jour) + INTERVAL '1 month')::date;
+    nom TEXT := 'audit_logs_' || to_char(jour, 'YYYY_MM');
+BEGIN
+    IF to_regclass(nom) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+    LOCK TABLE audit_logs_default IN EXCLUSIVE MODE;
+    IF NOT EXISTS (SELECT 1 FROM audit_logs_default WHERE timestamp >= debut AND timestamp < fin) THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF audit_logs FOR VALUES FROM (%L) TO (%L)', nom, debut, fin);
+    ELSE
+        -- Des lignes du mois sont déjà dans la partition par défaut (mois non créé à temps) :
+        -- CREATE ... PARTITION OF échouerait. Elles passent dans une table du mois, rattachée ensuite.
+        EXECUTE format('CREATE TABLE %I (LIKE audit_logs INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', nom);
+        EXECUTE format('WITH deplacees AS (DELETE FROM audit_logs_default '
+                       'WHERE timestamp >= %L AND timestamp < %L RETURNING *) '
+                       'INSERT INTO %I SELECT * FROM deplacees', debut, fin, nom);
+        EXECUTE format('ALTER TABLE audit_logs ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)', nom, debut, fin);
+    END IF;
+    RETURN TRUE;
+END $$;
+
+-- Détache une partition de mois ; le lock_timeout de l'appelant (SET LOCAL) s'applique
+CREATE OR REPLACE FUNCTION audit_logs_detach_partition(nom TEXT) RETURNS VOID
+    LANGUAGE plpgsql SECURITY DEFINER AS $$
+BEGIN
+    IF nom !~ '^audit_logs_[0-9]{4}_[0-9]{2}$' OR NOT EXISTS (
+            SELECT 1 FROM pg_inherits WHERE inhparent = 'audit_logs'::regclass AND inhrelid = to_regclass(nom)) THEN
+        RAISE EXCEPTION 'Partition du journal d''audit inconnue: %', nom;
+    END IF;
+    EXECUTE format('ALTER TABLE audit_logs DETACH PARTITION %I', nom);
+END $$;
+
+-- Lignes d'une table de mois détachée, pour son export (COPY (SELECT ...) TO STDOUT)
+CREATE OR REPLACE FUNCTION audit_logs_detached_rows(nom TEXT) RETURNS SETOF audit_logs
+    LANGUAGE plpgsql SECURITY DEFINER AS $$
+BEGIN
+    IF NOT audit_logs_mois_detache(nom) THEN
+        RAISE EXCEPTION 'Table de mois détachée inconnue: %', nom;
+    END IF;
+    RETURN QUERY EXECUTE format('SELECT * FROM %I', nom);
+END $$;
+
+-- Supprime une table de mois détachée, une fois archivée
+CREATE OR REPLACE FUNCTION audit_logs_drop_detached(nom TEXT) RETURNS VOID
+    LANGUAGE plpgsql SECURITY DEFINER AS $$
+BEGIN
+    IF NOT audit_logs_mois_detache(nom) THEN
+        RAISE EXCEPTION 'Table de mois détachée inconnue: %', nom;
+    END IF;
+    EXECUTE format('DROP TABLE %I', nom);
+END $$;
+
+REVOKE EXECUTE ON FUNCTION audit_logs_create_partition(DATE), audit_logs_detach_partition(TEXT),
+    audit_logs_detached_rows(TEXT), audit_logs_drop_detached(TEXT) FROM PUBLIC;
+
+DO $$
+DECLARE
+    fonction TEXT;
+BEGIN
+    EXECUTE format('GRANT EXECUTE ON FUNCTION audit_logs_create_partition(DATE), audit_logs_detach_partition(TEXT), '
+                   'audit_logs_detached_rows(TEXT), audit_logs_drop_detached(TEXT) TO %I', '${app-role}');
+    -- search_path figé sur le schéma de la migration, pg_temp en dernier : un appelant ne peut pas
+    -- substituer ses propres tables à audit_logs
+    FOREACH fonction IN ARRAY ARRAY['audit_logs_mois_detache(TEXT)', 'audit_logs_create_partition(DATE)',
+            'audit_logs_detach_partition(TEXT)', 'audit_logs_detached_rows(TEXT)', 'audit_logs_drop_detached(TEXT)'] LOOP
+        EXECUTE format('ALTER FUNCTION %s SET search_path = %I, pg_temp', fonction, current_schema());
+    END LOOP;
+END $$;
@@ -0,0 +1,5 @@
+-- V6 : numéro de version des tickets (verrouillage optimiste JPA, @Version).
+-- Les changements de statut sont appliqués à la file en mémoire après leur commit ;
+-- la version permet au moteur d'ignorer un état plus ancien que celui déjà appliqué
+-- quand deux commits sur le même ticket sont notifiés dans le désordre.
+ALTER TABLE tickets ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,71 @@
+package com.clinique.gestion;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Base des tests d'intégration : application complète sur un PostgreSQL embarqué,
+ * migré par Flyway, partagé par toutes les classes de test et arrêté avec la JVM.
+ * Les répertoires de travail (journal disque et archives d'audit, dossiers) sont temporaires.
+ */
+@SpringBootTest
+public abstract class PostgresIntegrationTest {
+
+    public static final EmbeddedPostgres POSTGRES = startPostgres();
+
+    public static final Path WORK_DIRECTORY = createWorkDirectory();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                POSTGRES.close();
+                FileSystemUtils.deleteRecursively(WORK_DIRECTORY);
+            } catch (IOException e) {
+                // Arrêt de la JVM : rien d'autre à faire
+            }
+        }));
+    }
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        register(registry, "postgres", "postgres");
+    }
+
+    /**
+     * Propriétés de l'application connectée à la base database du PostgreSQL embarqué sous le rôle user
+     */
+    public static void register(DynamicPropertyRegistry registry, String database, String user) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl(user, database));
+        registry.add("spring.datasource.username", () -> user);
+        registry.add("spring.datasource.password", () -> "");
+        registry.add("spring.jpa.show-sql", () -> "false");
+        registry.add("logging.level.org.hibernate.SQL", () -> "WARN");
+        registry.add("audit.spool.directory", () -> WORK_DIRECTORY.resolve("audit-spool").toString());
+        registry.add("audit.archive.directory", () -> WORK_DIRECTORY.resolve("audit-archive").toString());
+        registry.add("patients.dossier.archive-directory", () -> WORK_DIRECTORY.resolve("dossiers").toString());
+        registry.add("patients.dossier.cache.directory", () -> WORK_DIRECTORY.resolve("dossier-cache").toString());
+    }
+
+    private static EmbeddedPostgres startPostgres() {
+        try {
+            return EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new IllegalStateException("Démarrage du PostgreSQL embarqué impossible", e);
+        }
+    }
+
+    private static Path createWorkDirectory() {
+        try {
+            return Files.createTempDirectory("clinique-test");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.clinique.gestion.config;
+
+import com.clinique.gestion.PostgresIntegrationTest;
+import com.clinique.gestion.repository.PasswordResetTokenRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Vérification des plans au démarrage (query-plans.verify=true par défaut) : les méthodes
+ * @Modifying des dépôts ne sont jamais appelées.
+ */
+class QueryPlanVerifierTest extends PostgresIntegrationTest {
+
+    @SpyBean
+    private PasswordResetTokenRepository passwordResetTokenRepository;
+
+    @Autowired
+    private QueryPlanVerifier queryPlanVerifier;
+
+    @Test
+    void neverInvokesModifyingQueries() {
+        queryPlanVerifier.verify();
+
+        // Ni au démarrage, ni lors de cette nouvelle vérification
+        verify(passwordResetTokenRepository, never()).deleteExpiredTokens(any());
+    }
+}
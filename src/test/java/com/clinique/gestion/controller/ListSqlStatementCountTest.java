@@ -0,0 +1,132 @@
+package com.clinique.gestion.controller;
+
+import com.clinique.gestion.PostgresIntegrationTest;
+import com.clinique.gestion.config.SqlStatementCountFilter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Nombre de requêtes SQL (en-tête X-SQL-Statement-Count) des listes de tickets, paiements et
+ * consultations, sur un PostgreSQL embarqué : une ou deux requêtes, quelle que soit la taille
+ * de la liste. Un patient a une ligne de chaque, l'autre MANY.
+ */
+@AutoConfigureMockMvc
+@WithMockUser(roles = "ADMIN")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ListSqlStatementCountTest extends PostgresIntegrationTest {
+
+    private static final int MANY = 20;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long medecinId;
+    private long onePatientId;
+    private long manyPatientId;
+
+    @BeforeAll
+    void seed() {
+        medecinId = insertUser("medecin.test", "MEDECIN");
+        long caissierId = insertUser("caissier.test", "CAISSIER");
+        onePatientId = insertPatient("P-TEST-1");
+        manyPatientId = insertPatient("P-TEST-2");
+        insertRows(onePatientId, caissierId, 1);
+        insertRows(manyPatientId, caissierId, MANY);
+    }
+
+    @Test
+    void ticketsByPatient() throws Exception {
+        assertConstant("/api/tickets/patient/" + onePatientId, "/api/tickets/patient/" + manyPatientId);
+    }
+
+    @Test
+    void ticketsByServiceAndStatut() throws Exception {
+        assertOneOrTwo(statements("/api/tickets/service/Consultation"));
+        assertOneOrTwo(statements("/api/tickets/statut/TERMINE"));
+    }
+
+    @Test
+    void paiementsByPatient() throws Exception {
+        assertConstant("/api/paiements/patient/" + onePatientId, "/api/paiements/patient/" + manyPatientId);
+    }
+
+    @Test
+    void paiementsByPeriode() throws Exception {
+        assertOneOrTwo(statements("/api/paiements/periode?start=" + LocalDateTime.now().minusDays(60)
+                + "&end=" + LocalDateTime.now().plusDays(1)));
+    }
+
+    @Test
+    void consultationsByPatient() throws Exception {
+        assertConstant("/api/consultations/patient/" + onePatientId, "/api/consultations/patient/" + manyPatientId);
+    }
+
+    @Test
+    void consultationsByMedecinAndAll() throws Exception {
+        assertOneOrTwo(statements("/api/consultations/medecin/" + medecinId));
+        assertOneOrTwo(statements("/api/consultations"));
+    }
+
+    @Test
+    void jdbcTemplateStatementsAreCounted() throws Exception {
+        // Total lu par JdbcTemplate dans le journal de caisse, hors Hibernate
+        assertTrue(statements("/api/paiements/total?start=" + LocalDateTime.now().minusDays(60)
+                + "&end=" + LocalDateTime.now().plusDays(1)) >= 1);
+    }
+
+    private void assertConstant(String oneUrl, String manyUrl) throws Exception {
+        int one = statements(oneUrl);
+        assertOneOrTwo(one);
+        assertEquals(one, statements(manyUrl), "requêtes SQL pour " + MANY + " lignes (" + manyUrl + ")");
+    }
+
+    private static void assertOneOrTwo(int count) {
+        assertTrue(count >= 1 && count <= 2, "1 ou 2 requêtes SQL attendues, " + count + " exécutées");
+    }
+
+    private int statements(String url) throws Exception {
+        MvcResult result = mockMvc.perform(get(url)).andExpect(status().isOk()).andReturn();
+        String header = result.getResponse().getHeader(SqlStatementCountFilter.HEADER);
+        return Integer.parseInt(header);
+    }
+
+    private long insertUser(String username, String role) {
+        return jdbcTemplate.queryForObject("INSERT INTO users (username, email, nom, prenom, password, role) "
+                        + "VALUES (?, ?, 'Test', ?, 'x', ?) RETURNING id",
+                Long.class, username, username + "@clinique.test", username, role);
+    }
+
+    private long insertPatient(String numero) {
+        return jdbcTemplate.queryForObject("INSERT INTO patients (numero, nom, prenom, date_naissance) "
+                + "VALUES (?, 'Patient', ?, DATE '1980-01-01') RETURNING id", Long.class, numero, numero);
+    }
+
+    private void insertRows(long patientId, long caissierId, int rows) {
+        jdbcTemplate.update("INSERT INTO tickets (numero, patient_id, service, statut) "
+                + "SELECT 'T-' || ? || '-' || i, ?, 'Consultation', 'TERMINE' FROM generate_series(1, ?) i",
+                patientId, patientId, rows);
+        jdbcTemplate.update("INSERT INTO consultations (patient_id, medecin_id, date, motif) "
+                + "SELECT ?, ?, now() - i * interval '1 day', 'Contrôle' FROM generate_series(1, ?) i",
+                patientId, medecinId, rows);
+        jdbcTemplate.update("INSERT INTO paiements (patient_id, montant, mode_paiement, date, caissier_id, numero_recu) "
+                + "SELECT ?, 5000, 'ESPECES', now() - i * interval '1 day', ?, 'R-' || ? || '-' || i "
+                + "FROM generate_series(1, ?) i", patientId, caissierId, patientId, rows);
+    }
+}
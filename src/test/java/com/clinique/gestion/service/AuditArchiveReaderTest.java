@@ -0,0 +1,193 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.dto.AuditLogDTO;
+import com.clinique.gestion.dto.AuditLogFilter;
+import com.clinique.gestion.dto.AuditPageDTO;
+import com.clinique.gestion.repository.AuditLogRepository;
+import com.clinique.gestion.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Archive colonnaire du journal d'audit : conversion de l'export CSV puis lecture (aller-retour),
+ * pagination par clé (timestamp, id) autour des limites de blocs de détails, et remplacement
+ * d'une archive déjà mappée par la recherche.
+ */
+class AuditArchiveReaderTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2023, 1, 2, 8, 0);
+
+    // Trois lignes par horodatage : les groupes chevauchent les limites de blocs (1024, 2048)
+    private static final int ROWS = 2 * AuditArchiveWriter.BLOCK_ROWS + 100;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void convertedArchiveReadsBackEveryColumn() throws IOException {
+        try (AuditArchiveReader reader = AuditArchiveReader.open(archive("audit_logs_2023_01.col", ROWS, "v1"))) {
+            assertEquals(ROWS, reader.size());
+            List<AuditLogDTO> all = reader.search(new AuditLogFilter(), null, null, ROWS + 1);
+
+            assertEquals(ROWS, all.size());
+            for (int i = 0; i < ROWS; i++) {
+                // Les plus récentes d'abord
+                assertRow(ROWS - 1 - i, all.get(i), "v1");
+            }
+        }
+    }
+
+    @Test
+    void keysetBoundAtBlockEdges() throws IOException {
+        try (AuditArchiveReader reader = AuditArchiveReader.open(archive("audit_logs_2023_01.col", ROWS, "v1"))) {
+            AuditLogFilter filter = new AuditLogFilter();
+            int blockRows = AuditArchiveWriter.BLOCK_ROWS;
+            for (int row : new int[]{1, blockRows - 1, blockRows, blockRows + 1, 2 * blockRows, ROWS - 1}) {
+                // Curseur sur la ligne : la page commence à la ligne précédente, même à horodatage égal
+                List<AuditLogDTO> page = reader.search(filter, timestamp(row), id(row), 4);
+                assertEquals(Math.min(4, row), page.size(), "ligne " + row);
+                for (int i = 0; i < page.size(); i++) {
+                    assertRow(row - 1 - i, page.get(i), "v1");
+                }
+            }
+            assertTrue(reader.search(filter, timestamp(0), id(0), 4).isEmpty());
+
+            // Pages successives de 100 : chaque ligne exactement une fois
+            List<Long> ids = new ArrayList<>();
+            List<AuditLogDTO> page = reader.search(filter, null, null, 100);
+            while (!page.isEmpty()) {
+                page.forEach(dto -> ids.add(dto.getId()));
+                AuditLogDTO last = page.get(page.size() - 1);
+                page = reader.search(filter, last.getTimestamp(), last.getId(), 100);
+            }
+            assertEquals(ROWS, ids.size());
+            assertEquals(ROWS, ids.stream().distinct().count());
+        }
+    }
+
+    @Test
+    void periodAndColumnFilters() throws IOException {
+        try (AuditArchiveReader reader = AuditArchiveReader.open(archive("audit_logs_2023_01.col", ROWS, "v1"))) {
+            AuditLogFilter period = new AuditLogFilter();
+            period.setFrom(timestamp(AuditArchiveWriter.BLOCK_ROWS));
+            period.setTo(timestamp(AuditArchiveWriter.BLOCK_ROWS + 6));
+            List<AuditLogDTO> rows = reader.search(period, null, null, 100);
+            // [from, to[ : deux groupes complets de trois lignes
+            assertEquals(6, rows.size());
+            assertEquals(id(AuditArchiveWriter.BLOCK_ROWS + 4), rows.get(0).getId());
+
+            AuditLogFilter action = new AuditLogFilter();
+            action.setAction("DELETE");
+            action.setUserId(7L);
+            List<AuditLogDTO> deleted = reader.search(action, null, null, ROWS);
+            assertEquals((ROWS + 2) / 10, deleted.size());
+            assertTrue(deleted.stream().allMatch(dto -> "DELETE".equals(dto.getAction()) && dto.getUserId() == 7L));
+            action.setAction("INCONNUE");
+            assertTrue(reader.search(action, null, null, ROWS).isEmpty());
+        }
+    }
+
+    @Test
+    void replacedArchiveIsReopenedAndOldMappingClosed() throws IOException {
+        Path file = archive("audit_logs_2023_01.col", 10, "v1");
+        AuditQueryService service = new AuditQueryService();
+        ReflectionTestUtils.setField(service, "auditLogRepository", mock(AuditLogRepository.class));
+        ReflectionTestUtils.setField(service, "userRepository", mock(UserRepository.class));
+        ReflectionTestUtils.setField(service, "defaultPageSize", 50);
+        ReflectionTestUtils.setField(service, "maxPageSize", 500);
+        ReflectionTestUtils.setField(service, "archiveDirectory", directory.toString());
+
+        assertEquals("v1 9", search(service).get(0).getDetails());
+        AuditArchiveReader first = openReader(service, file);
+
+        // Nouvelle conversion du même mois, renommée par-dessus l'archive mappée
+        archive("audit_logs_2023_01.col", 12, "v2");
+        assertEquals("v2 11", search(service).get(0).getDetails());
+        assertNotSame(first, openReader(service, file));
+        assertFalse(first.acquire(), "ancien mappage encore ouvert");
+
+        // Archive supprimée : fermée et retirée du cache
+        AuditArchiveReader second = openReader(service, file);
+        Files.delete(file);
+        assertTrue(search(service).isEmpty());
+        assertFalse(second.acquire());
+        service.closeArchives();
+    }
+
+    private static List<AuditLogDTO> search(AuditQueryService service) {
+        AuditPageDTO page = service.search(new AuditLogFilter(), null, 50);
+        return page.getItems();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AuditArchiveReader openReader(AuditQueryService service, Path file) {
+        Map<Path, ?> archives = (Map<Path, ?>) ReflectionTestUtils.getField(service, "archives");
+        return (AuditArchiveReader) ReflectionTestUtils.invokeMethod(archives.get(file), "reader");
+    }
+
+    /**
+     * Export CSV d'une partition (dans le désordre, comme COPY) converti en archive
+     */
+    private Path archive(String name, int rows, String version) throws IOException {
+        Path csvGz = directory.resolve(name + ".csv.gz");
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(csvGz)),
+                StandardCharsets.UTF_8)) {
+            writer.write("id,timestamp,user_id,entity_id,action,entity_type,ip_address,details\n");
+            for (int row = rows - 1; row >= 0; row--) {
+                writer.write(id(row) + "," + timestamp(row).toString().replace('T', ' ') + ","
+                        + (row % 5 == 0 ? "" : String.valueOf(row % 10)) + "," + row + ","
+                        + (row % 2 == 0 ? "UPDATE" : "DELETE") + ",Patient,"
+                        + (row % 3 == 0 ? "" : "10.0.0." + row % 250) + ","
+                        + (row % 7 == 0 ? "" : "\"" + version + " " + row + "\"") + "\n");
+            }
+        }
+        Path target = directory.resolve(name);
+        assertEquals(rows, AuditArchiveWriter.convert(csvGz, target));
+        Files.delete(csvGz);
+        return target;
+    }
+
+    private static void assertRow(int row, AuditLogDTO dto, String version) {
+        assertEquals(id(row), dto.getId());
+        assertEquals(timestamp(row), dto.getTimestamp());
+        if (row % 5 == 0) {
+            assertNull(dto.getUserId());
+        } else {
+            assertEquals(row % 10, dto.getUserId());
+        }
+        assertEquals(row, dto.getEntityId());
+        assertEquals(row % 2 == 0 ? "UPDATE" : "DELETE", dto.getAction());
+        assertEquals("Patient", dto.getEntityType());
+        assertEquals(row % 3 == 0 ? null : "10.0.0." + row % 250, dto.getIpAddress());
+        assertEquals(row % 7 == 0 ? null : version + " " + row, dto.getDetails());
+        assertTrue(dto.isArchived());
+    }
+
+    private static long id(int row) {
+        return 1000L + row;
+    }
+
+    private static LocalDateTime timestamp(int row) {
+        return T0.plusSeconds(row / 3).plusNanos(123_000);
+    }
+}
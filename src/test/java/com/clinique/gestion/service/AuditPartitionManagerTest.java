@@ -0,0 +1,157 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.PostgresIntegrationTest;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static com.clinique.gestion.PostgresIntegrationTest.POSTGRES;
+import static com.clinique.gestion.PostgresIntegrationTest.WORK_DIRECTORY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Maintenance des partitions d'audit_logs avec un rôle applicatif limité au DML : les migrations
+ * passent d'abord en postgres (comme mvn -Pmigrate), puis l'application démarre sans Flyway en
+ * clinique_app, ni propriétaire des tables ni autorisé à créer dans le schéma. Création des mois,
+ * reprise des lignes de audit_logs_default, détachement, archivage et suppression passent par
+ * les fonctions de la migration V5.
+ */
+@SpringBootTest
+class AuditPartitionManagerTest {
+
+    private static final String APP_ROLE = "clinique_app";
+    private static final String DATABASE = "clinique_roles";
+
+    @Autowired
+    private AuditPartitionManager partitionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void appRoleProperties(DynamicPropertyRegistry registry) throws SQLException {
+        createDmlOnlyRole();
+        PostgresIntegrationTest.register(registry, DATABASE, APP_ROLE);
+        registry.add("spring.flyway.enabled", () -> "false");
+        registry.add("audit.archive.directory", () -> WORK_DIRECTORY.resolve("audit-archive-roles").toString());
+    }
+
+    @Test
+    void applicationRoleCannotRunDdl() {
+        assertEquals(APP_ROLE, jdbcTemplate.queryForObject("SELECT current_user", String.class));
+        assertFalse(jdbcTemplate.queryForObject("SELECT pg_has_role(current_user, relowner, 'USAGE') "
+                + "FROM pg_class WHERE oid = 'audit_logs'::regclass", Boolean.class));
+        assertThrows(DataAccessException.class, () -> jdbcTemplate.execute("CREATE TABLE ddl_interdit (id INT)"));
+        assertThrows(DataAccessException.class, () -> jdbcTemplate.execute(
+                "CREATE TABLE audit_logs_2040_01 PARTITION OF audit_logs FOR VALUES FROM ('2040-01-01') TO ('2040-02-01')"));
+    }
+
+    @Test
+    void createsUpcomingPartitions() {
+        assertEquals(4, partitionManager.createUpcomingPartitions(YearMonth.of(2031, 1)));
+        assertEquals(0, partitionManager.createUpcomingPartitions(YearMonth.of(2031, 1)));
+        assertTrue(exists("audit_logs_2031_04"));
+    }
+
+    @Test
+    void movesDefaultPartitionRowsIntoNewMonth() {
+        insertAudit(LocalDateTime.of(2035, 5, 10, 9, 30));
+        assertEquals("audit_logs_default", partitionOf(2035));
+
+        partitionManager.createUpcomingPartitions(YearMonth.of(2035, 5));
+
+        assertEquals("audit_logs_2035_05", partitionOf(2035));
+    }
+
+    @Test
+    void archivesExpiredMonthsOnceUnderLock() throws Exception {
+        partitionManager.createUpcomingPartitions(YearMonth.of(2019, 1));
+        insertAudit(LocalDateTime.of(2019, 2, 3, 8, 0));
+        insertAudit(LocalDateTime.of(2019, 2, 17, 16, 45));
+
+        // Une autre instance tient le verrou : ce passage ne fait rien
+        try (Connection other = POSTGRES.getDatabase("postgres", DATABASE).getConnection();
+             Statement statement = other.createStatement()) {
+            statement.execute("SELECT pg_advisory_lock(" + AuditPartitionManager.MAINTENANCE_LOCK_KEY + ")");
+            assertFalse(partitionManager.maintain());
+            assertTrue(exists("audit_logs_2019_02"));
+            statement.execute("SELECT pg_advisory_unlock(" + AuditPartitionManager.MAINTENANCE_LOCK_KEY + ")");
+        }
+
+        assertTrue(partitionManager.maintain());
+
+        assertFalse(exists("audit_logs_2019_02"));
+        Path archive = WORK_DIRECTORY.resolve("audit-archive-roles");
+        assertEquals(3, lines(archive.resolve("audit_logs_2019_02.csv.gz")));
+        assertTrue(Files.exists(archive.resolve("audit_logs_2019_02.col")));
+    }
+
+    private boolean exists(String table) {
+        return jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table);
+    }
+
+    private String partitionOf(int year) {
+        return jdbcTemplate.queryForObject("SELECT tableoid::regclass::text FROM audit_logs "
+                + "WHERE timestamp >= make_date(?, 1, 1) AND timestamp < make_date(? + 1, 1, 1)", String.class, year, year);
+    }
+
+    private void insertAudit(LocalDateTime timestamp) {
+        jdbcTemplate.update("INSERT INTO audit_logs (action, entity_type, entity_id, details, timestamp) "
+                + "VALUES ('UPDATE', 'Patient', 1, 'test', ?)", timestamp);
+    }
+
+    private static long lines(Path csvGz) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(csvGz)), StandardCharsets.UTF_8))) {
+            return reader.lines().count();
+        }
+    }
+
+    /**
+     * Base migrée et rôle de l'application : DML sur les tables créées par les migrations, rien d'autre
+     */
+    private static void createDmlOnlyRole() throws SQLException {
+        try (Connection connection = POSTGRES.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE ROLE " + APP_ROLE + " LOGIN");
+            statement.execute("CREATE DATABASE " + DATABASE);
+        }
+        try (Connection connection = POSTGRES.getDatabase("postgres", DATABASE).getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("REVOKE CREATE ON SCHEMA public FROM PUBLIC");
+            statement.execute("ALTER DEFAULT PRIVILEGES IN SCHEMA public "
+                    + "GRANT SELECT, INSERT, UPDATE, DELETE ON TABLES TO " + APP_ROLE);
+            statement.execute("ALTER DEFAULT PRIVILEGES IN SCHEMA public "
+                    + "GRANT USAGE, SELECT, UPDATE ON SEQUENCES TO " + APP_ROLE);
+        }
+        Flyway.configure()
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .dataSource(POSTGRES.getDatabase("postgres", DATABASE))
+                .locations("classpath:db/migration")
+                .placeholders(Map.of("app-role", APP_ROLE))
+                .load()
+                .migrate();
+    }
+}
@@ -0,0 +1,55 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.PostgresIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Identifiants du journal d'audit : audit_logs_id_seq avance de 50 (V1) et l'écrivain
+ * consomme chaque plage réservée en entier au lieu de brûler 50 valeurs par ligne.
+ */
+class AuditWriterSequenceTest extends PostgresIntegrationTest {
+
+    private static final int ENTRIES = 120;
+    private static final String ENTITY_TYPE = "SequenceTest";
+
+    @Autowired
+    private AuditWriter auditWriter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void consumesWholeIdBlocks() throws InterruptedException {
+        LocalDateTime timestamp = LocalDateTime.now();
+        for (int i = 0; i < ENTRIES; i++) {
+            auditWriter.submit(new AuditEntry(null, "CREATE", ENTITY_TYPE, (long) i, "test", null, timestamp));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (count() < ENTRIES && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(ENTRIES, count());
+
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM audit_logs WHERE entity_type = ? ORDER BY id", Long.class, ENTITY_TYPE);
+        assertEquals(ENTRIES, ids.stream().distinct().count());
+        // Au plus une plage entamée avant et une après les lignes du test
+        assertTrue(ids.get(ids.size() - 1) - ids.get(0) < ENTRIES + 2L * AuditWriter.ID_BLOCK_SIZE,
+                "identifiants trop espacés: " + ids.get(0) + ".." + ids.get(ids.size() - 1));
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM audit_logs WHERE entity_type = ?", Integer.class, ENTITY_TYPE);
+    }
+}
@@ -0,0 +1,166 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.util.BackgroundThreads;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Contre-pression de l'écrivain d'audit : une file pleine ne fait jamais écrire en base
+ * le thread appelant (submit() est appelé après le commit de la requête) ; les entrées
+ * passent par le débordement disque et sont écrites par le thread d'audit.
+ */
+class AuditWriterTest {
+
+    private static final int ENTRIES = 20;
+
+    @TempDir
+    Path spoolDirectory;
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final Set<Thread> writerThreads = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger written = new AtomicInteger();
+
+    // Base lente : les insertions attendent que le test ait tout soumis
+    private final CountDownLatch databaseReady = new CountDownLatch(1);
+
+    private AuditWriter writer;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        databaseReady.countDown();
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void fullQueueSpillsToDiskInsteadOfWritingOnCaller() throws Exception {
+        stubInsert();
+        writer = writer("latency");
+
+        for (int i = 0; i < ENTRIES; i++) {
+            writer.submit(entry(i));
+        }
+
+        assertFalse(writerThreads.contains(Thread.currentThread()), "insertion sur le thread appelant");
+        assertTrue(meterRegistry.get("audit.backpressure").counter().count() > 0);
+        assertTrue(meterRegistry.get("audit.overflow.size").gauge().value() > 0);
+
+        databaseReady.countDown();
+        awaitWritten(ENTRIES);
+
+        await(() -> meterRegistry.get("audit.overflow.size").gauge().value() == 0.0);
+        assertEquals(0.0, meterRegistry.get("audit.overflow.size").gauge().value());
+        assertFalse(writerThreads.contains(Thread.currentThread()), "insertion sur le thread appelant");
+    }
+
+    @Test
+    void durableModeKeepsSpilledEntries() throws Exception {
+        stubInsert();
+        writer = writer("durable");
+
+        for (int i = 0; i < ENTRIES; i++) {
+            writer.submit(entry(i));
+        }
+        databaseReady.countDown();
+        awaitWritten(ENTRIES);
+        writer.stop();
+        writer = null;
+
+        // Tout est écrit : aucun segment du journal disque ni du débordement n'est conservé
+        try (Stream<Path> files = Files.walk(spoolDirectory)) {
+            assertEquals(0, files.filter(path -> path.toString().endsWith(".jsonl")).count());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubInsert() {
+        AtomicLong sequence = new AtomicLong();
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), anyInt())).thenAnswer(invocation -> {
+            List<Long> tops = new ArrayList<>();
+            for (int i = 0; i < (int) invocation.getArgument(2); i++) {
+                tops.add(sequence.addAndGet(AuditWriter.ID_BLOCK_SIZE));
+            }
+            return tops;
+        });
+        doAnswer(invocation -> {
+            writerThreads.add(Thread.currentThread());
+            databaseReady.await();
+            Collection<AuditEntry> entries = invocation.getArgument(1);
+            written.addAndGet(entries.size());
+            return new int[0][];
+        }).when(jdbcTemplate).batchUpdate(anyString(), any(Collection.class), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    private AuditWriter writer(String mode) throws Exception {
+        AuditWriter auditWriter = new AuditWriter();
+        ReflectionTestUtils.setField(auditWriter, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(auditWriter, "objectMapper", new ObjectMapper().registerModule(new JavaTimeModule()));
+        ReflectionTestUtils.setField(auditWriter, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(auditWriter, "backgroundThreads", new BackgroundThreads());
+        ReflectionTestUtils.setField(auditWriter, "mode", mode);
+        ReflectionTestUtils.setField(auditWriter, "capacity", 2);
+        ReflectionTestUtils.setField(auditWriter, "offerTimeoutMs", 5L);
+        ReflectionTestUtils.setField(auditWriter, "batchSize", 50);
+        ReflectionTestUtils.setField(auditWriter, "spoolDirectory", spoolDirectory.toString());
+        ReflectionTestUtils.setField(auditWriter, "fsync", false);
+        auditWriter.start();
+        return auditWriter;
+    }
+
+    private void awaitWritten(int expected) throws InterruptedException {
+        await(() -> written.get() >= expected);
+        assertEquals(expected, written.get());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    private static AuditEntry entry(int i) {
+        return new AuditEntry(1L, "UPDATE", "Patient", (long) i, "test " + i, "127.0.0.1",
+                LocalDateTime.of(2024, 5, 1, 10, 0).plusSeconds(i));
+    }
+}
@@ -0,0 +1,62 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.PostgresIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Export CSV des paiements : les champs texte saisis par les utilisateurs (nom et prénom du
+ * patient, nom du caissier) ne sont jamais évalués comme formules par un tableur.
+ */
+class CaisseExportTest extends PostgresIntegrationTest {
+
+    private static final LocalDate DAY = LocalDate.of(2019, 2, 14);
+
+    @Autowired
+    private CaisseService caisseService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void csvNeutralisesFormulaCells() throws IOException {
+        long caissierId = jdbcTemplate.queryForObject("INSERT INTO users (username, email, nom, prenom, password, role) "
+                + "VALUES ('@caissier.export', 'caissier.export@clinique.test', 'Test', 'Export', 'x', 'CAISSIER') "
+                + "RETURNING id", Long.class);
+        long formulaId = insertPatient("P-EXPORT-1", "=HYPERLINK(\"http://exemple.test\";\"x\")", "+33 6");
+        long plainId = insertPatient("P-EXPORT-2", "N'Diaye", "-Awa");
+        insertPaiement(formulaId, caissierId, "R-EXPORT-1", 10);
+        insertPaiement(plainId, caissierId, "R-EXPORT-2", 11);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = caisseService.exportPaiements(DAY.atStartOfDay(), DAY.atTime(23, 59), "csv", out);
+
+        assertEquals(2, count);
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals("R-EXPORT-1;2019-02-14 10:00:00;1500.00;ESPECES;P-EXPORT-1;"
+                + "\"'=HYPERLINK(\"\"http://exemple.test\"\";\"\"x\"\")\";'+33 6;;'@caissier.export", lines.get(1));
+        assertEquals("R-EXPORT-2;2019-02-14 11:00:00;1500.00;ESPECES;P-EXPORT-2;N'Diaye;'-Awa;;'@caissier.export",
+                lines.get(2));
+    }
+
+    private long insertPatient(String numero, String nom, String prenom) {
+        return jdbcTemplate.queryForObject("INSERT INTO patients (numero, nom, prenom, date_naissance) "
+                + "VALUES (?, ?, ?, DATE '1980-01-01') RETURNING id", Long.class, numero, nom, prenom);
+    }
+
+    private void insertPaiement(long patientId, long caissierId, String numeroRecu, int hour) {
+        jdbcTemplate.update("INSERT INTO paiements (patient_id, montant, mode_paiement, date, caissier_id, numero_recu) "
+                        + "VALUES (?, ?, 'ESPECES', ?, ?, ?)",
+                patientId, new BigDecimal("1500"), DAY.atTime(hour, 0), caissierId, numeroRecu);
+    }
+}
@@ -0,0 +1,119 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.PostgresIntegrationTest;
+import com.clinique.gestion.enums.ModePaiement;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Journal de caisse après suppression d'un patient ou d'un caissier : les jours concernés,
+ * bien plus anciens que caisse.journal.reconcile-days, sont reconstruits dans la transaction
+ * de suppression et les totaux ne comptent plus les paiements supprimés.
+ */
+class CaisseLedgerTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private CaisseLedger caisseLedger;
+
+    @Autowired
+    private PatientService patientService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void deletingPatientRebuildsOldDays() {
+        LocalDate day = LocalDate.of(2020, 3, 10);
+        long caissierId = insertUser("caissier.ledger.patient");
+        long deletedId = insertPatient("P-LEDGER-1");
+        long keptId = insertPatient("P-LEDGER-2");
+        insertPaiement(deletedId, caissierId, day, "5000", ModePaiement.ESPECES, "R-LEDGER-1");
+        insertPaiement(deletedId, caissierId, day, "2000", ModePaiement.CARTE, "R-LEDGER-2");
+        insertPaiement(keptId, caissierId, day, "3000", ModePaiement.ESPECES, "R-LEDGER-3");
+        caisseLedger.rebuild(day, day);
+        assertEquals(new BigDecimal("10000.00"), total(day));
+
+        patientService.deletePatient(deletedId, new MockHttpServletRequest());
+
+        assertEquals(new BigDecimal("3000.00"), total(day));
+        assertEquals(Map.of(ModePaiement.ESPECES, new BigDecimal("3000.00")),
+                caisseLedger.totalsByMode(day.minusDays(1).atStartOfDay(), day.plusDays(1).atTime(12, 0)));
+        assertTrue(caisseLedger.reconcile(day, day).isEmpty(), "journal divergent après suppression");
+    }
+
+    @Test
+    void deletingCaissierRebuildsOldDays() {
+        LocalDate day = LocalDate.of(2020, 6, 15);
+        long deletedId = insertUser("caissier.ledger.supprime");
+        long keptId = insertUser("caissier.ledger.garde");
+        long patientId = insertPatient("P-LEDGER-3");
+        insertPaiement(patientId, deletedId, day, "4000", ModePaiement.CHEQUE, "R-LEDGER-4");
+        insertPaiement(patientId, keptId, day, "1500", ModePaiement.CHEQUE, "R-LEDGER-5");
+        caisseLedger.rebuild(day, day);
+
+        userService.deleteUser(deletedId, new MockHttpServletRequest());
+
+        assertEquals(new BigDecimal("1500.00"), total(day));
+        assertTrue(caisseLedger.reconcile(day, day).isEmpty(), "journal divergent après suppression");
+    }
+
+    @Test
+    void rolledBackDeletionKeepsJournal() {
+        LocalDate day = LocalDate.of(2020, 9, 20);
+        long caissierId = insertUser("caissier.ledger.annule");
+        long patientId = insertPatient("P-LEDGER-4");
+        insertPaiement(patientId, caissierId, day, "2500", ModePaiement.VIREMENT, "R-LEDGER-6");
+        caisseLedger.rebuild(day, day);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            patientService.deletePatient(patientId, new MockHttpServletRequest());
+            status.setRollbackOnly();
+        });
+
+        assertEquals(new BigDecimal("2500.00"), total(day));
+        assertTrue(caisseLedger.reconcile(day, day).isEmpty(), "journal divergent après annulation");
+    }
+
+    /**
+     * Total sur une période dont le jour donné est lu dans le journal (jour complet)
+     */
+    private BigDecimal total(LocalDate day) {
+        return caisseLedger.total(day.minusDays(1).atStartOfDay(), day.plusDays(1).atTime(12, 0));
+    }
+
+    private long insertUser(String username) {
+        return jdbcTemplate.queryForObject("INSERT INTO users (username, email, nom, prenom, password, role) "
+                        + "VALUES (?, ?, 'Test', ?, 'x', 'CAISSIER') RETURNING id",
+                Long.class, username, username + "@clinique.test", username);
+    }
+
+    private long insertPatient(String numero) {
+        return jdbcTemplate.queryForObject("INSERT INTO patients (numero, nom, prenom, date_naissance) "
+                + "VALUES (?, 'Patient', ?, DATE '1980-01-01') RETURNING id", Long.class, numero, numero);
+    }
+
+    private void insertPaiement(long patientId, long caissierId, LocalDate day, String montant,
+                                ModePaiement mode, String numeroRecu) {
+        jdbcTemplate.update("INSERT INTO paiements (patient_id, montant, mode_paiement, date, caissier_id, numero_recu) "
+                        + "VALUES (?, ?, ?, ?, ?, ?)",
+                patientId, new BigDecimal(montant), mode.name(), day.atTime(10, 0),
+                caissierId, numeroRecu);
+    }
+}
@@ -0,0 +1,228 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.PostgresIntegrationTest;
+import com.clinique.gestion.dto.PatientDTO;
+import com.clinique.gestion.entity.Patient;
+import com.clinique.gestion.util.BackgroundThreads;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Index de saisie semi-automatique construit sur la table patients : suppressions masquées
+ * avant et après fusion, lectures pendant le gel et la fusion du delta, désactivation quand
+ * le budget mémoire est dépassé. Chaque test construit sa propre instance ; les patients
+ * ajoutés hors base ont des identifiants au-delà de {@link #FIRST_ID}.
+ */
+class PatientTypeaheadIndexTest extends PostgresIntegrationTest {
+
+    private static final long FIRST_ID = 1_000_000_000L;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private PatientTypeaheadIndex index;
+
+    @AfterEach
+    void tearDown() {
+        if (index != null) {
+            index.shutdown();
+        }
+    }
+
+    @Test
+    void deletedPatientStaysHiddenAcrossMerges() throws InterruptedException {
+        index = index(3, 256);
+        index.onPatientSaved(patient(FIRST_ID + 1, "Tombe", "Awa"));
+        index.onPatientSaved(patient(FIRST_ID + 2, "Tombe", "Binta"));
+        index.onPatientDeleted(FIRST_ID + 1);
+
+        // Tombstone dans le delta actif
+        assertEquals(List.of(FIRST_ID + 2), ids(index.suggest("tombe", 10)));
+
+        // Troisième patient modifié : le delta est gelé puis fusionné sans le patient supprimé
+        index.onPatientSaved(patient(FIRST_ID + 3, "Tombe", "Coumba"));
+        awaitMerged();
+        assertEquals(List.of(FIRST_ID + 2, FIRST_ID + 3), ids(index.suggest("tombe", 10)));
+        assertEquals(List.of(FIRST_ID + 2), ids(index.suggest("tombe binta", 10)));
+
+        // Suppression d'un patient du segment : masqué tout de suite, retiré à la fusion suivante
+        index.onPatientDeleted(FIRST_ID + 3);
+        assertEquals(List.of(FIRST_ID + 2), ids(index.suggest("tombe", 10)));
+        index.onPatientSaved(patient(FIRST_ID + 4, "Autre", "Patient"));
+        index.onPatientSaved(patient(FIRST_ID + 5, "Autre", "Patient"));
+        awaitMerged();
+        assertEquals(List.of(FIRST_ID + 2), ids(index.suggest("tombe", 10)));
+        assertEquals(0.0, gauge("patients.typeahead.delta"));
+    }
+
+    @Test
+    void readersSeeStablePatientsWhileDeltaIsMerged() throws Exception {
+        int readers = 4;
+        int stable = 50;
+        int writes = 3000;
+        index = index(100, 256);
+        for (int i = 0; i < stable; i++) {
+            index.onPatientSaved(patient(FIRST_ID + i, "Lecteur", "Stable" + i));
+        }
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch started = new CountDownLatch(readers);
+        ExecutorService executor = Executors.newFixedThreadPool(readers + 1);
+        List<Future<Integer>> reads = new ArrayList<>();
+        for (int r = 0; r < readers; r++) {
+            reads.add(executor.submit(() -> {
+                started.countDown();
+                int count = 0;
+                while (writing.get()) {
+                    List<PatientDTO> suggestions = index.suggest("lecteur", 100);
+                    assertEquals(stable, suggestions.size(), "patients stables perdus ou dupliqués");
+                    count++;
+                }
+                return count;
+            }));
+        }
+        Future<?> writer = executor.submit(() -> {
+            started.await();
+            // Chaque patient écrit est ensuite supprimé une fois sur deux, à travers les seuils de fusion
+            for (int i = 0; i < writes; i++) {
+                long id = FIRST_ID + stable + i;
+                index.onPatientSaved(patient(id, "Ecrivain", "Passage" + i));
+                if (i % 2 == 1) {
+                    index.onPatientDeleted(id);
+                }
+            }
+            return null;
+        });
+        try {
+            writer.get(60, TimeUnit.SECONDS);
+        } finally {
+            writing.set(false);
+        }
+        for (Future<Integer> read : reads) {
+            assertTrue(read.get(10, TimeUnit.SECONDS) > 0);
+        }
+        executor.shutdown();
+        awaitMerged();
+
+        assertTrue(gauge("patients.typeahead.patients") >= stable);
+        assertEquals(stable, index.suggest("lecteur", 100).size());
+        assertEquals(writes / 2, index.suggest("ecrivain", writes).size());
+    }
+
+    @Test
+    void disablesWhenMergeExceedsBudget() throws InterruptedException {
+        // Budget nul : contrôlé tous les 4096 ajouts, la première fusion le dépasse
+        index = index(4096, 0);
+        for (long id = FIRST_ID; id < FIRST_ID + 4096; id++) {
+            index.onPatientSaved(patient(id, "Budget", "Fusion"));
+        }
+
+        await(() -> !index.isReady());
+        assertFalse(index.isReady());
+        assertEquals(0.0, gauge("patients.typeahead.delta"));
+
+        // Désactivé : les modifications suivantes sont ignorées
+        index.onPatientSaved(patient(FIRST_ID + 5000, "Budget", "Ignore"));
+        assertEquals(0.0, gauge("patients.typeahead.delta"));
+    }
+
+    @Test
+    void disablesWhenBuildExceedsBudget() throws InterruptedException {
+        jdbcTemplate.update("INSERT INTO patients (numero, nom, prenom, date_naissance) "
+                + "SELECT 'P-BUDGET-' || g, 'Budget', 'Construction', DATE '1990-01-01' FROM generate_series(1, 4100) g");
+        try {
+            index = index(5000, 0, false);
+            await(() -> Boolean.TRUE.equals(ReflectionTestUtils.getField(index, "disabled")));
+
+            assertFalse(index.isReady());
+            assertEquals(0.0, gauge("patients.typeahead.patients"));
+        } finally {
+            jdbcTemplate.update("DELETE FROM patients WHERE numero LIKE 'P-BUDGET-%'");
+        }
+    }
+
+    private PatientTypeaheadIndex index(int mergeThreshold, long maxMemoryMb) throws InterruptedException {
+        return index(mergeThreshold, maxMemoryMb, true);
+    }
+
+    private PatientTypeaheadIndex index(int mergeThreshold, long maxMemoryMb, boolean awaitReady)
+            throws InterruptedException {
+        PatientTypeaheadIndex typeahead = new PatientTypeaheadIndex();
+        ReflectionTestUtils.setField(typeahead, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(typeahead, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(typeahead, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(typeahead, "backgroundThreads", new BackgroundThreads());
+        ReflectionTestUtils.setField(typeahead, "enabled", true);
+        ReflectionTestUtils.setField(typeahead, "maxMemoryMb", maxMemoryMb);
+        ReflectionTestUtils.setField(typeahead, "mergeThreshold", mergeThreshold);
+        ReflectionTestUtils.setField(typeahead, "maxCandidates", 10_000);
+        ReflectionTestUtils.setField(typeahead, "fetchSize", 2000);
+        typeahead.registerMetrics();
+        typeahead.buildAtStartup();
+        if (awaitReady) {
+            await(typeahead::isReady);
+            assertTrue(typeahead.isReady());
+        }
+        return typeahead;
+    }
+
+    /**
+     * Attend qu'aucun delta gelé ne reste à fusionner
+     */
+    private void awaitMerged() throws InterruptedException {
+        await(() -> ((Map<?, ?>) ReflectionTestUtils.invokeMethod(
+                ReflectionTestUtils.getField(index, "state"), "frozen")).isEmpty());
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static List<Long> ids(List<PatientDTO> suggestions) {
+        return suggestions.stream().map(PatientDTO::getId).sorted().toList();
+    }
+
+    private static Patient patient(long id, String nom, String prenom) {
+        Patient patient = new Patient();
+        patient.setId(id);
+        patient.setNumero("P-TYPEAHEAD-" + id);
+        patient.setNom(nom);
+        patient.setPrenom(prenom);
+        patient.setDateNaissance(LocalDate.of(1985, 6, 15));
+        return patient;
+    }
+}
@@ -0,0 +1,161 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.dto.TicketDTO;
+import com.clinique.gestion.enums.StatutTicket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Moteur de files en mémoire, hors transaction (les changements sont appliqués immédiatement) :
+ * ordre d'arrivée, positions, états notifiés dans le désordre et publication hors verrou.
+ */
+class TicketQueueEngineTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 8, 0);
+
+    private TicketQueueEngine engine;
+
+    private final List<TicketQueueEvent> events = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile boolean publishedUnderLock;
+
+    @BeforeEach
+    void setUp() {
+        engine = new TicketQueueEngine();
+        ReflectionTestUtils.setField(engine, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(engine, "eventPublisher", (ApplicationEventPublisher) event -> {
+            publishedUnderLock |= Thread.holdsLock(engine);
+            events.add((TicketQueueEvent) event);
+        });
+    }
+
+    @Test
+    void ordersByArrivalThenId() {
+        engine.onTicketChanged(ticket(3L, "CONSULTATION", StatutTicket.EN_ATTENTE, T0.plusMinutes(2)), 0);
+        engine.onTicketChanged(ticket(2L, "CONSULTATION", StatutTicket.EN_ATTENTE, T0), 0);
+        engine.onTicketChanged(ticket(1L, "CONSULTATION", StatutTicket.EN_ATTENTE, T0), 0);
+        engine.onTicketChanged(ticket(4L, "LABORATOIRE", StatutTicket.EN_ATTENTE, T0), 0);
+
+        assertEquals(List.of(1L, 2L, 3L), ids("CONSULTATION"));
+        assertEquals(1L, engine.peek("CONSULTATION").orElseThrow().getId());
+        assertEquals(3, engine.position(3L));
+        assertEquals(1, engine.size("LABORATOIRE"));
+
+        engine.onTicketChanged(ticket(1L, "CONSULTATION", StatutTicket.EN_COURS, T0), 1);
+
+        assertEquals(List.of(2L, 3L), ids("CONSULTATION"));
+        assertEquals(2, engine.position(3L));
+        assertEquals(0, engine.position(1L));
+        assertFalse(publishedUnderLock, "événement publié sous le verrou du moteur");
+    }
+
+    @Test
+    void ignoresStateOlderThanApplied() {
+        // Commit de l'appel notifié avant celui de la création
+        engine.onTicketChanged(ticket(10L, "CONSULTATION", StatutTicket.EN_COURS, T0), 1);
+        engine.onTicketChanged(ticket(10L, "CONSULTATION", StatutTicket.EN_ATTENTE, T0), 0);
+
+        assertEquals(0, engine.size("CONSULTATION"));
+        assertEquals(1, events.size());
+
+        // Remise en attente puis fin, notifiées dans le désordre
+        engine.onTicketChanged(ticket(10L, "CONSULTATION", StatutTicket.TERMINE, T0), 3);
+        engine.onTicketChanged(ticket(10L, "CONSULTATION", StatutTicket.EN_ATTENTE, T0), 2);
+
+        assertEquals(0, engine.size("CONSULTATION"));
+        assertEquals(StatutTicket.TERMINE, events.get(events.size() - 1).getTicket().getStatut());
+    }
+
+    @Test
+    void patientDeletionIsFinal() {
+        engine.onTicketChanged(ticket(20L, 7L, "CONSULTATION", StatutTicket.EN_ATTENTE, T0), 0);
+        engine.onTicketChanged(ticket(21L, 8L, "CONSULTATION", StatutTicket.EN_ATTENTE, T0), 0);
+
+        engine.onPatientDeleted(7L);
+        // Changement validé avant la suppression mais notifié après
+        engine.onTicketChanged(ticket(20L, 7L, "CONSULTATION", StatutTicket.EN_ATTENTE, T0), 1);
+
+        assertEquals(List.of(21L), ids("CONSULTATION"));
+        assertEquals(TicketQueueEvent.Type.REMOVED, events.get(events.size() - 1).getType());
+    }
+
+    @Test
+    void concurrentChangesKeepQueueConsistent() throws Exception {
+        int threads = 8;
+        int perThread = 250;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    long id = (long) thread * perThread + i + 1;
+                    LocalDateTime createdAt = T0.plusSeconds(id);
+                    engine.onTicketChanged(ticket(id, "CONSULTATION", StatutTicket.EN_ATTENTE, createdAt), 0);
+                    if (id % 2 == 0) {
+                        // Appel puis état initial en retard : le ticket reste sorti de la file
+                        engine.onTicketChanged(ticket(id, "CONSULTATION", StatutTicket.EN_COURS, createdAt), 1);
+                        engine.onTicketChanged(ticket(id, "CONSULTATION", StatutTicket.EN_ATTENTE, createdAt), 0);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        List<Long> queue = ids("CONSULTATION");
+        assertEquals(threads * perThread / 2, queue.size());
+        for (int i = 0; i < queue.size(); i++) {
+            long id = queue.get(i);
+            assertEquals(1, id % 2);
+            assertEquals(i + 1, engine.position(id));
+            if (i > 0) {
+                assertTrue(queue.get(i - 1) < id, "file hors ordre d'arrivée");
+            }
+        }
+        assertEquals(threads * perThread * 3 / 2, events.size());
+        assertFalse(publishedUnderLock, "événement publié sous le verrou du moteur");
+    }
+
+    private List<Long> ids(String service) {
+        return engine.getQueue(service).stream().map(TicketDTO::getId).toList();
+    }
+
+    private static TicketDTO ticket(Long id, String service, StatutTicket statut, LocalDateTime createdAt) {
+        return ticket(id, 1L, service, statut, createdAt);
+    }
+
+    private static TicketDTO ticket(Long id, Long patientId, String service, StatutTicket statut,
+                                    LocalDateTime createdAt) {
+        TicketDTO dto = new TicketDTO();
+        dto.setId(id);
+        dto.setNumero("T-" + id);
+        dto.setPatientId(patientId);
+        dto.setService(service);
+        dto.setStatut(statut);
+        dto.setCreatedAt(createdAt);
+        return dto;
+    }
+}
@@ -0,0 +1,123 @@
+package com.clinique.gestion.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Segment compact de l'index de saisie semi-automatique : recherche par préfixe dans le
+ * dictionnaire trié, décodage des fiches et contrôle du budget mémoire.
+ */
+class TypeaheadSegmentTest {
+
+    @Test
+    void visitsExactTokenBeforePrefixMatches() {
+        TypeaheadSegment.Builder builder = new TypeaheadSegment.Builder(Long.MAX_VALUE);
+        builder.add(entry(1L, "Diallo", "Mamadou"));
+        builder.add(entry(2L, "Diop", "Awa"));
+        builder.add(entry(3L, "Dia", "Fatou"));
+        builder.add(entry(4L, "Ndiaye", "Diaba"));
+        TypeaheadSegment segment = builder.build();
+
+        List<Long> ids = new ArrayList<>();
+        List<Boolean> exact = new ArrayList<>();
+        segment.forEachMatch(word("dia"), (ordinal, isExact) -> {
+            ids.add(segment.id(ordinal));
+            exact.add(isExact);
+            return true;
+        });
+
+        // "dia" (3), puis "diaba" (4) et "diallo" (1) dans l'ordre des jetons ; ni "diop" ni "ndiaye"
+        assertEquals(List.of(3L, 4L, 1L), ids);
+        assertEquals(List.of(true, false, false), exact);
+    }
+
+    @Test
+    void findsPrefixesAtDictionaryEdges() {
+        TypeaheadSegment.Builder builder = new TypeaheadSegment.Builder(Long.MAX_VALUE);
+        builder.add(entry(1L, "Aa", "Zz"));
+        builder.add(entry(2L, "Mm", "Nn"));
+        TypeaheadSegment segment = builder.build();
+
+        assertEquals(List.of(1L), matches(segment, word("a")));
+        assertEquals(List.of(1L), matches(segment, word("zz")));
+        assertEquals(List.of(), matches(segment, word("zzz")));
+        assertEquals(List.of(), matches(TypeaheadSegment.EMPTY, word("a")));
+    }
+
+    @Test
+    void stopsWhenVisitorReturnsFalse() {
+        TypeaheadSegment.Builder builder = new TypeaheadSegment.Builder(Long.MAX_VALUE);
+        for (long id = 1; id <= 10; id++) {
+            builder.add(entry(id, "Sow", "Prenom" + id));
+        }
+        TypeaheadSegment segment = builder.build();
+
+        int[] visited = {0};
+        segment.forEachMatch(word("sow"), (ordinal, exact) -> ++visited[0] < 3);
+
+        assertEquals(3, visited[0]);
+    }
+
+    @Test
+    void decodesEntriesWithMissingFields() {
+        TypeaheadSegment.Builder builder = new TypeaheadSegment.Builder(Long.MAX_VALUE);
+        builder.add(new TypeaheadEntry(7L, "PAT-20240101-00007", "Fall", "Aïda", "+221 77 123 45 67",
+                LocalDate.of(1990, 4, 12), false));
+        builder.add(new TypeaheadEntry(8L, "PAT-20240101-00008", "Ba", "Ousmane", null, null, false));
+        TypeaheadSegment segment = builder.build();
+
+        assertEquals(2, segment.size());
+        TypeaheadEntry full = segment.entry(0);
+        assertEquals("Aïda", full.prenom());
+        assertEquals("+221 77 123 45 67", full.telephone());
+        assertEquals(LocalDate.of(1990, 4, 12), full.dateNaissance());
+        TypeaheadEntry partial = segment.entry(1);
+        assertEquals("Ba", partial.nom());
+        assertEquals(null, partial.telephone());
+        assertEquals(null, partial.dateNaissance());
+        assertFalse(partial.deleted());
+
+        // Fin de téléphone et de numéro, par les jetons inversés
+        assertEquals(List.of(7L), matches(segment, token(TypeaheadEntry.PHONE_REVERSED, "7654")));
+        assertEquals(List.of(8L), matches(segment, token(TypeaheadEntry.NUMERO_REVERSED, "800")));
+    }
+
+    @Test
+    void exceedsBudgetOnlyAtCheckInterval() {
+        TypeaheadSegment.Builder builder = new TypeaheadSegment.Builder(0);
+        for (long id = 1; id < 4096; id++) {
+            builder.add(entry(id, "Nom" + id, "Prenom"));
+        }
+        assertTrue(builder.estimatedBytes() > 0);
+
+        assertThrows(TypeaheadSegment.BudgetExceededException.class,
+                () -> builder.add(entry(4096L, "Nom4096", "Prenom")));
+    }
+
+    private static List<Long> matches(TypeaheadSegment segment, byte[] prefix) {
+        List<Long> ids = new ArrayList<>();
+        segment.forEachMatch(prefix, (ordinal, exact) -> ids.add(segment.id(ordinal)));
+        return ids;
+    }
+
+    private static byte[] word(String value) {
+        return token(TypeaheadEntry.WORD, value);
+    }
+
+    private static byte[] token(char type, String value) {
+        return (type + value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static TypeaheadEntry entry(long id, String nom, String prenom) {
+        return new TypeaheadEntry(id, null, nom, prenom, null, null, false);
+    }
+}
@@ -0,0 +1,103 @@
+package com.clinique.gestion.service;
+
+import com.clinique.gestion.PostgresIntegrationTest;
+import com.clinique.gestion.dto.PaiementDTO;
+import com.clinique.gestion.enums.ModePaiement;
+import com.clinique.gestion.exception.BadRequestException;
+import com.clinique.gestion.exception.ForbiddenException;
+import com.clinique.gestion.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Médecins et caissiers lus dans le cache des utilisateurs de référence : un compte désactivé
+ * ou supprimé, déjà en cache, n'est plus associé à une consultation ni à un paiement.
+ */
+class UserReferenceCacheTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private UserReferenceCache userReferenceCache;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ConsultationService consultationService;
+
+    @Autowired
+    private CaisseService caisseService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void deactivatedMedecinIsRejected() {
+        long medecinId = insertUser("medecin.cache.desactive", "MEDECIN");
+        long patientId = insertPatient("P-CACHE-1");
+        assertTrue(userReferenceCache.getById(medecinId).orElseThrow().isEnabled());
+
+        userService.deactivateUser(medecinId, new MockHttpServletRequest());
+
+        assertFalse(userReferenceCache.getById(medecinId).orElseThrow().isEnabled());
+        assertThrows(BadRequestException.class, () -> consultationService.createConsultation(
+                patientId, medecinId, "Diagnostic", "Prescription", new MockHttpServletRequest()));
+    }
+
+    @Test
+    void deletedMedecinIsRejected() {
+        long medecinId = insertUser("medecin.cache.supprime", "MEDECIN");
+        long patientId = insertPatient("P-CACHE-2");
+        assertTrue(userReferenceCache.getById(medecinId).isPresent());
+
+        userService.deleteUser(medecinId, new MockHttpServletRequest());
+
+        assertThrows(ResourceNotFoundException.class, () -> consultationService.createConsultation(
+                patientId, medecinId, "Diagnostic", "Prescription", new MockHttpServletRequest()));
+    }
+
+    @Test
+    void deactivatedCaissierCannotRecordPayments() {
+        long caissierId = insertUser("caissier.cache.desactive", "CAISSIER");
+        long patientId = insertPatient("P-CACHE-3");
+        assertTrue(userReferenceCache.getByUsername("caissier.cache.desactive").orElseThrow().isEnabled());
+
+        userService.deactivateUser(caissierId, new MockHttpServletRequest());
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("caissier.cache.desactive", null, List.of()));
+        PaiementDTO paiement = new PaiementDTO();
+        paiement.setPatientId(patientId);
+        paiement.setMontant(new BigDecimal("1000"));
+        paiement.setModePaiement(ModePaiement.ESPECES);
+        assertThrows(ForbiddenException.class,
+                () -> caisseService.enregistrerPaiement(paiement, new MockHttpServletRequest()));
+    }
+
+    private long insertUser(String username, String role) {
+        return jdbcTemplate.queryForObject("INSERT INTO users (username, email, nom, prenom, password, role) "
+                        + "VALUES (?, ?, 'Test', ?, 'motdepasse', ?) RETURNING id",
+                Long.class, username, username + "@clinique.test", username, role);
+    }
+
+    private long insertPatient(String numero) {
+        return jdbcTemplate.queryForObject("INSERT INTO patients (numero, nom, prenom, date_naissance) "
+                + "VALUES (?, 'Patient', ?, DATE '1980-01-01') RETURNING id", Long.class, numero, numero);
+    }
+}
@@ -0,0 +1,156 @@
+package com.clinique.gestion.util;
+
+import com.clinique.gestion.PostgresIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Numérotation sur PostgreSQL : plages réservées par instance (block-size > 1), alignement
+ * des compteurs du jour sur les numéros déjà attribués, réservation d'un import en masse.
+ * Chaque test travaille sur ses propres codes de service (compteurs TKT-Zxx).
+ */
+class NumeroGeneratorTest extends PostgresIntegrationTest {
+
+    private static final String DATE = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+
+    @Autowired
+    private NumeroGenerator numeroGenerator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void instancesReserveDistinctBlocks() {
+        NumeroGenerator first = generator(10);
+        NumeroGenerator second = generator(10);
+
+        assertEquals(ticket("ZBA", 1), first.generateTicketNumero("ZBA"));
+        assertEquals(ticket("ZBA", 2), first.generateTicketNumero("ZBA"));
+        assertEquals(ticket("ZBA", 11), second.generateTicketNumero("ZBA"));
+        assertEquals(ticket("ZBA", 3), first.generateTicketNumero("ZBA"));
+        assertEquals(20L, counter("TKT-ZBA"));
+
+        // Plage épuisée : une nouvelle est réservée après celle de l'autre instance
+        for (int i = 4; i <= 10; i++) {
+            first.generateTicketNumero("ZBA");
+        }
+        assertEquals(ticket("ZBA", 21), first.generateTicketNumero("ZBA"));
+        assertEquals(30L, counter("TKT-ZBA"));
+    }
+
+    @Test
+    void concurrentInstancesNeverRepeatNumbers() throws Exception {
+        List<NumeroGenerator> generators = List.of(generator(1), generator(7), generator(7));
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            NumeroGenerator generator = generators.get(t % generators.size());
+            futures.add(executor.submit(() -> {
+                List<String> numeros = new ArrayList<>();
+                for (int i = 0; i < 40; i++) {
+                    numeros.add(generator.generateTicketNumero("ZCC"));
+                }
+                return numeros;
+            }));
+        }
+        Set<String> all = new HashSet<>();
+        for (Future<List<String>> future : futures) {
+            all.addAll(future.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertEquals(240, all.size());
+    }
+
+    @Test
+    void seedsEachCounterFromExistingNumbers() {
+        long patientId = jdbcTemplate.queryForObject("INSERT INTO patients (numero, nom, prenom, date_naissance) "
+                + "VALUES ('P-NUMERO-1', 'Patient', 'Numero', DATE '1980-01-01') RETURNING id", Long.class);
+        insertTicket(ticket("ZSA", 42), patientId);
+        insertTicket(ticket("ZSA", 7), patientId);
+        insertTicket(ticket("ZSB", 5), patientId);
+        insertTicket("TKT-ZSB-" + DATE + "-ABCDE", patientId);
+
+        // Démarrage d'une instance : un compteur par service, aligné sur son plus grand numéro
+        NumeroGenerator started = generator(1);
+
+        assertEquals(42L, counter("TKT-ZSA"));
+        assertEquals(5L, counter("TKT-ZSB"));
+        assertEquals(ticket("ZSA", 43), started.generateTicketNumero("ZSA"));
+        assertEquals(ticket("ZSB", 6), numeroGenerator.generateTicketNumero("ZSB"));
+
+        // Un nouvel alignement ne fait jamais reculer un compteur
+        generator(1);
+        assertEquals(43L, counter("TKT-ZSA"));
+    }
+
+    @Test
+    void importRangeIsCommittedSeparately() throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        List<String> range = new ArrayList<>();
+        String concurrent = transaction.execute(status -> {
+            range.addAll(numeroGenerator.generatePatientNumeros(5));
+            // La ligne du compteur n'est pas verrouillée jusqu'à la fin de l'import
+            String numero = CompletableFuture.supplyAsync(numeroGenerator::generatePatientNumero)
+                    .orTimeout(10, TimeUnit.SECONDS)
+                    .join();
+            status.setRollbackOnly();
+            return numero;
+        });
+
+        assertEquals(5, range.size());
+        assertEquals(sequence(range.get(0)) + 4, sequence(range.get(4)));
+        assertTrue(sequence(concurrent) > sequence(range.get(4)));
+        // Import annulé : la plage reste consommée (trou dans la numérotation)
+        assertTrue(counter("PAT") >= sequence(concurrent));
+    }
+
+    private NumeroGenerator generator(int blockSize) {
+        NumeroGenerator generator = new NumeroGenerator();
+        ReflectionTestUtils.setField(generator, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(generator, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(generator, "blockSize", blockSize);
+        generator.init();
+        return generator;
+    }
+
+    private long counter(String prefix) {
+        return jdbcTemplate.queryForObject("SELECT valeur FROM numero_sequences WHERE prefixe = ? AND jour = ?",
+                Long.class, prefix, LocalDate.now());
+    }
+
+    private void insertTicket(String numero, long patientId) {
+        jdbcTemplate.update("INSERT INTO tickets (numero, patient_id, service, statut, created_at) "
+                + "VALUES (?, ?, 'TEST', 'TERMINE', CURRENT_TIMESTAMP)", numero, patientId);
+    }
+
+    private static String ticket(String service, int counter) {
+        return String.format("TKT-%s-%s-%05d", service, DATE, counter);
+    }
+
+    private static long sequence(String numero) {
+        return Long.parseLong(numero.substring(numero.lastIndexOf('-') + 1));
+    }
+}
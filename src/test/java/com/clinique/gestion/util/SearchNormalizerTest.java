@@ -0,0 +1,97 @@
+package com.clinique.gestion.util;
+
+import com.clinique.gestion.PostgresIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SearchNormalizer et la fonction SQL patient_search_key (V4) produisent la même clé :
+ * sinon l'index de saisie semi-automatique et la recherche en base ne trouvent pas
+ * les mêmes patients.
+ */
+class SearchNormalizerTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Boolean utf8CharacterClasses;
+
+    @Test
+    void normalizesNames() {
+        assertEquals("ndiaye", SearchNormalizer.normalize("N'Diaye"));
+        assertEquals("eric", SearchNormalizer.normalize("Éric"));
+        assertEquals("oedipe", SearchNormalizer.normalize("Œdipe"));
+        assertEquals("jean pierre", SearchNormalizer.normalize("  Jean -  Pierre "));
+        assertEquals("", SearchNormalizer.normalize(null));
+        assertEquals("771234567", SearchNormalizer.digits("+77 123-45.67"));
+    }
+
+    @Test
+    void matchesSqlKeyOnNames() {
+        List<String> values = List.of("N'Diaye", "Éric", "Œdipe", "Ødegaard", "Straße", "Łukasz", "ÆSIR",
+                "Jean-Pierre  Dupont", "d’Almeida", "Mc Donald", "Tab\tulé", "Noël   Zoë",
+                "ＡＢＣ１２３", "ﬁlle ﬂeur", "Ⅻ siècle", "Ñuñez", "Þór", "PAT-20240101-00042", "  ", "!?*",
+                "François-Xavier O'Neil", "Ĳsselmeer", "ǅemal", "Ærø");
+        List<String> mismatches = new ArrayList<>();
+        for (String value : values) {
+            compare(value, mismatches);
+        }
+        assertTrue(mismatches.isEmpty(), "clés divergentes: " + mismatches);
+    }
+
+    @Test
+    void matchesSqlKeyOnPatientFields() {
+        assertEquals(SearchNormalizer.normalize("Ndiaye Aïssatou PAT-20240101-00042"),
+                jdbcTemplate.queryForObject("SELECT patient_search_key(?, ?, ?)", String.class,
+                        "N'Diaye", "Aïssatou", "PAT-20240101-00042"));
+        assertEquals(SearchNormalizer.normalize("Dupont"),
+                jdbcTemplate.queryForObject("SELECT patient_search_key(?, NULL, NULL)", String.class, "Dupont"));
+    }
+
+    @Test
+    void matchesSqlKeyOnLatinCharacters() {
+        List<String> mismatches = new ArrayList<>();
+        // Latin-1, Latin étendu A et B : chaque caractère entre deux lettres
+        for (char c = ' '; c <= 'ɏ'; c++) {
+            compare("a" + c + "b", mismatches);
+        }
+        assertTrue(mismatches.isEmpty(), "clés divergentes: " + mismatches);
+    }
+
+    private void compare(String value, List<String> mismatches) {
+        String java = SearchNormalizer.normalize(value);
+        if (!asciiOnly(java) && !utf8CharacterClasses()) {
+            // Lettres sans équivalent unaccent : conservées en SQL selon LC_CTYPE seulement
+            return;
+        }
+        String sql = jdbcTemplate.queryForObject("SELECT patient_search_key(?, '', '')", String.class, value);
+        if (!java.equals(sql)) {
+            mismatches.add(codePoints(value) + " -> java '" + java + "', sql '" + sql + "'");
+        }
+    }
+
+    private boolean utf8CharacterClasses() {
+        if (utf8CharacterClasses == null) {
+            String ctype = jdbcTemplate.queryForObject("SHOW lc_ctype", String.class);
+            utf8CharacterClasses = !"C".equals(ctype) && !"POSIX".equals(ctype);
+        }
+        return utf8CharacterClasses;
+    }
+
+    private static String codePoints(String value) {
+        StringBuilder description = new StringBuilder();
+        value.codePoints().forEach(c -> description.append(c < 0x80 ? String.valueOf((char) c) : String.format("<U+%04X>", c)));
+        return description.toString();
+    }
+
+    private static boolean asciiOnly(String value) {
+        return value.chars().allMatch(c -> c < 0x80);
+    }
+}